@@ -89,5 +89,14 @@ interface Backend {
     @Throws(MessagingException::class)
     fun sendMessage(message: Message)
 
+    /**
+     * Called before [sendMessage] is invoked for a series of messages.
+     *
+     * Backends may keep the connection to the outgoing server open until [endSendSession] is called.
+     */
+    fun beginSendSession()
+
+    fun endSendSession()
+
     fun createPusher(callback: BackendPusherCallback): BackendPusher
 }
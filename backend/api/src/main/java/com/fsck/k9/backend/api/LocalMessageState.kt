@@ -0,0 +1,19 @@
+package com.fsck.k9.backend.api
+
+import com.fsck.k9.mail.Flag
+import com.fsck.k9.mail.MessageDownloadState
+
+/**
+ * State of a message that is present in the local store.
+ */
+data class LocalMessageState(val flags: Set<Flag>) {
+    val isDeleted: Boolean
+        get() = Flag.DELETED in flags
+
+    val downloadState: MessageDownloadState
+        get() = when {
+            Flag.X_DOWNLOADED_FULL in flags -> MessageDownloadState.FULL
+            Flag.X_DOWNLOADED_PARTIAL in flags -> MessageDownloadState.PARTIAL
+            else -> MessageDownloadState.ENVELOPE
+        }
+}
@@ -146,6 +146,14 @@ class ImapBackend(
         smtpTransport.sendMessage(message)
     }
 
+    override fun beginSendSession() {
+        smtpTransport.beginSession()
+    }
+
+    override fun endSendSession() {
+        smtpTransport.endSession()
+    }
+
     override fun createPusher(callback: BackendPusherCallback): BackendPusher {
         return ImapBackendPusher(imapStore, powerManager, idleRefreshManager, pushConfigProvider, callback, accountName)
     }
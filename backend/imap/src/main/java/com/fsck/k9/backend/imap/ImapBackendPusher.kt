@@ -21,7 +21,10 @@ private const val IO_ERROR_TIMEOUT = 5 * 60 * 1000L
 private const val UNEXPECTED_ERROR_TIMEOUT = 60 * 60 * 1000L
 
 /**
- * Manages [ImapFolderPusher] instances that listen for changes to individual folders.
+ * Manages the [ImapMultiFolderPusher] that listens for changes to the folders configured for Push.
+ *
+ * All folders share a single connection. Folders are removed from the running set when the pusher fails and are retried
+ * individually using retry timers.
  */
 internal class ImapBackendPusher(
     private val imapStore: ImapStore,
@@ -34,7 +37,8 @@ internal class ImapBackendPusher(
 ) : BackendPusher, ImapPusherCallback {
     private val coroutineScope = CoroutineScope(backgroundDispatcher)
     private val lock = Any()
-    private val pushFolders = mutableMapOf<String, ImapFolderPusher>()
+    private val pushFolders = mutableSetOf<String>()
+    private var multiFolderPusher: ImapMultiFolderPusher? = null
     private var currentFolderServerIds: Collection<String> = emptySet()
     private val pushFolderSleeping = mutableMapOf<String, IdleRefreshTimer>()
 
@@ -67,9 +71,7 @@ internal class ImapBackendPusher(
 
     private fun refreshFolderTimers() {
         synchronized(lock) {
-            for (pushFolder in pushFolders.values) {
-                pushFolder.refresh()
-            }
+            multiFolderPusher?.refresh()
         }
     }
 
@@ -93,40 +95,52 @@ internal class ImapBackendPusher(
             folderServerIds
         }
 
-        val stopFolderPushers: List<ImapFolderPusher>
-        val startFolderPushers: List<ImapFolderPusher>
+        var stopPusher: ImapMultiFolderPusher? = null
+        var startPusher: ImapMultiFolderPusher? = null
+        var updatePusher: ImapMultiFolderPusher? = null
+        val runningFolderServerIds: Set<String>
         synchronized(lock) {
             currentFolderServerIds = folderServerIds
 
-            val oldRunningFolderServerIds = pushFolders.keys
-            val oldFolderServerIds = oldRunningFolderServerIds + pushFolderSleeping.keys
-            val removeFolderServerIds = oldFolderServerIds - pushFolderServerIds
-            stopFolderPushers = removeFolderServerIds
-                .asSequence()
-                .onEach { folderServerId -> cancelRetryTimer(folderServerId) }
-                .map { folderServerId -> pushFolders.remove(folderServerId) }
-                .filterNotNull()
-                .toList()
-
-            val startFolderServerIds = pushFolderServerIds - oldRunningFolderServerIds
-            startFolderPushers = startFolderServerIds
-                .asSequence()
-                .filterNot { folderServerId -> isWaitingForRetry(folderServerId) }
-                .onEach { folderServerId -> pushFolderSleeping.remove(folderServerId) }
-                .map { folderServerId ->
-                    createImapFolderPusher(folderServerId).also { folderPusher ->
-                        pushFolders[folderServerId] = folderPusher
-                    }
+            val oldFolderServerIds = pushFolders + pushFolderSleeping.keys
+            val removeFolderServerIds = oldFolderServerIds - pushFolderServerIds.toSet()
+            for (folderServerId in removeFolderServerIds) {
+                cancelRetryTimer(folderServerId)
+                pushFolders.remove(folderServerId)
+            }
+
+            val startFolderServerIds = pushFolderServerIds - pushFolders
+            for (folderServerId in startFolderServerIds) {
+                if (!isWaitingForRetry(folderServerId)) {
+                    pushFolderSleeping.remove(folderServerId)
+                    pushFolders.add(folderServerId)
                 }
-                .toList()
-        }
+            }
 
-        for (folderPusher in stopFolderPushers) {
-            folderPusher.stop()
+            runningFolderServerIds = pushFolders.toSet()
+            val currentPusher = multiFolderPusher
+            if (runningFolderServerIds.isEmpty()) {
+                stopPusher = currentPusher
+                multiFolderPusher = null
+            } else if (currentPusher == null) {
+                startPusher = createImapMultiFolderPusher().also { multiFolderPusher = it }
+            } else {
+                updatePusher = currentPusher
+            }
         }
 
-        for (folderPusher in startFolderPushers) {
-            folderPusher.start()
+        stopPusher?.stop()
+        startPusher?.start(runningFolderServerIds)
+
+        if (updatePusher?.updateFolders(runningFolderServerIds) == false) {
+            // The pusher stopped in the meantime. Replace it with a new instance.
+            synchronized(lock) {
+                if (multiFolderPusher === updatePusher) {
+                    multiFolderPusher = null
+                }
+            }
+
+            updateFolders()
         }
     }
 
@@ -136,9 +150,8 @@ internal class ImapBackendPusher(
         coroutineScope.cancel()
 
         synchronized(lock) {
-            for (pushFolder in pushFolders.values) {
-                pushFolder.stop()
-            }
+            multiFolderPusher?.stop()
+            multiFolderPusher = null
             pushFolders.clear()
 
             for (retryTimer in pushFolderSleeping.values) {
@@ -154,9 +167,8 @@ internal class ImapBackendPusher(
         Timber.v("ImapBackendPusher.reconnect()")
 
         synchronized(lock) {
-            for (pushFolder in pushFolders.values) {
-                pushFolder.stop()
-            }
+            multiFolderPusher?.stop()
+            multiFolderPusher = null
             pushFolders.clear()
 
             for (retryTimer in pushFolderSleeping.values) {
@@ -170,14 +182,13 @@ internal class ImapBackendPusher(
         updateFolders()
     }
 
-    private fun createImapFolderPusher(folderServerId: String): ImapFolderPusher {
-        return ImapFolderPusher(
+    private fun createImapMultiFolderPusher(): ImapMultiFolderPusher {
+        return ImapMultiFolderPusher(
             imapStore,
             powerManager,
             idleRefreshManager,
             this,
             accountName,
-            folderServerId,
             idleRefreshTimeoutProvider,
         )
     }
@@ -220,6 +231,7 @@ internal class ImapBackendPusher(
             }
 
             if (pushFolders.isEmpty()) {
+                multiFolderPusher = null
                 callback.onPushError(exception)
             }
         }
@@ -0,0 +1,143 @@
+package com.fsck.k9.backend.imap
+
+import com.fsck.k9.logging.Timber
+import com.fsck.k9.mail.power.PowerManager
+import com.fsck.k9.mail.power.WakeLock
+import com.fsck.k9.mail.store.imap.IdleRefreshManager
+import com.fsck.k9.mail.store.imap.IdleRefreshTimeoutProvider
+import com.fsck.k9.mail.store.imap.IdleResult
+import com.fsck.k9.mail.store.imap.ImapMultiFolderIdler
+import com.fsck.k9.mail.store.imap.ImapStore
+import kotlin.concurrent.thread
+
+/**
+ * Listens for changes to multiple IMAP folders in a dedicated thread using a single connection.
+ */
+internal class ImapMultiFolderPusher(
+    private val imapStore: ImapStore,
+    private val powerManager: PowerManager,
+    private val idleRefreshManager: IdleRefreshManager,
+    private val callback: ImapPusherCallback,
+    private val accountName: String,
+    private val idleRefreshTimeoutProvider: IdleRefreshTimeoutProvider,
+    private val folderIdlerFactory: (WakeLock) -> ImapMultiFolderIdler = { wakeLock ->
+        ImapMultiFolderIdler.create(idleRefreshManager, wakeLock, imapStore, idleRefreshTimeoutProvider)
+    },
+) {
+    private val lock = Any()
+    private var folderServerIds: Set<String> = emptySet()
+    private var isRunning = false
+
+    @Volatile
+    private var folderIdler: ImapMultiFolderIdler? = null
+
+    @Volatile
+    private var stopPushing = false
+
+    fun start(folderServerIds: Set<String>) {
+        Timber.v("Starting ImapMultiFolderPusher for %s / %s", accountName, folderServerIds)
+
+        synchronized(lock) {
+            this.folderServerIds = folderServerIds
+            isRunning = true
+        }
+
+        thread(name = "ImapMultiFolderPusher-$accountName") {
+            Timber.v("Starting ImapMultiFolderPusher thread for %s", accountName)
+
+            runPushLoop()
+
+            Timber.v("Exiting ImapMultiFolderPusher thread for %s", accountName)
+        }
+    }
+
+    /**
+     * Changes the set of folders to listen to.
+     *
+     * Returns `false` if this pusher has already stopped and a new one needs to be started.
+     */
+    fun updateFolders(folderServerIds: Set<String>): Boolean {
+        val addedFolderServerIds = synchronized(lock) {
+            if (!isRunning) return false
+            if (folderServerIds == this.folderServerIds) return true
+
+            Timber.v("Updating ImapMultiFolderPusher for %s / %s", accountName, folderServerIds)
+
+            (folderServerIds - this.folderServerIds).also {
+                this.folderServerIds = folderServerIds
+            }
+        }
+
+        performInitialSync(addedFolderServerIds)
+
+        // Restart IDLE so the new set of folders is used
+        folderIdler?.stop()
+
+        return true
+    }
+
+    fun refresh() {
+        Timber.v("Refreshing ImapMultiFolderPusher for %s", accountName)
+
+        folderIdler?.refresh()
+    }
+
+    fun stop() {
+        Timber.v("Stopping ImapMultiFolderPusher for %s", accountName)
+
+        stopPushing = true
+        folderIdler?.stop()
+    }
+
+    private fun runPushLoop() {
+        val wakeLock = powerManager.newWakeLock("ImapMultiFolderPusher-$accountName")
+        wakeLock.acquire()
+
+        performInitialSync(synchronized(lock) { folderServerIds })
+
+        val folderIdler = folderIdlerFactory(wakeLock).also {
+            folderIdler = it
+        }
+
+        try {
+            while (!stopPushing) {
+                val folderServerIds = synchronized(lock) { this.folderServerIds }
+                val idleResult = folderIdler.idle(folderServerIds)
+
+                for (folderServerId in idleResult.changedFolderServerIds) {
+                    callback.onPushEvent(folderServerId)
+                }
+
+                if (idleResult.result == IdleResult.NOT_SUPPORTED) {
+                    stopPushing = true
+                    stopRunning()
+                    callback.onPushNotSupported()
+                }
+            }
+
+            stopRunning()
+        } catch (e: Exception) {
+            Timber.v(e, "Exception in ImapMultiFolderPusher")
+
+            this.folderIdler = null
+            for (folderServerId in stopRunning()) {
+                callback.onPushError(folderServerId, e)
+            }
+        }
+
+        wakeLock.release()
+    }
+
+    private fun stopRunning(): Set<String> {
+        return synchronized(lock) {
+            isRunning = false
+            folderServerIds
+        }
+    }
+
+    private fun performInitialSync(folderServerIds: Set<String>) {
+        for (folderServerId in folderServerIds) {
+            callback.onPushEvent(folderServerId)
+        }
+    }
+}
@@ -3,6 +3,7 @@ package com.fsck.k9.backend.imap
 import com.fsck.k9.backend.api.BackendFolder
 import com.fsck.k9.backend.api.BackendFolder.MoreMessages
 import com.fsck.k9.backend.api.BackendStorage
+import com.fsck.k9.backend.api.LocalMessageState
 import com.fsck.k9.backend.api.SyncConfig
 import com.fsck.k9.backend.api.SyncConfig.ExpungePolicy
 import com.fsck.k9.backend.api.SyncListener
@@ -20,6 +21,7 @@ import com.fsck.k9.mail.store.imap.ImapFolder
 import com.fsck.k9.mail.store.imap.ImapMessage
 import com.fsck.k9.mail.store.imap.ImapStore
 import com.fsck.k9.mail.store.imap.OpenMode
+import com.fsck.k9.mail.store.imap.QresyncResponse
 import java.util.Collections
 import java.util.Date
 import java.util.concurrent.atomic.AtomicInteger
@@ -81,7 +83,13 @@ internal class ImapSync(
                 remoteFolder.expunge()
             }
 
-            remoteFolder.open(OpenMode.READ_ONLY)
+            var visibleLimit = backendFolder.visibleLimit
+            if (visibleLimit < 0) {
+                visibleLimit = syncConfig.defaultVisibleLimit
+            }
+
+            var knownHighestModSeq = backendFolder.getFolderExtraNumber(EXTRA_HIGHEST_MOD_SEQ)?.takeIf { it > 0 }
+            val qresyncResponse = openRemoteFolder(remoteFolder, backendFolder, knownHighestModSeq, visibleLimit)
 
             listener.syncAuthenticationSuccess()
 
@@ -95,6 +103,49 @@ internal class ImapSync(
                 backendFolder.clearAllMessages()
                 backendFolder.setFolderExtraNumber(EXTRA_UID_VALIDITY, uidValidity!!)
                 backendFolder.setFolderExtraNumber(EXTRA_HIGHEST_KNOWN_UID, 0)
+                backendFolder.setFolderExtraNumber(EXTRA_HIGHEST_MOD_SEQ, 0)
+                knownHighestModSeq = null
+            }
+
+            val highestKnownUid = backendFolder.getFolderExtraNumber(EXTRA_HIGHEST_KNOWN_UID) ?: 0
+
+            /*
+             * HIGHESTMODSEQ as reported when opening the folder. Changes happening during this sync will be picked up
+             * again by the next sync.
+             */
+            val highestModSeq = remoteFolder.getHighestModSeq()
+
+            if (qresyncResponse != null && knownHighestModSeq != null && highestModSeq != null) {
+                Timber.d(
+                    "SYNC: Synchronizing changes since MODSEQ %d for folder %s:%s",
+                    knownHighestModSeq,
+                    accountName,
+                    folder,
+                )
+
+                val complete = synchronizeChanges(
+                    syncConfig,
+                    remoteFolder,
+                    backendFolder,
+                    qresyncResponse,
+                    highestKnownUid,
+                    visibleLimit,
+                    listener,
+                )
+
+                if (complete) {
+                    newHighestKnownUid = qresyncResponse.changedMessages
+                        .maxOfOrNull { it.uid.toLong() }
+                        ?.takeIf { it > highestKnownUid } ?: 0
+
+                    backendFolder.setFolderExtraNumber(EXTRA_HIGHEST_MOD_SEQ, highestModSeq)
+                } else {
+                    Timber.d("SYNC: Incremental sync of %s was incomplete; forcing full sync next time", folder)
+                    backendFolder.setFolderExtraNumber(EXTRA_LAST_FULL_SYNC, 0)
+                }
+
+                finishSync(backendFolder, folder, listener)
+                return
             }
 
             /*
@@ -102,7 +153,6 @@ internal class ImapSync(
              * the uids within the list.
              */
 
-            val highestKnownUid = backendFolder.getFolderExtraNumber(EXTRA_HIGHEST_KNOWN_UID) ?: 0
             var localUidMap: Map<String, Long?>? = backendFolder.getAllMessagesAndEffectiveDates()
 
             /*
@@ -110,11 +160,6 @@ internal class ImapSync(
              */
             val remoteMessageCount = remoteFolder.messageCount
 
-            var visibleLimit = backendFolder.visibleLimit
-            if (visibleLimit < 0) {
-                visibleLimit = syncConfig.defaultVisibleLimit
-            }
-
             val remoteMessages = mutableListOf<ImapMessage>()
             val remoteUidMap = mutableMapOf<String, ImapMessage>()
 
@@ -200,6 +245,12 @@ internal class ImapSync(
             /*
              * Now we download the actual content of messages.
              */
+            val flagRefresh = if (knownHighestModSeq != null && highestModSeq != null) {
+                FlagRefresh.ChangedSince(knownHighestModSeq)
+            } else {
+                FlagRefresh.All
+            }
+
             downloadMessages(
                 syncConfig,
                 remoteFolder,
@@ -207,20 +258,18 @@ internal class ImapSync(
                 remoteMessages,
                 highestKnownUid,
                 listener,
+                flagRefresh,
             )
 
-            listener.folderStatusChanged(folder)
-
-            /* Notify listeners that we're finally done. */
-
-            backendFolder.setLastChecked(System.currentTimeMillis())
-            backendFolder.setStatus(null)
-
-            Timber.d("Done synchronizing folder %s:%s @ %tc", accountName, folder, System.currentTimeMillis())
-
-            listener.syncFinished(folder)
+            if (highestModSeq != null) {
+                backendFolder.setFolderExtraNumber(EXTRA_HIGHEST_MOD_SEQ, highestModSeq)
+                backendFolder.setFolderExtraNumber(EXTRA_SYNC_VISIBLE_LIMIT, visibleLimit.toLong())
+                backendFolder.setFolderExtraNumber(EXTRA_LAST_FULL_SYNC, System.currentTimeMillis())
+            } else if (knownHighestModSeq != null) {
+                backendFolder.setFolderExtraNumber(EXTRA_HIGHEST_MOD_SEQ, 0)
+            }
 
-            Timber.i("Done synchronizing folder %s:%s", accountName, folder)
+            finishSync(backendFolder, folder, listener)
         } catch (e: AuthenticationFailedException) {
             listener.syncFailed(folder, "Authentication failure", e)
         } catch (e: Exception) {
@@ -254,6 +303,141 @@ internal class ImapSync(
         }
     }
 
+    private fun finishSync(backendFolder: BackendFolder, folder: String, listener: SyncListener) {
+        listener.folderStatusChanged(folder)
+
+        /* Notify listeners that we're finally done. */
+
+        backendFolder.setLastChecked(System.currentTimeMillis())
+        backendFolder.setStatus(null)
+
+        Timber.d("Done synchronizing folder %s:%s @ %tc", accountName, folder, System.currentTimeMillis())
+
+        listener.syncFinished(folder)
+
+        Timber.i("Done synchronizing folder %s:%s", accountName, folder)
+    }
+
+    /**
+     * Opens the remote folder using QRESYNC if we have a HIGHESTMODSEQ value from a previous full sync that was done
+     * with the same visible limit and isn't too old.
+     *
+     * Returns `null` if a full sync is required.
+     */
+    private fun openRemoteFolder(
+        remoteFolder: ImapFolder,
+        backendFolder: BackendFolder,
+        knownHighestModSeq: Long?,
+        visibleLimit: Int,
+    ): QresyncResponse? {
+        val knownUidValidity = backendFolder.getFolderExtraNumber(EXTRA_UID_VALIDITY)
+        val syncVisibleLimit = backendFolder.getFolderExtraNumber(EXTRA_SYNC_VISIBLE_LIMIT)
+        val lastFullSync = backendFolder.getFolderExtraNumber(EXTRA_LAST_FULL_SYNC) ?: 0
+        val fullSyncRequired = System.currentTimeMillis() - lastFullSync > FULL_SYNC_INTERVAL
+
+        if (knownUidValidity == null || knownHighestModSeq == null || syncVisibleLimit != visibleLimit.toLong() ||
+            fullSyncRequired
+        ) {
+            remoteFolder.open(OpenMode.READ_ONLY)
+            return null
+        }
+
+        return remoteFolder.openWithQresync(OpenMode.READ_ONLY, knownUidValidity, knownHighestModSeq)
+    }
+
+    /**
+     * Applies the changes reported by the server in response to opening the folder with QRESYNC.
+     *
+     * Returns `false` if not all new messages could be downloaded. In that case the stored HIGHESTMODSEQ value must
+     * not be updated.
+     */
+    private fun synchronizeChanges(
+        syncConfig: SyncConfig,
+        remoteFolder: ImapFolder,
+        backendFolder: BackendFolder,
+        qresyncResponse: QresyncResponse,
+        highestKnownUid: Long,
+        visibleLimit: Int,
+        listener: SyncListener,
+    ): Boolean {
+        val folder = remoteFolder.serverId
+        if (!qresyncResponse.hasChanges) {
+            Timber.v("SYNC: No changes in folder %s", folder)
+            return true
+        }
+
+        listener.syncHeadersStarted(folder)
+
+        if (syncConfig.syncRemoteDeletions && qresyncResponse.vanishedUidRanges.isNotEmpty()) {
+            val destroyMessageUids = backendFolder.getMessageServerIds().filter { messageServerId ->
+                val uid = messageServerId.toLongOrNull()
+                uid != null && qresyncResponse.isVanished(uid)
+            }
+
+            if (destroyMessageUids.isNotEmpty()) {
+                backendFolder.destroyMessages(destroyMessageUids)
+                for (uid in destroyMessageUids) {
+                    listener.syncRemovedMessage(folder, uid)
+                }
+            }
+        }
+
+        // Messages we don't know about with a UID lower than the highest known UID are outside the sync window
+        val localMessageStates = backendFolder.getMessageStates(qresyncResponse.changedMessages.map { it.uid })
+        val unknownMessages = qresyncResponse.changedMessages.filter { message ->
+            message.uid.toLong() > highestKnownUid && message.uid !in localMessageStates
+        }
+
+        // New messages are subject to the same visible limit and date restriction as a full sync
+        val syncWindowUids = if (unknownMessages.isNotEmpty()) {
+            getSyncWindowUids(remoteFolder, visibleLimit, syncConfig.earliestPollDate)
+        } else {
+            null
+        }
+
+        val remoteMessages = qresyncResponse.changedMessages.filter { message ->
+            message.uid in localMessageStates ||
+                (message.uid.toLong() > highestKnownUid && (syncWindowUids == null || message.uid in syncWindowUids))
+        }
+        val newMessages = remoteMessages.filter { message ->
+            message.uid.toLong() > highestKnownUid && !message.isSet(Flag.DELETED)
+        }
+
+        Timber.v("SYNC: Got %d changed messages for folder %s", remoteMessages.size, folder)
+
+        listener.syncHeadersFinished(folder, remoteFolder.messageCount, newMessages.size)
+
+        downloadMessages(
+            syncConfig,
+            remoteFolder,
+            backendFolder,
+            remoteMessages,
+            highestKnownUid,
+            listener,
+            FlagRefresh.AlreadyFetched,
+        )
+
+        val newMessageServerIds = newMessages.map { it.uid }
+        return backendFolder.getMessageStates(newMessageServerIds).keys.containsAll(newMessageServerIds)
+    }
+
+    /**
+     * Returns the UIDs of the messages a full sync would consider, i.e. the newest [visibleLimit] messages that are not
+     * older than [earliestDate].
+     *
+     * Returns `null` if there's no restriction.
+     */
+    private fun getSyncWindowUids(remoteFolder: ImapFolder, visibleLimit: Int, earliestDate: Date?): Set<String>? {
+        if (visibleLimit <= 0 && earliestDate == null) return null
+
+        val remoteMessageCount = remoteFolder.messageCount
+        if (remoteMessageCount <= 0) return emptySet()
+
+        val remoteStart = if (visibleLimit > 0) max(0, remoteMessageCount - visibleLimit) + 1 else 1
+        return remoteFolder.getMessages(remoteStart, remoteMessageCount, earliestDate, null)
+            .mapTo(mutableSetOf()) { it.uid }
+    }
+
     fun downloadMessage(syncConfig: SyncConfig, folderServerId: String, messageServerId: String) {
         val backendFolder = backendStorage.getFolder(folderServerId)
         val remoteFolder = imapStore.getFolder(folderServerId)
@@ -268,6 +452,7 @@ internal class ImapSync(
                 listOf(remoteMessage),
                 null,
                 SimpleSyncListener(),
+                FlagRefresh.All,
             )
         } finally {
             remoteFolder.close()
@@ -283,6 +468,8 @@ internal class ImapSync(
      * The [BackendFolder] instance corresponding to the remote folder.
      * @param inputMessages
      * A list of messages objects that store the UIDs of which messages to download.
+     * @param flagRefresh
+     * Specifies how the flags of messages that are already present locally are retrieved.
      */
     private fun downloadMessages(
         syncConfig: SyncConfig,
@@ -291,6 +478,7 @@ internal class ImapSync(
         inputMessages: List<ImapMessage>,
         highestKnownUid: Long?,
         listener: SyncListener,
+        flagRefresh: FlagRefresh,
     ) {
         val folder = remoteFolder.serverId
 
@@ -299,10 +487,11 @@ internal class ImapSync(
         val downloadedMessageCount = AtomicInteger(0)
 
         val messages = inputMessages.toMutableList()
+        val localMessageStates = backendFolder.getMessageStates(messages.map { it.uid })
         for (message in messages) {
             evaluateMessageForDownload(
                 message,
-                backendFolder,
+                localMessageStates[message.uid],
                 unsyncedMessages,
                 syncFlagMessages,
             )
@@ -390,14 +579,23 @@ internal class ImapSync(
          * Refresh the flags for any messages in the local store that we didn't just
          * download.
          */
-        refreshLocalMessageFlags(syncConfig, remoteFolder, backendFolder, syncFlagMessages, progress, todo, listener)
+        refreshLocalMessageFlags(
+            syncConfig,
+            remoteFolder,
+            backendFolder,
+            syncFlagMessages,
+            flagRefresh,
+            progress,
+            todo,
+            listener,
+        )
 
         Timber.d("SYNC: Synced remote messages for folder %s, %d new messages", folder, downloadedMessageCount.get())
     }
 
     private fun evaluateMessageForDownload(
         message: ImapMessage,
-        backendFolder: BackendFolder,
+        localMessageState: LocalMessageState?,
         unsyncedMessages: MutableList<ImapMessage>,
         syncFlagMessages: MutableList<ImapMessage>,
     ) {
@@ -408,17 +606,15 @@ internal class ImapSync(
             return
         }
 
-        val messagePresentLocally = backendFolder.isMessagePresent(messageServerId)
-        if (!messagePresentLocally) {
+        if (localMessageState == null) {
             Timber.v("Message with uid %s has not yet been downloaded", messageServerId)
             unsyncedMessages.add(message)
             return
         }
 
-        val messageFlags = backendFolder.getMessageFlags(messageServerId)
-        if (!messageFlags.contains(Flag.DELETED)) {
+        if (!localMessageState.isDeleted) {
             Timber.v("Message with uid %s is present in the local store", messageServerId)
-            if (!messageFlags.contains(Flag.X_DOWNLOADED_FULL) && !messageFlags.contains(Flag.X_DOWNLOADED_PARTIAL)) {
+            if (localMessageState.downloadState == MessageDownloadState.ENVELOPE) {
                 Timber.v("Message with uid %s is not downloaded, even partially; trying again", messageServerId)
                 unsyncedMessages.add(message)
             } else {
@@ -515,40 +711,48 @@ internal class ImapSync(
 
         Timber.d("SYNC: Fetching %d small messages for folder %s", smallMessages.size, folder)
 
-        remoteFolder.fetch(
-            smallMessages,
-            fetchProfile,
-            object : FetchListener {
-                override fun onFetchResponse(message: ImapMessage, isFirstResponse: Boolean) {
-                    try {
-                        // Store the updated message locally
-                        backendFolder.saveMessage(message, MessageDownloadState.FULL)
+        // Store downloaded messages in batches and only notify listeners once a batch has been written
+        val messageSaveBatch = MessageSaveBatch(backendFolder, MessageDownloadState.FULL) { savedMessages ->
+            Timber.v(
+                "About to notify listeners that we got %d new small messages %s:%s",
+                savedMessages.size,
+                accountName,
+                folder,
+            )
 
-                        if (isFirstResponse) {
-                            progress.incrementAndGet()
-                            downloadedMessageCount.incrementAndGet()
-                        }
+            // Update the listener with what we've found
+            listener.syncProgress(folder, progress.get(), todo)
 
-                        val messageServerId = message.uid
-                        Timber.v(
-                            "About to notify listeners that we got a new small message %s:%s:%s",
-                            accountName,
-                            folder,
-                            messageServerId,
-                        )
+            for (message in savedMessages) {
+                val messageServerId = message.uid
+                val isOldMessage = isOldMessage(messageServerId, highestKnownUid)
+                listener.syncNewMessage(folder, messageServerId, isOldMessage)
+            }
+        }
 
-                        // Update the listener with what we've found
-                        listener.syncProgress(folder, progress.get(), todo)
+        try {
+            remoteFolder.fetch(
+                smallMessages,
+                fetchProfile,
+                object : FetchListener {
+                    override fun onFetchResponse(message: ImapMessage, isFirstResponse: Boolean) {
+                        try {
+                            if (isFirstResponse) {
+                                progress.incrementAndGet()
+                                downloadedMessageCount.incrementAndGet()
+                            }
 
-                        val isOldMessage = isOldMessage(messageServerId, highestKnownUid)
-                        listener.syncNewMessage(folder, messageServerId, isOldMessage)
-                    } catch (e: Exception) {
-                        Timber.e(e, "SYNC: fetch small messages")
+                            messageSaveBatch.add(message)
+                        } catch (e: Exception) {
+                            Timber.e(e, "SYNC: fetch small messages")
+                        }
                     }
-                }
-            },
-            -1,
-        )
+                },
+                -1,
+            )
+        } finally {
+            messageSaveBatch.flush()
+        }
 
         Timber.d("SYNC: Done fetching small messages for folder %s", folder)
     }
@@ -572,29 +776,31 @@ internal class ImapSync(
         Timber.d("SYNC: Fetching large messages for folder %s", folder)
 
         remoteFolder.fetch(largeMessages, fetchProfile, null, maxDownloadSize)
-        for (message in largeMessages) {
-            if (message.body == null) {
-                downloadSaneBody(remoteFolder, backendFolder, message, maxDownloadSize)
-            } else {
-                downloadPartial(remoteFolder, backendFolder, message, maxDownloadSize)
-            }
+        for (messages in largeMessages.chunked(LARGE_MESSAGE_PART_FETCH_BATCH_SIZE)) {
+            downloadPartial(remoteFolder, backendFolder, messages.filter { it.body != null }, maxDownloadSize)
 
-            val messageServerId = message.uid
-            Timber.v(
-                "About to notify listeners that we got a new large message %s:%s:%s",
-                accountName,
-                folder,
-                messageServerId,
-            )
+            for (message in messages) {
+                if (message.body == null) {
+                    downloadSaneBody(remoteFolder, backendFolder, message, maxDownloadSize)
+                }
 
-            // Update the listener with what we've found
-            progress.incrementAndGet()
-            downloadedMessageCount.incrementAndGet()
+                val messageServerId = message.uid
+                Timber.v(
+                    "About to notify listeners that we got a new large message %s:%s:%s",
+                    accountName,
+                    folder,
+                    messageServerId,
+                )
 
-            listener.syncProgress(folder, progress.get(), todo)
+                // Update the listener with what we've found
+                progress.incrementAndGet()
+                downloadedMessageCount.incrementAndGet()
 
-            val isOldMessage = isOldMessage(messageServerId, highestKnownUid)
-            listener.syncNewMessage(folder, messageServerId, isOldMessage)
+                listener.syncProgress(folder, progress.get(), todo)
+
+                val isOldMessage = isOldMessage(messageServerId, highestKnownUid)
+                listener.syncNewMessage(folder, messageServerId, isOldMessage)
+            }
         }
 
         Timber.d("SYNC: Done fetching large messages for folder %s", folder)
@@ -605,6 +811,7 @@ internal class ImapSync(
         remoteFolder: ImapFolder,
         backendFolder: BackendFolder,
         syncFlagMessages: List<ImapMessage>,
+        flagRefresh: FlagRefresh,
         progress: AtomicInteger,
         todo: Int,
         listener: SyncListener,
@@ -612,9 +819,6 @@ internal class ImapSync(
         val folder = remoteFolder.serverId
         Timber.d("SYNC: About to sync flags for %d remote messages for folder %s", syncFlagMessages.size, folder)
 
-        val fetchProfile = FetchProfile()
-        fetchProfile.add(FetchProfile.Item.FLAGS)
-
         val undeletedMessages = mutableListOf<ImapMessage>()
         for (message in syncFlagMessages) {
             if (!message.isSet(Flag.DELETED)) {
@@ -622,11 +826,53 @@ internal class ImapSync(
             }
         }
 
-        val maxDownloadSize = syncConfig.maximumAutoDownloadMessageSize
-        remoteFolder.fetch(undeletedMessages, fetchProfile, null, maxDownloadSize)
+        // null means the flags of all messages need to be compared
+        val changedMessageUids: Set<String>? = when (flagRefresh) {
+            FlagRefresh.All -> {
+                val fetchProfile = FetchProfile()
+                fetchProfile.add(FetchProfile.Item.FLAGS)
+
+                val maxDownloadSize = syncConfig.maximumAutoDownloadMessageSize
+                remoteFolder.fetch(undeletedMessages, fetchProfile, null, maxDownloadSize)
+                null
+            }
+            is FlagRefresh.ChangedSince -> {
+                val changedUids = mutableSetOf<String>()
+                remoteFolder.fetchChangedFlags(
+                    undeletedMessages,
+                    flagRefresh.modSeq,
+                    object : FetchListener {
+                        override fun onFetchResponse(message: ImapMessage, isFirstResponse: Boolean) {
+                            changedUids.add(message.uid)
+                        }
+                    },
+                )
+                Timber.d("SYNC: Flags of %d messages changed in folder %s", changedUids.size, folder)
+                changedUids
+            }
+            FlagRefresh.AlreadyFetched -> null
+        }
+
+        val flagsMayHaveChangedMessages = syncFlagMessages.filter { remoteMessage ->
+            changedMessageUids == null || remoteMessage.uid in changedMessageUids
+        }
+        val localMessageStates = backendFolder.getMessageStates(flagsMayHaveChangedMessages.map { it.uid })
+
+        val flagChanges = mutableMapOf<String, Map<Flag, Boolean>>()
+        for (remoteMessage in flagsMayHaveChangedMessages) {
+            val localMessageState = localMessageStates[remoteMessage.uid] ?: continue
+            val messageFlagChanges = getFlagChanges(syncConfig, localMessageState, remoteMessage)
+            if (messageFlagChanges.isNotEmpty()) {
+                flagChanges[remoteMessage.uid] = messageFlagChanges
+            }
+        }
+
+        if (flagChanges.isNotEmpty()) {
+            backendFolder.setMessageFlags(flagChanges)
+        }
+
         for (remoteMessage in syncFlagMessages) {
-            val messageChanged = syncFlags(syncConfig, backendFolder, remoteMessage)
-            if (messageChanged) {
+            if (remoteMessage.uid in flagChanges) {
                 listener.syncFlagChanged(folder, remoteMessage.uid)
             }
             progress.incrementAndGet()
@@ -662,52 +908,43 @@ internal class ImapSync(
     private fun downloadPartial(
         remoteFolder: ImapFolder,
         backendFolder: BackendFolder,
-        message: ImapMessage,
+        messages: List<ImapMessage>,
         maxDownloadSize: Int,
     ) {
+        if (messages.isEmpty()) return
+
         /*
          * We have a structure to deal with, from which
          * we can pull down the parts we want to actually store.
          * Build a list of parts we are interested in. Text parts will be downloaded
          * right now, attachments will be left for later.
          */
-        val viewables = MessageExtractor.collectTextParts(message)
+        val partsToFetch = messages.associateWith { message -> MessageExtractor.collectTextParts(message).toList() }
 
         /*
-         * Now download the parts we're interested in storing.
+         * Now download the parts we're interested in storing. The parts of all messages are requested at once.
          */
         val bodyFactory: BodyFactory = DefaultBodyFactory()
-        for (part in viewables) {
-            remoteFolder.fetchPart(message, part, bodyFactory, maxDownloadSize)
-        }
+        remoteFolder.fetchParts(partsToFetch, bodyFactory, maxDownloadSize)
 
-        // Store the updated message locally
-        backendFolder.saveMessage(message, MessageDownloadState.PARTIAL)
+        // Store the updated messages locally
+        backendFolder.saveMessages(messages, MessageDownloadState.PARTIAL)
     }
 
-    private fun syncFlags(syncConfig: SyncConfig, backendFolder: BackendFolder, remoteMessage: ImapMessage): Boolean {
-        val messageServerId = remoteMessage.uid
-        if (!backendFolder.isMessagePresent(messageServerId)) return false
-
-        val localMessageFlags = backendFolder.getMessageFlags(messageServerId)
-        if (localMessageFlags.contains(Flag.DELETED)) return false
+    private fun getFlagChanges(
+        syncConfig: SyncConfig,
+        localMessageState: LocalMessageState,
+        remoteMessage: ImapMessage,
+    ): Map<Flag, Boolean> {
+        if (localMessageState.isDeleted) return emptyMap()
 
-        var messageChanged = false
-        if (remoteMessage.isSet(Flag.DELETED)) {
-            if (syncConfig.syncRemoteDeletions) {
-                backendFolder.setMessageFlag(messageServerId, Flag.DELETED, true)
-                messageChanged = true
-            }
+        return if (remoteMessage.isSet(Flag.DELETED)) {
+            if (syncConfig.syncRemoteDeletions) mapOf(Flag.DELETED to true) else emptyMap()
         } else {
-            for (flag in syncConfig.syncFlags) {
-                if (remoteMessage.isSet(flag) != localMessageFlags.contains(flag)) {
-                    backendFolder.setMessageFlag(messageServerId, flag, remoteMessage.isSet(flag))
-                    messageChanged = true
-                }
-            }
+            syncConfig.syncFlags
+                .filter { flag -> remoteMessage.isSet(flag) != localMessageState.flags.contains(flag) }
+                .associateWith { flag -> remoteMessage.isSet(flag) }
         }
-
-        return messageChanged
     }
 
     private fun updateMoreMessages(
@@ -725,8 +962,33 @@ internal class ImapSync(
         }
     }
 
+    /**
+     * How to refresh the flags of messages that are already present locally.
+     */
+    private sealed interface FlagRefresh {
+        /** Fetch the flags of all messages. */
+        data object All : FlagRefresh
+
+        /** Only fetch the flags of messages that changed since the given mod-sequence (CONDSTORE). */
+        data class ChangedSince(val modSeq: Long) : FlagRefresh
+
+        /** The remote messages already contain up-to-date flags (QRESYNC). */
+        data object AlreadyFetched : FlagRefresh
+    }
+
     companion object {
         private const val EXTRA_UID_VALIDITY = "imapUidValidity"
         private const val EXTRA_HIGHEST_KNOWN_UID = "imapHighestKnownUid"
+        private const val EXTRA_HIGHEST_MOD_SEQ = "imapHighestModSeq"
+        private const val EXTRA_SYNC_VISIBLE_LIMIT = "imapSyncVisibleLimit"
+        private const val EXTRA_LAST_FULL_SYNC = "imapLastFullSync"
+
+        /**
+         * Maximum time between full syncs. Incremental (QRESYNC) syncs don't remove messages that fall out of the sync
+         * window, e.g. because of the earliest poll date.
+         */
+        private const val FULL_SYNC_INTERVAL = 24 * 60 * 60 * 1000L
+
+        private const val LARGE_MESSAGE_PART_FETCH_BATCH_SIZE = 20
     }
 }
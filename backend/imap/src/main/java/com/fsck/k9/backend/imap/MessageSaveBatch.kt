@@ -0,0 +1,77 @@
+package com.fsck.k9.backend.imap
+
+import com.fsck.k9.backend.api.BackendFolder
+import com.fsck.k9.logging.Timber
+import com.fsck.k9.mail.MessageDownloadState
+import com.fsck.k9.mail.store.imap.ImapMessage
+
+/**
+ * Collects downloaded messages and saves them using a single call to [BackendFolder.saveMessages].
+ *
+ * A batch is written once it contains [maxBatchSize] messages or when [maxBatchDuration] milliseconds have passed
+ * since the first message was added to it. [onBatchSaved] is called after the messages of a batch have been saved.
+ */
+internal class MessageSaveBatch(
+    private val backendFolder: BackendFolder,
+    private val downloadState: MessageDownloadState,
+    private val maxBatchSize: Int = DEFAULT_MAX_BATCH_SIZE,
+    private val maxBatchDuration: Long = DEFAULT_MAX_BATCH_DURATION,
+    private val clock: () -> Long = System::currentTimeMillis,
+    private val onBatchSaved: (List<ImapMessage>) -> Unit,
+) {
+    private val pendingMessages = mutableListOf<ImapMessage>()
+    private var batchStartTime = 0L
+
+    init {
+        require(maxBatchSize > 0) { "'maxBatchSize' needs to be positive" }
+    }
+
+    fun add(message: ImapMessage) {
+        if (pendingMessages.any { it === message }) return
+
+        if (pendingMessages.isEmpty()) {
+            batchStartTime = clock()
+        }
+        pendingMessages.add(message)
+
+        if (pendingMessages.size >= maxBatchSize || clock() - batchStartTime >= maxBatchDuration) {
+            flush()
+        }
+    }
+
+    fun flush() {
+        if (pendingMessages.isEmpty()) return
+
+        val messages = pendingMessages.toList()
+        pendingMessages.clear()
+
+        val savedMessages = try {
+            backendFolder.saveMessages(messages, downloadState)
+            messages
+        } catch (e: Exception) {
+            Timber.w(e, "Error while saving a batch of %d messages. Saving messages individually.", messages.size)
+            saveIndividually(messages)
+        }
+
+        if (savedMessages.isNotEmpty()) {
+            onBatchSaved(savedMessages)
+        }
+    }
+
+    private fun saveIndividually(messages: List<ImapMessage>): List<ImapMessage> {
+        return messages.filter { message ->
+            try {
+                backendFolder.saveMessage(message, downloadState)
+                true
+            } catch (e: Exception) {
+                Timber.e(e, "Error while storing downloaded message %s", message.uid)
+                false
+            }
+        }
+    }
+
+    companion object {
+        const val DEFAULT_MAX_BATCH_SIZE = 25
+        const val DEFAULT_MAX_BATCH_DURATION = 1000L
+    }
+}
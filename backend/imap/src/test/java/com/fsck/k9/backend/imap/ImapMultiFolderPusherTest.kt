@@ -0,0 +1,185 @@
+package com.fsck.k9.backend.imap
+
+import assertk.assertThat
+import assertk.assertions.containsExactlyInAnyOrder
+import assertk.assertions.isEqualTo
+import assertk.assertions.isFalse
+import assertk.assertions.isTrue
+import com.fsck.k9.mail.power.PowerManager
+import com.fsck.k9.mail.power.WakeLock
+import com.fsck.k9.mail.store.imap.IdleRefreshManager
+import com.fsck.k9.mail.store.imap.IdleRefreshTimeoutProvider
+import com.fsck.k9.mail.store.imap.IdleRefreshTimer
+import com.fsck.k9.mail.store.imap.IdleResult
+import com.fsck.k9.mail.store.imap.ImapMultiFolderIdler
+import com.fsck.k9.mail.store.imap.MultiFolderIdleResult
+import java.io.IOException
+import java.util.concurrent.CountDownLatch
+import java.util.concurrent.LinkedBlockingQueue
+import java.util.concurrent.TimeUnit
+import org.junit.Test
+
+private const val TEST_TIMEOUT_SECONDS = 5L
+private const val INBOX = "INBOX"
+private const val FOLDER_SERVER_ID = "Folder"
+
+class ImapMultiFolderPusherTest {
+    private val wakeLock = TestWakeLock()
+    private val powerManager = object : PowerManager {
+        override fun newWakeLock(tag: String): WakeLock = wakeLock
+    }
+    private val idleRefreshManager = object : IdleRefreshManager {
+        override fun startTimer(timeout: Long, callback: () -> Unit): IdleRefreshTimer {
+            throw UnsupportedOperationException("not implemented")
+        }
+
+        override fun resetTimers() = Unit
+    }
+    private val idleRefreshTimeoutProvider = object : IdleRefreshTimeoutProvider {
+        override val idleRefreshTimeoutMs = 28 * 60 * 1000L
+    }
+    private val folderIdler = TestImapMultiFolderIdler()
+    private val callback = RecordingPusherCallback()
+    private val pusher = ImapMultiFolderPusher(
+        imapStore = TestImapStore(),
+        powerManager,
+        idleRefreshManager,
+        callback,
+        accountName = "test",
+        idleRefreshTimeoutProvider,
+        folderIdlerFactory = { folderIdler },
+    )
+
+    @Test
+    fun `start() should sync all folders and report changed folders`() {
+        pusher.start(setOf(INBOX, FOLDER_SERVER_ID))
+
+        assertThat(callback.takeEvents(2)).containsExactlyInAnyOrder("push:$INBOX", "push:$FOLDER_SERVER_ID")
+        assertThat(folderIdler.takeIdleCall()).isEqualTo(setOf(INBOX, FOLDER_SERVER_ID))
+
+        folderIdler.enqueueResult(MultiFolderIdleResult(IdleResult.SYNC, setOf(FOLDER_SERVER_ID)))
+
+        assertThat(callback.takeEvents(1)).isEqualTo(listOf("push:$FOLDER_SERVER_ID"))
+        assertThat(folderIdler.takeIdleCall()).isEqualTo(setOf(INBOX, FOLDER_SERVER_ID))
+
+        pusher.stop()
+
+        wakeLock.awaitRelease()
+        assertThat(pusher.updateFolders(setOf(INBOX))).isFalse()
+    }
+
+    @Test
+    fun `updateFolders() should sync added folders and restart IDLE`() {
+        pusher.start(setOf(INBOX))
+        assertThat(callback.takeEvents(1)).isEqualTo(listOf("push:$INBOX"))
+        assertThat(folderIdler.takeIdleCall()).isEqualTo(setOf(INBOX))
+
+        val result = pusher.updateFolders(setOf(INBOX, FOLDER_SERVER_ID))
+
+        assertThat(result).isTrue()
+        assertThat(callback.takeEvents(1)).isEqualTo(listOf("push:$FOLDER_SERVER_ID"))
+        assertThat(folderIdler.takeIdleCall()).isEqualTo(setOf(INBOX, FOLDER_SERVER_ID))
+
+        pusher.stop()
+        wakeLock.awaitRelease()
+    }
+
+    @Test
+    fun `IDLE not supported`() {
+        pusher.start(setOf(INBOX))
+        assertThat(callback.takeEvents(1)).isEqualTo(listOf("push:$INBOX"))
+        assertThat(folderIdler.takeIdleCall()).isEqualTo(setOf(INBOX))
+
+        folderIdler.enqueueResult(MultiFolderIdleResult(IdleResult.NOT_SUPPORTED))
+
+        assertThat(callback.takeEvents(1)).isEqualTo(listOf("notSupported"))
+        wakeLock.awaitRelease()
+        assertThat(pusher.updateFolders(setOf(INBOX))).isFalse()
+    }
+
+    @Test
+    fun `error during IDLE should be reported for all folders`() {
+        pusher.start(setOf(INBOX, FOLDER_SERVER_ID))
+        assertThat(callback.takeEvents(2)).containsExactlyInAnyOrder("push:$INBOX", "push:$FOLDER_SERVER_ID")
+        assertThat(folderIdler.takeIdleCall()).isEqualTo(setOf(INBOX, FOLDER_SERVER_ID))
+
+        folderIdler.enqueueError(IOException("Socket closed during IDLE"))
+
+        assertThat(callback.takeEvents(2)).containsExactlyInAnyOrder("error:$INBOX", "error:$FOLDER_SERVER_ID")
+        wakeLock.awaitRelease()
+        assertThat(pusher.updateFolders(setOf(INBOX))).isFalse()
+    }
+}
+
+private class TestImapMultiFolderIdler : ImapMultiFolderIdler {
+    private val idleCalls = LinkedBlockingQueue<Set<String>>()
+    private val results = LinkedBlockingQueue<() -> MultiFolderIdleResult>()
+
+    override fun idle(folderServerIds: Collection<String>): MultiFolderIdleResult {
+        idleCalls.add(folderServerIds.toSet())
+        val result = results.poll(TEST_TIMEOUT_SECONDS, TimeUnit.SECONDS) ?: throw AssertionError("Timeout")
+        return result()
+    }
+
+    override fun refresh() = Unit
+
+    override fun stop() {
+        enqueueResult(MultiFolderIdleResult(IdleResult.STOPPED))
+    }
+
+    fun enqueueResult(result: MultiFolderIdleResult) {
+        results.add { result }
+    }
+
+    fun enqueueError(exception: Exception) {
+        results.add { throw exception }
+    }
+
+    fun takeIdleCall(): Set<String> {
+        return idleCalls.poll(TEST_TIMEOUT_SECONDS, TimeUnit.SECONDS) ?: throw AssertionError("Timeout")
+    }
+}
+
+private class RecordingPusherCallback : ImapPusherCallback {
+    private val events = LinkedBlockingQueue<String>()
+
+    override fun onPushEvent(folderServerId: String) {
+        events.add("push:$folderServerId")
+    }
+
+    override fun onPushError(folderServerId: String, exception: Exception) {
+        events.add("error:$folderServerId")
+    }
+
+    override fun onPushNotSupported() {
+        events.add("notSupported")
+    }
+
+    fun takeEvents(count: Int): List<String> {
+        return List(count) {
+            events.poll(TEST_TIMEOUT_SECONDS, TimeUnit.SECONDS) ?: throw AssertionError("Timeout")
+        }
+    }
+}
+
+private class TestWakeLock : WakeLock {
+    private val releaseLatch = CountDownLatch(1)
+
+    override fun acquire() = Unit
+
+    override fun acquire(timeout: Long) {
+        throw UnsupportedOperationException("not implemented")
+    }
+
+    override fun setReferenceCounted(counted: Boolean) {
+        throw UnsupportedOperationException("not implemented")
+    }
+
+    override fun release() {
+        releaseLatch.countDown()
+    }
+
+    fun awaitRelease() {
+        assertThat(releaseLatch.await(TEST_TIMEOUT_SECONDS, TimeUnit.SECONDS), "Test timed out").isTrue()
+    }
+}
@@ -2,9 +2,12 @@ package com.fsck.k9.backend.imap
 
 import app.k9mail.backend.testing.InMemoryBackendStorage
 import assertk.assertThat
+import assertk.assertions.contains
 import assertk.assertions.containsAtLeast
 import assertk.assertions.containsExactlyInAnyOrder
+import assertk.assertions.hasSize
 import assertk.assertions.isEmpty
+import assertk.assertions.isEqualTo
 import assertk.assertions.isFalse
 import assertk.assertions.isTrue
 import com.fsck.k9.backend.api.FolderInfo
@@ -29,6 +32,7 @@ import org.mockito.kotlin.atLeast
 import org.mockito.kotlin.eq
 import org.mockito.kotlin.mock
 import org.mockito.kotlin.never
+import org.mockito.kotlin.times
 
 private const val ACCOUNT_NAME = "Account-1"
 private const val FOLDER_SERVER_ID = "FOLDER_ONE"
@@ -246,6 +250,91 @@ class ImapSyncTest {
         verify(syncListener, never()).syncProgress(folderServerId, completed = 2, total = 1)
     }
 
+    @Test
+    fun `sync with QRESYNC and no changes on server should not retrieve message list`() {
+        imapFolder.setUidValidity(1)
+        imapFolder.highestModSeq = 100
+        addMessageToImapFolder(uid = 1)
+        imapSync.sync(FOLDER_SERVER_ID, defaultSyncConfig, syncListener)
+
+        imapSync.sync(FOLDER_SERVER_ID, defaultSyncConfig, syncListener)
+
+        assertThat(backendFolder.getMessageServerIds()).containsExactlyInAnyOrder("1")
+        verify(syncListener, times(1)).syncHeadersStarted(FOLDER_SERVER_ID)
+        verify(syncListener, times(2)).syncFinished(FOLDER_SERVER_ID)
+    }
+
+    @Test
+    fun `sync with QRESYNC should apply changes since last sync`() {
+        imapFolder.setUidValidity(1)
+        imapFolder.highestModSeq = 100
+        addMessageToImapFolder(uid = 1)
+        addMessageToImapFolder(uid = 2)
+        addMessageToImapFolder(uid = 3)
+        imapSync.sync(FOLDER_SERVER_ID, defaultSyncConfig, syncListener)
+
+        imapFolder.removeMessage(uid = 1)
+        imapFolder.setFlags(listOf(imapFolder.getMessage("2")), setOf(Flag.SEEN), true)
+        addMessageToImapFolder(uid = 4)
+        imapSync.sync(FOLDER_SERVER_ID, defaultSyncConfig, syncListener)
+
+        assertThat(backendFolder.getMessageServerIds()).containsExactlyInAnyOrder("2", "3", "4")
+        assertThat(backendFolder.getMessageFlags(messageServerId = "2")).contains(Flag.SEEN)
+        verify(syncListener).syncRemovedMessage(FOLDER_SERVER_ID, messageServerId = "1")
+        verify(syncListener).syncNewMessage(FOLDER_SERVER_ID, messageServerId = "4", isOldMessage = false)
+        verify(syncListener).syncFlagChanged(FOLDER_SERVER_ID, messageServerId = "2")
+    }
+
+    @Test
+    fun `sync with QRESYNC after visible limit change should do full sync`() {
+        imapFolder.setUidValidity(1)
+        imapFolder.highestModSeq = 100
+        addMessageToImapFolder(uid = 1)
+        addMessageToImapFolder(uid = 2)
+        backendFolder.visibleLimit = 1
+        imapSync.sync(FOLDER_SERVER_ID, defaultSyncConfig, syncListener)
+        assertThat(backendFolder.getMessageServerIds()).hasSize(1)
+
+        backendFolder.visibleLimit = 2
+        imapSync.sync(FOLDER_SERVER_ID, defaultSyncConfig, syncListener)
+
+        assertThat(backendFolder.getMessageServerIds()).containsExactlyInAnyOrder("1", "2")
+    }
+
+    @Test
+    fun `sync with QRESYNC should only download new messages within visible limit`() {
+        imapFolder.setUidValidity(1)
+        imapFolder.highestModSeq = 100
+        addMessageToImapFolder(uid = 1)
+        addMessageToImapFolder(uid = 2)
+        backendFolder.visibleLimit = 2
+        imapSync.sync(FOLDER_SERVER_ID, defaultSyncConfig, syncListener)
+
+        addMessageToImapFolder(uid = 3)
+        addMessageToImapFolder(uid = 4)
+        addMessageToImapFolder(uid = 5)
+        imapSync.sync(FOLDER_SERVER_ID, defaultSyncConfig, syncListener)
+
+        assertThat(backendFolder.getMessageServerIds()).containsExactlyInAnyOrder("1", "2", "4", "5")
+        assertThat(backendFolder.getFolderExtraNumber("imapHighestModSeq")).isEqualTo(imapFolder.highestModSeq)
+    }
+
+    @Test
+    fun `sync with QRESYNC should not download new messages older than earliest poll date`() {
+        val syncConfig = defaultSyncConfig.copy(earliestPollDate = "Sat, 01 Jan 2022 00:00:00 +0100".toDate())
+        imapFolder.setUidValidity(1)
+        imapFolder.highestModSeq = 100
+        addMessageToImapFolder(uid = 1)
+        imapSync.sync(FOLDER_SERVER_ID, syncConfig, syncListener)
+
+        addMessageToImapFolder(uid = 2, date = "Wed, 01 Dec 2021 10:00:00 +0100")
+        addMessageToImapFolder(uid = 3)
+        imapSync.sync(FOLDER_SERVER_ID, syncConfig, syncListener)
+
+        assertThat(backendFolder.getMessageServerIds()).containsExactlyInAnyOrder("1", "3")
+        verify(syncListener, never()).syncNewMessage(FOLDER_SERVER_ID, messageServerId = "2", isOldMessage = false)
+    }
+
     private fun addMessageToBackendFolder(uid: Long, date: String = DEFAULT_MESSAGE_DATE) {
         val messageServerId = uid.toString()
         val message = createSimpleMessage(messageServerId, date).apply {
@@ -0,0 +1,108 @@
+package com.fsck.k9.backend.imap
+
+import assertk.assertThat
+import assertk.assertions.containsExactly
+import assertk.assertions.isEmpty
+import com.fsck.k9.backend.api.BackendFolder
+import com.fsck.k9.mail.MessageDownloadState
+import com.fsck.k9.mail.store.imap.ImapMessage
+import com.fsck.k9.mail.store.imap.createImapMessage
+import org.junit.Test
+import org.mockito.kotlin.any
+import org.mockito.kotlin.doThrow
+import org.mockito.kotlin.eq
+import org.mockito.kotlin.mock
+import org.mockito.kotlin.never
+import org.mockito.kotlin.stub
+import org.mockito.kotlin.verify
+
+class MessageSaveBatchTest {
+    private val backendFolder = mock<BackendFolder>()
+    private val savedBatches = mutableListOf<List<String>>()
+    private var currentTime = 0L
+
+    @Test
+    fun `batch should be saved when maximum size is reached`() {
+        val messageSaveBatch = createMessageSaveBatch(maxBatchSize = 2)
+        val messages = listOf(createImapMessage("1"), createImapMessage("2"), createImapMessage("3"))
+
+        messages.forEach { messageSaveBatch.add(it) }
+
+        verify(backendFolder).saveMessages(messages.take(2), MessageDownloadState.FULL)
+        assertThat(savedBatches).containsExactly(listOf("1", "2"))
+
+        messageSaveBatch.flush()
+
+        verify(backendFolder).saveMessages(messages.drop(2), MessageDownloadState.FULL)
+        assertThat(savedBatches).containsExactly(listOf("1", "2"), listOf("3"))
+    }
+
+    @Test
+    fun `batch should be saved when maximum duration has passed`() {
+        val messageSaveBatch = createMessageSaveBatch(maxBatchSize = 10, maxBatchDuration = 100)
+        val firstMessage = createImapMessage("1")
+        val secondMessage = createImapMessage("2")
+
+        messageSaveBatch.add(firstMessage)
+        currentTime = 100
+        messageSaveBatch.add(secondMessage)
+
+        verify(backendFolder).saveMessages(listOf(firstMessage, secondMessage), MessageDownloadState.FULL)
+        assertThat(savedBatches).containsExactly(listOf("1", "2"))
+    }
+
+    @Test
+    fun `adding the same message twice should only save it once`() {
+        val messageSaveBatch = createMessageSaveBatch()
+        val message = createImapMessage("1")
+
+        messageSaveBatch.add(message)
+        messageSaveBatch.add(message)
+        messageSaveBatch.flush()
+
+        verify(backendFolder).saveMessages(listOf(message), MessageDownloadState.FULL)
+    }
+
+    @Test
+    fun `flush without messages should not save anything`() {
+        val messageSaveBatch = createMessageSaveBatch()
+
+        messageSaveBatch.flush()
+
+        verify(backendFolder, never()).saveMessages(any(), any())
+        assertThat(savedBatches).isEmpty()
+    }
+
+    @Test
+    fun `failure to save batch should fall back to saving messages individually`() {
+        val messageSaveBatch = createMessageSaveBatch()
+        val goodMessage = createImapMessage("1")
+        val badMessage = createImapMessage("2")
+        backendFolder.stub {
+            on { saveMessages(any(), any()) } doThrow RuntimeException("batch")
+            on { saveMessage(eq(badMessage), any()) } doThrow RuntimeException("message")
+        }
+
+        messageSaveBatch.add(goodMessage)
+        messageSaveBatch.add(badMessage)
+        messageSaveBatch.flush()
+
+        verify(backendFolder).saveMessage(goodMessage, MessageDownloadState.FULL)
+        assertThat(savedBatches).containsExactly(listOf("1"))
+    }
+
+    private fun createMessageSaveBatch(
+        maxBatchSize: Int = MessageSaveBatch.DEFAULT_MAX_BATCH_SIZE,
+        maxBatchDuration: Long = MessageSaveBatch.DEFAULT_MAX_BATCH_DURATION,
+    ): MessageSaveBatch {
+        return MessageSaveBatch(
+            backendFolder,
+            MessageDownloadState.FULL,
+            maxBatchSize,
+            maxBatchDuration,
+            clock = { currentTime },
+        ) { messages: List<ImapMessage> ->
+            savedBatches.add(messages.map { it.uid })
+        }
+    }
+}
@@ -10,6 +10,7 @@ import com.fsck.k9.mail.store.imap.FetchListener
 import com.fsck.k9.mail.store.imap.ImapFolder
 import com.fsck.k9.mail.store.imap.ImapMessage
 import com.fsck.k9.mail.store.imap.OpenMode
+import com.fsck.k9.mail.store.imap.QresyncResponse
 import com.fsck.k9.mail.store.imap.createImapMessage
 import java.util.Date
 
@@ -32,6 +33,13 @@ open class TestImapFolder(override val serverId: String) : ImapFolder {
     private val messageFlags = mutableMapOf<Long, MutableSet<Flag>>()
     private var uidValidity: Long? = null
 
+    /**
+     * Set to a non-null value to simulate a server supporting CONDSTORE and QRESYNC.
+     */
+    var highestModSeq: Long? = null
+    private val messageModSeqs = mutableMapOf<Long, Long>()
+    private val vanishedModSeqs = mutableMapOf<Long, Long>()
+
     fun addMessage(uid: Long, message: Message) {
         require(!messages.containsKey(uid)) {
             "Folder '$serverId' already contains a message with the UID $uid"
@@ -39,6 +47,19 @@ open class TestImapFolder(override val serverId: String) : ImapFolder {
 
         messages[uid] = message
         messageFlags[uid] = mutableSetOf()
+        updateModSeq(uid)
+
+        messageCount = messages.size
+    }
+
+    fun removeMessage(uid: Long) {
+        messages.remove(uid)
+        messageFlags.remove(uid)
+        messageModSeqs.remove(uid)
+        highestModSeq?.let { modSeq ->
+            highestModSeq = modSeq + 1
+            vanishedModSeqs[uid] = modSeq + 1
+        }
 
         messageCount = messages.size
     }
@@ -48,6 +69,13 @@ open class TestImapFolder(override val serverId: String) : ImapFolder {
         messageFlags.clear()
     }
 
+    private fun updateModSeq(uid: Long) {
+        highestModSeq?.let { modSeq ->
+            highestModSeq = modSeq + 1
+            messageModSeqs[uid] = modSeq + 1
+        }
+    }
+
     fun setUidValidity(value: Long) {
         uidValidity = value
     }
@@ -56,6 +84,29 @@ open class TestImapFolder(override val serverId: String) : ImapFolder {
         this.mode = mode
     }
 
+    override fun openWithQresync(
+        mode: OpenMode,
+        knownUidValidity: Long,
+        knownHighestModSeq: Long,
+    ): QresyncResponse? {
+        open(mode)
+        if (highestModSeq == null || knownUidValidity != uidValidity) return null
+
+        val vanishedUidRanges = vanishedModSeqs
+            .filter { (_, modSeq) -> modSeq > knownHighestModSeq }
+            .map { (uid, _) -> uid..uid }
+
+        val changedMessages = messageModSeqs
+            .filter { (_, modSeq) -> modSeq > knownHighestModSeq }
+            .map { (uid, _) ->
+                createImapMessage(uid.toString()).apply {
+                    setFlags(messageFlags[uid].orEmpty(), true)
+                }
+            }
+
+        return QresyncResponse(vanishedUidRanges, changedMessages)
+    }
+
     override fun close() {
         mode = null
     }
@@ -66,6 +117,8 @@ open class TestImapFolder(override val serverId: String) : ImapFolder {
 
     override fun getUidValidity() = uidValidity
 
+    override fun getHighestModSeq() = highestModSeq
+
     override fun getMessage(uid: String): ImapMessage {
         return createImapMessage(uid)
     }
@@ -84,8 +137,9 @@ open class TestImapFolder(override val serverId: String) : ImapFolder {
         require(end >= start)
         require(end <= messages.size)
 
-        return messages.keys.sortedDescending()
+        return messages.keys.sorted()
             .slice((start - 1) until end)
+            .filter { uid -> earliestDate == null || messages.getValue(uid).sentDate?.before(earliestDate) != true }
             .map { createImapMessage(uid = it.toString()) }
     }
 
@@ -117,6 +171,17 @@ open class TestImapFolder(override val serverId: String) : ImapFolder {
         }
     }
 
+    override fun fetchChangedFlags(messages: List<ImapMessage>, changedSince: Long, listener: FetchListener?) {
+        for (imapMessage in messages) {
+            val uid = imapMessage.uid.toLong()
+            val modSeq = messageModSeqs[uid] ?: continue
+            if (modSeq <= changedSince) continue
+
+            imapMessage.setFlags(messageFlags[uid].orEmpty().toSet(), true)
+            listener?.onFetchResponse(imapMessage, isFirstResponse = true)
+        }
+    }
+
     override fun fetchPart(
         message: ImapMessage,
         part: Part,
@@ -126,6 +191,14 @@ open class TestImapFolder(override val serverId: String) : ImapFolder {
         throw UnsupportedOperationException("not implemented")
     }
 
+    override fun fetchParts(
+        partsToFetch: Map<ImapMessage, List<Part>>,
+        bodyFactory: BodyFactory,
+        maxDownloadSize: Int,
+    ) {
+        throw UnsupportedOperationException("not implemented")
+    }
+
     override fun search(
         queryString: String?,
         requiredFlags: Set<Flag>?,
@@ -160,6 +233,7 @@ open class TestImapFolder(override val serverId: String) : ImapFolder {
             } else {
                 messageFlagSet.removeAll(flags)
             }
+            updateModSeq(uid)
         }
     }
 
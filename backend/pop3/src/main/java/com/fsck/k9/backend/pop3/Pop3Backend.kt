@@ -124,6 +124,14 @@ class Pop3Backend(
         smtpTransport.sendMessage(message)
     }
 
+    override fun beginSendSession() {
+        smtpTransport.beginSession()
+    }
+
+    override fun endSendSession() {
+        smtpTransport.endSession()
+    }
+
     override fun createPusher(callback: BackendPusherCallback): BackendPusher {
         throw UnsupportedOperationException("not implemented")
     }
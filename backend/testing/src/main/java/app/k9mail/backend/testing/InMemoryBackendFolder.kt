@@ -4,6 +4,7 @@ import assertk.assertThat
 import assertk.assertions.isEqualTo
 import com.fsck.k9.backend.api.BackendFolder
 import com.fsck.k9.backend.api.BackendFolder.MoreMessages
+import com.fsck.k9.backend.api.LocalMessageState
 import com.fsck.k9.mail.Flag
 import com.fsck.k9.mail.FolderType
 import com.fsck.k9.mail.Message
@@ -105,6 +106,14 @@ class InMemoryBackendFolder(override var name: String, var type: FolderType) : B
         return messageFlags[messageServerId] ?: error("Message $messageServerId not found")
     }
 
+    override fun getMessageStates(messageServerIds: Collection<String>): Map<String, LocalMessageState> {
+        return messageServerIds
+            .mapNotNull { messageServerId ->
+                messageFlags[messageServerId]?.let { flags -> messageServerId to LocalMessageState(flags.toSet()) }
+            }
+            .toMap()
+    }
+
     override fun setMessageFlag(messageServerId: String, flag: Flag, value: Boolean) {
         val flags = messageFlags[messageServerId] ?: error("Message $messageServerId not found")
         if (value) {
@@ -114,6 +123,14 @@ class InMemoryBackendFolder(override var name: String, var type: FolderType) : B
         }
     }
 
+    override fun setMessageFlags(flagChanges: Map<String, Map<Flag, Boolean>>) {
+        for ((messageServerId, messageFlagChanges) in flagChanges) {
+            for ((flag, value) in messageFlagChanges) {
+                setMessageFlag(messageServerId, flag, value)
+            }
+        }
+    }
+
     override fun saveMessage(message: Message, downloadState: MessageDownloadState) {
         val messageServerId = checkNotNull(message.uid)
         messages[messageServerId] = message
@@ -128,6 +145,12 @@ class InMemoryBackendFolder(override var name: String, var type: FolderType) : B
         messageFlags[messageServerId] = flags
     }
 
+    override fun saveMessages(messages: List<Message>, downloadState: MessageDownloadState) {
+        for (message in messages) {
+            saveMessage(message, downloadState)
+        }
+    }
+
     override fun getOldestMessageDate(): Date? {
         throw UnsupportedOperationException("not implemented")
     }
@@ -15,6 +15,7 @@ internal data class MessageListItem(
     val uniqueId: Long,
 
     val sortSubject: String?,
+    val sortSenderSortKey: String?,
     val sortMessageDate: Long,
     val sortInternalDate: Long,
     val sortIsStarred: Boolean,
@@ -41,6 +41,7 @@ internal class MessageListItemMapper(
             messageReference = MessageReference(account.uuid, message.folderId, message.messageServerId),
             uniqueId = uniqueId,
             sortSubject = message.subject,
+            sortSenderSortKey = message.senderSortKey,
             sortMessageDate = message.messageDate,
             sortInternalDate = message.internalDate,
             sortIsStarred = message.isStarred,
@@ -70,7 +70,7 @@ internal class MessageListLoader(
             SortType.SORT_ARRIVAL -> MessageColumns.INTERNAL_DATE
             SortType.SORT_ATTACHMENT -> "(${MessageColumns.ATTACHMENT_COUNT} < 1)"
             SortType.SORT_FLAGGED -> "(${MessageColumns.FLAGGED} != 1)"
-            SortType.SORT_SENDER -> MessageColumns.SENDER_LIST // FIXME
+            SortType.SORT_SENDER -> MessageColumns.SENDER_SORT_KEY
             SortType.SORT_SUBJECT -> "${MessageColumns.SUBJECT} COLLATE NOCASE"
             SortType.SORT_UNREAD -> MessageColumns.READ
             SortType.SORT_DATE -> MessageColumns.DATE
@@ -107,7 +107,8 @@ internal class MessageListLoader(
             }
 
             SortType.SORT_SENDER -> {
-                compareStringBy<MessageListItem>(config.sortAscending) { it.displayName }
+                // Same key as the ORDER BY clause created by buildSortOrder()
+                compareBy<MessageListItem>(config.sortAscending) { it.sortSenderSortKey }
                     .thenByDate(config)
             }
 
@@ -44,12 +44,13 @@ object Core : KoinComponent {
      * Called throughout the application when the number of accounts has changed. This method
      * enables or disables the Compose activity, the boot receiver and the service based on
      * whether any accounts are configured.
+     *
+     * Only the global `accountUuids` value is checked, so this doesn't load any accounts.
      */
     @JvmStatic
     fun setServicesEnabled(context: Context) {
         val appContext = context.applicationContext
-        val acctLength = Preferences.getPreferences().getAccounts().size
-        val enable = acctLength > 0
+        val enable = preferences.storage.getString("accountUuids", "").isNotEmpty()
 
         setServicesEnabled(appContext, enable)
     }
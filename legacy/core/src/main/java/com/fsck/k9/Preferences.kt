@@ -1,5 +1,6 @@
 package com.fsck.k9
 
+import android.os.SystemClock
 import androidx.annotation.GuardedBy
 import androidx.annotation.RestrictTo
 import app.k9mail.legacy.account.Account
@@ -75,12 +76,18 @@ class Preferences internal constructor(
 
     fun loadAccounts() {
         synchronized(accountLock) {
+            val startTime = SystemClock.elapsedRealtime()
             val accounts = mutableMapOf<String, Account>()
             val accountsInOrder = mutableListOf<Account>()
 
             val accountUuids = storage.getString("accountUuids", null)
             if (!accountUuids.isNullOrEmpty()) {
-                accountUuids.split(",").forEach { uuid ->
+                val accountUuidList = accountUuids.split(",")
+                // Every account is loaded below, so fetch their values with one query instead of one per account.
+                // Lazy loading of account values only helps code that reads global settings before the accounts.
+                storage.loadAccountValues(accountUuidList)
+
+                accountUuidList.forEach { uuid ->
                     val existingAccount = accountsMap?.get(uuid)
                     val account = existingAccount ?: Account(uuid, K9::isSensitiveDebugLoggingEnabled)
                     accountPreferenceSerializer.loadAccount(account, storage)
@@ -100,6 +107,9 @@ class Preferences internal constructor(
 
             this.accountsMap = accounts
             this.accountsInOrder = accountsInOrder
+
+            val endTime = SystemClock.elapsedRealtime()
+            Timber.i("Loading %d accounts took %d ms", accounts.size, endTime - startTime)
         }
     }
 
@@ -49,7 +49,7 @@ internal class ArchiveOperations(
 
                 else -> {
                     messagingController.suppressMessages(account, messagesInFolder)
-                    messagingController.putBackground(description, null) {
+                    messagingController.putBackground(account, description, null) {
                         action(account, sourceFolderId, messagesInFolder, archiveFolderId)
                     }
                 }
@@ -0,0 +1,16 @@
+package com.fsck.k9.controller
+
+/**
+ * Snapshot of a command lane used by [MessagingController].
+ *
+ * @param laneId The account UUID or `global` for commands that don't belong to an account.
+ * @param queueDepth Number of commands waiting to be executed.
+ * @param oldestCommandWaitTime Time in milliseconds the oldest waiting command has been queued.
+ * @param lastCommandWaitTime Time in milliseconds the most recently started command had to wait.
+ */
+data class CommandLaneStats(
+    val laneId: String,
+    val queueDepth: Int,
+    val oldestCommandWaitTime: Long,
+    val lastCommandWaitTime: Long,
+)
@@ -0,0 +1,209 @@
+package com.fsck.k9.controller;
+
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.PriorityQueue;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import android.os.Process;
+import android.os.SystemClock;
+
+import androidx.annotation.NonNull;
+import org.jetbrains.annotations.Nullable;
+import timber.log.Timber;
+
+
+/**
+ * Runs the commands of {@link MessagingController} using one serial lane per account.
+ * <p>
+ * Commands in the same lane are executed one at a time. Foreground commands run before background commands,
+ * otherwise commands run in the order they were added. Different lanes are executed concurrently on a bounded thread
+ * pool. A lane releases its thread after every command, so an account with many queued commands can't starve the
+ * others.
+ */
+class CommandScheduler {
+    static final String GLOBAL_LANE_ID = "global";
+
+    private static final long THREAD_KEEP_ALIVE_SECONDS = 60L;
+
+
+    private final ThreadPoolExecutor executor;
+    private final Map<String, Lane> lanes = new LinkedHashMap<>();
+    private final AtomicInteger sequencing = new AtomicInteger(0);
+
+    private boolean stopped = false;
+
+
+    CommandScheduler(int maxConcurrentLanes) {
+        executor = new ThreadPoolExecutor(maxConcurrentLanes, maxConcurrentLanes,
+                THREAD_KEEP_ALIVE_SECONDS, TimeUnit.SECONDS, new LinkedBlockingQueue<>(), new CommandThreadFactory());
+        executor.allowCoreThreadTimeOut(true);
+    }
+
+    /**
+     * Add a command to a lane.
+     *
+     * @param laneId The lane to add the command to. {@code null} for commands that don't belong to an account.
+     */
+    void schedule(@Nullable String laneId, String description, Runnable runnable, boolean isForeground) {
+        String effectiveLaneId = laneId != null ? laneId : GLOBAL_LANE_ID;
+        Command command = new Command(description, runnable, isForeground, sequencing.getAndIncrement(),
+                SystemClock.elapsedRealtime());
+
+        synchronized (this) {
+            if (stopped) {
+                Timber.w("Ignoring command '%s' after scheduler was stopped", description);
+                return;
+            }
+
+            Lane lane = lanes.get(effectiveLaneId);
+            if (lane == null) {
+                lane = new Lane(effectiveLaneId);
+                lanes.put(effectiveLaneId, lane);
+            }
+
+            lane.queue.add(command);
+            if (!lane.isScheduled) {
+                lane.isScheduled = true;
+                executor.execute(lane);
+            }
+        }
+    }
+
+    synchronized List<CommandLaneStats> getLaneStats() {
+        long now = SystemClock.elapsedRealtime();
+
+        List<CommandLaneStats> laneStats = new ArrayList<>(lanes.size());
+        for (Lane lane : lanes.values()) {
+            laneStats.add(lane.getStats(now));
+        }
+
+        return laneStats;
+    }
+
+    void stop(long timeoutMillis) throws InterruptedException {
+        synchronized (this) {
+            stopped = true;
+            for (Lane lane : lanes.values()) {
+                lane.queue.clear();
+            }
+        }
+
+        executor.shutdownNow();
+        executor.awaitTermination(timeoutMillis, TimeUnit.MILLISECONDS);
+    }
+
+    private class Lane implements Runnable {
+        final String laneId;
+        final PriorityQueue<Command> queue = new PriorityQueue<>();
+        boolean isScheduled = false;
+        long lastWaitTime = 0L;
+
+        Lane(String laneId) {
+            this.laneId = laneId;
+        }
+
+        @Override
+        public void run() {
+            Command command;
+            synchronized (CommandScheduler.this) {
+                command = queue.poll();
+                if (command == null) {
+                    isScheduled = false;
+                    return;
+                }
+
+                lastWaitTime = SystemClock.elapsedRealtime() - command.enqueueTime;
+            }
+
+            try {
+                Timber.i("Running command '%s', seq = %s (%s priority, lane %s, waited %d ms, %d queued)",
+                        command.description,
+                        command.sequence,
+                        command.isForegroundPriority ? "foreground" : "background",
+                        laneId,
+                        lastWaitTime,
+                        getQueueDepth());
+
+                command.runnable.run();
+
+                Timber.i(" Command '%s' completed", command.description);
+            } catch (Exception e) {
+                Timber.e(e, "Error running command '%s'", command.description);
+            } finally {
+                synchronized (CommandScheduler.this) {
+                    if (stopped || queue.isEmpty()) {
+                        isScheduled = false;
+                    } else {
+                        // Go to the back of the executor's queue so other lanes get a turn
+                        executor.execute(this);
+                    }
+                }
+            }
+        }
+
+        private int getQueueDepth() {
+            synchronized (CommandScheduler.this) {
+                return queue.size();
+            }
+        }
+
+        CommandLaneStats getStats(long now) {
+            long oldestEnqueueTime = now;
+            for (Command command : queue) {
+                oldestEnqueueTime = Math.min(oldestEnqueueTime, command.enqueueTime);
+            }
+
+            return new CommandLaneStats(laneId, queue.size(), now - oldestEnqueueTime, lastWaitTime);
+        }
+    }
+
+    private static class Command implements Comparable<Command> {
+        final String description;
+        final Runnable runnable;
+        final boolean isForegroundPriority;
+        final int sequence;
+        final long enqueueTime;
+
+        Command(String description, Runnable runnable, boolean isForegroundPriority, int sequence,
+                long enqueueTime) {
+            this.description = description;
+            this.runnable = runnable;
+            this.isForegroundPriority = isForegroundPriority;
+            this.sequence = sequence;
+            this.enqueueTime = enqueueTime;
+        }
+
+        @Override
+        public int compareTo(@NonNull Command other) {
+            if (other.isForegroundPriority && !isForegroundPriority) {
+                return 1;
+            } else if (!other.isForegroundPriority && isForegroundPriority) {
+                return -1;
+            } else {
+                return (sequence - other.sequence);
+            }
+        }
+    }
+
+    private static class CommandThreadFactory implements ThreadFactory {
+        private final AtomicInteger threadNumber = new AtomicInteger(1);
+
+        @Override
+        public Thread newThread(@NonNull Runnable runnable) {
+            Thread thread = new Thread(() -> {
+                Process.setThreadPriority(Process.THREAD_PRIORITY_BACKGROUND);
+                runnable.run();
+            });
+            thread.setName("MessagingController-" + threadNumber.getAndIncrement());
+            return thread;
+        }
+    }
+}
@@ -12,18 +12,14 @@ import java.util.List;
 import java.util.Map;
 import java.util.Map.Entry;
 import java.util.Set;
-import java.util.concurrent.BlockingQueue;
 import java.util.concurrent.CopyOnWriteArraySet;
 import java.util.concurrent.CountDownLatch;
 import java.util.concurrent.ExecutorService;
 import java.util.concurrent.Executors;
 import java.util.concurrent.Future;
-import java.util.concurrent.PriorityBlockingQueue;
 import java.util.concurrent.atomic.AtomicInteger;
 
 import android.content.Context;
-import android.os.Process;
-import android.os.SystemClock;
 
 import androidx.annotation.NonNull;
 import androidx.annotation.VisibleForTesting;
@@ -53,6 +49,7 @@ import com.fsck.k9.controller.MessagingControllerCommands.PendingMoveAndMarkAsRe
 import com.fsck.k9.controller.MessagingControllerCommands.PendingMoveOrCopy;
 import com.fsck.k9.controller.MessagingControllerCommands.PendingReplace;
 import com.fsck.k9.controller.MessagingControllerCommands.PendingSetFlag;
+import com.fsck.k9.controller.PendingCommandOptimizer.OptimizedCommand;
 import com.fsck.k9.controller.ProgressBodyFactory.ProgressListener;
 import com.fsck.k9.core.BuildConfig;
 import com.fsck.k9.helper.MutableBoolean;
@@ -96,10 +93,10 @@ import static com.fsck.k9.mail.Flag.X_REMOTE_COPY_STARTED;
 
 
 /**
- * Starts a long running (application) Thread that will run through commands
- * that require remote mailbox access. This class is used to serialize and
- * prioritize these commands. Each method that will submit a command requires a
- * MessagingListener instance to be provided. It is expected that that listener
+ * Runs commands that require remote mailbox access in the background. Commands
+ * are serialized and prioritized per account; commands of different accounts
+ * can run concurrently (see {@link CommandScheduler}). Each method that will
+ * submit a command requires a MessagingListener instance to be provided. It is expected that that listener
  * has also been added as a registered listener using addListener(). When a
  * command is to be executed, if the listener that was provided with the command
  * is no longer registered the command is skipped. The design idea for the above
@@ -111,6 +108,7 @@ public class MessagingController implements MessagingControllerRegistry, Messagi
     public static final Set<Flag> SYNC_FLAGS = EnumSet.of(Flag.SEEN, Flag.FLAGGED, Flag.ANSWERED, Flag.FORWARDED);
 
     private static final long FOLDER_LIST_STALENESS_THRESHOLD = 30 * 60 * 1000L;
+    private static final int MAX_CONCURRENT_ACCOUNT_LANES = 3;
 
     private final Context context;
     private final NotificationController notificationController;
@@ -123,9 +121,8 @@ public class MessagingController implements MessagingControllerRegistry, Messagi
     private final SpecialLocalFoldersCreator specialLocalFoldersCreator;
     private final LocalDeleteOperationDecider localDeleteOperationDecider;
 
-    private final Thread controllerThread;
-
-    private final BlockingQueue<Command> queuedCommands = new PriorityBlockingQueue<>();
+    private final CommandScheduler commandScheduler = new CommandScheduler(MAX_CONCURRENT_ACCOUNT_LANES);
+    private final PendingCommandOptimizer pendingCommandOptimizer = new PendingCommandOptimizer();
     private final Set<MessagingListener> listeners = new CopyOnWriteArraySet<>();
     private final ExecutorService threadPool = Executors.newCachedThreadPool();
     private final MemorizingMessagingListener memorizingMessagingListener = new MemorizingMessagingListener();
@@ -134,9 +131,6 @@ public class MessagingController implements MessagingControllerRegistry, Messagi
     private final ArchiveOperations archiveOperations;
 
 
-    private volatile boolean stopped = false;
-
-
     public static MessagingController getInstance(Context context) {
         return DI.get(MessagingController.class);
     }
@@ -160,14 +154,6 @@ public class MessagingController implements MessagingControllerRegistry, Messagi
         this.specialLocalFoldersCreator = specialLocalFoldersCreator;
         this.localDeleteOperationDecider = localDeleteOperationDecider;
 
-        controllerThread = new Thread(new Runnable() {
-            @Override
-            public void run() {
-                runInBackground();
-            }
-        });
-        controllerThread.setName("MessagingController");
-        controllerThread.start();
         addListener(memorizingMessagingListener);
 
         initializeControllerExtensions(controllerExtensions);
@@ -184,15 +170,15 @@ public class MessagingController implements MessagingControllerRegistry, Messagi
 
         ControllerInternals internals = new ControllerInternals() {
             @Override
-            public void put(@NotNull String description, @Nullable MessagingListener listener,
-                    @NotNull Runnable runnable) {
-                MessagingController.this.put(description, listener, runnable);
+            public void put(@Nullable Account account, @NotNull String description,
+                    @Nullable MessagingListener listener, @NotNull Runnable runnable) {
+                MessagingController.this.put(account, description, listener, runnable);
             }
 
             @Override
-            public void putBackground(@NotNull String description, @Nullable MessagingListener listener,
-                    @NotNull Runnable runnable) {
-                MessagingController.this.putBackground(description, listener, runnable);
+            public void putBackground(@Nullable Account account, @NotNull String description,
+                    @Nullable MessagingListener listener, @NotNull Runnable runnable) {
+                MessagingController.this.putBackground(account, description, listener, runnable);
             }
         };
 
@@ -203,63 +189,28 @@ public class MessagingController implements MessagingControllerRegistry, Messagi
 
     @VisibleForTesting
     void stop() throws InterruptedException {
-        stopped = true;
-        controllerThread.interrupt();
-        controllerThread.join(1000L);
+        commandScheduler.stop(1000L);
     }
 
-    private void runInBackground() {
-        Process.setThreadPriority(Process.THREAD_PRIORITY_BACKGROUND);
-        while (!stopped) {
-            String commandDescription = null;
-            try {
-                final Command command = queuedCommands.take();
-
-                if (command != null) {
-                    commandDescription = command.description;
-
-                    Timber.i("Running command '%s', seq = %s (%s priority)",
-                            command.description,
-                            command.sequence,
-                            command.isForegroundPriority ? "foreground" : "background");
-
-                    command.runnable.run();
-
-                    Timber.i(" Command '%s' completed", command.description);
-                }
-            } catch (Exception e) {
-                Timber.e(e, "Error running command '%s'", commandDescription);
-            }
-        }
+    /**
+     * Returns the queue depth and wait times of the per-account command lanes.
+     */
+    public List<CommandLaneStats> getCommandLaneStats() {
+        return commandScheduler.getLaneStats();
     }
 
-    private void put(String description, MessagingListener listener, Runnable runnable) {
-        putCommand(queuedCommands, description, listener, runnable, true);
+    private void put(@Nullable Account account, String description, MessagingListener listener, Runnable runnable) {
+        commandScheduler.schedule(getLaneId(account), description, runnable, true);
     }
 
-    void putBackground(String description, MessagingListener listener, Runnable runnable) {
-        putCommand(queuedCommands, description, listener, runnable, false);
+    void putBackground(@Nullable Account account, String description, MessagingListener listener,
+            Runnable runnable) {
+        commandScheduler.schedule(getLaneId(account), description, runnable, false);
     }
 
-    private void putCommand(BlockingQueue<Command> queue, String description, MessagingListener listener,
-            Runnable runnable, boolean isForeground) {
-        int retries = 10;
-        Exception e = null;
-        while (retries-- > 0) {
-            try {
-                Command command = new Command();
-                command.listener = listener;
-                command.runnable = runnable;
-                command.description = description;
-                command.isForegroundPriority = isForeground;
-                queue.put(command);
-                return;
-            } catch (InterruptedException ie) {
-                SystemClock.sleep(200);
-                e = ie;
-            }
-        }
-        throw new Error(e);
+    @Nullable
+    private static String getLaneId(@Nullable Account account) {
+        return account != null ? account.getUuid() : null;
     }
 
     Backend getBackend(Account account) {
@@ -371,12 +322,12 @@ public class MessagingController implements MessagingControllerRegistry, Messagi
     }
 
     public void refreshFolderList(final Account account) {
-        put("refreshFolderList", null, () -> refreshFolderListSynchronous(account));
+        put(account, "refreshFolderList", null, () -> refreshFolderListSynchronous(account));
     }
 
     public void refreshFolderListBlocking(Account account) {
         final CountDownLatch latch = new CountDownLatch(1);
-        putBackground("refreshFolderListBlocking", null, () -> {
+        putBackground(account, "refreshFolderListBlocking", null, () -> {
             try {
                 refreshFolderListSynchronous(account);
             } finally {
@@ -528,7 +479,7 @@ public class MessagingController implements MessagingControllerRegistry, Messagi
     }
 
     public void loadMoreMessages(Account account, long folderId) {
-        putBackground("loadMoreMessages", null, () -> loadMoreMessagesSynchronous(account, folderId));
+        putBackground(account, "loadMoreMessages", null, () -> loadMoreMessagesSynchronous(account, folderId));
     }
 
     public void loadMoreMessagesSynchronous(Account account, long folderId) {
@@ -551,7 +502,7 @@ public class MessagingController implements MessagingControllerRegistry, Messagi
      * Start background synchronization of the specified folder.
      */
     public void synchronizeMailbox(Account account, long folderId, boolean notify, MessagingListener listener) {
-        putBackground("synchronizeMailbox", listener, () ->
+        putBackground(account, "synchronizeMailbox", listener, () ->
                 synchronizeMailboxSynchronous(account, folderId, notify, listener, new NotificationState())
         );
     }
@@ -560,7 +511,7 @@ public class MessagingController implements MessagingControllerRegistry, Messagi
         long folderId = getFolderId(account, folderServerId);
 
         final CountDownLatch latch = new CountDownLatch(1);
-        putBackground("synchronizeMailbox", null, () -> {
+        putBackground(account, "synchronizeMailbox", null, () -> {
             try {
                 synchronizeMailboxSynchronous(account, folderId, true, null, new NotificationState());
             } finally {
@@ -699,7 +650,7 @@ public class MessagingController implements MessagingControllerRegistry, Messagi
     }
 
     void processPendingCommands(final Account account) {
-        putBackground("processPendingCommands", null, new Runnable() {
+        putBackground(account, "processPendingCommands", null, new Runnable() {
             @Override
             public void run() {
                 try {
@@ -719,10 +670,21 @@ public class MessagingController implements MessagingControllerRegistry, Messagi
     public void processPendingCommandsSynchronous(Account account) throws MessagingException {
         LocalStore localStore = localStoreProvider.getInstance(account);
         List<PendingCommand> commands = localStore.getPendingCommands();
+        List<OptimizedCommand> optimizedCommands = pendingCommandOptimizer.optimize(commands);
+        if (optimizedCommands.size() < commands.size()) {
+            Timber.d("Combined %d pending commands into %d", commands.size(), optimizedCommands.size());
+        }
 
         PendingCommand processingCommand = null;
         try {
-            for (PendingCommand command : commands) {
+            for (OptimizedCommand optimizedCommand : optimizedCommands) {
+                PendingCommand command = optimizedCommand.getCommand();
+                if (command == null) {
+                    Timber.d("Skipping pending commands that cancel each other out");
+                    removePendingCommands(localStore, optimizedCommand.sourceCommands);
+                    continue;
+                }
+
                 processingCommand = command;
                 String commandName = command.getCommandName();
                 Timber.d("Processing pending command '%s'", commandName);
@@ -735,19 +697,19 @@ public class MessagingController implements MessagingControllerRegistry, Messagi
                 try {
                     command.execute(this, account);
 
-                    localStore.removePendingCommand(command);
+                    removePendingCommands(localStore, optimizedCommand.sourceCommands);
 
                     Timber.d("Done processing pending command '%s'", commandName);
                 } catch (MessagingException me) {
                     if (me.isPermanentFailure()) {
                         Timber.e(me, "Failure of command '%s' was permanent, removing command from queue", commandName);
-                        localStore.removePendingCommand(processingCommand);
+                        removePendingCommands(localStore, optimizedCommand.sourceCommands);
                     } else {
                         throw me;
                     }
                 } catch (Exception e) {
                     Timber.e(e, "Unexpected exception with command '%s', removing command from queue", commandName);
-                    localStore.removePendingCommand(processingCommand);
+                    removePendingCommands(localStore, optimizedCommand.sourceCommands);
 
                     if (K9.DEVELOPER_MODE) {
                         throw new AssertionError("Unexpected exception while processing pending command", e);
@@ -765,6 +727,13 @@ public class MessagingController implements MessagingControllerRegistry, Messagi
         }
     }
 
+    private void removePendingCommands(LocalStore localStore, List<PendingCommand> commands)
+            throws MessagingException {
+        for (PendingCommand command : commands) {
+            localStore.removePendingCommand(command);
+        }
+    }
+
     /**
      * Process a pending append message command. This command uploads a local message to the
      * server, first checking to be sure that the server message is not newer than
@@ -1056,7 +1025,7 @@ public class MessagingController implements MessagingControllerRegistry, Messagi
 
         setFlagInCache(account, messageIds, flag, newState);
 
-        putBackground("setFlag", null, () ->
+        putBackground(account, "setFlag", null, () ->
             setFlagSynchronous(account, messageIds, flag, newState, false)
         );
     }
@@ -1066,7 +1035,7 @@ public class MessagingController implements MessagingControllerRegistry, Messagi
 
         setFlagForThreadsInCache(account, threadRootIds, flag, newState);
 
-        putBackground("setFlagForThreads", null, () ->
+        putBackground(account, "setFlagForThreads", null, () ->
             setFlagSynchronous(account, threadRootIds, flag, newState, true)
         );
     }
@@ -1195,14 +1164,14 @@ public class MessagingController implements MessagingControllerRegistry, Messagi
     }
 
     public void loadMessageRemotePartial(Account account, long folderId, String uid, MessagingListener listener) {
-        put("loadMessageRemotePartial", listener, () ->
+        put(account, "loadMessageRemotePartial", listener, () ->
             loadMessageRemoteSynchronous(account, folderId, uid, listener, true)
         );
     }
 
     //TODO: Fix the callback mess. See GH-782
     public void loadMessageRemote(Account account, long folderId, String uid, MessagingListener listener) {
-        put("loadMessageRemote", listener, () ->
+        put(account, "loadMessageRemote", listener, () ->
             loadMessageRemoteSynchronous(account, folderId, uid, listener, false)
         );
     }
@@ -1303,7 +1272,7 @@ public class MessagingController implements MessagingControllerRegistry, Messagi
             setFlagInCache(account, messageIds, Flag.SEEN, true);
         }
 
-        putBackground("markMessageAsOpened", null, () -> {
+        putBackground(account, "markMessageAsOpened", null, () -> {
             markMessageAsOpenedBlocking(account, message, markMessageAsRead);
         });
     }
@@ -1331,7 +1300,7 @@ public class MessagingController implements MessagingControllerRegistry, Messagi
     }
 
     public void clearNewMessages(Account account) {
-        put("clearNewMessages", null, () -> clearNewMessagesBlocking(account));
+        put(account, "clearNewMessages", null, () -> clearNewMessagesBlocking(account));
     }
 
     private void clearNewMessagesBlocking(Account account) {
@@ -1342,7 +1311,7 @@ public class MessagingController implements MessagingControllerRegistry, Messagi
     public void loadAttachment(final Account account, final LocalMessage message, final Part part,
             final MessagingListener listener) {
 
-        put("loadAttachment", listener, new Runnable() {
+        put(account, "loadAttachment", listener, new Runnable() {
             @Override
             public void run() {
                 try {
@@ -1423,7 +1392,7 @@ public class MessagingController implements MessagingControllerRegistry, Messagi
      */
     public void sendPendingMessages(final Account account,
             MessagingListener listener) {
-        putBackground("sendPendingMessages", listener, new Runnable() {
+        putBackground(account, "sendPendingMessages", listener, new Runnable() {
             @Override
             public void run() {
                 if (messagesPendingSend(account)) {
@@ -1469,6 +1438,7 @@ public class MessagingController implements MessagingControllerRegistry, Messagi
     @VisibleForTesting
     protected void sendPendingMessagesSynchronous(final Account account) {
         Exception lastFailure = null;
+        Backend backend = null;
         try {
             if (isAuthenticationProblem(account, false)) {
                 Timber.d("Authentication will fail. Skip sending messages.");
@@ -1504,7 +1474,10 @@ public class MessagingController implements MessagingControllerRegistry, Messagi
 
             Timber.i("Scanning Outbox folder for messages to send");
 
-            Backend backend = getBackend(account);
+            backend = getBackend(account);
+
+            // Reuse the connection to the outgoing server for all messages in the Outbox
+            backend.beginSendSession();
 
             for (LocalMessage message : localMessages) {
                 if (message.isSet(Flag.DELETED)) {
@@ -1599,6 +1572,10 @@ public class MessagingController implements MessagingControllerRegistry, Messagi
         } catch (Exception e) {
             Timber.v(e, "Failed to send pending messages");
         } finally {
+            if (backend != null) {
+                backend.endSendSession();
+            }
+
             if (lastFailure == null) {
                 notificationController.clearSendFailedNotification(account);
             }
@@ -1699,7 +1676,7 @@ public class MessagingController implements MessagingControllerRegistry, Messagi
         actOnMessageGroup(srcAccount, srcFolderId, messageReferences, (account, messageFolder, messages) -> {
             suppressMessages(account, messages);
 
-            putBackground("moveMessages", null, () ->
+            putBackground(account, "moveMessages", null, () ->
                     moveOrCopyMessageSynchronous(account, srcFolderId, messages, destFolderId, MoveOrCopyFlavor.MOVE)
             );
         });
@@ -1710,7 +1687,7 @@ public class MessagingController implements MessagingControllerRegistry, Messagi
         actOnMessageGroup(srcAccount, srcFolderId, messageReferences, (account, messageFolder, messages) -> {
             suppressMessages(account, messages);
 
-            putBackground("moveMessagesInThread", null, () -> {
+            putBackground(account, "moveMessagesInThread", null, () -> {
                 try {
                     List<LocalMessage> messagesInThreads = collectMessagesInThreads(account, messages);
                     moveOrCopyMessageSynchronous(account, srcFolderId, messagesInThreads, destFolderId,
@@ -1729,7 +1706,7 @@ public class MessagingController implements MessagingControllerRegistry, Messagi
     public void copyMessages(Account srcAccount, long srcFolderId,
             List<MessageReference> messageReferences, long destFolderId) {
         actOnMessageGroup(srcAccount, srcFolderId, messageReferences, (account, messageFolder, messages) -> {
-            putBackground("copyMessages", null, () ->
+            putBackground(account, "copyMessages", null, () ->
                     moveOrCopyMessageSynchronous(srcAccount, srcFolderId, messages, destFolderId, MoveOrCopyFlavor.COPY)
             );
         });
@@ -1738,7 +1715,7 @@ public class MessagingController implements MessagingControllerRegistry, Messagi
     public void copyMessagesInThread(Account srcAccount, long srcFolderId,
             final List<MessageReference> messageReferences, long destFolderId) {
         actOnMessageGroup(srcAccount, srcFolderId, messageReferences, (account, messageFolder, messages) -> {
-            putBackground("copyMessagesInThread", null, () -> {
+            putBackground(account, "copyMessagesInThread", null, () -> {
                 try {
                     List<LocalMessage> messagesInThreads = collectMessagesInThreads(account, messages);
                     moveOrCopyMessageSynchronous(account, srcFolderId, messagesInThreads, destFolderId,
@@ -1856,7 +1833,8 @@ public class MessagingController implements MessagingControllerRegistry, Messagi
     }
 
     public void moveToDraftsFolder(Account account, long folderId, List<MessageReference> messages){
-        putBackground("moveToDrafts", null, () -> moveToDraftsFolderInBackground(account, folderId, messages));
+        putBackground(account, "moveToDrafts", null,
+                () -> moveToDraftsFolderInBackground(account, folderId, messages));
     }
 
     private void moveToDraftsFolderInBackground(Account account, long folderId, List<MessageReference> messages) {
@@ -1892,7 +1870,7 @@ public class MessagingController implements MessagingControllerRegistry, Messagi
     }
 
     public void expunge(Account account, long folderId) {
-        putBackground("expunge", null, () -> {
+        putBackground(account, "expunge", null, () -> {
             queueExpunge(account, folderId);
             processPendingCommands(account);
         });
@@ -1924,7 +1902,7 @@ public class MessagingController implements MessagingControllerRegistry, Messagi
     public void deleteThreads(final List<MessageReference> messages) {
         actOnMessagesGroupedByAccountAndFolder(messages, (account, messageFolder, accountMessages) -> {
             suppressMessages(account, accountMessages);
-            putBackground("deleteThreads", null, () ->
+            putBackground(account, "deleteThreads", null, () ->
                 deleteThreadsSynchronous(account, messageFolder.getDatabaseId(), accountMessages, false)
             );
         });
@@ -1968,7 +1946,7 @@ public class MessagingController implements MessagingControllerRegistry, Messagi
     private void deleteMessages(List<MessageReference> messages, boolean skipTrashFolder) {
         actOnMessagesGroupedByAccountAndFolder(messages, (account, messageFolder, accountMessages) -> {
             suppressMessages(account, accountMessages);
-            putBackground("deleteMessages", null, () ->
+            putBackground(account, "deleteMessages", null, () ->
                 deleteMessagesSynchronous(account, messageFolder.getDatabaseId(), accountMessages, skipTrashFolder)
             );
         });
@@ -2120,7 +2098,7 @@ public class MessagingController implements MessagingControllerRegistry, Messagi
     }
 
     public void emptyTrash(final Account account, MessagingListener listener) {
-        putBackground("emptyTrash", listener, new Runnable() {
+        putBackground(account, "emptyTrash", listener, new Runnable() {
             @Override
             public void run() {
                 try {
@@ -2159,7 +2137,7 @@ public class MessagingController implements MessagingControllerRegistry, Messagi
     }
 
     public void clearFolder(Account account, long folderId) {
-        putBackground("clearFolder", null, () ->
+        putBackground(account, "clearFolder", null, () ->
                 clearFolderSynchronous(account, folderId)
         );
     }
@@ -2248,48 +2226,57 @@ public class MessagingController implements MessagingControllerRegistry, Messagi
         for (MessagingListener l : getListeners(listener)) {
             l.checkMailStarted(context, account);
         }
-        putBackground("checkMail", listener, new Runnable() {
+        putBackground(account, "checkMail", listener, new Runnable() {
             @Override
             public void run() {
+                Timber.i("Starting mail check");
 
-                try {
-                    Timber.i("Starting mail check");
-
-                    Collection<Account> accounts;
-                    if (account != null) {
-                        accounts = new ArrayList<>(1);
-                        accounts.add(account);
-                    } else {
-                        accounts = preferences.getAccounts();
-                    }
-
-                    for (final Account account : accounts) {
-                        checkMailForAccount(account, ignoreLastCheckedTime, notify, listener);
-                    }
-
-                } catch (Exception e) {
-                    Timber.e(e, "Unable to synchronize mail");
+                Collection<Account> accounts;
+                if (account != null) {
+                    accounts = new ArrayList<>(1);
+                    accounts.add(account);
+                } else {
+                    accounts = preferences.getAccounts();
                 }
-                putBackground("finalize sync", null, new Runnable() {
-                            @Override
-                            public void run() {
 
-                                Timber.i("Finished mail sync");
+                if (accounts.isEmpty()) {
+                    finishCheckMail(account, wakeLock, listener);
+                    return;
+                }
 
-                                if (wakeLock != null) {
-                                    wakeLock.release();
-                                }
-                                for (MessagingListener l : getListeners(listener)) {
-                                    l.checkMailFinished(context, account);
-                                }
+                // Each account is checked in its own command lane. The mail check is finished once the last lane
+                // has processed the commands added by checkMailForAccount().
+                AtomicInteger remainingAccounts = new AtomicInteger(accounts.size());
+                for (final Account accountToCheck : accounts) {
+                    putBackground(accountToCheck, "checkMail:" + accountToCheck, listener, () -> {
+                        try {
+                            checkMailForAccount(accountToCheck, ignoreLastCheckedTime, notify, listener);
+                        } catch (Exception e) {
+                            Timber.e(e, "Unable to synchronize mail");
+                        }
 
+                        putBackground(accountToCheck, "finalize sync", null, () -> {
+                            if (remainingAccounts.decrementAndGet() == 0) {
+                                finishCheckMail(account, wakeLock, listener);
                             }
-                        }
-                );
+                        });
+                    });
+                }
             }
         });
     }
 
+    private void finishCheckMail(Account account, WakeLock wakeLock, MessagingListener listener) {
+        Timber.i("Finished mail sync");
+
+        if (wakeLock != null) {
+            wakeLock.release();
+        }
+        for (MessagingListener l : getListeners(listener)) {
+            l.checkMailFinished(context, account);
+        }
+    }
+
 
     private void checkMailForAccount(Account account, boolean ignoreLastCheckedTime, boolean notify,
             MessagingListener listener) {
@@ -2320,7 +2307,7 @@ public class MessagingController implements MessagingControllerRegistry, Messagi
         } catch (MessagingException e) {
             Timber.e(e, "Unable to synchronize account %s", account);
         } finally {
-            putBackground("clear notification flag for " + account, null, new Runnable() {
+            putBackground(account, "clear notification flag for " + account, null, new Runnable() {
                         @Override
                         public void run() {
                             Timber.v("Clearing notification flag for %s", account);
@@ -2336,7 +2323,7 @@ public class MessagingController implements MessagingControllerRegistry, Messagi
 
     private void synchronizeFolder(Account account, LocalFolder folder, boolean ignoreLastCheckedTime,
             boolean notify, MessagingListener listener, NotificationState notificationState) {
-        putBackground("sync" + folder.getServerId(), null, () -> {
+        putBackground(account, "sync" + folder.getServerId(), null, () -> {
             synchronizeFolderInBackground(account, folder, ignoreLastCheckedTime, notify, listener, notificationState);
         });
     }
@@ -2391,7 +2378,7 @@ public class MessagingController implements MessagingControllerRegistry, Messagi
     }
 
     public void compact(Account account) {
-        putBackground("compact:" + account, null, () -> {
+        putBackground(account, "compact:" + account, null, () -> {
             try {
                 MessageStore messageStore = messageStoreManager.getMessageStore(account);
                 messageStore.compact();
@@ -2422,30 +2409,8 @@ public class MessagingController implements MessagingControllerRegistry, Messagi
         }
     }
 
-    private static AtomicInteger sequencing = new AtomicInteger(0);
-
-    private static class Command implements Comparable<Command> {
-        public Runnable runnable;
-        public MessagingListener listener;
-        public String description;
-        boolean isForegroundPriority;
-
-        int sequence = sequencing.getAndIncrement();
-
-        @Override
-        public int compareTo(@NonNull Command other) {
-            if (other.isForegroundPriority && !isForegroundPriority) {
-                return 1;
-            } else if (!other.isForegroundPriority && isForegroundPriority) {
-                return -1;
-            } else {
-                return (sequence - other.sequence);
-            }
-        }
-    }
-
     public void clearNotifications(LocalSearch search) {
-        put("clearNotifications", null, () -> {
+        put(null, "clearNotifications", null, () -> {
             notificationOperations.clearNotifications(search);
         });
     }
@@ -0,0 +1,186 @@
+package com.fsck.k9.controller;
+
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import com.fsck.k9.controller.MessagingControllerCommands.PendingCommand;
+import com.fsck.k9.controller.MessagingControllerCommands.PendingMoveAndMarkAsRead;
+import com.fsck.k9.controller.MessagingControllerCommands.PendingMoveOrCopy;
+import com.fsck.k9.controller.MessagingControllerCommands.PendingSetFlag;
+import com.fsck.k9.mail.Flag;
+import org.jetbrains.annotations.Nullable;
+
+
+/**
+ * Combines pending commands of an account before they are sent to the server.
+ * <p>
+ * The following optimizations are applied:
+ * <ul>
+ * <li>{@link PendingSetFlag} commands for the same folder, flag, and state are merged into a single command.</li>
+ * <li>Setting a flag and then clearing it again (or vice versa) cancels out for the affected messages.</li>
+ * <li>Marking messages as read followed by moving them is turned into a {@link PendingMoveAndMarkAsRead} command.</li>
+ * </ul>
+ * <p>
+ * A command is only moved across other commands that are independent of it, i.e. {@link PendingSetFlag} commands
+ * for a different folder or flag. Every other command acts as a barrier. So the order in which changes reach the
+ * server is the same as if the commands were executed one by one.
+ */
+class PendingCommandOptimizer {
+
+    List<OptimizedCommand> optimize(List<PendingCommand> commands) {
+        List<OptimizedCommand> optimizedCommands = new ArrayList<>(commands.size());
+        for (PendingCommand command : commands) {
+            if (command instanceof PendingSetFlag) {
+                addSetFlagCommand(optimizedCommands, (PendingSetFlag) command);
+            } else if (command instanceof PendingMoveOrCopy) {
+                addMoveOrCopyCommand(optimizedCommands, (PendingMoveOrCopy) command);
+            } else {
+                optimizedCommands.add(new OptimizedCommand(command));
+            }
+        }
+
+        return optimizedCommands;
+    }
+
+    private void addSetFlagCommand(List<OptimizedCommand> optimizedCommands, PendingSetFlag command) {
+        Set<String> uids = new LinkedHashSet<>(command.uids);
+
+        for (int i = optimizedCommands.size() - 1; i >= 0; i--) {
+            OptimizedCommand optimizedCommand = optimizedCommands.get(i);
+            if (!optimizedCommand.isSetFlag()) {
+                break;
+            }
+
+            if (optimizedCommand.folderId != command.folderId || optimizedCommand.flag != command.flag) {
+                continue;
+            }
+
+            if (optimizedCommand.newState == command.newState) {
+                optimizedCommand.uids.addAll(uids);
+                optimizedCommand.sourceCommands.add(command);
+                return;
+            }
+
+            // The earlier command had the opposite effect. Messages contained in both commands end up in the state
+            // they had before the first command was created, so no server operation is necessary for them.
+            Set<String> cancelledUids = new LinkedHashSet<>(optimizedCommand.uids);
+            cancelledUids.retainAll(uids);
+            optimizedCommand.uids.removeAll(cancelledUids);
+            uids.removeAll(cancelledUids);
+
+            if (uids.isEmpty()) {
+                optimizedCommand.sourceCommands.add(command);
+                return;
+            }
+
+            // The remaining UIDs don't overlap with the earlier command, so they may still be merged further up.
+        }
+
+        optimizedCommands.add(new OptimizedCommand(command, uids));
+    }
+
+    private void addMoveOrCopyCommand(List<OptimizedCommand> optimizedCommands, PendingMoveOrCopy command) {
+        Map<String, String> newUidMap = command.newUidMap;
+        if (command.isCopy || newUidMap == null) {
+            optimizedCommands.add(new OptimizedCommand(command));
+            return;
+        }
+
+        Set<String> movedUids = newUidMap.keySet();
+        for (int i = optimizedCommands.size() - 1; i >= 0; i--) {
+            OptimizedCommand optimizedCommand = optimizedCommands.get(i);
+            if (!optimizedCommand.isSetFlag()) {
+                break;
+            }
+
+            if (optimizedCommand.folderId != command.srcFolderId || optimizedCommand.flag != Flag.SEEN) {
+                continue;
+            }
+
+            if (optimizedCommand.newState && optimizedCommand.uids.containsAll(movedUids)) {
+                optimizedCommand.uids.removeAll(movedUids);
+
+                // Part of the source commands is now executed by the move. Only remove them from the queue after
+                // the move has been executed.
+                OptimizedCommand moveCommand = new OptimizedCommand(
+                        PendingMoveAndMarkAsRead.create(command.srcFolderId, command.destFolderId, newUidMap));
+                moveCommand.sourceCommands.addAll(optimizedCommand.sourceCommands);
+                moveCommand.sourceCommands.add(command);
+                optimizedCommand.sourceCommands.clear();
+
+                optimizedCommands.add(moveCommand);
+                return;
+            }
+
+            break;
+        }
+
+        optimizedCommands.add(new OptimizedCommand(command));
+    }
+
+
+    /**
+     * A command to execute and the pending commands that can be removed from the queue once it has been executed.
+     */
+    static class OptimizedCommand {
+        final List<PendingCommand> sourceCommands = new ArrayList<>();
+
+        private final PendingCommand command;
+
+        private final long folderId;
+        private final Flag flag;
+        private final boolean newState;
+        private final Set<String> uids;
+
+
+        OptimizedCommand(PendingCommand command) {
+            this.command = command;
+            sourceCommands.add(command);
+
+            folderId = 0L;
+            flag = null;
+            newState = false;
+            uids = Collections.emptySet();
+        }
+
+        OptimizedCommand(PendingSetFlag command, Set<String> uids) {
+            this.command = null;
+            sourceCommands.add(command);
+
+            folderId = command.folderId;
+            flag = command.flag;
+            newState = command.newState;
+            this.uids = uids;
+        }
+
+        private boolean isSetFlag() {
+            return flag != null;
+        }
+
+        /**
+         * Returns the command to execute or {@code null} if all changes cancelled each other out.
+         */
+        @Nullable
+        PendingCommand getCommand() {
+            if (!isSetFlag()) {
+                return command;
+            } else if (uids.isEmpty()) {
+                return null;
+            } else if (sourceCommands.size() == 1 && sourceCommands.get(0) instanceof PendingSetFlag &&
+                    sameUids((PendingSetFlag) sourceCommands.get(0))) {
+                return sourceCommands.get(0);
+            }
+
+            return PendingSetFlag.create(folderId, newState, flag, new ArrayList<>(uids));
+        }
+
+        private boolean sameUids(PendingSetFlag command) {
+            return command.uids.size() == uids.size() && uids.containsAll(command.uids);
+        }
+    }
+}
@@ -49,13 +49,14 @@ class DefaultMessageListRepository(
         selection: String,
         selectionArgs: Array<String>,
         sortOrder: String,
+        limit: Int?,
         messageMapper: MessageMapper<T>,
     ): List<T> {
         val messageStore = messageStoreManager.getMessageStore(accountUuid)
         val cache = MessageListCache.getCache(accountUuid)
 
         val mapper = if (cache.isEmpty()) messageMapper else CacheAwareMessageMapper(cache, messageMapper)
-        return messageStore.getMessages(selection, selectionArgs, sortOrder, mapper)
+        return messageStore.getMessages(selection, selectionArgs, sortOrder, limit, mapper)
     }
 
     /**
@@ -66,13 +67,53 @@ class DefaultMessageListRepository(
         selection: String,
         selectionArgs: Array<String>,
         sortOrder: String,
+        limit: Int?,
         messageMapper: MessageMapper<T>,
     ): List<T> {
         val messageStore = messageStoreManager.getMessageStore(accountUuid)
         val cache = MessageListCache.getCache(accountUuid)
 
         val mapper = if (cache.isEmpty()) messageMapper else CacheAwareMessageMapper(cache, messageMapper)
-        return messageStore.getThreadedMessages(selection, selectionArgs, sortOrder, mapper)
+        return messageStore.getThreadedMessages(selection, selectionArgs, sortOrder, limit, mapper)
+    }
+
+    /**
+     * Retrieve threaded list of messages in folders from [MessageStore] but override values with data from
+     * [MessageListCache].
+     */
+    override fun <T> getThreadedMessagesInFolders(
+        accountUuid: String,
+        folderSelection: String,
+        selectionArgs: Array<String>,
+        sortOrder: String,
+        limit: Int?,
+        messageMapper: MessageMapper<T>,
+    ): List<T> {
+        val messageStore = messageStoreManager.getMessageStore(accountUuid)
+        val cache = MessageListCache.getCache(accountUuid)
+
+        val mapper = if (cache.isEmpty()) messageMapper else CacheAwareMessageMapper(cache, messageMapper)
+        return messageStore.getThreadedMessagesInFolders(folderSelection, selectionArgs, sortOrder, limit, mapper)
+    }
+
+    /**
+     * Retrieve a page of relevance-ranked full-text search results from [MessageStore] but override values with data
+     * from [MessageListCache].
+     */
+    override fun <T> searchMessages(
+        accountUuid: String,
+        fulltextQuery: String,
+        selection: String,
+        selectionArgs: Array<String>,
+        offset: Int,
+        limit: Int,
+        messageMapper: MessageMapper<T>,
+    ): List<T> {
+        val messageStore = messageStoreManager.getMessageStore(accountUuid)
+        val cache = MessageListCache.getCache(accountUuid)
+
+        val mapper = if (cache.isEmpty()) messageMapper else CacheAwareMessageMapper(cache, messageMapper)
+        return messageStore.searchMessages(fulltextQuery, selection, selectionArgs, offset, limit, mapper)
     }
 
     /**
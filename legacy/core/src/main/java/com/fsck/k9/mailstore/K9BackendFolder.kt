@@ -3,6 +3,7 @@ package com.fsck.k9.mailstore
 import app.k9mail.legacy.mailstore.MessageStore
 import com.fsck.k9.backend.api.BackendFolder
 import com.fsck.k9.backend.api.BackendFolder.MoreMessages
+import com.fsck.k9.backend.api.LocalMessageState
 import com.fsck.k9.mail.Flag
 import com.fsck.k9.mail.Message
 import com.fsck.k9.mail.MessageDownloadState
@@ -79,10 +80,20 @@ class K9BackendFolder(
         return messageStore.getMessageFlags(folderId, messageServerId)
     }
 
+    override fun getMessageStates(messageServerIds: Collection<String>): Map<String, LocalMessageState> {
+        return messageStore.getMessageFlags(folderId, messageServerIds).mapValues { (_, flags) ->
+            LocalMessageState(flags)
+        }
+    }
+
     override fun setMessageFlag(messageServerId: String, flag: Flag, value: Boolean) {
         messageStore.setMessageFlag(folderId, messageServerId, flag, value)
     }
 
+    override fun setMessageFlags(flagChanges: Map<String, Map<Flag, Boolean>>) {
+        messageStore.setMessageFlags(folderId, flagChanges)
+    }
+
     override fun saveMessage(message: Message, downloadState: MessageDownloadState) {
         requireMessageServerId(message)
 
@@ -90,6 +101,17 @@ class K9BackendFolder(
         messageStore.saveRemoteMessage(folderId, message.uid, messageData)
     }
 
+    override fun saveMessages(messages: List<Message>, downloadState: MessageDownloadState) {
+        if (messages.isEmpty()) return
+
+        val messageDataMap = messages.associate { message ->
+            requireMessageServerId(message)
+
+            message.uid to saveMessageDataCreator.createSaveMessageData(message, downloadState)
+        }
+        messageStore.saveRemoteMessages(folderId, messageDataMap)
+    }
+
     override fun getOldestMessageDate(): Date? {
         return messageStore.getOldestMessageDate(folderId)
     }
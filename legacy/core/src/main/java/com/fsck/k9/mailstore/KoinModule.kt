@@ -1,11 +1,14 @@
 package com.fsck.k9.mailstore
 
+import android.content.Context
+import androidx.core.os.ConfigurationCompat
 import app.k9mail.legacy.mailstore.FolderRepository
 import app.k9mail.legacy.mailstore.MessageListRepository
 import app.k9mail.legacy.mailstore.MessageStoreManager
 import com.fsck.k9.message.extractors.AttachmentCounter
 import com.fsck.k9.message.extractors.MessageFulltextCreator
 import com.fsck.k9.message.extractors.MessagePreviewCreator
+import java.io.File
 import org.koin.dsl.module
 
 val mailStoreModule = module {
@@ -14,7 +17,16 @@ val mailStoreModule = module {
             messageStoreManager = get(),
         )
     }
-    single { MessageViewInfoExtractorFactory(get(), get(), get()) }
+    single { MessageViewInfoExtractorFactory(get(), get(), get(), get()) }
+    single {
+        val context = get<Context>()
+        val packageInfo = context.packageManager.getPackageInfo(context.packageName, 0)
+        RenderedMessageCache(
+            cacheDirectory = File(context.cacheDir, "rendered_messages"),
+            cacheVersion = packageInfo.lastUpdateTime,
+            localeProvider = { ConfigurationCompat.getLocales(context.resources.configuration).toLanguageTags() },
+        )
+    }
     single { StorageManager.getInstance(get()) }
     single { SpecialFolderSelectionStrategy() }
     single {
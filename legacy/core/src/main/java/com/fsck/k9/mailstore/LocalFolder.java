@@ -366,13 +366,23 @@ public class LocalFolder {
                 "boundary",             // 13
                 "content_id",           // 14
                 "server_extra",         // 15
+                "content_hash",         // 16
         };
         Cursor cursor = db.query("message_parts", columns, "root = ?",
                 new String[] { String.valueOf(message.getMessagePartId()) }, null, null, "seq");
         try {
+            long partTreeVersion = 1;
             while (cursor.moveToNext()) {
                 loadMessagePart(message, partById, cursor);
+
+                // Part IDs change when a message is replaced, the data location when a missing part is downloaded
+                partTreeVersion = 31 * partTreeVersion + cursor.getLong(0);
+                partTreeVersion = 31 * partTreeVersion + cursor.getInt(9);
+                partTreeVersion = 31 * partTreeVersion + cursor.getLong(4);
             }
+
+            message.setPartTreeVersion(partTreeVersion == LocalMessage.PART_TREE_VERSION_UNKNOWN ?
+                    partTreeVersion + 1 : partTreeVersion);
         } finally {
             cursor.close();
         }
@@ -439,7 +449,9 @@ public class LocalFolder {
         } else if (dataLocation == DataLocation.ON_DISK) {
             String encoding = cursor.getString(7);
 
-            File file = localStore.getAttachmentFile(Long.toString(id));
+            String contentHash = cursor.getString(16);
+
+            File file = localStore.getAttachmentFile(Long.toString(id), contentHash);
             if (file.exists()) {
                 Body body = new FileBackedBody(file, encoding);
                 part.setBody(body);
@@ -626,6 +638,9 @@ public class LocalFolder {
             file = leafPartToContentValues(cv, part, body);
         }
 
+        // Files written here are named after the message part ID, not their content hash
+        cv.putNull("content_hash");
+
         long messagePartId;
         if (existingMessagePartId != INVALID_MESSAGE_PART_ID) {
             messagePartId = existingMessagePartId;
@@ -865,13 +880,14 @@ public class LocalFolder {
         this.localStore.getDatabase().execute(false, new DbCallback<Void>() {
             @Override
             public Void doDbWork(final SQLiteDatabase db) throws MessagingException {
+                List<String> contentHashes = new ArrayList<>();
                 Cursor cursor = db.query("messages", new String[] { "message_part_id" },
                         "folder_id = ? AND empty = 0",
                         folderIdArg, null, null, null);
                 try {
                     while (cursor.moveToNext()) {
                         long messagePartId = cursor.getLong(0);
-                        deleteMessageDataFromDisk(messagePartId);
+                        contentHashes.addAll(deleteMessageDataFromDisk(messagePartId));
                     }
                 } finally {
                     cursor.close();
@@ -880,6 +896,7 @@ public class LocalFolder {
                 db.execSQL("DELETE FROM threads WHERE message_id IN " +
                         "(SELECT id FROM messages WHERE folder_id = ?)", folderIdArg);
                 db.execSQL("DELETE FROM messages WHERE folder_id = ?", folderIdArg);
+                localStore.deleteUnreferencedAttachmentFiles(db, contentHashes);
                 db.execSQL("DELETE FROM folder_extra_values WHERE folder_id = ?", folderIdArg);
 
                 setMoreMessages(MoreMessages.UNKNOWN);
@@ -961,6 +978,7 @@ public class LocalFolder {
                 deleteMessagePartsAndDataFromDisk(messagePartId);
 
                 deleteFulltextIndexEntry(db, messageId);
+                deleteMessageAddresses(db, messageId);
 
                 if (hasThreadChildren(db, messageId)) {
                     // This message has children in the thread structure so we need to
@@ -1069,6 +1087,11 @@ public class LocalFolder {
     void deleteFulltextIndexEntry(SQLiteDatabase db, long messageId) {
         String[] idArg = { Long.toString(messageId) };
         db.delete("messages_fulltext", "docid = ?", idArg);
+        db.delete("messages_fulltext_queue", "message_id = ?", idArg);
+    }
+
+    void deleteMessageAddresses(SQLiteDatabase db, long messageId) {
+        db.delete("message_addresses", "message_id = ?", new String[] { Long.toString(messageId) });
     }
 
     void compactFulltextEntries(SQLiteDatabase db) {
@@ -1076,36 +1099,49 @@ public class LocalFolder {
     }
 
     void deleteMessagePartsAndDataFromDisk(final long rootMessagePartId) throws MessagingException {
-        deleteMessageDataFromDisk(rootMessagePartId);
-        deleteMessageParts(rootMessagePartId);
+        List<String> contentHashes = deleteMessageDataFromDisk(rootMessagePartId);
+        deleteMessageParts(rootMessagePartId, contentHashes);
     }
 
-    private void deleteMessageParts(final long rootMessagePartId) throws MessagingException {
+    private void deleteMessageParts(final long rootMessagePartId, final List<String> contentHashes)
+            throws MessagingException {
         localStore.getDatabase().execute(false, new DbCallback<Void>() {
             @Override
             public Void doDbWork(final SQLiteDatabase db) {
                 db.delete("message_parts", "root = ?", new String[] { Long.toString(rootMessagePartId) });
+                localStore.deleteUnreferencedAttachmentFiles(db, contentHashes);
                 return null;
             }
         });
     }
 
-    private void deleteMessageDataFromDisk(final long rootMessagePartId) throws MessagingException {
-        localStore.getDatabase().execute(false, new DbCallback<Void>() {
+    /**
+     * Deletes the files that are not shared with other message parts.
+     *
+     * @return The content hashes of shared files. They can only be deleted after the message parts are gone.
+     */
+    private List<String> deleteMessageDataFromDisk(final long rootMessagePartId) throws MessagingException {
+        return localStore.getDatabase().execute(false, new DbCallback<List<String>>() {
             @Override
-            public Void doDbWork(final SQLiteDatabase db) {
-                deleteMessagePartsFromDisk(db, rootMessagePartId);
-                return null;
+            public List<String> doDbWork(final SQLiteDatabase db) {
+                return deleteMessagePartsFromDisk(db, rootMessagePartId);
             }
         });
     }
 
-    private void deleteMessagePartsFromDisk(SQLiteDatabase db, long rootMessagePartId) {
-        Cursor cursor = db.query("message_parts", new String[] { "id" },
+    private List<String> deleteMessagePartsFromDisk(SQLiteDatabase db, long rootMessagePartId) {
+        List<String> contentHashes = new ArrayList<>();
+        Cursor cursor = db.query("message_parts", new String[] { "id", "content_hash" },
                 "root = ? AND data_location = " + DataLocation.ON_DISK,
                 new String[] { Long.toString(rootMessagePartId) }, null, null, null);
         try {
             while (cursor.moveToNext()) {
+                String contentHash = cursor.getString(1);
+                if (contentHash != null) {
+                    contentHashes.add(contentHash);
+                    continue;
+                }
+
                 String messagePartId = cursor.getString(0);
                 File file = localStore.getAttachmentFile(messagePartId);
                 if (file.exists()) {
@@ -1117,6 +1153,8 @@ public class LocalFolder {
         } finally {
             cursor.close();
         }
+
+        return contentHashes;
     }
 
     public boolean isInTopGroup() {
@@ -28,12 +28,15 @@ import timber.log.Timber;
 
 
 public class LocalMessage extends MimeMessage {
+    public static final long PART_TREE_VERSION_UNKNOWN = 0;
+
     private final LocalStore localStore;
 
     private long databaseId;
     private long rootId;
     private long threadId;
     private long messagePartId;
+    private long partTreeVersion = PART_TREE_VERSION_UNKNOWN;
     private MessageReference messageReference;
     private int attachmentCount;
     private String subject;
@@ -147,6 +150,22 @@ public class LocalMessage extends MimeMessage {
         return messagePartId;
     }
 
+    void setPartTreeVersion(long partTreeVersion) {
+        this.partTreeVersion = partTreeVersion;
+    }
+
+    /**
+     * Returns a value identifying the state of the message parts loaded from the database.
+     *
+     * <p>
+     * The value changes when the message is replaced or when missing parts have been downloaded. It is
+     * {@link #PART_TREE_VERSION_UNKNOWN} if the message parts haven't been loaded.
+     * </p>
+     */
+    public long getPartTreeVersion() {
+        return partTreeVersion;
+    }
+
     @Override
     public String getMimeType() {
         return mimeType;
@@ -310,12 +329,14 @@ public class LocalMessage extends MimeMessage {
                 cv.putNull("internal_date");
                 cv.putNull("mime_type");
                 cv.putNull("encryption_type");
+                cv.putNull("sender_sort_key");
 
                 db.update("messages", cv, "id = ?", new String[] { Long.toString(databaseId) });
 
                 mFolder.deleteMessagePartsAndDataFromDisk(messagePartId);
 
                 getFolder().deleteFulltextIndexEntry(db, databaseId);
+                getFolder().deleteMessageAddresses(db, databaseId);
 
                 return null;
             }
@@ -10,8 +10,10 @@ import java.io.IOException;
 import java.io.InputStream;
 import java.io.OutputStream;
 import java.util.ArrayList;
+import java.util.Collection;
 import java.util.Collections;
 import java.util.HashMap;
+import java.util.HashSet;
 import java.util.LinkedList;
 import java.util.List;
 import java.util.Locale;
@@ -21,6 +23,7 @@ import java.util.Stack;
 import android.content.ContentValues;
 import android.content.Context;
 import android.database.Cursor;
+import android.database.DatabaseUtils;
 import android.database.sqlite.SQLiteDatabase;
 import androidx.annotation.Nullable;
 import android.text.TextUtils;
@@ -30,6 +33,7 @@ import app.k9mail.legacy.account.Account;
 import app.k9mail.legacy.di.DI;
 import app.k9mail.legacy.mailstore.MessageListRepository;
 import app.k9mail.legacy.mailstore.MoreMessages;
+import com.fsck.k9.K9;
 import com.fsck.k9.Preferences;
 import com.fsck.k9.controller.MessagingControllerCommands.PendingCommand;
 import com.fsck.k9.controller.PendingCommandSerializer;
@@ -131,13 +135,15 @@ public class LocalStore {
 
     static final String[] UID_CHECK_PROJECTION = { "uid" };
 
-    private static final String[] GET_ATTACHMENT_COLS = new String[] { "id", "root", "data_location", "encoding", "data" };
+    private static final String[] GET_ATTACHMENT_COLS = new String[] {
+            "id", "root", "data_location", "encoding", "data", "content_hash" };
 
     private static final int ATTACH_PART_ID_INDEX = 0;
     private static final int ATTACH_ROOT_INDEX = 1;
     private static final int ATTACH_LOCATION_INDEX = 2;
     private static final int ATTACH_ENCODING_INDEX = 3;
     private static final int ATTACH_DATA_INDEX = 4;
+    private static final int ATTACH_CONTENT_HASH_INDEX = 5;
 
     /**
      * Maximum number of UIDs to check for existence at once.
@@ -614,7 +620,7 @@ public class LocalStore {
                 return new ByteArrayInputStream(data);
             }
             case DataLocation.ON_DISK: {
-                File file = getAttachmentFile(partId);
+                File file = getAttachmentFile(partId, cursor.getString(ATTACH_CONTENT_HASH_INDEX));
                 return new FileInputStream(file);
             }
             default:
@@ -656,6 +662,30 @@ public class LocalStore {
         return new File(attachmentDirectory, attachmentId);
     }
 
+    /**
+     * Returns the file of a message part. Files are named after their content hash. Files written before content
+     * hashes were introduced are named after the message part ID.
+     */
+    File getAttachmentFile(String partId, @Nullable String contentHash) {
+        return getAttachmentFile(contentHash != null ? contentHash : partId);
+    }
+
+    /**
+     * Deletes the message part files with the given content hashes that are no longer referenced by any message part.
+     */
+    void deleteUnreferencedAttachmentFiles(SQLiteDatabase db, Collection<String> contentHashes) {
+        for (String contentHash : new HashSet<>(contentHashes)) {
+            long referenceCount = DatabaseUtils.queryNumEntries(db, "message_parts", "content_hash = ?",
+                    new String[] { contentHash });
+            if (referenceCount == 0) {
+                File file = getAttachmentFile(contentHash);
+                if (file.exists() && !file.delete() && K9.isDebugLoggingEnabled()) {
+                    Timber.w("Couldn't delete message part file: %s", file.getAbsolutePath());
+                }
+            }
+        }
+    }
+
     public static class AttachmentInfo {
         public String name;
         public long size;
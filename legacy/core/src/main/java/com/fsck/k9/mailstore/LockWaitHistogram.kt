@@ -0,0 +1,50 @@
+package com.fsck.k9.mailstore
+
+import java.util.concurrent.TimeUnit
+import java.util.concurrent.atomic.AtomicLongArray
+
+/**
+ * Histogram of the time spent waiting for database access.
+ *
+ * Bucket `i` counts waits shorter than `2^i` milliseconds. The last bucket counts all longer waits.
+ */
+class LockWaitHistogram {
+    private val counts = AtomicLongArray(BUCKET_COUNT)
+
+    fun record(waitTimeNanos: Long) {
+        val waitTimeMillis = TimeUnit.NANOSECONDS.toMillis(waitTimeNanos)
+        counts.incrementAndGet(bucketIndex(waitTimeMillis))
+    }
+
+    fun getCounts(): LongArray {
+        return LongArray(BUCKET_COUNT) { index -> counts.get(index) }
+    }
+
+    /**
+     * Returns the non-empty buckets, e.g. `<1ms: 812, <2ms: 7, >=4096ms: 1`.
+     */
+    override fun toString(): String {
+        val counts = getCounts()
+        return counts.indices
+            .filter { index -> counts[index] > 0 }
+            .joinToString(separator = ", ") { index -> "${bucketLabel(index)}: ${counts[index]}" }
+            .ifEmpty { "empty" }
+    }
+
+    private fun bucketIndex(waitTimeMillis: Long): Int {
+        val index = Long.SIZE_BITS - waitTimeMillis.countLeadingZeroBits()
+        return index.coerceAtMost(BUCKET_COUNT - 1)
+    }
+
+    private fun bucketLabel(index: Int): String {
+        return if (index == BUCKET_COUNT - 1) {
+            ">=${1L shl (index - 1)}ms"
+        } else {
+            "<${1L shl index}ms"
+        }
+    }
+
+    companion object {
+        const val BUCKET_COUNT = 14
+    }
+}
@@ -2,11 +2,13 @@ package com.fsck.k9.mailstore;
 
 
 import java.io.File;
+import java.util.concurrent.TimeUnit;
 import java.util.concurrent.locks.Lock;
 import java.util.concurrent.locks.ReadWriteLock;
 import java.util.concurrent.locks.ReentrantReadWriteLock;
 
 import android.content.Context;
+import android.database.Cursor;
 import android.database.sqlite.SQLiteDatabase;
 import android.database.sqlite.SQLiteException;
 
@@ -20,6 +22,17 @@ import static java.lang.System.currentTimeMillis;
 
 
 public class LockableDatabase {
+    /**
+     * Number of pages the write-ahead log may grow to before SQLite copies it into the database file.
+     *
+     * <p>
+     * This is larger than Android's default so checkpoints happen less often during a sync that writes a lot of
+     * messages. {@code DatabaseOperations.compact()} truncates the write-ahead log.
+     * </p>
+     */
+    private static final int WAL_AUTO_CHECKPOINT_PAGES = 1000;
+
+    private static final long SLOW_LOCK_WAIT_NANOS = TimeUnit.MILLISECONDS.toNanos(500);
 
     /**
      * Callback interface for DB operations. Concept is similar to Spring
@@ -78,6 +91,17 @@ public class LockableDatabase {
 
     private String uUid;
 
+    /**
+     * Time spent waiting to start a transaction, i.e. until other threads have finished their transactions.
+     */
+    private final LockWaitHistogram transactionWaitHistogram = new LockWaitHistogram();
+
+    /**
+     * Time spent executing read-only callbacks outside of a transaction, including the time waiting for a database
+     * connection.
+     */
+    private final LockWaitHistogram readHistogram = new LockWaitHistogram();
+
     /**
      * @param context
      *            Never <code>null</code>.
@@ -152,19 +176,25 @@ public class LockableDatabase {
      * @return Whatever {@link DbCallback#doDbWork(SQLiteDatabase)} returns.
      */
     public <T> T execute(final boolean transactional, final DbCallback<T> callback) throws MessagingException {
+        final long startTime = System.nanoTime();
         lockRead();
         final boolean doTransaction = transactional && inTransaction.get() == null;
+        final boolean outermostRead = !transactional && inTransaction.get() == null;
         try {
             final boolean debug = K9.isDebugLoggingEnabled();
             if (doTransaction) {
                 inTransaction.set(Boolean.TRUE);
                 mDb.beginTransaction();
+                recordWaitTime(transactionWaitHistogram, "Starting transaction", startTime);
             }
             try {
                 final T result = callback.doDbWork(mDb);
                 if (doTransaction) {
                     mDb.setTransactionSuccessful();
                 }
+                if (outermostRead) {
+                    recordWaitTime(readHistogram, "Read", startTime);
+                }
                 return result;
             } finally {
                 if (doTransaction) {
@@ -191,6 +221,35 @@ public class LockableDatabase {
         }
     }
 
+    private void recordWaitTime(LockWaitHistogram histogram, String operation, long startTime) {
+        long waitTime = System.nanoTime() - startTime;
+        histogram.record(waitTime);
+
+        if (waitTime >= SLOW_LOCK_WAIT_NANOS && K9.isDebugLoggingEnabled()) {
+            Timber.d("LockableDatabase: %s took %d ms for account %s [%s]", operation,
+                    TimeUnit.NANOSECONDS.toMillis(waitTime), uUid, histogram);
+        }
+    }
+
+    /**
+     * Returns the histogram of the time spent waiting to start a transaction.
+     */
+    public LockWaitHistogram getTransactionWaitHistogram() {
+        return transactionWaitHistogram;
+    }
+
+    /**
+     * Returns the histogram of the time spent executing read-only callbacks outside of transactions.
+     *
+     * <p>
+     * Since reads use their own connections to the database in write-ahead logging mode, a long-running transaction
+     * should not show up here.
+     * </p>
+     */
+    public LockWaitHistogram getReadHistogram() {
+        return readHistogram;
+    }
+
     public void open() {
         lockWrite();
         try {
@@ -208,14 +267,15 @@ public class LockableDatabase {
                 doOpenOrCreateDb(databaseFile);
             } catch (SQLiteException e) {
                 // TODO handle this error in a better way!
-                Timber.w(e, "Unable to open DB %s - removing file and retrying", databaseFile);
-                if (databaseFile.exists() && !databaseFile.delete()) {
-                    Timber.d("Failed to remove %s that couldn't be opened", databaseFile);
-                }
+                Timber.w(e, "Unable to open DB %s - removing files and retrying", databaseFile);
+                // Also removes the -wal and -shm files that would otherwise be applied to the new database
+                deleteDatabase(databaseFile);
                 doOpenOrCreateDb(databaseFile);
             }
 
-            mDb.execSQL("PRAGMA foreign_keys = ON;");
+            // Applies to all connections in the pool, unlike "PRAGMA foreign_keys = ON"
+            mDb.setForeignKeyConstraintsEnabled(true);
+            executePragma("PRAGMA wal_autocheckpoint = " + WAL_AUTO_CHECKPOINT_PAGES);
 
             if (mDb.getVersion() != mSchemaDefinition.getVersion()) {
                 mSchemaDefinition.doDbUpgrade(mDb);
@@ -225,8 +285,28 @@ public class LockableDatabase {
         }
     }
 
+    /**
+     * Opens the database in write-ahead logging mode.
+     *
+     * <p>
+     * In this mode {@link SQLiteDatabase} maintains a pool of connections. Queries outside of a transaction use a
+     * read-only connection and see the last committed state of the database. So they don't have to wait for a
+     * long-running write transaction, e.g. while saving messages during a sync.
+     * </p>
+     */
     private void doOpenOrCreateDb(final File databaseFile) {
-        mDb = context.openOrCreateDatabase(databaseFile.getName(), Context.MODE_PRIVATE, null);
+        mDb = context.openOrCreateDatabase(databaseFile.getName(),
+                Context.MODE_PRIVATE | Context.MODE_ENABLE_WRITE_AHEAD_LOGGING, null);
+    }
+
+    private void executePragma(String pragma) {
+        // Some pragmas return a result, so they can't be executed using execSQL()
+        Cursor cursor = mDb.rawQuery(pragma, null);
+        try {
+            cursor.moveToFirst();
+        } finally {
+            cursor.close();
+        }
     }
 
     protected File prepareStorage() {
@@ -8,6 +8,7 @@ object MessageColumns {
     const val DATE = "date"
     const val MESSAGE_ID = "message_id"
     const val SENDER_LIST = "sender_list"
+    const val SENDER_SORT_KEY = "sender_sort_key"
     const val TO_LIST = "to_list"
     const val CC_LIST = "cc_list"
     const val BCC_LIST = "bcc_list"
@@ -27,6 +27,7 @@ import com.fsck.k9.mail.internet.Viewable;
 import com.fsck.k9.mailstore.CryptoResultAnnotation.CryptoError;
 import com.fsck.k9.message.extractors.AttachmentInfoExtractor;
 import com.fsck.k9.message.html.HtmlConverter;
+import com.fsck.k9.message.html.HtmlSettings;
 import app.k9mail.html.cleaner.HtmlProcessor;
 import org.openintents.openpgp.util.OpenPgpUtils;
 import timber.log.Timber;
@@ -51,13 +52,25 @@ public class MessageViewInfoExtractor {
     private final AttachmentInfoExtractor attachmentInfoExtractor;
     private final HtmlProcessor htmlProcessor;
     private final CoreResourceProvider resourceProvider;
+    @Nullable
+    private final RenderedMessageCache renderedMessageCache;
+    @Nullable
+    private final HtmlSettings htmlSettings;
 
 
     MessageViewInfoExtractor(AttachmentInfoExtractor attachmentInfoExtractor, HtmlProcessor htmlProcessor,
             CoreResourceProvider resourceProvider) {
+        this(attachmentInfoExtractor, htmlProcessor, resourceProvider, null, null);
+    }
+
+    MessageViewInfoExtractor(AttachmentInfoExtractor attachmentInfoExtractor, HtmlProcessor htmlProcessor,
+            CoreResourceProvider resourceProvider, @Nullable RenderedMessageCache renderedMessageCache,
+            @Nullable HtmlSettings htmlSettings) {
         this.attachmentInfoExtractor = attachmentInfoExtractor;
         this.htmlProcessor = htmlProcessor;
         this.resourceProvider = resourceProvider;
+        this.renderedMessageCache = renderedMessageCache;
+        this.htmlSettings = htmlSettings;
     }
 
     @WorkerThread
@@ -70,7 +83,8 @@ public class MessageViewInfoExtractor {
             if (cryptoAnnotations != null && !cryptoAnnotations.isEmpty()) {
                 Timber.e("Got crypto message cryptoContentAnnotations but no crypto root part!");
             }
-            MessageViewInfo messageViewInfo = extractSimpleMessageForView(message, message);
+            RenderedMessageCache.Key cacheKey = createRenderedMessageCacheKey(message);
+            MessageViewInfo messageViewInfo = extractSimpleMessageForView(message, message, cacheKey);
             return messageViewInfo.withSubject(message.getSubject(), false);
         }
 
@@ -123,7 +137,7 @@ public class MessageViewInfoExtractor {
             return extractCryptoMessageForView(message, extraParts, cryptoContentPart, cryptoContentPartAnnotation);
         }
 
-        return extractSimpleMessageForView(message, message);
+        return extractSimpleMessageForView(message, message, null);
     }
 
     private MessageViewInfo extractCryptoMessageForView(Message message,
@@ -134,16 +148,41 @@ public class MessageViewInfoExtractor {
         }
 
         List<AttachmentViewInfo> extraAttachmentInfos = new ArrayList<>();
-        ViewableExtractedText extraViewable = extractViewableAndAttachments(extraParts, extraAttachmentInfos);
+        ViewableExtractedText extraViewable = extractViewableAndAttachments(extraParts, extraAttachmentInfos, null);
 
-        MessageViewInfo messageViewInfo = extractSimpleMessageForView(message, cryptoContentPart);
+        MessageViewInfo messageViewInfo = extractSimpleMessageForView(message, cryptoContentPart, null);
         return messageViewInfo.withCryptoData(cryptoContentPartAnnotation, extraViewable.text, extraAttachmentInfos);
     }
 
-    private MessageViewInfo extractSimpleMessageForView(Message message, Part contentPart) throws MessagingException {
+    /**
+     * Returns the key for the cached output of {@link #extractTextFromViewables(List)}.
+     *
+     * <p>
+     * Only messages loaded from the database without any crypto parts are cached. Decrypted content must never be
+     * written to the cache.
+     * </p>
+     */
+    @Nullable
+    private RenderedMessageCache.Key createRenderedMessageCacheKey(Message message) {
+        if (renderedMessageCache == null || htmlSettings == null || !(message instanceof LocalMessage)) {
+            return null;
+        }
+
+        LocalMessage localMessage = (LocalMessage) message;
+        long partTreeVersion = localMessage.getPartTreeVersion();
+        if (partTreeVersion == LocalMessage.PART_TREE_VERSION_UNKNOWN) {
+            return null;
+        }
+
+        return new RenderedMessageCache.Key(localMessage.getAccount().getUuid(), localMessage.getDatabaseId(),
+                partTreeVersion, htmlSettings);
+    }
+
+    private MessageViewInfo extractSimpleMessageForView(Message message, Part contentPart,
+            @Nullable RenderedMessageCache.Key cacheKey) throws MessagingException {
         List<AttachmentViewInfo> attachmentInfos = new ArrayList<>();
         ViewableExtractedText viewable = extractViewableAndAttachments(
-                Collections.singletonList(contentPart), attachmentInfos);
+                Collections.singletonList(contentPart), attachmentInfos, cacheKey);
         AttachmentResolver attachmentResolver = AttachmentResolver.createFromPart(contentPart);
         boolean isMessageIncomplete =
                 !message.isSet(Flag.X_DOWNLOADED_FULL) || MessageExtractor.hasMissingParts(message);
@@ -156,7 +195,8 @@ public class MessageViewInfoExtractor {
     }
 
     private ViewableExtractedText extractViewableAndAttachments(List<Part> parts,
-            List<AttachmentViewInfo> attachmentInfos) throws MessagingException {
+            List<AttachmentViewInfo> attachmentInfos, @Nullable RenderedMessageCache.Key cacheKey)
+            throws MessagingException {
         ArrayList<Viewable> viewableParts = new ArrayList<>();
         ArrayList<Part> attachments = new ArrayList<>();
 
@@ -165,7 +205,19 @@ public class MessageViewInfoExtractor {
         }
 
         attachmentInfos.addAll(attachmentInfoExtractor.extractAttachmentInfoForView(attachments));
-        return extractTextFromViewables(viewableParts);
+
+        if (cacheKey == null) {
+            return extractTextFromViewables(viewableParts);
+        }
+
+        ViewableExtractedText cachedViewable = renderedMessageCache.get(cacheKey);
+        if (cachedViewable != null) {
+            return cachedViewable;
+        }
+
+        ViewableExtractedText viewable = extractTextFromViewables(viewableParts);
+        renderedMessageCache.put(cacheKey, viewable);
+        return viewable;
     }
 
     /**
@@ -549,12 +601,11 @@ public class MessageViewInfoExtractor {
         html.append("</td></tr>");
     }
 
-    @VisibleForTesting
-    static class ViewableExtractedText {
+    public static class ViewableExtractedText {
         public final String text;
         public final String html;
 
-        ViewableExtractedText(String text, String html) {
+        public ViewableExtractedText(String text, String html) {
             this.text = text;
             this.html = html;
         }
@@ -9,9 +9,16 @@ class MessageViewInfoExtractorFactory(
     private val attachmentInfoExtractor: AttachmentInfoExtractor,
     private val htmlProcessorFactory: HtmlProcessorFactory,
     private val resourceProvider: CoreResourceProvider,
+    private val renderedMessageCache: RenderedMessageCache,
 ) {
     fun create(settings: HtmlSettings): MessageViewInfoExtractor {
         val htmlProcessor = htmlProcessorFactory.create(settings)
-        return MessageViewInfoExtractor(attachmentInfoExtractor, htmlProcessor, resourceProvider)
+        return MessageViewInfoExtractor(
+            attachmentInfoExtractor,
+            htmlProcessor,
+            resourceProvider,
+            renderedMessageCache,
+            settings,
+        )
     }
 }
@@ -0,0 +1,209 @@
+package com.fsck.k9.mailstore
+
+import com.fsck.k9.mailstore.MessageViewInfoExtractor.ViewableExtractedText
+import com.fsck.k9.message.html.HtmlSettings
+import java.io.DataInputStream
+import java.io.DataOutputStream
+import java.io.File
+import java.io.IOException
+import timber.log.Timber
+
+private const val FORMAT_VERSION = 1
+private const val VERSION_FILE_NAME = "version"
+private const val DEFAULT_MAX_MEMORY_SIZE = 4 * 1024 * 1024
+private const val DEFAULT_MAX_DISK_SIZE = 32L * 1024 * 1024
+
+/**
+ * Cache for the text and sanitized HTML [MessageViewInfoExtractor] creates from the parts of a message.
+ *
+ * Entries are kept in an LRU cache in memory and written to [cacheDirectory], so switching between messages doesn't
+ * require decoding the message bodies and running the HTML sanitizer again.
+ *
+ * The key contains the version of the message's part tree (see [LocalMessage.getPartTreeVersion]). So an entry is no
+ * longer used once the message has been replaced or missing parts have been downloaded. Outdated entries are
+ * eventually evicted.
+ *
+ * @param cacheVersion When this value changes, e.g. after an app update that might have changed the HTML sanitizer,
+ *   all entries on disk are discarded.
+ * @param localeProvider Returns the locales used for the localized strings in the rendered output. Entries created
+ *   for other locales aren't returned.
+ */
+class RenderedMessageCache(
+    private val cacheDirectory: File,
+    private val cacheVersion: Long,
+    private val localeProvider: () -> String,
+    private val maxMemorySize: Int = DEFAULT_MAX_MEMORY_SIZE,
+    private val maxDiskSize: Long = DEFAULT_MAX_DISK_SIZE,
+) {
+    private val memoryCache = LinkedHashMap<Key, ViewableExtractedText>(16, 0.75f, true)
+    private var memorySize = 0
+    private var isDiskCacheChecked = false
+    private var locale: String? = null
+
+    @Synchronized
+    fun get(key: Key): ViewableExtractedText? {
+        checkLocale()
+        memoryCache[key]?.let { return it }
+
+        val file = getFile(key)
+        val value = readFile(file) ?: return null
+
+        file.setLastModified(System.currentTimeMillis())
+        putInMemoryCache(key, value)
+
+        return value
+    }
+
+    @Synchronized
+    fun put(key: Key, value: ViewableExtractedText) {
+        checkLocale()
+        putInMemoryCache(key, value)
+        writeFile(getFile(key), value)
+        trimDiskCache()
+    }
+
+    /**
+     * Removes all entries belonging to the given account.
+     */
+    @Synchronized
+    fun removeAccount(accountUuid: String) {
+        val iterator = memoryCache.entries.iterator()
+        while (iterator.hasNext()) {
+            val (key, value) = iterator.next()
+            if (key.accountUuid == accountUuid) {
+                memorySize -= value.size
+                iterator.remove()
+            }
+        }
+
+        val filePrefix = "${accountUuid}_"
+        cacheDirectory.listFiles()
+            ?.filter { file -> file.name.startsWith(filePrefix) }
+            ?.forEach { file -> file.delete() }
+    }
+
+    private fun checkLocale() {
+        val currentLocale = localeProvider()
+        if (currentLocale == locale) return
+
+        locale = currentLocale
+        memoryCache.clear()
+        memorySize = 0
+    }
+
+    private fun putInMemoryCache(key: Key, value: ViewableExtractedText) {
+        val size = value.size
+        if (size > maxMemorySize) return
+
+        memoryCache.put(key, value)?.let { oldValue -> memorySize -= oldValue.size }
+        memorySize += size
+
+        val iterator = memoryCache.values.iterator()
+        while (memorySize > maxMemorySize && iterator.hasNext()) {
+            memorySize -= iterator.next().size
+            iterator.remove()
+        }
+    }
+
+    private fun readFile(file: File): ViewableExtractedText? {
+        checkDiskCacheVersion()
+        if (!file.exists()) return null
+
+        return try {
+            DataInputStream(file.inputStream().buffered()).use { inputStream ->
+                if (inputStream.readInt() != FORMAT_VERSION) return null
+
+                val text = inputStream.readString()
+                val html = inputStream.readString()
+                ViewableExtractedText(text, html)
+            }
+        } catch (e: IOException) {
+            Timber.w(e, "Error reading rendered message from %s", file)
+            file.delete()
+            null
+        }
+    }
+
+    private fun writeFile(file: File, value: ViewableExtractedText) {
+        checkDiskCacheVersion()
+
+        val temporaryFile = File(cacheDirectory, "${file.name}.tmp")
+        try {
+            DataOutputStream(temporaryFile.outputStream().buffered()).use { outputStream ->
+                outputStream.writeInt(FORMAT_VERSION)
+                outputStream.writeString(value.text)
+                outputStream.writeString(value.html)
+            }
+
+            if (!temporaryFile.renameTo(file)) {
+                temporaryFile.delete()
+            }
+        } catch (e: IOException) {
+            Timber.w(e, "Error writing rendered message to %s", file)
+            temporaryFile.delete()
+        }
+    }
+
+    private fun trimDiskCache() {
+        val files = cacheDirectory.listFiles { file -> file.name != VERSION_FILE_NAME } ?: return
+
+        var diskSize = files.sumOf { file -> file.length() }
+        if (diskSize <= maxDiskSize) return
+
+        for (file in files.sortedBy { file -> file.lastModified() }) {
+            val fileSize = file.length()
+            if (file.delete()) {
+                diskSize -= fileSize
+                if (diskSize <= maxDiskSize) break
+            }
+        }
+    }
+
+    private fun checkDiskCacheVersion() {
+        if (isDiskCacheChecked) return
+        isDiskCacheChecked = true
+
+        val versionFile = File(cacheDirectory, VERSION_FILE_NAME)
+        val storedVersion = if (versionFile.exists()) versionFile.readText().toLongOrNull() else null
+        if (storedVersion == cacheVersion) return
+
+        cacheDirectory.deleteRecursively()
+        if (!cacheDirectory.mkdirs()) {
+            Timber.w("Couldn't create directory %s", cacheDirectory)
+            return
+        }
+
+        versionFile.writeText(cacheVersion.toString())
+    }
+
+    private fun getFile(key: Key): File {
+        with(key) {
+            val settings = "${htmlSettings.useDarkMode.toInt()}${htmlSettings.useFixedWidthFont.toInt()}"
+            return File(cacheDirectory, "${accountUuid}_${messageId}_${partTreeVersion}_${settings}_$locale")
+        }
+    }
+
+    private fun DataInputStream.readString(): String {
+        val bytes = ByteArray(readInt())
+        readFully(bytes)
+        return bytes.decodeToString()
+    }
+
+    private fun DataOutputStream.writeString(value: String) {
+        val bytes = value.encodeToByteArray()
+        writeInt(bytes.size)
+        write(bytes)
+    }
+
+    private val ViewableExtractedText.size: Int
+        get() = text.length + html.length
+
+    private fun Boolean.toInt() = if (this) 1 else 0
+
+    data class Key(
+        val accountUuid: String,
+        val messageId: Long,
+        val partTreeVersion: Long,
+        val htmlSettings: HtmlSettings,
+    )
+}
@@ -38,7 +38,7 @@ public class MessageFulltextCreator {
             return text;
         }
 
-        return HtmlConverter.htmlToText(text);
+        return HtmlConverter.htmlToTextStreaming(text);
     }
 
     private boolean hasEmptyBody(Part textPart) {
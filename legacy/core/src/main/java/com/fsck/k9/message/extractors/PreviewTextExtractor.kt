@@ -19,7 +19,7 @@ internal class PreviewTextExtractor {
 
     private fun convertFromHtmlIfNecessary(textPart: Part, text: String): String {
         return if (isSameMimeType(textPart.mimeType, "text/html")) {
-            HtmlConverter.htmlToText(text)
+            HtmlConverter.htmlToTextStreaming(text, MAX_CHARACTERS_CHECKED_FOR_PREVIEW.toInt())
         } else {
             text
         }
@@ -32,29 +32,73 @@ internal class PreviewTextExtractor {
         intermediateText = stripSignature(intermediateText)
         intermediateText = extractUnquotedText(intermediateText)
 
-        // try to remove lines of dashes in the preview
-        intermediateText = intermediateText.replace("(?m)^----.*?$".toRegex(), "")
-        // Remove horizontal rules.
-        intermediateText = intermediateText.replace("\\s*([-=_]{30,}+)\\s*".toRegex(), " ")
-
-        // URLs in the preview should just be shown as "..." - They're not
-        // clickable and they usually overwhelm the preview
-        intermediateText = intermediateText.replace("https?://\\S+".toRegex(), "...")
-        // Don't show newlines in the preview
-        intermediateText = intermediateText.replace('\n', ' ')
-        // Collapse whitespace in the preview
-        intermediateText = intermediateText.replace("\\s+".toRegex(), " ")
-        // Remove any whitespace at the beginning and end of the string.
-        intermediateText = intermediateText.trim()
-
-        return if (intermediateText.length > MAX_PREVIEW_LENGTH) {
-            intermediateText.substring(0, MAX_PREVIEW_LENGTH - 1) + "…"
+        return buildPreview(intermediateText)
+    }
+
+    /**
+     * Builds the preview text in a single pass over [text].
+     *
+     * - Lines starting with `----` are removed.
+     * - Horizontal rules, i.e. 30 or more of `-`, `=`, `_`, are treated as whitespace.
+     * - URLs are replaced with `...`. They're not clickable and they usually overwhelm the preview.
+     * - Whitespace, including line breaks, is collapsed to a single space and removed at the beginning and end.
+     *
+     * Processing stops as soon as the result is known to exceed [MAX_PREVIEW_LENGTH].
+     */
+    private fun buildPreview(text: String): String {
+        val preview = StringBuilder(minOf(text.length, MAX_PREVIEW_LENGTH + 1))
+        var pendingSpace = false
+        var index = 0
+
+        fun appendPendingSpace() {
+            if (pendingSpace && preview.isNotEmpty()) preview.append(' ')
+            pendingSpace = false
+        }
+
+        while (index < text.length) {
+            if (preview.length > MAX_PREVIEW_LENGTH && !preview.last().isWhitespace()) break
+
+            val character = text[index]
+            val isStartOfLine = index == 0 || text[index - 1] == '\n'
+            when {
+                isStartOfLine && text.startsWith("----", startIndex = index) -> {
+                    index = text.indexOf('\n', startIndex = index).let { if (it == -1) text.length else it }
+                }
+                character.isRegexWhitespace() -> {
+                    pendingSpace = true
+                    index++
+                }
+                character.isHorizontalRuleCharacter() && text.isHorizontalRuleAt(index) -> {
+                    pendingSpace = true
+                    index = text.skipHorizontalRuleCharacters(index)
+                }
+                text.isUrlAt(index) -> {
+                    appendPendingSpace()
+                    preview.append("...")
+                    index = text.skipUrl(index)
+                }
+                preview.isEmpty() && character.isWhitespace() -> {
+                    index++
+                }
+                else -> {
+                    appendPendingSpace()
+                    preview.append(character)
+                    index++
+                }
+            }
+        }
+
+        val trimmedPreview = preview.trimEnd()
+        return if (trimmedPreview.length > MAX_PREVIEW_LENGTH) {
+            trimmedPreview.substring(0, MAX_PREVIEW_LENGTH - 1) + "…"
         } else {
-            intermediateText
+            trimmedPreview.toString()
         }
     }
 
-    private fun normalizeLineBreaks(text: String) = text.replace(REGEX_CRLF, "\n")
+    private fun normalizeLineBreaks(text: String): String {
+        return if (text.indexOf('\r') == -1) text else text.replace(REGEX_CRLF, "\n")
+    }
 
     private fun stripSignature(text: String): String {
         return if (text.startsWith("-- \n")) {
@@ -118,9 +162,51 @@ internal class PreviewTextExtractor {
             return 0
         }
 
+    private fun Char.isRegexWhitespace(): Boolean {
+        return this == ' ' || this == '\t' || this == '\n' || this == '\u000B' || this == '\u000C' || this == '\r'
+    }
+
+    private fun Char.isHorizontalRuleCharacter() = this == '-' || this == '=' || this == '_'
+
+    private fun String.isHorizontalRuleAt(index: Int): Boolean {
+        return skipHorizontalRuleCharacters(index) - index >= MIN_HORIZONTAL_RULE_LENGTH
+    }
+
+    private fun String.skipHorizontalRuleCharacters(startIndex: Int): Int {
+        var index = startIndex
+        while (index < length && this[index].isHorizontalRuleCharacter()) {
+            index++
+        }
+        return index
+    }
+
+    private fun String.isUrlAt(index: Int): Boolean {
+        val schemeEndIndex = when {
+            startsWith("https://", startIndex = index) -> index + 8
+            startsWith("http://", startIndex = index) -> index + 7
+            else -> return false
+        }
+
+        return schemeEndIndex < length && isUrlCharacterAt(schemeEndIndex)
+    }
+
+    private fun String.skipUrl(startIndex: Int): Int {
+        var index = indexOf("://", startIndex) + 3
+        while (index < length && isUrlCharacterAt(index)) {
+            index++
+        }
+        return index
+    }
+
+    private fun String.isUrlCharacterAt(index: Int): Boolean {
+        val character = this[index]
+        return !character.isRegexWhitespace() && !(character.isHorizontalRuleCharacter() && isHorizontalRuleAt(index))
+    }
+
     companion object {
         private const val MAX_PREVIEW_LENGTH = 512
         private const val MAX_CHARACTERS_CHECKED_FOR_PREVIEW = 8192L
+        private const val MIN_HORIZONTAL_RULE_LENGTH = 30
 
         private val REGEX_CRLF = "(\\r\\n|\\r)".toRegex()
     }
@@ -32,6 +32,20 @@ object HtmlConverter {
             .replace(NBSP_CHARACTER, NBSP_REPLACEMENT)
     }
 
+    /**
+     * Convert an HTML string to a plain text string without building a DOM.
+     *
+     * The result is the same as the one of [htmlToText] for typical HTML. Conversion stops once the plain text has
+     * reached [maxLength] characters. Use this when only the text is needed, e.g. for previews and the search index.
+     */
+    @JvmStatic
+    @JvmOverloads
+    fun htmlToTextStreaming(html: String, maxLength: Int = Int.MAX_VALUE): String {
+        return StreamingHtmlToPlainText.toPlainText(html, maxLength)
+            .replace(PREVIEW_OBJECT_CHARACTER, PREVIEW_OBJECT_REPLACEMENT)
+            .replace(NBSP_CHARACTER, NBSP_REPLACEMENT)
+    }
+
     /**
      * Convert a text string into an HTML document.
      *
@@ -0,0 +1,546 @@
+package com.fsck.k9.message.html
+
+import org.jsoup.parser.Parser
+
+/**
+ * Convert HTML to plain text without building a DOM.
+ *
+ * The HTML is tokenized in a single pass and formatted like [HtmlToPlainText] formats the body of a Jsoup document.
+ * Only the parts of the HTML tree construction rules that affect the output are emulated, e.g. implicitly closed `<p>`
+ * and `<li>` elements, or elements in `<head>` not being part of the body.
+ *
+ * Conversion stops once the output has reached `maxLength` characters.
+ */
+internal class StreamingHtmlToPlainText private constructor(
+    private val html: String,
+    private val maxLength: Int,
+) {
+    private val output = StringBuilder()
+    private val textBuffer = StringBuilder()
+    private val openElements = ArrayList<OpenElement>()
+    private var index = 0
+    private var isInBody = false
+    private var isQuirksMode = true
+    private var isDone = false
+    private var collectLinkText = false
+    private val linkText = StringBuilder()
+
+    private fun convert(): String {
+        while (index < html.length && !isDone) {
+            val tagStartIndex = html.indexOf('<', index)
+            if (tagStartIndex == -1) {
+                textBuffer.append(html, index, html.length)
+                index = html.length
+            } else {
+                textBuffer.append(html, index, tagStartIndex)
+                index = tagStartIndex
+                readMarkup()
+            }
+        }
+
+        if (!isDone) {
+            flushText()
+            closeElements(downToIndex = 0)
+        }
+
+        return buildResult()
+    }
+
+    private fun readMarkup() {
+        val nextCharacter = html.getOrNull(index + 1)
+        when {
+            nextCharacter == null -> {
+                textBuffer.append('<')
+                index++
+            }
+            nextCharacter == '!' -> readDeclarationOrComment()
+            nextCharacter == '?' -> skipBogusComment()
+            nextCharacter == '/' -> readEndTag()
+            nextCharacter.isAsciiLetter() -> readStartTag()
+            else -> {
+                textBuffer.append('<')
+                index++
+            }
+        }
+    }
+
+    private fun readDeclarationOrComment() {
+        flushText()
+        if (html.startsWith("<!--", startIndex = index)) {
+            val endIndex = html.indexOf("-->", startIndex = index + 4)
+            index = if (endIndex == -1) html.length else endIndex + 3
+        } else {
+            if (html.regionMatches(index + 2, "doctype", 0, 7, ignoreCase = true)) {
+                isQuirksMode = false
+            }
+            skipBogusComment()
+        }
+    }
+
+    private fun skipBogusComment() {
+        flushText()
+        val endIndex = html.indexOf('>', startIndex = index)
+        index = if (endIndex == -1) html.length else endIndex + 1
+    }
+
+    private fun readEndTag() {
+        if (html.getOrNull(index + 2)?.isAsciiLetter() != true) {
+            skipBogusComment()
+            return
+        }
+
+        val nameEndIndex = findTagNameEnd(index + 2)
+        val endIndex = html.indexOf('>', startIndex = nameEndIndex)
+        if (endIndex == -1) {
+            // Jsoup drops a tag that isn't complete at the end of the input
+            index = html.length
+            return
+        }
+
+        flushText()
+        val name = html.substring(index + 2, nameEndIndex).lowercase()
+        index = endIndex + 1
+
+        handleEndTag(name)
+    }
+
+    private fun readStartTag() {
+        val nameEndIndex = findTagNameEnd(index + 1)
+        val name = html.substring(index + 1, nameEndIndex).lowercase()
+
+        var href: String? = null
+        var isSelfClosing = false
+        var position = nameEndIndex
+        while (true) {
+            position = skipWhitespace(position)
+            if (position >= html.length) {
+                index = html.length
+                return
+            }
+
+            val character = html[position]
+            if (character == '>') {
+                position++
+                break
+            } else if (character == '/') {
+                position++
+                if (html.getOrNull(position) == '>') {
+                    isSelfClosing = true
+                    position++
+                    break
+                }
+                continue
+            }
+
+            val attributeNameStartIndex = position
+            position++
+            while (position < html.length && html[position].let { !it.isHtmlWhitespace() && it !in "/>=" }) {
+                position++
+            }
+            val attributeName = html.substring(attributeNameStartIndex, position)
+
+            var attributeValue = ""
+            position = skipWhitespace(position)
+            if (html.getOrNull(position) == '=') {
+                position = skipWhitespace(position + 1)
+                val quote = html.getOrNull(position)
+                if (quote == '"' || quote == '\'') {
+                    val valueEndIndex = html.indexOf(quote, startIndex = position + 1)
+                    if (valueEndIndex == -1) {
+                        index = html.length
+                        return
+                    }
+                    attributeValue = html.substring(position + 1, valueEndIndex)
+                    position = valueEndIndex + 1
+                } else {
+                    val valueStartIndex = position
+                    while (position < html.length && html[position].let { !it.isHtmlWhitespace() && it != '>' }) {
+                        position++
+                    }
+                    attributeValue = html.substring(valueStartIndex, position)
+                }
+            }
+
+            if (href == null && attributeName.equals("href", ignoreCase = true)) {
+                href = decodeEntities(attributeValue, inAttribute = true)
+            }
+        }
+
+        flushText()
+        index = position
+
+        handleStartTag(name, href, isSelfClosing)
+    }
+
+    private fun handleStartTag(name: String, href: String?, isSelfClosing: Boolean) {
+        when (name) {
+            "html", "head" -> return
+            "body" -> {
+                isInBody = true
+                return
+            }
+        }
+
+        if (!isInBody && name in HEAD_ELEMENTS) {
+            if (name in RAW_TEXT_ELEMENTS || name in RCDATA_ELEMENTS) {
+                skipRawText(name)
+            }
+            return
+        }
+        isInBody = true
+
+        closeImpliedElements(name)
+
+        val element = OpenElement(name, href)
+        openElements.add(element)
+        onElementStart(element)
+
+        if (name in VOID_ELEMENTS || (isSelfClosing && name !in BLOCK_ELEMENTS && name !in KNOWN_INLINE_ELEMENTS)) {
+            closeElements(downToIndex = openElements.lastIndex)
+        } else if (name in RAW_TEXT_ELEMENTS) {
+            skipRawText(name)
+            closeElements(downToIndex = openElements.lastIndex)
+        } else if (name in RCDATA_ELEMENTS) {
+            val text = skipRawText(name)
+            textBuffer.append(text)
+            flushText()
+            closeElements(downToIndex = openElements.lastIndex)
+        }
+    }
+
+    private fun handleEndTag(name: String) {
+        when (name) {
+            "html", "head", "body" -> return
+            "br" -> {
+                handleStartTag(name, href = null, isSelfClosing = false)
+                return
+            }
+        }
+
+        val elementIndex = findOpenElement(name, BUTTON_SCOPE_BOUNDARIES.takeIf { name == "p" } ?: emptySet())
+        if (elementIndex != -1) {
+            closeElements(downToIndex = elementIndex)
+        } else if (name == "p") {
+            // Jsoup inserts an empty paragraph for an end tag without start tag
+            handleStartTag(name, href = null, isSelfClosing = false)
+            closeElements(downToIndex = openElements.lastIndex)
+        }
+    }
+
+    private fun closeImpliedElements(name: String) {
+        when (name) {
+            "li" -> closeListItem(setOf("li"))
+            "dd", "dt" -> closeListItem(setOf("dd", "dt"))
+            "tr" -> closeOpenElement(setOf("tr"), TABLE_SCOPE_BOUNDARIES)
+            "td", "th" -> closeOpenElement(setOf("td", "th"), ROW_SCOPE_BOUNDARIES)
+            "a" -> closeOpenElement(setOf("a"), emptySet())
+        }
+
+        if (name in CLOSES_PARAGRAPH || (name == "table" && !isQuirksMode)) {
+            closeOpenElement(setOf("p"), BUTTON_SCOPE_BOUNDARIES)
+        }
+
+        if (name in HEADINGS && openElements.lastOrNull()?.name in HEADINGS) {
+            closeElements(downToIndex = openElements.lastIndex)
+        }
+    }
+
+    private fun closeListItem(names: Set<String>) {
+        for (elementIndex in openElements.indices.reversed()) {
+            val elementName = openElements[elementIndex].name
+            if (elementName in names) {
+                closeElements(downToIndex = elementIndex)
+                return
+            } else if (elementName in SPECIAL_ELEMENTS && elementName !in LIST_ITEM_SCOPE_EXCEPTIONS) {
+                return
+            }
+        }
+    }
+
+    private fun closeOpenElement(names: Set<String>, boundaries: Set<String>) {
+        for (elementIndex in openElements.indices.reversed()) {
+            val elementName = openElements[elementIndex].name
+            if (elementName in names) {
+                closeElements(downToIndex = elementIndex)
+                return
+            } else if (elementName in boundaries) {
+                return
+            }
+        }
+    }
+
+    private fun findOpenElement(name: String, boundaries: Set<String>): Int {
+        for (elementIndex in openElements.indices.reversed()) {
+            val elementName = openElements[elementIndex].name
+            if (elementName == name) {
+                return elementIndex
+            } else if (elementName in boundaries) {
+                return -1
+            }
+        }
+
+        return -1
+    }
+
+    private fun closeElements(downToIndex: Int) {
+        while (openElements.size > downToIndex && !isDone) {
+            val element = openElements.removeAt(openElements.lastIndex)
+            if (element.hasText) {
+                openElements.lastOrNull()?.hasText = true
+            }
+
+            onElementEnd(element)
+        }
+    }
+
+    /**
+     * Skips the content of an element like `<script>` that can't contain tags.
+     *
+     * @return The content of the element.
+     */
+    private fun skipRawText(name: String): String {
+        var searchIndex = index
+        while (true) {
+            val endTagIndex = html.indexOf("</", startIndex = searchIndex)
+            if (endTagIndex == -1) {
+                val text = html.substring(index)
+                index = html.length
+                return text
+            }
+
+            val nameEndIndex = endTagIndex + 2 + name.length
+            val isEndTag = html.regionMatches(endTagIndex + 2, name, 0, name.length, ignoreCase = true) &&
+                html.getOrNull(nameEndIndex).let { it == null || it.isHtmlWhitespace() || it == '/' || it == '>' }
+
+            if (isEndTag) {
+                val text = html.substring(index, endTagIndex)
+                val endIndex = html.indexOf('>', startIndex = nameEndIndex)
+                index = if (endIndex == -1) html.length else endIndex + 1
+                return text
+            }
+
+            searchIndex = endTagIndex + 2
+        }
+    }
+
+    private fun flushText() {
+        if (textBuffer.isEmpty()) return
+
+        val text = decodeEntities(textBuffer.toString(), inAttribute = false)
+        textBuffer.setLength(0)
+
+        val isBlank = text.all { it.isHtmlWhitespace() }
+        if (!isInBody) {
+            if (isBlank) return
+            isInBody = true
+        }
+
+        onText(normalizeWhitespace(text))
+
+        if (!isBlank) {
+            openElements.lastOrNull()?.hasText = true
+        }
+    }
+
+    private fun onText(text: String) {
+        append(text)
+
+        if (collectLinkText) {
+            linkText.append(text)
+        }
+    }
+
+    private fun onElementStart(element: OpenElement) {
+        val name = element.name
+        when {
+            name == "li" -> {
+                startNewLine()
+                append("* ")
+            }
+            name == "a" && element.href != null -> {
+                collectLinkText = true
+                linkText.clear()
+            }
+            name in BLOCK_ELEMENTS -> startNewLine()
+        }
+    }
+
+    private fun onElementEnd(element: OpenElement) {
+        val name = element.name
+        when {
+            name == "li" -> append("\n")
+            name == "br" -> append("\n")
+            name in BLOCK_ELEMENTS -> {
+                if (element.hasText) {
+                    addEmptyLine()
+                }
+            }
+            name == "a" && element.href != null -> {
+                collectLinkText = false
+
+                val href: String = element.href
+                if (href.isAbsoluteUrl() && linkText.toString() != href) {
+                    append(" <$href>")
+                }
+            }
+        }
+    }
+
+    private fun append(text: String) {
+        if (text == " " && (output.isEmpty() || output.last() == ' ' || output.last() == '\n')) {
+            return
+        }
+
+        output.append(text)
+        if (output.length >= maxLength) {
+            isDone = true
+        }
+    }
+
+    private fun startNewLine() {
+        if (output.isEmpty() || output.last() == '\n') {
+            return
+        }
+
+        append("\n")
+    }
+
+    private fun addEmptyLine() {
+        if (output.isEmpty() || output.endsWith("\n\n")) {
+            return
+        }
+
+        startNewLine()
+        append("\n")
+    }
+
+    private fun buildResult(): String {
+        var endIndex = minOf(output.length, maxLength)
+        while (endIndex > 0 && output[endIndex - 1] == '\n') {
+            endIndex--
+        }
+
+        return output.substring(0, endIndex)
+    }
+
+    private fun findTagNameEnd(startIndex: Int): Int {
+        var position = startIndex
+        while (position < html.length && html[position].let { !it.isHtmlWhitespace() && it != '/' && it != '>' }) {
+            position++
+        }
+        return position
+    }
+
+    private fun skipWhitespace(startIndex: Int): Int {
+        var position = startIndex
+        while (position < html.length && html[position].isHtmlWhitespace()) {
+            position++
+        }
+        return position
+    }
+
+    private fun decodeEntities(text: String, inAttribute: Boolean): String {
+        return if (text.indexOf('&') == -1) text else Parser.unescapeEntities(text, inAttribute)
+    }
+
+    /**
+     * Collapses whitespace the same way Jsoup's `TextNode.text()` does.
+     */
+    private fun normalizeWhitespace(text: String): String {
+        val result = StringBuilder(text.length)
+        var lastWasWhitespace = false
+        for (character in text) {
+            if (character.isHtmlWhitespace() || character == NBSP) {
+                if (!lastWasWhitespace) {
+                    result.append(' ')
+                    lastWasWhitespace = true
+                }
+            } else if (character != ZERO_WIDTH_SPACE && character != SOFT_HYPHEN) {
+                result.append(character)
+                lastWasWhitespace = false
+            }
+        }
+
+        return result.toString()
+    }
+
+    private fun String.isAbsoluteUrl(): Boolean {
+        return ABSOLUTE_URL_REGEX.containsMatchIn(filterNot { it < ' ' })
+    }
+
+    private fun Char.isHtmlWhitespace(): Boolean {
+        return this == ' ' || this == '\t' || this == '\n' || this == '\u000C' || this == '\r'
+    }
+
+    private fun Char.isAsciiLetter() = this in 'a'..'z' || this in 'A'..'Z'
+
+    private class OpenElement(val name: String, val href: String?) {
+        var hasText = false
+    }
+
+    companion object {
+        private const val NBSP = '\u00A0'
+        private const val ZERO_WIDTH_SPACE = '\u200B'
+        private const val SOFT_HYPHEN = '\u00AD'
+
+        private val ABSOLUTE_URL_REGEX = Regex("^\\s*[a-zA-Z][a-zA-Z0-9+\\-.]*:")
+
+        private val HEADINGS = setOf("h1", "h2", "h3", "h4", "h5", "h6")
+
+        // Elements that Jsoup considers block elements
+        private val BLOCK_ELEMENTS = HEADINGS + setOf(
+            "html", "head", "body", "frameset", "script", "noscript", "style", "meta", "link", "title", "frame",
+            "noframes", "section", "nav", "aside", "hgroup", "header", "footer", "p", "ul", "ol", "pre", "div",
+            "blockquote", "hr", "address", "figure", "figcaption", "form", "fieldset", "ins", "del", "dl", "dt", "dd",
+            "li", "table", "caption", "thead", "tfoot", "tbody", "colgroup", "col", "tr", "th", "td", "video",
+            "audio", "canvas", "details", "menu", "plaintext", "template", "article", "main", "svg", "math", "center",
+            "dir", "applet", "marquee", "listing",
+        )
+
+        private val KNOWN_INLINE_ELEMENTS = setOf(
+            "a", "abbr", "b", "big", "cite", "code", "em", "font", "i", "nobr", "s", "small", "span", "strike",
+            "strong", "sub", "sup", "tt", "u",
+        )
+
+        private val VOID_ELEMENTS = setOf(
+            "area", "base", "basefont", "bgsound", "br", "col", "embed", "frame", "hr", "img", "input", "keygen",
+            "link", "meta", "param", "source", "track", "wbr",
+        )
+
+        private val HEAD_ELEMENTS = setOf(
+            "base", "basefont", "bgsound", "link", "meta", "noframes", "script", "style", "template", "title",
+        )
+
+        private val RAW_TEXT_ELEMENTS = setOf("script", "style", "xmp", "iframe", "noembed", "noframes")
+
+        private val RCDATA_ELEMENTS = setOf("title", "textarea")
+
+        private val CLOSES_PARAGRAPH = HEADINGS + setOf(
+            "address", "article", "aside", "blockquote", "center", "details", "dialog", "dir", "div", "dl", "fieldset",
+            "figcaption", "figure", "footer", "header", "hgroup", "main", "menu", "nav", "ol", "p", "search",
+            "section", "summary", "ul", "pre", "listing", "form", "li", "dd", "dt", "plaintext", "hr", "xmp",
+        )
+
+        private val BUTTON_SCOPE_BOUNDARIES = setOf(
+            "applet", "caption", "html", "table", "td", "th", "marquee", "object", "template", "button",
+        )
+
+        private val TABLE_SCOPE_BOUNDARIES = setOf("table", "thead", "tbody", "tfoot", "template", "html")
+
+        private val ROW_SCOPE_BOUNDARIES = setOf("tr", "table", "template", "html")
+
+        private val SPECIAL_ELEMENTS = HEADINGS + setOf(
+            "address", "applet", "article", "aside", "blockquote", "button", "caption", "center", "colgroup", "dd",
+            "details", "dir", "div", "dl", "dt", "fieldset", "figcaption", "figure", "footer", "form", "header",
+            "hgroup", "li", "listing", "main", "marquee", "menu", "nav", "noscript", "object", "ol", "p", "plaintext",
+            "pre", "search", "section", "select", "summary", "table", "tbody", "td", "template", "textarea", "tfoot",
+            "th", "thead", "tr", "ul",
+        )
+
+        private val LIST_ITEM_SCOPE_EXCEPTIONS = setOf("address", "div", "p")
+
+        fun toPlainText(html: String, maxLength: Int = Int.MAX_VALUE): String {
+            return StreamingHtmlToPlainText(html, maxLength).convert()
+        }
+    }
+}
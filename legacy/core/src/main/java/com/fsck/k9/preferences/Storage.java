@@ -1,32 +1,63 @@
 package com.fsck.k9.preferences;
 
 
+import java.util.ArrayList;
+import java.util.Collection;
 import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
 import java.util.Map;
+import java.util.Set;
+import java.util.regex.Pattern;
 
 import timber.log.Timber;
 
 public class Storage {
-    private final Map<String, String> values;
+    private static final Pattern ACCOUNT_KEY_PATTERN =
+            Pattern.compile("[0-9a-fA-F]{8}-[0-9a-fA-F]{4}-[0-9a-fA-F]{4}-[0-9a-fA-F]{4}-[0-9a-fA-F]{12}\\.");
+    private static final int ACCOUNT_UUID_LENGTH = 36;
+
+    private Map<String, String> values;
+    private StorageValuesLoader valuesLoader;
+    private final Set<String> loadedAccountUuids = new HashSet<>();
 
     public Storage(Map<String, String> values) {
         this.values = Collections.unmodifiableMap(values);
     }
 
-    public boolean isEmpty() {
+    /**
+     * Creates a {@link Storage} instance that only contains the global values up front.
+     *
+     * <p>The values belonging to an account (keys of the form {@code <accountUuid>.<name>}) are loaded using
+     * {@code valuesLoader} when one of them is accessed for the first time.</p>
+     *
+     * <p>{@link com.fsck.k9.Preferences#loadAccounts()} loads the values of all accounts at once. So this only avoids
+     * loading account values for code that runs before the accounts are loaded and only reads global values.</p>
+     */
+    public Storage(Map<String, String> globalValues, StorageValuesLoader valuesLoader) {
+        this.values = new HashMap<>(globalValues);
+        this.valuesLoader = valuesLoader;
+    }
+
+    public synchronized boolean isEmpty() {
+        if (valuesLoader != null && values.isEmpty()) {
+            loadAllValues();
+        }
         return values.isEmpty();
     }
 
     public boolean contains(String key) {
-        return values.containsKey(key);
+        return getValue(key) != null;
     }
 
-    public Map<String, String> getAll() {
+    public synchronized Map<String, String> getAll() {
+        loadAllValues();
         return values;
     }
 
     public boolean getBoolean(String key, boolean defValue) {
-        String val = values.get(key);
+        String val = getValue(key);
         if (val == null) {
             return defValue;
         }
@@ -34,7 +65,7 @@ public class Storage {
     }
 
     public int getInt(String key, int defValue) {
-        String val = values.get(key);
+        String val = getValue(key);
         if (val == null) {
             return defValue;
         }
@@ -47,7 +78,7 @@ public class Storage {
     }
 
     public long getLong(String key, long defValue) {
-        String val = values.get(key);
+        String val = getValue(key);
         if (val == null) {
             return defValue;
         }
@@ -60,10 +91,59 @@ public class Storage {
     }
 
     public String getString(String key, String defValue) {
-        String val = values.get(key);
+        String val = getValue(key);
         if (val == null) {
             return defValue;
         }
         return val;
     }
+
+    /**
+     * Loads the values of all given accounts that haven't been loaded yet using a single call to the
+     * {@link StorageValuesLoader}.
+     */
+    public synchronized void loadAccountValues(Collection<String> accountUuids) {
+        if (valuesLoader == null) {
+            return;
+        }
+
+        List<String> accountUuidsToLoad = new ArrayList<>();
+        for (String accountUuid : accountUuids) {
+            if (loadedAccountUuids.add(accountUuid)) {
+                accountUuidsToLoad.add(accountUuid);
+            }
+        }
+
+        if (!accountUuidsToLoad.isEmpty()) {
+            values.putAll(valuesLoader.loadAccountValues(accountUuidsToLoad));
+        }
+    }
+
+    private synchronized String getValue(String key) {
+        if (valuesLoader != null) {
+            loadAccountValuesIfNecessary(key);
+        }
+        return values.get(key);
+    }
+
+    private void loadAccountValuesIfNecessary(String key) {
+        if (!ACCOUNT_KEY_PATTERN.matcher(key).lookingAt()) {
+            return;
+        }
+
+        String accountUuid = key.substring(0, ACCOUNT_UUID_LENGTH);
+        if (loadedAccountUuids.add(accountUuid)) {
+            values.putAll(valuesLoader.loadAccountValues(Collections.singletonList(accountUuid)));
+        }
+    }
+
+    private void loadAllValues() {
+        if (valuesLoader == null) {
+            return;
+        }
+
+        values = Collections.unmodifiableMap(valuesLoader.loadAllValues());
+        valuesLoader = null;
+        loadedAccountUuids.clear();
+    }
 }
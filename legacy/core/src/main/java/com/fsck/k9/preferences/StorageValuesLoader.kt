@@ -0,0 +1,16 @@
+package com.fsck.k9.preferences
+
+/**
+ * Loads values that [Storage] didn't read when it was created.
+ */
+interface StorageValuesLoader {
+    /**
+     * Returns all values whose key starts with `<accountUuid>.` for any of the given account UUIDs.
+     */
+    fun loadAccountValues(accountUuids: Collection<String>): Map<String, String>
+
+    /**
+     * Returns all stored values.
+     */
+    fun loadAllValues(): Map<String, String>
+}
@@ -4,8 +4,10 @@ package com.fsck.k9.search
 
 import app.k9mail.legacy.account.Account
 import app.k9mail.legacy.account.AccountManager
+import app.k9mail.legacy.search.ConditionsTreeNode
 import app.k9mail.legacy.search.LocalSearch
 import app.k9mail.legacy.search.SearchAccount
+import app.k9mail.legacy.search.api.SearchField
 
 val LocalSearch.isUnifiedInbox: Boolean
     get() = id == SearchAccount.UNIFIED_INBOX
@@ -33,3 +35,14 @@ fun LocalSearch.getAccounts(accountManager: AccountManager): List<Account> {
 fun LocalSearch.getAccountUuids(accountManager: AccountManager): List<String> {
     return getAccounts(accountManager).map { it.uuid }
 }
+
+private val FOLDER_SEARCH_FIELDS = setOf(SearchField.FOLDER, SearchField.INTEGRATE, SearchField.VISIBLE)
+
+/**
+ * Returns `true` if the conditions only restrict the set of folders, i.e. every message in a matching folder matches.
+ */
+fun ConditionsTreeNode?.onlyUsesFolderFields(): Boolean {
+    if (this == null) return true
+
+    return leafSet.all { node -> node.condition.field in FOLDER_SEARCH_FIELDS }
+}
@@ -11,11 +11,20 @@ import timber.log.Timber;
 
 public class SqlQueryBuilder {
     public static void buildWhereClause(ConditionsTreeNode node, StringBuilder query, List<String> selectionArgs) {
-        buildWhereClauseInternal(node, query, selectionArgs);
+        buildWhereClauseInternal(node, query, selectionArgs, true);
+    }
+
+    /**
+     * Same as {@link #buildWhereClause(ConditionsTreeNode, StringBuilder, List)}, but message contents conditions are
+     * replaced by a condition that is always true. Used when the full-text search is performed separately.
+     */
+    public static void buildWhereClauseWithoutFulltext(ConditionsTreeNode node, StringBuilder query,
+            List<String> selectionArgs) {
+        buildWhereClauseInternal(node, query, selectionArgs, false);
     }
 
     private static void buildWhereClauseInternal(ConditionsTreeNode node, StringBuilder query,
-        List<String> selectionArgs) {
+        List<String> selectionArgs, boolean includeFulltext) {
 
         if (node == null) {
             query.append("1");
@@ -24,23 +33,29 @@ public class SqlQueryBuilder {
 
         if (node.mLeft == null && node.mRight == null) {
             SearchCondition condition = node.mCondition;
-            if (condition.field == SearchField.MESSAGE_CONTENTS) {
+            if (condition.field == SearchField.MESSAGE_CONTENTS && !includeFulltext) {
+                query.append("1");
+            } else if (condition.field == SearchField.MESSAGE_CONTENTS) {
                 String fulltextQueryString = condition.value;
                 if (condition.attribute != SearchAttribute.CONTAINS) {
                     Timber.e("message contents can only be matched!");
                 }
-                query.append("messages.id IN (SELECT docid FROM messages_fulltext WHERE fulltext MATCH ?)");
+                // Messages that haven't been added to the full-text index yet are matched by a substring search
+                query.append("(messages.id IN (SELECT docid FROM messages_fulltext WHERE fulltext MATCH ?) OR " +
+                        "messages.id IN (SELECT message_id FROM messages_fulltext_queue " +
+                        "WHERE fulltext LIKE ? ESCAPE '\\'))");
                 selectionArgs.add(fulltextQueryString);
+                selectionArgs.add("%" + escapeLikePattern(fulltextQueryString) + "%");
             } else {
                 appendCondition(condition, query, selectionArgs);
             }
         } else {
             query.append("(");
-            buildWhereClauseInternal(node.mLeft, query, selectionArgs);
+            buildWhereClauseInternal(node.mLeft, query, selectionArgs, includeFulltext);
             query.append(") ");
             query.append(node.mValue.name());
             query.append(" (");
-            buildWhereClauseInternal(node.mRight, query, selectionArgs);
+            buildWhereClauseInternal(node.mRight, query, selectionArgs, includeFulltext);
             query.append(")");
         }
     }
@@ -223,6 +238,14 @@ public class SqlQueryBuilder {
         }
     }
 
+    /**
+     * Escapes {@code %}, {@code _} and the escape character itself so {@code text} can be used in a {@code LIKE}
+     * pattern with {@code ESCAPE '\'}.
+     */
+    public static String escapeLikePattern(String text) {
+        return text.replace("\\", "\\\\").replace("%", "\\%").replace("_", "\\_");
+    }
+
     public static String addPrefixToSelection(String[] columnNames, String prefix, String selection) {
         String result = selection;
         for (String columnName : columnNames) {
@@ -0,0 +1,82 @@
+package com.fsck.k9.controller
+
+import app.k9mail.core.android.testing.RobolectricTest
+import assertk.assertThat
+import assertk.assertions.containsExactly
+import assertk.assertions.isEqualTo
+import assertk.assertions.isTrue
+import java.util.Collections
+import java.util.concurrent.CountDownLatch
+import java.util.concurrent.TimeUnit
+import org.junit.After
+import org.junit.Test
+
+class CommandSchedulerTest : RobolectricTest() {
+    private val commandScheduler = CommandScheduler(2)
+
+    @After
+    fun tearDown() {
+        commandScheduler.stop(1000L)
+    }
+
+    @Test
+    fun `commands in the same lane should run in order with foreground commands first`() {
+        val executedCommands = Collections.synchronizedList(mutableListOf<String>())
+        val blockLane = CountDownLatch(1)
+        val done = CountDownLatch(4)
+        commandScheduler.schedule("account", "blocker", { blockLane.await() }, false)
+
+        for ((description, isForeground) in listOf(
+            "background1" to false,
+            "background2" to false,
+            "foreground1" to true,
+            "foreground2" to true,
+        )) {
+            commandScheduler.schedule("account", description, {
+                executedCommands.add(description)
+                done.countDown()
+            }, isForeground)
+        }
+        blockLane.countDown()
+
+        assertThat(done.await(5, TimeUnit.SECONDS)).isTrue()
+        assertThat(executedCommands).containsExactly("foreground1", "foreground2", "background1", "background2")
+    }
+
+    @Test
+    fun `blocked lane should not block other lanes`() {
+        val blockLane = CountDownLatch(1)
+        val otherLaneDone = CountDownLatch(1)
+        commandScheduler.schedule("account1", "blocker", { blockLane.await() }, false)
+
+        commandScheduler.schedule("account2", "command", { otherLaneDone.countDown() }, false)
+
+        assertThat(otherLaneDone.await(5, TimeUnit.SECONDS)).isTrue()
+        blockLane.countDown()
+    }
+
+    @Test
+    fun `lane stats should report queue depth`() {
+        val commandStarted = CountDownLatch(1)
+        val blockLane = CountDownLatch(1)
+        commandScheduler.schedule("account", "blocker", { commandStarted.countDown(); blockLane.await() }, false)
+        commandScheduler.schedule("account", "queued1", {}, false)
+        commandScheduler.schedule("account", "queued2", {}, false)
+        assertThat(commandStarted.await(5, TimeUnit.SECONDS)).isTrue()
+
+        val laneStats = commandScheduler.laneStats
+
+        assertThat(laneStats.map { it.laneId to it.queueDepth }).containsExactly("account" to 2)
+        blockLane.countDown()
+    }
+
+    @Test
+    fun `commands without lane should use global lane`() {
+        val done = CountDownLatch(1)
+
+        commandScheduler.schedule(null, "command", { done.countDown() }, false)
+
+        assertThat(done.await(5, TimeUnit.SECONDS)).isTrue()
+        assertThat(commandScheduler.laneStats.single().laneId).isEqualTo(CommandScheduler.GLOBAL_LANE_ID)
+    }
+}
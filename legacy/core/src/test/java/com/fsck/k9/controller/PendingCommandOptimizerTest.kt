@@ -0,0 +1,165 @@
+package com.fsck.k9.controller
+
+import assertk.Assert
+import assertk.all
+import assertk.assertThat
+import assertk.assertions.containsExactly
+import assertk.assertions.isEqualTo
+import assertk.assertions.isFalse
+import assertk.assertions.isInstanceOf
+import assertk.assertions.isNull
+import assertk.assertions.isSameInstanceAs
+import assertk.assertions.isTrue
+import assertk.assertions.prop
+import com.fsck.k9.controller.MessagingControllerCommands.PendingCommand
+import com.fsck.k9.controller.MessagingControllerCommands.PendingDelete
+import com.fsck.k9.controller.MessagingControllerCommands.PendingMoveAndMarkAsRead
+import com.fsck.k9.controller.MessagingControllerCommands.PendingMoveOrCopy
+import com.fsck.k9.controller.MessagingControllerCommands.PendingSetFlag
+import com.fsck.k9.controller.PendingCommandOptimizer.OptimizedCommand
+import com.fsck.k9.mail.Flag
+import org.junit.Test
+
+class PendingCommandOptimizerTest {
+    private val optimizer = PendingCommandOptimizer()
+
+    @Test
+    fun `single command should be returned unchanged`() {
+        val command = setFlag(FOLDER_ID, Flag.SEEN, true, "1", "2")
+
+        val result = optimizer.optimize(listOf(command))
+
+        assertThat(result).hasSourceCommands(listOf(command))
+        assertThat(result.single().command).isSameInstanceAs(command)
+    }
+
+    @Test
+    fun `adjacent commands for same folder and flag should be merged`() {
+        val first = setFlag(FOLDER_ID, Flag.SEEN, true, "1", "2")
+        val second = setFlag(FOLDER_ID, Flag.SEEN, true, "2", "3")
+
+        val result = optimizer.optimize(listOf(first, second))
+
+        assertThat(result).hasSourceCommands(listOf(first, second))
+        assertThat(result.single().command).isInstanceOf<PendingSetFlag>().all {
+            prop(PendingSetFlag::uids).containsExactly("1", "2", "3")
+        }
+    }
+
+    @Test
+    fun `commands should be merged across commands for a different flag or folder`() {
+        val first = setFlag(FOLDER_ID, Flag.SEEN, true, "1")
+        val otherFlag = setFlag(FOLDER_ID, Flag.FLAGGED, true, "1")
+        val otherFolder = setFlag(OTHER_FOLDER_ID, Flag.SEEN, true, "1")
+        val second = setFlag(FOLDER_ID, Flag.SEEN, true, "2")
+
+        val result = optimizer.optimize(listOf(first, otherFlag, otherFolder, second))
+
+        assertThat(result).hasSourceCommands(listOf(first, second), listOf(otherFlag), listOf(otherFolder))
+        assertThat(result.first().command).isInstanceOf<PendingSetFlag>().all {
+            prop(PendingSetFlag::uids).containsExactly("1", "2")
+        }
+    }
+
+    @Test
+    fun `commands should not be merged across other commands`() {
+        val first = setFlag(FOLDER_ID, Flag.SEEN, true, "1")
+        val delete = PendingDelete.create(FOLDER_ID, listOf("3"))
+        val second = setFlag(FOLDER_ID, Flag.SEEN, true, "2")
+
+        val result = optimizer.optimize(listOf(first, delete, second))
+
+        assertThat(result).hasSourceCommands(listOf(first), listOf(delete), listOf(second))
+    }
+
+    @Test
+    fun `setting and clearing a flag should cancel out`() {
+        val set = setFlag(FOLDER_ID, Flag.FLAGGED, true, "1")
+        val clear = setFlag(FOLDER_ID, Flag.FLAGGED, false, "1")
+
+        val result = optimizer.optimize(listOf(set, clear))
+
+        assertThat(result).hasSourceCommands(listOf(set, clear))
+        assertThat(result.single().command).isNull()
+    }
+
+    @Test
+    fun `partially overlapping set and clear should only keep remaining messages`() {
+        val set = setFlag(FOLDER_ID, Flag.FLAGGED, true, "1", "2")
+        val clear = setFlag(FOLDER_ID, Flag.FLAGGED, false, "2", "3")
+
+        val result = optimizer.optimize(listOf(set, clear))
+
+        assertThat(result).hasSourceCommands(listOf(set), listOf(clear))
+        assertThat(result[0].command).isInstanceOf<PendingSetFlag>().all {
+            prop(PendingSetFlag::newState).isTrue()
+            prop(PendingSetFlag::uids).containsExactly("1")
+        }
+        assertThat(result[1].command).isInstanceOf<PendingSetFlag>().all {
+            prop(PendingSetFlag::newState).isFalse()
+            prop(PendingSetFlag::uids).containsExactly("3")
+        }
+    }
+
+    @Test
+    fun `marking as read followed by move should be turned into move and mark as read`() {
+        val markAsRead = setFlag(FOLDER_ID, Flag.SEEN, true, "1", "2", "3")
+        val move = PendingMoveOrCopy.create(
+            FOLDER_ID,
+            OTHER_FOLDER_ID,
+            false,
+            mapOf("1" to "K9LOCAL:1", "2" to "K9LOCAL:2"),
+        )
+
+        val result = optimizer.optimize(listOf(markAsRead, move))
+
+        assertThat(result).hasSourceCommands(emptyList(), listOf(markAsRead, move))
+        assertThat(result[0].command).isInstanceOf<PendingSetFlag>().all {
+            prop(PendingSetFlag::uids).containsExactly("3")
+        }
+        assertThat(result[1].command).isInstanceOf<PendingMoveAndMarkAsRead>().all {
+            prop(PendingMoveAndMarkAsRead::srcFolderId).isEqualTo(FOLDER_ID)
+            prop(PendingMoveAndMarkAsRead::destFolderId).isEqualTo(OTHER_FOLDER_ID)
+            prop(PendingMoveAndMarkAsRead::newUidMap).isEqualTo(move.newUidMap)
+        }
+    }
+
+    @Test
+    fun `move should not be folded when not all moved messages were marked as read`() {
+        val markAsRead = setFlag(FOLDER_ID, Flag.SEEN, true, "1")
+        val move = PendingMoveOrCopy.create(
+            FOLDER_ID,
+            OTHER_FOLDER_ID,
+            false,
+            mapOf("1" to "K9LOCAL:1", "2" to "K9LOCAL:2"),
+        )
+
+        val result = optimizer.optimize(listOf(markAsRead, move))
+
+        assertThat(result).hasSourceCommands(listOf(markAsRead), listOf(move))
+        assertThat(result[1].command).isSameInstanceAs(move)
+    }
+
+    @Test
+    fun `copy should not be folded`() {
+        val markAsRead = setFlag(FOLDER_ID, Flag.SEEN, true, "1")
+        val copy = PendingMoveOrCopy.create(FOLDER_ID, OTHER_FOLDER_ID, true, mapOf("1" to "K9LOCAL:1"))
+
+        val result = optimizer.optimize(listOf(markAsRead, copy))
+
+        assertThat(result).hasSourceCommands(listOf(markAsRead), listOf(copy))
+    }
+
+    private fun setFlag(folderId: Long, flag: Flag, newState: Boolean, vararg uids: String): PendingSetFlag {
+        return PendingSetFlag.create(folderId, newState, flag, uids.toList())
+    }
+
+    private fun Assert<List<OptimizedCommand>>.hasSourceCommands(vararg sourceCommands: List<PendingCommand>) {
+        transform { result -> result.map { it.sourceCommands.toList() } }.containsExactly(*sourceCommands)
+    }
+
+    companion object {
+        private const val FOLDER_ID = 1L
+        private const val OTHER_FOLDER_ID = 2L
+    }
+}
@@ -7,6 +7,7 @@ import app.k9mail.legacy.mailstore.MessageStoreManager
 import assertk.assertFailure
 import assertk.assertThat
 import assertk.assertions.contains
+import assertk.assertions.containsExactlyInAnyOrder
 import assertk.assertions.hasMessage
 import assertk.assertions.isEqualTo
 import assertk.assertions.isInstanceOf
@@ -15,6 +16,7 @@ import com.fsck.k9.K9RobolectricTest
 import com.fsck.k9.Preferences
 import com.fsck.k9.backend.api.BackendFolder
 import com.fsck.k9.backend.api.FolderInfo
+import com.fsck.k9.backend.api.LocalMessageState
 import com.fsck.k9.backend.api.updateFolders
 import com.fsck.k9.mail.Address
 import com.fsck.k9.mail.Flag
@@ -74,6 +76,27 @@ class K9BackendFolderTest : K9RobolectricTest() {
         assertThat(messageFlags).isEqualTo(flags)
     }
 
+    @Test
+    fun getMessageStates() {
+        createMessageInBackendFolder(MESSAGE_SERVER_ID, setOf(Flag.SEEN))
+
+        val messageStates = backendFolder.getMessageStates(listOf(MESSAGE_SERVER_ID, "unknown"))
+
+        assertThat(messageStates).isEqualTo(
+            mapOf(MESSAGE_SERVER_ID to LocalMessageState(setOf(Flag.SEEN, Flag.X_DOWNLOADED_FULL))),
+        )
+    }
+
+    @Test
+    fun setMessageFlags() {
+        createMessageInBackendFolder(MESSAGE_SERVER_ID, setOf(Flag.SEEN))
+
+        backendFolder.setMessageFlags(mapOf(MESSAGE_SERVER_ID to mapOf(Flag.SEEN to false, Flag.FLAGGED to true)))
+
+        assertThat(backendFolder.getMessageFlags(MESSAGE_SERVER_ID))
+            .isEqualTo(setOf(Flag.FLAGGED, Flag.X_DOWNLOADED_FULL))
+    }
+
     @Test
     fun saveCompleteMessage_withoutServerId_shouldThrow() {
         val message = createMessage(messageServerId = null)
@@ -94,6 +117,29 @@ class K9BackendFolderTest : K9RobolectricTest() {
             .hasMessage("Message requires a server ID to be set")
     }
 
+    @Test
+    fun saveMessages() {
+        val messages = listOf(
+            createMessage("uid1", setOf(Flag.SEEN)),
+            createMessage("uid2"),
+        )
+
+        backendFolder.saveMessages(messages, MessageDownloadState.FULL)
+
+        assertThat(backendFolder.getMessageServerIds()).containsExactlyInAnyOrder("uid1", "uid2")
+        assertThat(backendFolder.getMessageFlags("uid1")).isEqualTo(setOf(Flag.SEEN, Flag.X_DOWNLOADED_FULL))
+    }
+
+    @Test
+    fun saveMessages_withoutServerId_shouldThrow() {
+        val messages = listOf(createMessage("uid1"), createMessage(messageServerId = null))
+
+        assertFailure {
+            backendFolder.saveMessages(messages, MessageDownloadState.FULL)
+        }.isInstanceOf<IllegalStateException>()
+            .hasMessage("Message requires a server ID to be set")
+    }
+
     fun createAccount(): Account {
         // FIXME: This is a hack to get Preferences into a state where it's safe to call newAccount()
         preferences.clearAccounts()
@@ -0,0 +1,39 @@
+package com.fsck.k9.mailstore
+
+import assertk.assertThat
+import assertk.assertions.isEqualTo
+import java.util.concurrent.TimeUnit
+import org.junit.Test
+
+class LockWaitHistogramTest {
+    private val histogram = LockWaitHistogram()
+
+    @Test
+    fun `empty histogram`() {
+        assertThat(histogram.getCounts().sum()).isEqualTo(0L)
+        assertThat(histogram.toString()).isEqualTo("empty")
+    }
+
+    @Test
+    fun `wait times should be counted in power of two buckets`() {
+        histogram.record(TimeUnit.MICROSECONDS.toNanos(500))
+        histogram.record(TimeUnit.MILLISECONDS.toNanos(1))
+        histogram.record(TimeUnit.MILLISECONDS.toNanos(3))
+        histogram.record(TimeUnit.MILLISECONDS.toNanos(3))
+
+        val counts = histogram.getCounts()
+        assertThat(counts[0]).isEqualTo(1L)
+        assertThat(counts[1]).isEqualTo(1L)
+        assertThat(counts[2]).isEqualTo(2L)
+        assertThat(histogram.toString()).isEqualTo("<1ms: 1, <2ms: 1, <4ms: 2")
+    }
+
+    @Test
+    fun `very long wait times should be counted in last bucket`() {
+        histogram.record(TimeUnit.SECONDS.toNanos(4))
+        histogram.record(TimeUnit.MINUTES.toNanos(10))
+
+        assertThat(histogram.getCounts()[LockWaitHistogram.BUCKET_COUNT - 1]).isEqualTo(2L)
+        assertThat(histogram.toString()).isEqualTo(">=4096ms: 2")
+    }
+}
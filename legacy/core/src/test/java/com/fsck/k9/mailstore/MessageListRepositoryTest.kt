@@ -20,6 +20,7 @@ import org.koin.core.context.startKoin
 import org.koin.core.context.stopKoin
 import org.koin.dsl.module
 import org.mockito.kotlin.any
+import org.mockito.kotlin.anyOrNull
 import org.mockito.kotlin.doAnswer
 import org.mockito.kotlin.doReturn
 import org.mockito.kotlin.eq
@@ -360,8 +361,8 @@ class MessageListRepositoryTest {
 
     private fun addMessages(vararg messages: MessageData) {
         messageStore.stub {
-            on { getMessages<Any>(eq(SELECTION), eq(SELECTION_ARGS), eq(SORT_ORDER), any()) } doAnswer {
-                val mapper: MessageMapper<Any?> = it.getArgument(3)
+            on { getMessages<Any>(eq(SELECTION), eq(SELECTION_ARGS), eq(SORT_ORDER), anyOrNull(), any()) } doAnswer {
+                val mapper: MessageMapper<Any?> = it.getArgument(4)
 
                 runMessageMapper(messages, mapper)
             }
@@ -370,8 +371,10 @@ class MessageListRepositoryTest {
 
     private fun addThreadedMessages(vararg messages: MessageData) {
         messageStore.stub {
-            on { getThreadedMessages<Any>(eq(SELECTION), eq(SELECTION_ARGS), eq(SORT_ORDER), any()) } doAnswer {
-                val mapper: MessageMapper<Any?> = it.getArgument(3)
+            on {
+                getThreadedMessages<Any>(eq(SELECTION), eq(SELECTION_ARGS), eq(SORT_ORDER), anyOrNull(), any())
+            } doAnswer {
+                val mapper: MessageMapper<Any?> = it.getArgument(4)
 
                 runMessageMapper(messages, mapper)
             }
@@ -402,6 +405,7 @@ class MessageListRepositoryTest {
                     override val messageDate = 0L
                     override val internalDate = 0L
                     override val subject = "irrelevant"
+                    override val senderSortKey = null
                     override val preview = PreviewResult.error()
                     override val isRead = message.isRead
                     override val isStarred = message.isStarred
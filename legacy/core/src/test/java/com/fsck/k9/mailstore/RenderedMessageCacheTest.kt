@@ -0,0 +1,137 @@
+package com.fsck.k9.mailstore
+
+import assertk.assertThat
+import assertk.assertions.isEqualTo
+import assertk.assertions.isNotNull
+import assertk.assertions.isNull
+import assertk.assertions.isSameInstanceAs
+import com.fsck.k9.mailstore.MessageViewInfoExtractor.ViewableExtractedText
+import com.fsck.k9.message.html.HtmlSettings
+import java.io.File
+import java.nio.file.Files
+import org.junit.After
+import org.junit.Test
+
+private const val ACCOUNT_UUID = "00000000-0000-4000-0000-000000000000"
+private const val OTHER_ACCOUNT_UUID = "00000000-0000-4000-0000-000000000001"
+private const val CACHE_VERSION = 23L
+
+class RenderedMessageCacheTest {
+    private val cacheDirectory = File(Files.createTempDirectory("RenderedMessageCacheTest").toFile(), "cache")
+    private val htmlSettings = HtmlSettings(useDarkMode = false, useFixedWidthFont = false)
+    private var locale = "en-US"
+
+    @After
+    fun tearDown() {
+        cacheDirectory.parentFile!!.deleteRecursively()
+    }
+
+    @Test
+    fun `get() should return entry from memory`() {
+        val cache = createCache()
+        val value = ViewableExtractedText("text", "<p>html</p>")
+        cache.put(createKey(), value)
+
+        val result = cache.get(createKey())
+
+        assertThat(result).isSameInstanceAs(value)
+    }
+
+    @Test
+    fun `get() should return entry written to disk by another instance`() {
+        createCache().put(createKey(), ViewableExtractedText("text", "<p>Grüße</p>"))
+
+        val result = createCache().get(createKey())
+
+        assertThat(result).isNotNull().transform { it.text to it.html }.isEqualTo("text" to "<p>Grüße</p>")
+    }
+
+    @Test
+    fun `get() should not return entry for different part tree version or html settings`() {
+        val cache = createCache()
+        cache.put(createKey(), ViewableExtractedText("text", "html"))
+
+        assertThat(cache.get(createKey(partTreeVersion = 2))).isNull()
+        assertThat(cache.get(createKey().copy(htmlSettings = htmlSettings.copy(useDarkMode = true)))).isNull()
+    }
+
+    @Test
+    fun `get() should not return entry created for a different locale`() {
+        val cache = createCache()
+        cache.put(createKey(), ViewableExtractedText("text", "html"))
+
+        locale = "de-DE"
+
+        assertThat(cache.get(createKey())).isNull()
+        assertThat(createCache().get(createKey())).isNull()
+    }
+
+    @Test
+    fun `entries on disk should be discarded when cache version changes`() {
+        createCache().put(createKey(), ViewableExtractedText("text", "html"))
+
+        val result = createCache(cacheVersion = CACHE_VERSION + 1).get(createKey())
+
+        assertThat(result).isNull()
+    }
+
+    @Test
+    fun `least recently used entries should be evicted from memory`() {
+        val cache = createCache(maxMemorySize = 10, maxDiskSize = 0)
+        cache.put(createKey(messageId = 1), ViewableExtractedText("12345", ""))
+        cache.put(createKey(messageId = 2), ViewableExtractedText("12345", ""))
+        cache.get(createKey(messageId = 1))
+        cache.put(createKey(messageId = 3), ViewableExtractedText("12345", ""))
+
+        assertThat(cache.get(createKey(messageId = 1))).isNotNull()
+        assertThat(cache.get(createKey(messageId = 2))).isNull()
+        assertThat(cache.get(createKey(messageId = 3))).isNotNull()
+    }
+
+    @Test
+    fun `oldest files should be deleted when disk cache exceeds maximum size`() {
+        val cache = createCache(maxDiskSize = 100)
+        cache.put(createKey(messageId = 1), ViewableExtractedText("a".repeat(60), ""))
+        cacheDirectory.listFiles()!!.forEach { file -> file.setLastModified(1000L) }
+        cache.put(createKey(messageId = 2), ViewableExtractedText("b".repeat(60), ""))
+
+        val newCache = createCache()
+        assertThat(newCache.get(createKey(messageId = 1))).isNull()
+        assertThat(newCache.get(createKey(messageId = 2))).isNotNull()
+    }
+
+    @Test
+    fun `removeAccount() should only remove entries of the given account`() {
+        val cache = createCache()
+        cache.put(createKey(), ViewableExtractedText("text", "html"))
+        cache.put(createKey(accountUuid = OTHER_ACCOUNT_UUID), ViewableExtractedText("other", "html"))
+
+        cache.removeAccount(ACCOUNT_UUID)
+
+        assertThat(cache.get(createKey())).isNull()
+        assertThat(createCache().get(createKey())).isNull()
+        assertThat(createCache().get(createKey(accountUuid = OTHER_ACCOUNT_UUID))).isNotNull()
+    }
+
+    private fun createCache(
+        cacheVersion: Long = CACHE_VERSION,
+        maxMemorySize: Int = 1024,
+        maxDiskSize: Long = 1024,
+    ): RenderedMessageCache {
+        return RenderedMessageCache(
+            cacheDirectory,
+            cacheVersion,
+            localeProvider = { locale },
+            maxMemorySize,
+            maxDiskSize,
+        )
+    }
+
+    private fun createKey(
+        accountUuid: String = ACCOUNT_UUID,
+        messageId: Long = 1,
+        partTreeVersion: Long = 1,
+    ): RenderedMessageCache.Key {
+        return RenderedMessageCache.Key(accountUuid, messageId, partTreeVersion, htmlSettings)
+    }
+}
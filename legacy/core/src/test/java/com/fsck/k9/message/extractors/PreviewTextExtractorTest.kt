@@ -144,6 +144,26 @@ class PreviewTextExtractorTest {
         assertThat(preview).isEqualTo("some url: ...")
     }
 
+    @Test
+    fun extractPreview_withLongTextContainingUrls() {
+        val text = "word https://domain.example/path?query=value\r\n".repeat(100)
+        val part = MessageCreationHelper.createTextPart("text/plain", text)
+
+        val preview = previewTextExtractor.extractPreview(part)
+
+        assertThat(preview).isEqualTo("word ... ".repeat(100).substring(0, 511) + "…")
+    }
+
+    @Test
+    fun extractPreview_shouldTreatCarriageReturnAsLineBreak() {
+        val text = "line 1\r\n----\rline 2\r\nline 3"
+        val part = MessageCreationHelper.createTextPart("text/plain", text)
+
+        val preview = previewTextExtractor.extractPreview(part)
+
+        assertThat(preview).isEqualTo("line 1 line 2 line 3")
+    }
+
     @Test
     fun extractPreview_shouldCollapseAndTrimWhitespace() {
         val text = " whitespace     is\t\tfun  "
@@ -506,107 +506,4 @@ class HtmlConverterTest {
 
         assertThat(result).isEqualTo("<div dir=\"auto\">some words here\u00A0\u00A0 <br></div>")
     }
-
-    @Test
-    fun `htmlToText() should convert BR tags to line breaks`() {
-        val input =
-            """
-            One<br>
-            Two<br>
-            <br>
-            Three
-            """.trimIndent().removeLineBreaks()
-
-        val result = HtmlConverter.htmlToText(input)
-
-        assertThat(result).isEqualTo(
-            """
-            One
-            Two
-
-            Three
-            """.trimIndent(),
-        )
-    }
-
-    @Test
-    fun `htmlToText() should insert line breaks after block elements`() {
-        val input =
-            """
-            <p>One</p>
-            <p>
-            Two<br>
-            Three
-            </p>
-            <div>Four</div>
-            """.trimIndent().removeLineBreaks()
-
-        val result = HtmlConverter.htmlToText(input)
-
-        assertThat(result).isEqualTo(
-            """
-            One
-
-            Two
-            Three
-            
-            Four
-            """.trimIndent(),
-        )
-    }
-
-    @Test
-    fun `htmlToText() should include link URIs`() {
-        val input = "<a href='https://domain.example/'>Link text</a>"
-
-        val result = HtmlConverter.htmlToText(input)
-
-        assertThat(result).isEqualTo("Link text <https://domain.example/>")
-    }
-
-    @Test
-    fun `htmlToText() should not duplicate URI when link URI and text are the same`() {
-        val input = "Text <a href='https://domain.example/path/'>https://domain.example/path/</a> more text"
-
-        val result = HtmlConverter.htmlToText(input)
-
-        assertThat(result).isEqualTo("Text https://domain.example/path/ more text")
-    }
-
-    @Test
-    fun `htmlToText() should not duplicate URI when the link text is just the link URI with some formatting`() {
-        val input = "<a href='https://domain.example/path/'>https://<b>domain.example</b>/path/</a>"
-
-        val result = HtmlConverter.htmlToText(input)
-
-        assertThat(result).isEqualTo("https://domain.example/path/")
-    }
-
-    @Test
-    fun `htmlToText() should strip line breaks`() {
-        val input =
-            """
-            One
-            Two
-            Three
-            """.trimIndent()
-
-        val result = HtmlConverter.htmlToText(input)
-
-        assertThat(result).isEqualTo("One Two Three")
-    }
-
-    @Test
-    fun `htmlToText() with long text line should not add line breaks to output`() {
-        val input =
-            """
-            |Lorem ipsum dolor sit amet, consectetur adipiscing elit. Nullam sit amet finibus felis,
-            | viverra ullamcorper justo. Suspendisse potenti. Etiam erat sem, interdum a condimentum quis,
-            | fringilla quis orci.
-            """.trimMargin().removeLineBreaks()
-
-        val result = HtmlConverter.htmlToText(input)
-
-        assertThat(result).isEqualTo(input)
-    }
 }
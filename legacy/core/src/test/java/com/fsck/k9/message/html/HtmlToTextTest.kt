@@ -0,0 +1,131 @@
+package com.fsck.k9.message.html
+
+import assertk.assertThat
+import assertk.assertions.isEqualTo
+import com.fsck.k9.mail.removeLineBreaks
+import org.junit.Test
+import org.junit.runner.RunWith
+import org.junit.runners.Parameterized
+
+/**
+ * Checks that [HtmlConverter.htmlToText] and [HtmlConverter.htmlToTextStreaming] produce the expected output.
+ */
+@RunWith(Parameterized::class)
+class HtmlToTextTest(
+    @Suppress("unused") private val converterName: String,
+    private val htmlToText: (String) -> String,
+) {
+    companion object {
+        @JvmStatic
+        @Parameterized.Parameters(name = "{0}")
+        fun data(): Collection<Array<Any>> {
+            return listOf(
+                arrayOf("htmlToText()", { html: String -> HtmlConverter.htmlToText(html) }),
+                arrayOf("htmlToTextStreaming()", { html: String -> HtmlConverter.htmlToTextStreaming(html) }),
+            )
+        }
+    }
+
+    @Test
+    fun `should convert BR tags to line breaks`() {
+        val input =
+            """
+            One<br>
+            Two<br>
+            <br>
+            Three
+            """.trimIndent().removeLineBreaks()
+
+        val result = htmlToText(input)
+
+        assertThat(result).isEqualTo(
+            """
+            One
+            Two
+
+            Three
+            """.trimIndent(),
+        )
+    }
+
+    @Test
+    fun `should insert line breaks after block elements`() {
+        val input =
+            """
+            <p>One</p>
+            <p>
+            Two<br>
+            Three
+            </p>
+            <div>Four</div>
+            """.trimIndent().removeLineBreaks()
+
+        val result = htmlToText(input)
+
+        assertThat(result).isEqualTo(
+            """
+            One
+
+            Two
+            Three
+            
+            Four
+            """.trimIndent(),
+        )
+    }
+
+    @Test
+    fun `should include link URIs`() {
+        val input = "<a href='https://domain.example/'>Link text</a>"
+
+        val result = htmlToText(input)
+
+        assertThat(result).isEqualTo("Link text <https://domain.example/>")
+    }
+
+    @Test
+    fun `should not duplicate URI when link URI and text are the same`() {
+        val input = "Text <a href='https://domain.example/path/'>https://domain.example/path/</a> more text"
+
+        val result = htmlToText(input)
+
+        assertThat(result).isEqualTo("Text https://domain.example/path/ more text")
+    }
+
+    @Test
+    fun `should not duplicate URI when the link text is just the link URI with some formatting`() {
+        val input = "<a href='https://domain.example/path/'>https://<b>domain.example</b>/path/</a>"
+
+        val result = htmlToText(input)
+
+        assertThat(result).isEqualTo("https://domain.example/path/")
+    }
+
+    @Test
+    fun `should strip line breaks`() {
+        val input =
+            """
+            One
+            Two
+            Three
+            """.trimIndent()
+
+        val result = htmlToText(input)
+
+        assertThat(result).isEqualTo("One Two Three")
+    }
+
+    @Test
+    fun `with long text line should not add line breaks to output`() {
+        val input =
+            """
+            |Lorem ipsum dolor sit amet, consectetur adipiscing elit. Nullam sit amet finibus felis,
+            | viverra ullamcorper justo. Suspendisse potenti. Etiam erat sem, interdum a condimentum quis,
+            | fringilla quis orci.
+            """.trimMargin().removeLineBreaks()
+
+        val result = htmlToText(input)
+
+        assertThat(result).isEqualTo(input)
+    }
+}
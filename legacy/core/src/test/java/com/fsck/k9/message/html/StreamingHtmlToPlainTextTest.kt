@@ -0,0 +1,55 @@
+package com.fsck.k9.message.html
+
+import assertk.assertThat
+import assertk.assertions.isEqualTo
+import org.junit.Test
+
+class StreamingHtmlToPlainTextTest {
+    @Test
+    fun `output should match htmlToText()`() {
+        val corpus = listOf(
+            "One<br>Two<br><br>Three",
+            "<p>One</p><p>Two<br>Three</p><div>Four</div>",
+            "<a href='https://domain.example/'>Link text</a>",
+            "Text <a href='https://domain.example/path/'>https://domain.example/path/</a> more text",
+            "<a href='https://domain.example/path/'>https://<b>domain.example</b>/path/</a>",
+            "One\nTwo\nThree",
+            "<html><head><title>Title</title><style>p { color: red; }</style></head>" +
+                "<body><p>Hello &amp; welcome</p></body></html>",
+            "<ul><li>One<li>Two</ul>",
+            "<ol>\n  <li>One</li>\n  <li>Two</li>\n</ol>\nAfter",
+            "<table><tr><td>A</td><td>B</td></tr><tr><td>C</td></tr></table>",
+            "<div>Line<br/>Next</div>",
+            "<p>See <a href=\"page.html\">relative</a> and <a href=\"mailto:user@domain.example\">mail</a></p>",
+            "One<!-- comment -->Two",
+            "<p>First<p>Second",
+            "<script>var x = '<p>';</script>Text",
+            "A&nbsp;&nbsp;B &lt;tag&gt; &quot;quoted&quot; &#8211; &#x263A;",
+            "<h1>Title</h1>Body text",
+            "<blockquote>Quote</blockquote><div><span>inline</span> text</div>",
+            "<!DOCTYPE html><html><body><div>\n\n   <p>  spaced   out  </p>\n</div></body></html>",
+            "a < b and c > d",
+            "<p>Unclosed <b>bold <i>italic</p>Rest",
+            "",
+        )
+
+        for (html in corpus) {
+            assertThat(HtmlConverter.htmlToTextStreaming(html), name = html).isEqualTo(HtmlConverter.htmlToText(html))
+        }
+    }
+
+    @Test
+    fun `conversion should stop at maximum length`() {
+        val html = "<p>0123456789</p><p>abcdef</p>"
+
+        assertThat(HtmlConverter.htmlToTextStreaming(html, maxLength = 12)).isEqualTo("0123456789")
+        assertThat(HtmlConverter.htmlToTextStreaming(html, maxLength = 15)).isEqualTo("0123456789\n\nabc")
+    }
+
+    @Test
+    fun `content of unterminated script element should be skipped`() {
+        val html = "<p>Text</p><script>document.write('<p>never')"
+
+        assertThat(HtmlConverter.htmlToTextStreaming(html)).isEqualTo("Text")
+    }
+}
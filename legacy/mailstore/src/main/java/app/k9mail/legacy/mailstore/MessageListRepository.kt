@@ -11,6 +11,7 @@ interface MessageListRepository {
         selection: String,
         selectionArgs: Array<String>,
         sortOrder: String,
+        limit: Int? = null,
         messageMapper: MessageMapper<T>,
     ): List<T>
 
@@ -19,6 +20,26 @@ interface MessageListRepository {
         selection: String,
         selectionArgs: Array<String>,
         sortOrder: String,
+        limit: Int? = null,
+        messageMapper: MessageMapper<T>,
+    ): List<T>
+
+    fun <T> getThreadedMessagesInFolders(
+        accountUuid: String,
+        folderSelection: String,
+        selectionArgs: Array<String>,
+        sortOrder: String,
+        limit: Int? = null,
+        messageMapper: MessageMapper<T>,
+    ): List<T>
+
+    fun <T> searchMessages(
+        accountUuid: String,
+        fulltextQuery: String,
+        selection: String,
+        selectionArgs: Array<String>,
+        offset: Int,
+        limit: Int,
         messageMapper: MessageMapper<T>,
     ): List<T>
 
@@ -17,6 +17,7 @@ interface MessageDetailsAccessor {
     val messageDate: Long
     val internalDate: Long
     val subject: String?
+    val senderSortKey: String?
     val preview: PreviewResult
     val isRead: Boolean
     val isStarred: Boolean
@@ -20,6 +20,13 @@ interface MessageStore {
      */
     fun saveRemoteMessage(folderId: Long, messageServerId: String, messageData: SaveMessageData)
 
+    /**
+     * Save multiple remote messages in this store using a single database transaction.
+     *
+     * @param messages A map of message server IDs to the data of the messages to save.
+     */
+    fun saveRemoteMessages(folderId: Long, messages: Map<String, SaveMessageData>)
+
     /**
      * Save a local message in this store.
      *
@@ -79,6 +86,13 @@ interface MessageStore {
      */
     fun setMessageFlag(folderId: Long, messageServerId: String, flag: Flag, set: Boolean)
 
+    /**
+     * Set or remove flags on multiple messages using a single database transaction.
+     *
+     * @param flagChanges A mapping of message server IDs to the flags that should be set (`true`) or removed (`false`).
+     */
+    fun setMessageFlags(folderId: Long, flagChanges: Map<String, Map<Flag, Boolean>>)
+
     /**
      * Set whether a message should be considered as new.
      */
@@ -116,6 +130,14 @@ interface MessageStore {
      */
     fun getMessageFlags(folderId: Long, messageServerId: String): Set<Flag>
 
+    /**
+     * Get the flags associated with multiple messages.
+     *
+     * @return A mapping of message server IDs to the flags of the message. Messages that are not present in the store
+     *   are not included.
+     */
+    fun getMessageFlags(folderId: Long, messageServerIds: Collection<String>): Map<String, Set<Flag>>
+
     /**
      * Retrieve server IDs and dates for all remote messages in the given folder.
      */
@@ -123,21 +145,62 @@ interface MessageStore {
 
     /**
      * Retrieve list of messages.
+     *
+     * @param limit The maximum number of rows to return or `null` to return all matching rows.
      */
     fun <T> getMessages(
         selection: String,
         selectionArgs: Array<String>,
         sortOrder: String,
+        limit: Int? = null,
         messageMapper: MessageMapper<out T?>,
     ): List<T>
 
     /**
      * Retrieve threaded list of messages.
+     *
+     * @param limit The maximum number of rows to return or `null` to return all matching rows.
      */
     fun <T> getThreadedMessages(
         selection: String,
         selectionArgs: Array<String>,
         sortOrder: String,
+        limit: Int? = null,
+        messageMapper: MessageMapper<out T?>,
+    ): List<T>
+
+    /**
+     * Retrieve threaded list of messages in the folders matching [folderSelection].
+     *
+     * Unlike [getThreadedMessages] this uses precomputed per-folder thread summaries. [folderSelection] may only
+     * reference the `root` and `folder_id` columns of a thread summary and the columns of the `folders` table.
+     *
+     * @param limit The maximum number of rows to return or `null` to return all matching rows.
+     */
+    fun <T> getThreadedMessagesInFolders(
+        folderSelection: String,
+        selectionArgs: Array<String>,
+        sortOrder: String,
+        limit: Int? = null,
+        messageMapper: MessageMapper<out T?>,
+    ): List<T>
+
+    /**
+     * Retrieve a page of messages whose text matches [fulltextQuery], ordered by relevance.
+     *
+     * The preview of the returned messages is replaced by a snippet of the text surrounding the matches. Matching terms
+     * in the snippet are surrounded by [SearchSnippet.MATCH_START] and [SearchSnippet.MATCH_END].
+     *
+     * @param selection Additional conditions the messages have to match. Uses the same columns as [getMessages].
+     * @param offset The number of top-ranked messages to skip.
+     * @param limit The maximum number of messages to return.
+     */
+    fun <T> searchMessages(
+        fulltextQuery: String,
+        selection: String,
+        selectionArgs: Array<String>,
+        offset: Int,
+        limit: Int,
         messageMapper: MessageMapper<out T?>,
     ): List<T>
 
@@ -359,8 +422,18 @@ interface MessageStore {
      */
     fun setFolderExtraNumber(folderId: Long, name: String, value: Long)
 
+    /**
+     * Retrieve the number of saved messages whose text hasn't been added to the full-text search index yet.
+     *
+     * Messages are indexed in the background after they have been saved. Until then searching message contents falls
+     * back to a substring match on the queued text.
+     */
+    fun getUnindexedMessageCount(): Int
+
     /**
      * Optimize the message store with the goal of using the minimal amount of disk space.
+     *
+     * This also checks the cached unread and starred message counts of all folders and repairs them if necessary.
      */
     fun compact()
 }
@@ -0,0 +1,11 @@
+package app.k9mail.legacy.mailstore
+
+/**
+ * Characters surrounding the matching terms in the snippets returned by [MessageStore.searchMessages].
+ *
+ * Uses characters from Unicode's private use area so they can't be confused with the message text.
+ */
+object SearchSnippet {
+    const val MATCH_START = '\uE000'
+    const val MATCH_END = '\uE001'
+}
@@ -1,6 +1,7 @@
 package com.fsck.k9.preferences;
 
 
+import java.util.Collection;
 import java.util.HashMap;
 import java.util.Map;
 
@@ -21,6 +22,11 @@ import timber.log.Timber;
 public class K9StoragePersister implements StoragePersister {
     private static final int DB_VERSION = 26;
     private static final String DB_NAME = "preferences_storage";
+    private static final String HEX = "[0-9a-fA-F]";
+    private static final String HEX4 = HEX + HEX + HEX + HEX;
+    // Matches the account UUID prefix of keys like "<accountUuid>.<name>"
+    private static final String ACCOUNT_KEY_GLOB_PATTERN = HEX4 + HEX4 + "-" + HEX4 + "-" + HEX4 + "-" + HEX4 + "-" +
+            HEX4 + HEX4 + HEX4;
 
     private final Context context;
     private final StorageMigrationHelper migrationHelper = new DefaultStorageMigrationHelper();
@@ -140,25 +146,30 @@ public class K9StoragePersister implements StoragePersister {
     @Override
     public Storage loadValues() {
         long startTime = SystemClock.elapsedRealtime();
-        Timber.i("Loading preferences from DB into Storage");
+        Timber.i("Loading global preferences from DB into Storage");
 
         try (SQLiteDatabase database = openDB()) {
-            return new Storage(readAllValues(database));
-        } finally {
+            long openTime = SystemClock.elapsedRealtime();
+            Map<String, String> globalValues = readValues(database, "primkey NOT GLOB ?",
+                    new String[] { ACCOUNT_KEY_GLOB_PATTERN + ".*" });
             long endTime = SystemClock.elapsedRealtime();
-            Timber.i("Preferences load took %d ms", endTime - startTime);
+
+            Timber.i("Preferences load took %d ms (opening/upgrading database: %d ms, reading %d global values: %d ms)",
+                    endTime - startTime, openTime - startTime, globalValues.size(), endTime - openTime);
+
+            return new Storage(globalValues, new DatabaseValuesLoader());
         }
     }
 
-    private Map<String, String> readAllValues(SQLiteDatabase database) {
+    private Map<String, String> readValues(SQLiteDatabase database, String selection, String[] selectionArgs) {
         HashMap<String, String> loadedValues = new HashMap<>();
         Cursor cursor = null;
         try {
-            cursor = database.rawQuery("SELECT primkey, value FROM preferences_storage", null);
+            cursor = database.query("preferences_storage", new String[] { "primkey", "value" }, selection,
+                    selectionArgs, null, null, null);
             while (cursor.moveToNext()) {
                 String key = cursor.getString(0);
                 String value = cursor.getString(1);
-                Timber.d("Loading key '%s', value = '%s'", key, value);
                 loadedValues.put(key, value);
             }
         } finally {
@@ -167,4 +178,48 @@ public class K9StoragePersister implements StoragePersister {
 
         return loadedValues;
     }
+
+    private class DatabaseValuesLoader implements StorageValuesLoader {
+        @NonNull
+        @Override
+        public Map<String, String> loadAccountValues(@NonNull Collection<String> accountUuids) {
+            long startTime = SystemClock.elapsedRealtime();
+
+            StringBuilder selection = new StringBuilder();
+            String[] selectionArgs = new String[accountUuids.size()];
+            int index = 0;
+            for (String accountUuid : accountUuids) {
+                if (index > 0) {
+                    selection.append(" OR ");
+                }
+                selection.append("primkey GLOB ?");
+                selectionArgs[index++] = accountUuid + ".*";
+            }
+
+            try (SQLiteDatabase database = openDB()) {
+                Map<String, String> accountValues = readValues(database, selection.toString(), selectionArgs);
+
+                long endTime = SystemClock.elapsedRealtime();
+                Timber.d("Loading %d preferences of %d accounts took %d ms",
+                        accountValues.size(), accountUuids.size(), endTime - startTime);
+
+                return accountValues;
+            }
+        }
+
+        @NonNull
+        @Override
+        public Map<String, String> loadAllValues() {
+            long startTime = SystemClock.elapsedRealtime();
+
+            try (SQLiteDatabase database = openDB()) {
+                Map<String, String> values = readValues(database, null, null);
+
+                long endTime = SystemClock.elapsedRealtime();
+                Timber.d("Loading all %d preferences took %d ms", values.size(), endTime - startTime);
+
+                return values;
+            }
+        }
+    }
 }
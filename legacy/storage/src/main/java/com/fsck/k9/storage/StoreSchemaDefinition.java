@@ -11,7 +11,7 @@ import timber.log.Timber;
 
 
 class StoreSchemaDefinition implements SchemaDefinition {
-    static final int DB_VERSION = 88;
+    static final int DB_VERSION = 93;
 
     private final MigrationsHelper migrationsHelper;
 
@@ -140,7 +140,8 @@ class StoreSchemaDefinition implements SchemaDefinition {
                 "forwarded INTEGER default 0, " +
                 "message_part_id INTEGER," +
                 "encryption_type TEXT," +
-                "new_message INTEGER DEFAULT 0" +
+                "new_message INTEGER DEFAULT 0, " +
+                "sender_sort_key TEXT" +
                 ")");
 
         db.execSQL("DROP INDEX IF EXISTS new_messages");
@@ -172,7 +173,8 @@ class StoreSchemaDefinition implements SchemaDefinition {
                 "epilogue TEXT, " +
                 "boundary TEXT, " +
                 "content_id TEXT, " +
-                "server_extra TEXT" +
+                "server_extra TEXT, " +
+                "content_hash TEXT" +
                 ")");
 
         db.execSQL("CREATE TRIGGER set_message_part_root " +
@@ -198,9 +200,25 @@ class StoreSchemaDefinition implements SchemaDefinition {
         db.execSQL("DROP INDEX IF EXISTS msg_composite");
         db.execSQL("CREATE INDEX IF NOT EXISTS msg_composite ON messages (deleted, empty,folder_id,flagged,read)");
 
+        db.execSQL("DROP INDEX IF EXISTS msg_folder_id_sender_sort_key");
+        db.execSQL("CREATE INDEX IF NOT EXISTS msg_folder_id_sender_sort_key ON messages (folder_id, sender_sort_key)");
+
+        db.execSQL("DROP TABLE IF EXISTS message_addresses");
+        db.execSQL("CREATE TABLE message_addresses (" +
+                "message_id INTEGER NOT NULL, " +
+                "type INTEGER NOT NULL, " +
+                "position INTEGER NOT NULL, " +
+                "address TEXT NOT NULL, " +
+                "display_name TEXT, " +
+                "PRIMARY KEY (message_id, type, position)" +
+                ")");
+
         db.execSQL("DROP INDEX IF EXISTS message_parts_root");
         db.execSQL("CREATE INDEX IF NOT EXISTS message_parts_root ON message_parts (root)");
 
+        db.execSQL("DROP INDEX IF EXISTS message_parts_content_hash");
+        db.execSQL("CREATE INDEX IF NOT EXISTS message_parts_content_hash ON message_parts (content_hash)");
+
         db.execSQL("DROP TABLE IF EXISTS threads");
         db.execSQL("CREATE TABLE threads (" +
                 "id INTEGER PRIMARY KEY, " +
@@ -225,6 +243,69 @@ class StoreSchemaDefinition implements SchemaDefinition {
                 "UPDATE threads SET root=id WHERE root IS NULL AND ROWID = NEW.ROWID; " +
                 "END");
 
+        db.execSQL("DROP TABLE IF EXISTS thread_summary");
+        db.execSQL("CREATE TABLE thread_summary (" +
+                "root INTEGER NOT NULL, " +
+                "folder_id INTEGER NOT NULL, " +
+                "newest_message_id INTEGER, " +
+                "date INTEGER, " +
+                "internal_date INTEGER, " +
+                "read INTEGER, " +
+                "flagged INTEGER, " +
+                "answered INTEGER, " +
+                "forwarded INTEGER, " +
+                "attachment_count INTEGER, " +
+                "thread_count INTEGER, " +
+                "PRIMARY KEY (root, folder_id)" +
+                ")");
+
+        db.execSQL("DROP INDEX IF EXISTS thread_summary_folder_date");
+        db.execSQL("CREATE INDEX IF NOT EXISTS thread_summary_folder_date ON thread_summary (folder_id, date)");
+
+        db.execSQL("DROP TABLE IF EXISTS thread_summary_dirty");
+        db.execSQL("CREATE TABLE thread_summary_dirty (" +
+                "root INTEGER PRIMARY KEY" +
+                ")");
+
+        db.execSQL("DROP TRIGGER IF EXISTS thread_summary_on_thread_insert");
+        db.execSQL("CREATE TRIGGER thread_summary_on_thread_insert " +
+                "AFTER INSERT ON threads " +
+                "WHEN NEW.root IS NOT NULL " +
+                "BEGIN " +
+                "INSERT OR IGNORE INTO thread_summary_dirty (root) VALUES (NEW.root); " +
+                "END");
+
+        db.execSQL("DROP TRIGGER IF EXISTS thread_summary_on_thread_update");
+        db.execSQL("CREATE TRIGGER thread_summary_on_thread_update " +
+                "AFTER UPDATE OF root, message_id ON threads " +
+                "WHEN OLD.root IS NOT NEW.root OR OLD.message_id IS NOT NEW.message_id " +
+                "BEGIN " +
+                "INSERT OR IGNORE INTO thread_summary_dirty (root) SELECT OLD.root WHERE OLD.root IS NOT NULL; " +
+                "INSERT OR IGNORE INTO thread_summary_dirty (root) SELECT NEW.root WHERE NEW.root IS NOT NULL; " +
+                "END");
+
+        db.execSQL("DROP TRIGGER IF EXISTS thread_summary_on_thread_delete");
+        db.execSQL("CREATE TRIGGER thread_summary_on_thread_delete " +
+                "AFTER DELETE ON threads " +
+                "WHEN OLD.root IS NOT NULL " +
+                "BEGIN " +
+                "INSERT OR IGNORE INTO thread_summary_dirty (root) VALUES (OLD.root); " +
+                "END");
+
+        db.execSQL("DROP TRIGGER IF EXISTS thread_summary_on_message_update");
+        db.execSQL("CREATE TRIGGER thread_summary_on_message_update " +
+                "AFTER UPDATE OF folder_id, empty, deleted, date, internal_date, read, flagged, answered, forwarded, " +
+                "attachment_count ON messages " +
+                "WHEN OLD.folder_id IS NOT NEW.folder_id OR OLD.empty IS NOT NEW.empty OR " +
+                "OLD.deleted IS NOT NEW.deleted OR OLD.date IS NOT NEW.date OR " +
+                "OLD.internal_date IS NOT NEW.internal_date OR OLD.read IS NOT NEW.read OR " +
+                "OLD.flagged IS NOT NEW.flagged OR OLD.answered IS NOT NEW.answered OR " +
+                "OLD.forwarded IS NOT NEW.forwarded OR OLD.attachment_count IS NOT NEW.attachment_count " +
+                "BEGIN " +
+                "INSERT OR IGNORE INTO thread_summary_dirty (root) " +
+                "SELECT root FROM threads WHERE message_id = NEW.id AND root IS NOT NULL; " +
+                "END");
+
         db.execSQL("DROP TABLE IF EXISTS outbox_state");
         db.execSQL("CREATE TABLE outbox_state (" +
                 "message_id INTEGER PRIMARY KEY NOT NULL REFERENCES messages(id) ON DELETE CASCADE," +
@@ -253,12 +334,58 @@ class StoreSchemaDefinition implements SchemaDefinition {
                 "BEGIN " +
                 "DELETE FROM message_parts WHERE root = OLD.message_part_id; " +
                 "DELETE FROM messages_fulltext WHERE docid = OLD.id; " +
+                "DELETE FROM messages_fulltext_queue WHERE message_id = OLD.id; " +
+                "DELETE FROM message_addresses WHERE message_id = OLD.id; " +
                 "DELETE FROM threads WHERE message_id = OLD.id; " +
                 "END");
 
+        db.execSQL("DROP TRIGGER IF EXISTS update_folder_counters_on_insert");
+        db.execSQL("CREATE TRIGGER update_folder_counters_on_insert " +
+                "AFTER INSERT ON messages " +
+                "WHEN NEW.empty IS 0 AND NEW.deleted IS 0 " +
+                "BEGIN " +
+                "UPDATE folders SET " +
+                "unread_count = IFNULL(unread_count, 0) + (NEW.read IS 0), " +
+                "flagged_count = IFNULL(flagged_count, 0) + (NEW.flagged IS 1) " +
+                "WHERE id = NEW.folder_id; " +
+                "END");
+
+        db.execSQL("DROP TRIGGER IF EXISTS update_folder_counters_on_delete");
+        db.execSQL("CREATE TRIGGER update_folder_counters_on_delete " +
+                "AFTER DELETE ON messages " +
+                "WHEN OLD.empty IS 0 AND OLD.deleted IS 0 " +
+                "BEGIN " +
+                "UPDATE folders SET " +
+                "unread_count = IFNULL(unread_count, 0) - (OLD.read IS 0), " +
+                "flagged_count = IFNULL(flagged_count, 0) - (OLD.flagged IS 1) " +
+                "WHERE id = OLD.folder_id; " +
+                "END");
+
+        db.execSQL("DROP TRIGGER IF EXISTS update_folder_counters_on_update");
+        db.execSQL("CREATE TRIGGER update_folder_counters_on_update " +
+                "AFTER UPDATE OF folder_id, empty, deleted, read, flagged ON messages " +
+                "WHEN OLD.folder_id IS NOT NEW.folder_id OR OLD.empty IS NOT NEW.empty OR " +
+                "OLD.deleted IS NOT NEW.deleted OR OLD.read IS NOT NEW.read OR OLD.flagged IS NOT NEW.flagged " +
+                "BEGIN " +
+                "UPDATE folders SET " +
+                "unread_count = IFNULL(unread_count, 0) - (OLD.empty IS 0 AND OLD.deleted IS 0 AND OLD.read IS 0), " +
+                "flagged_count = IFNULL(flagged_count, 0) - (OLD.empty IS 0 AND OLD.deleted IS 0 AND OLD.flagged IS 1) " +
+                "WHERE id = OLD.folder_id; " +
+                "UPDATE folders SET " +
+                "unread_count = IFNULL(unread_count, 0) + (NEW.empty IS 0 AND NEW.deleted IS 0 AND NEW.read IS 0), " +
+                "flagged_count = IFNULL(flagged_count, 0) + (NEW.empty IS 0 AND NEW.deleted IS 0 AND NEW.flagged IS 1) " +
+                "WHERE id = NEW.folder_id; " +
+                "END");
+
         db.execSQL("DROP TABLE IF EXISTS messages_fulltext");
         db.execSQL("CREATE VIRTUAL TABLE messages_fulltext USING fts4 (fulltext)");
 
+        db.execSQL("DROP TABLE IF EXISTS messages_fulltext_queue");
+        db.execSQL("CREATE TABLE messages_fulltext_queue (" +
+                "message_id INTEGER PRIMARY KEY, " +
+                "fulltext TEXT" +
+                ")");
+
         db.execSQL("DROP TABLE IF EXISTS notifications");
         db.execSQL("CREATE TABLE notifications (" +
                 "message_id INTEGER PRIMARY KEY NOT NULL REFERENCES messages(id) ON DELETE CASCADE," +
@@ -1,36 +1,138 @@
 package com.fsck.k9.storage.messages
 
+import android.database.sqlite.SQLiteDatabase
 import com.fsck.k9.K9
 import com.fsck.k9.helper.FileHelper
 import com.fsck.k9.mailstore.StorageManager
 import com.fsck.k9.mailstore.StorageManager.InternalStorageProvider
 import java.io.File
+import java.io.FileInputStream
+import java.io.InputStream
+import java.security.DigestInputStream
+import java.security.MessageDigest
+import org.apache.commons.io.IOUtils
+import org.apache.commons.io.output.NullOutputStream
 import timber.log.Timber
 
+private const val CONTENT_HASH_ALGORITHM = "SHA-256"
+private const val CONTENT_HASH_LENGTH = 64
+private val CONTENT_HASH_REGEX = Regex("[0-9a-f]{$CONTENT_HASH_LENGTH}")
+
+/**
+ * Manages the files of message parts with [DataLocation.ON_DISK].
+ *
+ * Files are stored under the SHA-256 hash of their content, which is saved in the `content_hash` column of the
+ * `message_parts` table. Message parts with the same content share one file. A file is only deleted once no row in
+ * `message_parts` references its hash anymore.
+ *
+ * Files written before content hashes were introduced are named after their message part ID and have no content hash
+ * in the database. They are converted when they're copied.
+ */
 internal class AttachmentFileManager(
     private val storageManager: StorageManager,
     private val accountUuid: String,
 ) {
     fun deleteFile(messagePartId: Long) {
-        val file = getAttachmentFile(messagePartId)
-        if (file.exists() && !file.delete() && K9.isDebugLoggingEnabled) {
-            Timber.w("Couldn't delete message part file: %s", file.absolutePath)
+        deleteFile(getAttachmentFile(messagePartId))
+    }
+
+    /**
+     * Moves a temporary file into the attachment directory under its content hash.
+     *
+     * If a file with the same content already exists, the temporary file is deleted instead.
+     */
+    fun storeTemporaryFile(temporaryFile: File, contentHash: String) {
+        val destinationFile = getAttachmentFile(contentHash)
+        if (destinationFile.exists()) {
+            deleteFile(temporaryFile)
+        } else {
+            FileHelper.renameOrMoveByCopying(temporaryFile, destinationFile)
         }
     }
 
-    fun moveTemporaryFile(temporaryFile: File, messagePartId: Long) {
-        val destinationFile = getAttachmentFile(messagePartId)
-        FileHelper.renameOrMoveByCopying(temporaryFile, destinationFile)
+    /**
+     * Renames the file of a message part that was stored before content hashes were introduced.
+     *
+     * @return The content hash of the file.
+     */
+    fun convertToContentAddressedFile(messagePartId: Long): String {
+        val file = getAttachmentFile(messagePartId)
+        val contentHash = FileInputStream(file).use { inputStream -> calculateContentHash(inputStream) }
+        storeTemporaryFile(file, contentHash)
+
+        return contentHash
+    }
+
+    /**
+     * Deletes the files with the given content hashes that are no longer referenced by any message part.
+     *
+     * Needs to be called after the message parts have been removed from the database.
+     */
+    fun deleteUnreferencedFiles(database: SQLiteDatabase, contentHashes: Collection<String>) {
+        for (contentHash in contentHashes.toSet()) {
+            if (!database.isContentHashReferenced(contentHash)) {
+                deleteFile(getAttachmentFile(contentHash))
+            }
+        }
     }
 
-    fun copyFile(sourceMessagePartId: Long, destinationMessagePartId: Long) {
-        val sourceFile = getAttachmentFile(sourceMessagePartId)
-        val destinationFile = getAttachmentFile(destinationMessagePartId)
-        sourceFile.copyTo(destinationFile)
+    /**
+     * Deletes all content-addressed files in the attachment directory that are not referenced by any message part.
+     *
+     * @return The number of deleted files.
+     */
+    fun deleteAllUnreferencedFiles(database: SQLiteDatabase): Int {
+        val files = getAttachmentDirectory().listFiles() ?: return 0
+
+        return files
+            .filter { file -> file.name.matches(CONTENT_HASH_REGEX) && !database.isContentHashReferenced(file.name) }
+            .count { file -> deleteFile(file) }
     }
 
     fun getAttachmentFile(messagePartId: Long): File {
-        val attachmentDirectory = storageManager.getAttachmentDirectory(accountUuid, InternalStorageProvider.ID)
-        return File(attachmentDirectory, messagePartId.toString())
+        return File(getAttachmentDirectory(), messagePartId.toString())
+    }
+
+    fun getAttachmentFile(messagePartId: Long, contentHash: String?): File {
+        return if (contentHash != null) getAttachmentFile(contentHash) else getAttachmentFile(messagePartId)
+    }
+
+    private fun getAttachmentFile(contentHash: String): File {
+        return File(getAttachmentDirectory(), contentHash)
     }
+
+    private fun getAttachmentDirectory(): File {
+        return storageManager.getAttachmentDirectory(accountUuid, InternalStorageProvider.ID)
+    }
+
+    private fun deleteFile(file: File): Boolean {
+        val deleted = file.delete()
+        if (!deleted && file.exists() && K9.isDebugLoggingEnabled) {
+            Timber.w("Couldn't delete message part file: %s", file.absolutePath)
+        }
+
+        return deleted
+    }
+
+    private fun SQLiteDatabase.isContentHashReferenced(contentHash: String): Boolean {
+        return rawQuery(
+            "SELECT 1 FROM message_parts WHERE content_hash = ? LIMIT 1",
+            arrayOf(contentHash),
+        ).use { cursor -> cursor.moveToFirst() }
+    }
+}
+
+internal fun createContentHashDigest(): MessageDigest = MessageDigest.getInstance(CONTENT_HASH_ALGORITHM)
+
+internal fun MessageDigest.toContentHash(): String {
+    return digest().joinToString(separator = "") { byte -> "%02x".format(byte) }
+}
+
+internal fun calculateContentHash(inputStream: InputStream): String {
+    val messageDigest = createContentHashDigest()
+    DigestInputStream(inputStream, messageDigest).use { digestInputStream ->
+        IOUtils.copy(digestInputStream, NullOutputStream.INSTANCE)
+    }
+
+    return messageDigest.toContentHash()
 }
@@ -0,0 +1,45 @@
+package com.fsck.k9.storage.messages
+
+import java.nio.ByteBuffer
+import java.nio.ByteOrder
+import kotlin.math.ln
+
+private const val K1 = 1.2
+private const val B = 0.75
+
+/**
+ * Calculates the Okapi BM25 relevance score of a full-text search hit.
+ *
+ * FTS4 doesn't come with a ranking function. So the score is calculated from the output of `matchinfo()` called with
+ * the format string `pcnalx`. A higher score means a more relevant hit.
+ */
+internal fun calculateBm25Score(matchInfo: ByteArray): Double {
+    val values = ByteBuffer.wrap(matchInfo).order(ByteOrder.nativeOrder()).asIntBuffer()
+
+    val phraseCount = values[0]
+    val columnCount = values[1]
+    val rowCount = values[2].toDouble()
+    val averageLengthOffset = 3
+    val lengthOffset = averageLengthOffset + columnCount
+    val hitsOffset = lengthOffset + columnCount
+
+    var score = 0.0
+    for (phrase in 0 until phraseCount) {
+        for (column in 0 until columnCount) {
+            val hitsIndex = hitsOffset + 3 * (phrase * columnCount + column)
+            val termFrequency = values[hitsIndex].toDouble()
+            if (termFrequency == 0.0) continue
+
+            val documentsWithHits = values[hitsIndex + 2].toDouble()
+            val documentLength = values[lengthOffset + column].toDouble()
+            val averageDocumentLength = values[averageLengthOffset + column].coerceAtLeast(1).toDouble()
+
+            val inverseDocumentFrequency = ln(1 + (rowCount - documentsWithHits + 0.5) / (documentsWithHits + 0.5))
+            val normalizedLength = 1 - B + B * documentLength / averageDocumentLength
+
+            score += inverseDocumentFrequency * termFrequency * (K1 + 1) / (termFrequency + K1 * normalizedLength)
+        }
+    }
+
+    return score
+}
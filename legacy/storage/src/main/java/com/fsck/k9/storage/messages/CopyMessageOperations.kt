@@ -20,6 +20,7 @@ internal class CopyMessageOperations(
             val newMessageId = copyMessage(database, messageId, destinationFolderId)
 
             copyFulltextEntry(database, newMessageId, messageId)
+            database.copyMessageAddresses(sourceMessageId = messageId, destinationMessageId = newMessageId)
 
             newMessageId
         }
@@ -88,7 +89,8 @@ SELECT
   message_parts.epilogue,
   message_parts.boundary,
   message_parts.content_id,
-  message_parts.server_extra 
+  message_parts.server_extra, 
+  message_parts.content_hash 
 FROM messages 
 JOIN message_parts ON (message_parts.root = messages.message_part_id) 
 WHERE messages.id = ? 
@@ -131,6 +133,13 @@ ORDER BY message_parts.seq
         newRootId: Long?,
         newParentId: Long,
     ): Long {
+        // Files are shared between message parts with the same content, so copying only requires a new database row
+        val contentHash = if (databaseMessagePart.dataLocation == DataLocation.ON_DISK) {
+            databaseMessagePart.contentHash ?: convertToContentAddressedFile(database, databaseMessagePart.id)
+        } else {
+            null
+        }
+
         val values = ContentValues().apply {
             put("type", databaseMessagePart.type)
             put("root", newRootId)
@@ -149,15 +158,21 @@ ORDER BY message_parts.seq
             put("boundary", databaseMessagePart.boundary)
             put("content_id", databaseMessagePart.contentId)
             put("server_extra", databaseMessagePart.serverExtra)
+            put("content_hash", contentHash)
         }
 
-        val messagePartId = database.insert("message_parts", null, values)
+        return database.insert("message_parts", null, values)
+    }
+
+    private fun convertToContentAddressedFile(database: SQLiteDatabase, messagePartId: Long): String {
+        val contentHash = attachmentFileManager.convertToContentAddressedFile(messagePartId)
 
-        if (databaseMessagePart.dataLocation == DataLocation.ON_DISK) {
-            attachmentFileManager.copyFile(databaseMessagePart.id, messagePartId)
+        val values = ContentValues().apply {
+            put("content_hash", contentHash)
         }
+        database.update("message_parts", values, "id = ?", arrayOf(messagePartId.toString()))
 
-        return messagePartId
+        return contentHash
     }
 
     private fun updateMessageRow(
@@ -205,6 +220,11 @@ ORDER BY message_parts.seq
                 "SELECT ?, fulltext FROM messages_fulltext WHERE docid = ?",
             arrayOf(newMessageId.toString(), messageId.toString()),
         )
+        database.execSQL(
+            "INSERT OR REPLACE INTO messages_fulltext_queue (message_id, fulltext) " +
+                "SELECT ?, fulltext FROM messages_fulltext_queue WHERE message_id = ?",
+            arrayOf(newMessageId.toString(), messageId.toString()),
+        )
     }
 
     private fun readMessageToContentValues(database: SQLiteDatabase, messageId: Long): ContentValues {
@@ -233,6 +253,7 @@ ORDER BY message_parts.seq
                 "answered",
                 "forwarded",
                 "encryption_type",
+                "sender_sort_key",
             ),
             "id = ?",
             arrayOf(messageId.toString()),
@@ -265,6 +286,7 @@ ORDER BY message_parts.seq
                 put("answered", cursor.getInt(19))
                 put("forwarded", cursor.getInt(20))
                 put("encryption_type", cursor.getStringOrNull(21))
+                put("sender_sort_key", cursor.getStringOrNull(22))
             }
         }
     }
@@ -289,6 +311,7 @@ ORDER BY message_parts.seq
             boundary = getStringOrNull(15),
             contentId = getStringOrNull(16),
             serverExtra = getStringOrNull(17),
+            contentHash = getStringOrNull(18),
         )
     }
 }
@@ -312,4 +335,5 @@ private class DatabaseMessagePart(
     val boundary: String?,
     val contentId: String?,
     val serverExtra: String?,
+    val contentHash: String?,
 )
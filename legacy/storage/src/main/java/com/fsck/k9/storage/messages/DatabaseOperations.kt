@@ -2,12 +2,14 @@ package com.fsck.k9.storage.messages
 
 import com.fsck.k9.mailstore.LockableDatabase
 import com.fsck.k9.mailstore.StorageManager
+import java.io.File
 import timber.log.Timber
 
 internal class DatabaseOperations(
     private val lockableDatabase: LockableDatabase,
     val storageManager: StorageManager,
     val accountUuid: String,
+    private val attachmentFileManager: AttachmentFileManager,
 ) {
     fun getSize(): Long {
         val storageProviderId = lockableDatabase.storageProviderId
@@ -22,7 +24,8 @@ internal class DatabaseOperations(
                 }
 
             val databaseFile = storageManager.getDatabase(accountUuid, storageProviderId)
-            val databaseSize = databaseFile.length()
+            val writeAheadLogFile = File(databaseFile.path + "-wal")
+            val databaseSize = databaseFile.length() + writeAheadLogFile.length()
 
             databaseSize + attachmentsSize
         }
@@ -31,10 +34,20 @@ internal class DatabaseOperations(
     fun compact() {
         Timber.i("Before compaction size = %d", getSize())
 
+        val deletedFileCount = lockableDatabase.execute(true) { database ->
+            attachmentFileManager.deleteAllUnreferencedFiles(database)
+        }
+        Timber.i("Deleted %d unreferenced message part files", deletedFileCount)
+
         lockableDatabase.execute(false) { database ->
             database.execSQL("VACUUM")
+
+            // VACUUM writes the whole database to the write-ahead log. Copy it back and reset the log file.
+            database.rawQuery("PRAGMA wal_checkpoint(TRUNCATE)", null).use { cursor -> cursor.moveToFirst() }
         }
 
         Timber.i("After compaction size = %d", getSize())
+        Timber.i("Transaction wait times: %s", lockableDatabase.transactionWaitHistogram)
+        Timber.i("Read times: %s", lockableDatabase.readHistogram)
     }
 }
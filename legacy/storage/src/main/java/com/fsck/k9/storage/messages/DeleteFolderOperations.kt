@@ -1,6 +1,7 @@
 package com.fsck.k9.storage.messages
 
 import android.database.sqlite.SQLiteDatabase
+import androidx.core.database.getStringOrNull
 import com.fsck.k9.mailstore.LockableDatabase
 
 internal class DeleteFolderOperations(
@@ -10,16 +11,21 @@ internal class DeleteFolderOperations(
     fun deleteFolders(folderServerIds: List<String>) {
         lockableDatabase.execute(true) { db ->
             for (folderServerId in folderServerIds) {
-                db.deleteMessagePartFiles(folderServerId)
+                val contentHashes = db.deleteMessagePartFiles(folderServerId)
                 db.deleteFolder(folderServerId)
+                attachmentFileManager.deleteUnreferencedFiles(db, contentHashes)
             }
         }
     }
 
-    private fun SQLiteDatabase.deleteMessagePartFiles(folderServerId: String) {
+    /**
+     * Deletes files that are not shared with other message parts and returns the content hashes of the other files.
+     */
+    private fun SQLiteDatabase.deleteMessagePartFiles(folderServerId: String): List<String> {
+        val contentHashes = mutableListOf<String>()
         rawQuery(
             """
-SELECT message_parts.id 
+SELECT message_parts.id, message_parts.content_hash 
 FROM folders 
 JOIN messages ON (messages.folder_id = folders.id) 
 JOIN message_parts ON (
@@ -32,10 +38,17 @@ WHERE folders.server_id = ?
             arrayOf(folderServerId),
         ).use { cursor ->
             while (cursor.moveToNext()) {
-                val messagePartId = cursor.getLong(0)
-                attachmentFileManager.deleteFile(messagePartId)
+                val contentHash = cursor.getStringOrNull(1)
+                if (contentHash != null) {
+                    contentHashes.add(contentHash)
+                } else {
+                    val messagePartId = cursor.getLong(0)
+                    attachmentFileManager.deleteFile(messagePartId)
+                }
             }
         }
+
+        return contentHashes
     }
 
     private fun SQLiteDatabase.deleteFolder(folderServerId: String) {
@@ -2,6 +2,7 @@ package com.fsck.k9.storage.messages
 
 import android.content.ContentValues
 import android.database.sqlite.SQLiteDatabase
+import androidx.core.database.getStringOrNull
 import com.fsck.k9.mailstore.LockableDatabase
 
 internal class DeleteMessageOperations(
@@ -18,19 +19,22 @@ internal class DeleteMessageOperations(
         val (messageId, rootMessagePartId, hasThreadChildren) = getMessageData(folderId, messageServerId) ?: return
 
         lockableDatabase.execute(true) { database ->
-            database.deleteMessagePartFiles(rootMessagePartId)
+            val contentHashes = database.deleteMessagePartFiles(rootMessagePartId)
 
             if (hasThreadChildren) {
                 // We're not deleting the 'messages' row so we'll have to manually delete the associated
-                // 'message_parts' and 'messages_fulltext' rows.
+                // 'message_parts', 'messages_fulltext', and 'message_addresses' rows.
                 database.deleteMessagePartRows(rootMessagePartId)
                 database.deleteFulltextIndexEntry(messageId)
+                database.deleteMessageAddresses(messageId)
 
                 // This message has children in the thread structure so we need to make it an empty message.
                 database.convertToEmptyMessage(messageId)
             } else {
                 database.deleteMessageRows(messageId)
             }
+
+            attachmentFileManager.deleteUnreferencedFiles(database, contentHashes)
         }
     }
 
@@ -59,10 +63,14 @@ WHERE folder_id = ? AND uid = ?
         }
     }
 
-    private fun SQLiteDatabase.deleteMessagePartFiles(rootMessagePartId: Long) {
+    /**
+     * Deletes files that are not shared with other message parts and returns the content hashes of the other files.
+     */
+    private fun SQLiteDatabase.deleteMessagePartFiles(rootMessagePartId: Long): List<String> {
+        val contentHashes = mutableListOf<String>()
         query(
             "message_parts",
-            arrayOf("id"),
+            arrayOf("id", "content_hash"),
             "root = ? AND data_location = $DATA_LOCATION_ON_DISK",
             arrayOf(rootMessagePartId.toString()),
             null,
@@ -70,10 +78,17 @@ WHERE folder_id = ? AND uid = ?
             null,
         ).use { cursor ->
             while (cursor.moveToNext()) {
-                val messagePartId = cursor.getLong(0)
-                attachmentFileManager.deleteFile(messagePartId)
+                val contentHash = cursor.getStringOrNull(1)
+                if (contentHash != null) {
+                    contentHashes.add(contentHash)
+                } else {
+                    val messagePartId = cursor.getLong(0)
+                    attachmentFileManager.deleteFile(messagePartId)
+                }
             }
         }
+
+        return contentHashes
     }
 
     private fun SQLiteDatabase.deleteMessagePartRows(rootMessagePartId: Long) {
@@ -82,6 +97,7 @@ WHERE folder_id = ? AND uid = ?
 
     private fun SQLiteDatabase.deleteFulltextIndexEntry(messageId: Long) {
         delete("messages_fulltext", "docid = ?", arrayOf(messageId.toString()))
+        delete("messages_fulltext_queue", "message_id = ?", arrayOf(messageId.toString()))
     }
 
     private fun SQLiteDatabase.convertToEmptyMessage(messageId: Long) {
@@ -104,6 +120,7 @@ WHERE folder_id = ? AND uid = ?
             putNull("normalized_subject_hash")
             putNull("message_part_id")
             putNull("encryption_type")
+            putNull("sender_sort_key")
         }
 
         update("messages", values, "id = ?", arrayOf(messageId.toString()))
@@ -30,6 +30,48 @@ internal class FlagMessageOperations(private val lockableDatabase: LockableDatab
         }
     }
 
+    fun setMessageFlags(folderId: Long, flagChanges: Map<String, Map<Flag, Boolean>>) {
+        if (flagChanges.isEmpty()) return
+
+        lockableDatabase.execute(true) { database ->
+            val columnChanges = mutableMapOf<Pair<String, Boolean>, MutableList<String>>()
+            for ((messageServerId, messageFlagChanges) in flagChanges) {
+                val otherFlagChanges = mutableMapOf<Flag, Boolean>()
+                for ((flag, set) in messageFlagChanges) {
+                    val columnName = flag.toColumnName()
+                    if (columnName != null) {
+                        columnChanges.getOrPut(columnName to set) { mutableListOf() }.add(messageServerId)
+                    } else {
+                        otherFlagChanges[flag] = set
+                    }
+                }
+
+                if (otherFlagChanges.isNotEmpty()) {
+                    database.rebuildFlagsColumnValue(folderId, messageServerId, otherFlagChanges)
+                }
+            }
+
+            for ((columnChange, messageServerIds) in columnChanges) {
+                val (columnName, set) = columnChange
+                val contentValues = ContentValues().apply {
+                    put(columnName, if (set) 1 else 0)
+                }
+
+                performChunkedOperation(
+                    arguments = messageServerIds,
+                    argumentTransformation = { it },
+                ) { selectionSet, selectionArguments ->
+                    database.update(
+                        "messages",
+                        contentValues,
+                        "folder_id = ? AND uid $selectionSet",
+                        arrayOf(folderId.toString()) + selectionArguments,
+                    )
+                }
+            }
+        }
+    }
+
     private fun setSpecialFlags(messageIds: Collection<Long>, flag: Flag, set: Boolean) {
         val columnName = when (flag) {
             Flag.SEEN -> "read"
@@ -56,21 +98,43 @@ internal class FlagMessageOperations(private val lockableDatabase: LockableDatab
 
     private fun rebuildFlagsColumnValue(folderId: Long, messageServerId: String, flag: Flag, set: Boolean) {
         lockableDatabase.execute(true) { database ->
-            val oldFlags = database.readFlagsColumn(folderId, messageServerId)
+            database.rebuildFlagsColumnValue(folderId, messageServerId, mapOf(flag to set))
+        }
+    }
 
-            val newFlags = if (set) oldFlags + flag else oldFlags - flag
-            val newFlagsString = newFlags.joinToString(separator = ",")
+    private fun SQLiteDatabase.rebuildFlagsColumnValue(
+        folderId: Long,
+        messageServerId: String,
+        flagChanges: Map<Flag, Boolean>,
+    ) {
+        val oldFlags = readFlagsColumn(folderId, messageServerId)
 
-            val values = ContentValues().apply {
-                put("flags", newFlagsString)
-            }
+        val newFlags = oldFlags.toMutableSet()
+        for ((flag, set) in flagChanges) {
+            if (set) newFlags.add(flag) else newFlags.remove(flag)
+        }
+        val newFlagsString = newFlags.joinToString(separator = ",")
 
-            database.update(
-                "messages",
-                values,
-                "folder_id = ? AND uid = ?",
-                arrayOf(folderId.toString(), messageServerId),
-            )
+        val values = ContentValues().apply {
+            put("flags", newFlagsString)
+        }
+
+        update(
+            "messages",
+            values,
+            "folder_id = ? AND uid = ?",
+            arrayOf(folderId.toString(), messageServerId),
+        )
+    }
+
+    private fun Flag.toColumnName(): String? {
+        return when (this) {
+            Flag.DELETED -> "deleted"
+            Flag.SEEN -> "read"
+            Flag.FLAGGED -> "flagged"
+            Flag.ANSWERED -> "answered"
+            Flag.FORWARDED -> "forwarded"
+            else -> null
         }
     }
 
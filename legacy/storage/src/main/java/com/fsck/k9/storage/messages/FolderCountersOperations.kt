@@ -0,0 +1,67 @@
+package com.fsck.k9.storage.messages
+
+import app.k9mail.core.android.common.database.map
+import com.fsck.k9.mailstore.LockableDatabase
+import timber.log.Timber
+
+private const val UNREAD_COUNT_QUERY = "(SELECT COUNT(messages.id) FROM messages " +
+    "WHERE messages.folder_id = folders.id AND empty = 0 AND deleted = 0 AND read = 0)"
+
+private const val FLAGGED_COUNT_QUERY = "(SELECT COUNT(messages.id) FROM messages " +
+    "WHERE messages.folder_id = folders.id AND empty = 0 AND deleted = 0 AND flagged = 1)"
+
+/**
+ * Checks the unread and starred message counters stored in the `folders` table.
+ *
+ * The counters are maintained by database triggers on the `messages` table. This is a safety net in case they ever
+ * get out of sync with the messages they count.
+ */
+internal class FolderCountersOperations(private val lockableDatabase: LockableDatabase) {
+    /**
+     * Recalculates the counters of all folders whose stored values don't match the actual message counts.
+     *
+     * Returns the number of folders whose counters had to be repaired.
+     */
+    fun checkFolderCounters(): Int {
+        return lockableDatabase.execute(true) { database ->
+            val inconsistentFolderIds = database.rawQuery(
+                """
+SELECT id
+FROM (
+  SELECT
+    id,
+    IFNULL(unread_count, 0) AS unread_count,
+    IFNULL(flagged_count, 0) AS flagged_count,
+    $UNREAD_COUNT_QUERY AS actual_unread_count,
+    $FLAGGED_COUNT_QUERY AS actual_flagged_count
+  FROM folders
+)
+WHERE unread_count != actual_unread_count OR flagged_count != actual_flagged_count
+                """,
+                null,
+            ).use { cursor ->
+                cursor.map { cursor.getLong(0) }
+            }
+
+            if (inconsistentFolderIds.isNotEmpty()) {
+                Timber.w("Repairing message counters of folders: %s", inconsistentFolderIds)
+
+                performChunkedOperation(
+                    arguments = inconsistentFolderIds,
+                    argumentTransformation = Long::toString,
+                ) { selectionSet, selectionArguments ->
+                    database.execSQL(
+                        """
+UPDATE folders
+SET unread_count = $UNREAD_COUNT_QUERY, flagged_count = $FLAGGED_COUNT_QUERY
+WHERE id $selectionSet
+                        """,
+                        selectionArguments,
+                    )
+                }
+            }
+
+            inconsistentFolderIds.size
+        }
+    }
+}
@@ -0,0 +1,43 @@
+package com.fsck.k9.storage.messages
+
+import android.database.DatabaseUtils
+import com.fsck.k9.mailstore.LockableDatabase
+
+/**
+ * Moves message texts from the `messages_fulltext_queue` table to the full-text search index.
+ *
+ * Saving a message only adds its text to the queue. Tokenizing the text happens later, in small transactions, so
+ * synchronizing a folder doesn't hold the database lock while the full-text index is updated.
+ */
+internal class FulltextIndexOperations(private val lockableDatabase: LockableDatabase) {
+    /**
+     * Adds up to [batchSize] queued message texts to the full-text search index.
+     *
+     * Returns the number of messages that have been indexed.
+     */
+    fun indexQueuedMessages(batchSize: Int): Int {
+        require(batchSize > 0) { "'batchSize' needs to be positive" }
+
+        return lockableDatabase.execute(true) { database ->
+            database.execSQL(
+                "INSERT OR REPLACE INTO messages_fulltext (docid, fulltext) " +
+                    "SELECT message_id, fulltext FROM messages_fulltext_queue ORDER BY message_id LIMIT ?",
+                arrayOf(batchSize),
+            )
+
+            database.compileStatement(
+                "DELETE FROM messages_fulltext_queue WHERE message_id IN " +
+                    "(SELECT message_id FROM messages_fulltext_queue ORDER BY message_id LIMIT ?)",
+            ).use { statement ->
+                statement.bindLong(1, batchSize.toLong())
+                statement.executeUpdateDelete()
+            }
+        }
+    }
+
+    fun getQueuedMessageCount(): Int {
+        return lockableDatabase.execute(false) { database ->
+            DatabaseUtils.queryNumEntries(database, "messages_fulltext_queue").toInt()
+        }
+    }
+}
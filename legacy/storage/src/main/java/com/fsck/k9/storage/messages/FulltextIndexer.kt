@@ -0,0 +1,42 @@
+package com.fsck.k9.storage.messages
+
+import java.util.concurrent.Executor
+import java.util.concurrent.atomic.AtomicBoolean
+import timber.log.Timber
+
+private const val BATCH_SIZE = 20
+
+/**
+ * Drains the full-text index queue of a message store on a background thread.
+ */
+internal class FulltextIndexer(
+    private val fulltextIndexOperations: FulltextIndexOperations,
+    private val executor: Executor,
+) {
+    private val isScheduled = AtomicBoolean(false)
+
+    fun schedule() {
+        if (isScheduled.compareAndSet(false, true)) {
+            executor.execute(::indexQueuedMessages)
+        }
+    }
+
+    private fun indexQueuedMessages() {
+        // Reset the flag before draining the queue so messages saved in the meantime schedule another run.
+        isScheduled.set(false)
+
+        try {
+            var indexedMessageCount = 0
+            do {
+                val count = fulltextIndexOperations.indexQueuedMessages(BATCH_SIZE)
+                indexedMessageCount += count
+            } while (count > 0)
+
+            if (indexedMessageCount > 0) {
+                Timber.v("Added %d messages to the full-text search index", indexedMessageCount)
+            }
+        } catch (e: Exception) {
+            Timber.e(e, "Error while updating the full-text search index")
+        }
+    }
+}
@@ -15,12 +15,14 @@ import com.fsck.k9.mailstore.LockableDatabase
 import com.fsck.k9.mailstore.StorageManager
 import com.fsck.k9.message.extractors.BasicPartInfoExtractor
 import java.util.Date
+import java.util.concurrent.Executor
 
 class K9MessageStore(
     database: LockableDatabase,
     storageManager: StorageManager,
     basicPartInfoExtractor: BasicPartInfoExtractor,
     accountUuid: String,
+    fulltextIndexingExecutor: Executor,
 ) : MessageStore {
     private val attachmentFileManager = AttachmentFileManager(storageManager, accountUuid)
     private val threadMessageOperations = ThreadMessageOperations()
@@ -35,22 +37,39 @@ class K9MessageStore(
     private val flagMessageOperations = FlagMessageOperations(database)
     private val updateMessageOperations = UpdateMessageOperations(database)
     private val retrieveMessageOperations = RetrieveMessageOperations(database)
-    private val retrieveMessageListOperations = RetrieveMessageListOperations(database)
+    private val threadSummaryOperations = ThreadSummaryOperations()
+    private val retrieveMessageListOperations = RetrieveMessageListOperations(database, threadSummaryOperations)
     private val deleteMessageOperations = DeleteMessageOperations(database, attachmentFileManager)
     private val createFolderOperations = CreateFolderOperations(database)
     private val retrieveFolderOperations = RetrieveFolderOperations(database)
     private val checkFolderOperations = CheckFolderOperations(database)
+    private val folderCountersOperations = FolderCountersOperations(database)
     private val updateFolderOperations = UpdateFolderOperations(database)
     private val deleteFolderOperations = DeleteFolderOperations(database, attachmentFileManager)
     private val keyValueStoreOperations = KeyValueStoreOperations(database)
-    private val databaseOperations = DatabaseOperations(database, storageManager, accountUuid)
+    private val databaseOperations = DatabaseOperations(database, storageManager, accountUuid, attachmentFileManager)
+    private val fulltextIndexOperations = FulltextIndexOperations(database)
+    private val fulltextIndexer = FulltextIndexer(fulltextIndexOperations, fulltextIndexingExecutor)
+
+    init {
+        // Index messages that were still queued when the app was last stopped
+        fulltextIndexer.schedule()
+    }
 
     override fun saveRemoteMessage(folderId: Long, messageServerId: String, messageData: SaveMessageData) {
         saveMessageOperations.saveRemoteMessage(folderId, messageServerId, messageData)
+        fulltextIndexer.schedule()
+    }
+
+    override fun saveRemoteMessages(folderId: Long, messages: Map<String, SaveMessageData>) {
+        saveMessageOperations.saveRemoteMessages(folderId, messages)
+        fulltextIndexer.schedule()
     }
 
     override fun saveLocalMessage(folderId: Long, messageData: SaveMessageData, existingMessageId: Long?): Long {
-        return saveMessageOperations.saveLocalMessage(folderId, messageData, existingMessageId)
+        return saveMessageOperations.saveLocalMessage(folderId, messageData, existingMessageId).also {
+            fulltextIndexer.schedule()
+        }
     }
 
     override fun copyMessage(messageId: Long, destinationFolderId: Long): Long {
@@ -69,6 +88,10 @@ class K9MessageStore(
         flagMessageOperations.setMessageFlag(folderId, messageServerId, flag, set)
     }
 
+    override fun setMessageFlags(folderId: Long, flagChanges: Map<String, Map<Flag, Boolean>>) {
+        flagMessageOperations.setMessageFlags(folderId, flagChanges)
+    }
+
     override fun setNewMessageState(folderId: Long, messageServerId: String, newMessage: Boolean) {
         updateMessageOperations.setNewMessageState(folderId, messageServerId, newMessage)
     }
@@ -97,6 +120,10 @@ class K9MessageStore(
         return retrieveMessageOperations.getMessageFlags(folderId, messageServerId)
     }
 
+    override fun getMessageFlags(folderId: Long, messageServerIds: Collection<String>): Map<String, Set<Flag>> {
+        return retrieveMessageOperations.getMessageFlags(folderId, messageServerIds)
+    }
+
     override fun getAllMessagesAndEffectiveDates(folderId: Long): Map<String, Long?> {
         return retrieveMessageOperations.getAllMessagesAndEffectiveDates(folderId)
     }
@@ -105,18 +132,60 @@ class K9MessageStore(
         selection: String,
         selectionArgs: Array<String>,
         sortOrder: String,
+        limit: Int?,
         messageMapper: MessageMapper<out T?>,
     ): List<T> {
-        return retrieveMessageListOperations.getMessages(selection, selectionArgs, sortOrder, messageMapper)
+        return retrieveMessageListOperations.getMessages(selection, selectionArgs, sortOrder, limit, messageMapper)
     }
 
     override fun <T> getThreadedMessages(
         selection: String,
         selectionArgs: Array<String>,
         sortOrder: String,
+        limit: Int?,
+        messageMapper: MessageMapper<out T?>,
+    ): List<T> {
+        return retrieveMessageListOperations.getThreadedMessages(
+            selection,
+            selectionArgs,
+            sortOrder,
+            limit,
+            messageMapper,
+        )
+    }
+
+    override fun <T> getThreadedMessagesInFolders(
+        folderSelection: String,
+        selectionArgs: Array<String>,
+        sortOrder: String,
+        limit: Int?,
         messageMapper: MessageMapper<out T?>,
     ): List<T> {
-        return retrieveMessageListOperations.getThreadedMessages(selection, selectionArgs, sortOrder, messageMapper)
+        return retrieveMessageListOperations.getThreadedMessagesInFolders(
+            folderSelection,
+            selectionArgs,
+            sortOrder,
+            limit,
+            messageMapper,
+        )
+    }
+
+    override fun <T> searchMessages(
+        fulltextQuery: String,
+        selection: String,
+        selectionArgs: Array<String>,
+        offset: Int,
+        limit: Int,
+        messageMapper: MessageMapper<out T?>,
+    ): List<T> {
+        return retrieveMessageListOperations.searchMessages(
+            fulltextQuery,
+            selection,
+            selectionArgs,
+            offset,
+            limit,
+            messageMapper,
+        )
     }
 
     override fun <T> getThread(threadId: Long, sortOrder: String, messageMapper: MessageMapper<out T?>): List<T> {
@@ -287,7 +356,12 @@ class K9MessageStore(
         return keyValueStoreOperations.setFolderExtraNumber(folderId, name, value)
     }
 
+    override fun getUnindexedMessageCount(): Int {
+        return fulltextIndexOperations.getQueuedMessageCount()
+    }
+
     override fun compact() {
+        folderCountersOperations.checkFolderCounters()
         return databaseOperations.compact()
     }
 }
@@ -7,15 +7,23 @@ import com.fsck.k9.mailstore.LocalStoreProvider
 import com.fsck.k9.mailstore.NotifierMessageStore
 import com.fsck.k9.mailstore.StorageManager
 import com.fsck.k9.message.extractors.BasicPartInfoExtractor
+import java.util.concurrent.Executor
 
 class K9MessageStoreFactory(
     private val localStoreProvider: LocalStoreProvider,
     private val storageManager: StorageManager,
     private val basicPartInfoExtractor: BasicPartInfoExtractor,
+    private val fulltextIndexingExecutor: Executor,
 ) : MessageStoreFactory {
     override fun create(account: Account): ListenableMessageStore {
         val localStore = localStoreProvider.getInstance(account)
-        val messageStore = K9MessageStore(localStore.database, storageManager, basicPartInfoExtractor, account.uuid)
+        val messageStore = K9MessageStore(
+            localStore.database,
+            storageManager,
+            basicPartInfoExtractor,
+            account.uuid,
+            fulltextIndexingExecutor,
+        )
         val notifierMessageStore = NotifierMessageStore(messageStore, localStore)
         return ListenableMessageStore(notifierMessageStore)
     }
@@ -0,0 +1,125 @@
+package com.fsck.k9.storage.messages
+
+import android.database.sqlite.SQLiteDatabase
+import androidx.core.database.getStringOrNull
+import com.fsck.k9.mail.Address
+import java.util.Locale
+
+internal const val ADDRESS_TYPE_FROM = 1
+internal const val ADDRESS_TYPE_TO = 2
+internal const val ADDRESS_TYPE_CC = 3
+
+/**
+ * The addresses of a message as stored in the `message_addresses` table.
+ */
+internal class MessageAddresses(
+    val fromAddresses: List<Address>,
+    val toAddresses: List<Address>,
+    val ccAddresses: List<Address>,
+) {
+    companion object {
+        val EMPTY = MessageAddresses(emptyList(), emptyList(), emptyList())
+    }
+}
+
+/**
+ * Returns the value stored in the `sender_sort_key` column for a message with the given sender addresses.
+ *
+ * This is the display name of the first sender, or its email address if there's no display name, in lower case.
+ */
+internal fun createSenderSortKey(fromAddresses: Array<Address>?): String? {
+    val sender = fromAddresses?.firstOrNull() ?: return null
+    val displayName = sender.personal?.trim()?.takeIf { it.isNotEmpty() } ?: sender.address
+
+    return displayName.lowercase(Locale.ROOT)
+}
+
+internal fun SQLiteDatabase.saveMessageAddresses(
+    messageId: Long,
+    fromAddresses: Array<Address>?,
+    toAddresses: Array<Address>?,
+    ccAddresses: Array<Address>?,
+) {
+    deleteMessageAddresses(messageId)
+
+    compileStatement(
+        "INSERT INTO message_addresses (message_id, type, position, address, display_name) VALUES (?, ?, ?, ?, ?)",
+    ).use { statement ->
+        fun insertAddresses(type: Int, addresses: Array<Address>?) {
+            addresses?.forEachIndexed { position, address ->
+                statement.bindLong(1, messageId)
+                statement.bindLong(2, type.toLong())
+                statement.bindLong(3, position.toLong())
+                statement.bindString(4, address.address)
+
+                val displayName = address.personal
+                if (displayName != null) {
+                    statement.bindString(5, displayName)
+                } else {
+                    statement.bindNull(5)
+                }
+
+                statement.executeInsert()
+                statement.clearBindings()
+            }
+        }
+
+        insertAddresses(ADDRESS_TYPE_FROM, fromAddresses)
+        insertAddresses(ADDRESS_TYPE_TO, toAddresses)
+        insertAddresses(ADDRESS_TYPE_CC, ccAddresses)
+    }
+}
+
+internal fun SQLiteDatabase.copyMessageAddresses(sourceMessageId: Long, destinationMessageId: Long) {
+    deleteMessageAddresses(destinationMessageId)
+
+    execSQL(
+        "INSERT INTO message_addresses (message_id, type, position, address, display_name) " +
+            "SELECT ?, type, position, address, display_name FROM message_addresses WHERE message_id = ?",
+        arrayOf(destinationMessageId.toString(), sourceMessageId.toString()),
+    )
+}
+
+internal fun SQLiteDatabase.deleteMessageAddresses(messageId: Long) {
+    delete("message_addresses", "message_id = ?", arrayOf(messageId.toString()))
+}
+
+/**
+ * Loads the addresses of the given messages without parsing them.
+ */
+internal fun SQLiteDatabase.loadMessageAddresses(messageIds: Collection<Long>): Map<Long, MessageAddresses> {
+    if (messageIds.isEmpty()) return emptyMap()
+
+    val fromAddresses = mutableMapOf<Long, MutableList<Address>>()
+    val toAddresses = mutableMapOf<Long, MutableList<Address>>()
+    val ccAddresses = mutableMapOf<Long, MutableList<Address>>()
+
+    performChunkedOperation(messageIds, Long::toString) { selectionSet, selectionArguments ->
+        rawQuery(
+            "SELECT message_id, type, address, display_name FROM message_addresses " +
+                "WHERE message_id $selectionSet ORDER BY message_id, type, position",
+            selectionArguments,
+        ).use { cursor ->
+            while (cursor.moveToNext()) {
+                val messageId = cursor.getLong(0)
+                val addresses = when (cursor.getInt(1)) {
+                    ADDRESS_TYPE_FROM -> fromAddresses
+                    ADDRESS_TYPE_TO -> toAddresses
+                    ADDRESS_TYPE_CC -> ccAddresses
+                    else -> continue
+                }
+                val address = Address.fromParsedValues(cursor.getString(2), cursor.getStringOrNull(3))
+
+                addresses.getOrPut(messageId) { mutableListOf() }.add(address)
+            }
+        }
+    }
+
+    return messageIds.associateWith { messageId ->
+        MessageAddresses(
+            fromAddresses = fromAddresses[messageId].orEmpty(),
+            toAddresses = toAddresses[messageId].orEmpty(),
+            ccAddresses = ccAddresses[messageId].orEmpty(),
+        )
+    }
+}
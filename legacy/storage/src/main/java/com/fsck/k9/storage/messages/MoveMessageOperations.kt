@@ -25,6 +25,7 @@ internal class MoveMessageOperations(
 
             convertOriginalMessageEntryToPlaceholderEntry(database, messageId)
             moveFulltextEntry(database, messageId, destinationMessageId)
+            moveMessageAddresses(database, messageId, destinationMessageId)
 
             destinationMessageId
         }
@@ -36,6 +37,22 @@ internal class MoveMessageOperations(
         }
 
         database.update("messages_fulltext", values, "docid = ?", arrayOf(messageId.toString()))
+
+        val queueValues = ContentValues().apply {
+            put("message_id", destinationMessageId)
+        }
+
+        database.update("messages_fulltext_queue", queueValues, "message_id = ?", arrayOf(messageId.toString()))
+    }
+
+    private fun moveMessageAddresses(database: SQLiteDatabase, messageId: Long, destinationMessageId: Long) {
+        database.deleteMessageAddresses(destinationMessageId)
+
+        val values = ContentValues().apply {
+            put("message_id", destinationMessageId)
+        }
+
+        database.update("message_addresses", values, "message_id = ?", arrayOf(messageId.toString()))
     }
 
     private fun createMessageEntry(
@@ -52,7 +69,7 @@ internal class MoveMessageOperations(
                 "subject", "date", "flags", "sender_list", "to_list", "cc_list", "bcc_list", "reply_to_list",
                 "attachment_count", "internal_date", "message_id", "preview_type", "preview", "mime_type",
                 "normalized_subject_hash", "read", "flagged", "answered", "forwarded", "message_part_id",
-                "encryption_type",
+                "encryption_type", "sender_sort_key",
             ),
             "id = ?",
             arrayOf(messageId.toString()),
@@ -90,6 +107,7 @@ internal class MoveMessageOperations(
                 put("forwarded", cursor.getIntOrNull("forwarded"))
                 put("message_part_id", cursor.getLongOrNull("message_part_id"))
                 put("encryption_type", cursor.getStringOrNull("encryption_type"))
+                put("sender_sort_key", cursor.getStringOrNull("sender_sort_key"))
             }
         }
 
@@ -126,6 +144,7 @@ internal class MoveMessageOperations(
             putNull("forwarded")
             putNull("message_part_id")
             putNull("encryption_type")
+            putNull("sender_sort_key")
         }
 
         database.update("messages", contentValues, "id = ?", arrayOf(messageId.toString()))
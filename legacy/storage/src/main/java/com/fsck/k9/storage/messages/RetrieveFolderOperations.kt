@@ -12,6 +12,7 @@ import com.fsck.k9.mailstore.FolderNotFoundException
 import com.fsck.k9.mailstore.LockableDatabase
 import com.fsck.k9.mailstore.toFolderType
 import com.fsck.k9.search.SqlQueryBuilder
+import com.fsck.k9.search.onlyUsesFolderFields
 
 internal class RetrieveFolderOperations(private val lockableDatabase: LockableDatabase) {
     fun <T> getFolder(folderId: Long, mapper: FolderMapper<T>): T? {
@@ -70,19 +71,15 @@ internal class RetrieveFolderOperations(private val lockableDatabase: LockableDa
 
             val query =
                 """
-SELECT ${FOLDER_COLUMNS.joinToString()}, (
-  SELECT COUNT(messages.id)
-  FROM messages
-  WHERE messages.folder_id = folders.id
-    AND messages.empty = 0 AND messages.deleted = 0
-    AND (messages.read = 0 OR folders.id = ?)
-), (
-  SELECT COUNT(messages.id)
-  FROM messages
-  WHERE messages.folder_id = folders.id
-    AND messages.empty = 0 AND messages.deleted = 0
-    AND messages.flagged = 1
-)
+SELECT ${FOLDER_COLUMNS.joinToString()}, CASE
+  WHEN folders.id = ? THEN (
+    SELECT COUNT(messages.id)
+    FROM messages
+    WHERE messages.folder_id = folders.id
+      AND messages.empty = 0 AND messages.deleted = 0
+  )
+  ELSE IFNULL(folders.unread_count, 0)
+END, IFNULL(folders.flagged_count, 0)
 FROM folders
 $displayModeSelection
                 """
@@ -150,7 +147,7 @@ $displayModeSelection
     fun getUnreadMessageCount(folderId: Long): Int {
         return lockableDatabase.execute(false) { db ->
             db.rawQuery(
-                "SELECT COUNT(id) FROM messages WHERE empty = 0 AND deleted = 0 AND read = 0 AND folder_id = ?",
+                "SELECT IFNULL(unread_count, 0) FROM folders WHERE id = ?",
                 arrayOf(folderId.toString()),
             ).use { cursor ->
                 if (cursor.moveToFirst()) cursor.getInt(0) else 0
@@ -159,11 +156,47 @@ $displayModeSelection
     }
 
     fun getUnreadMessageCount(conditions: ConditionsTreeNode?): Int {
-        return getMessageCount(condition = "messages.read = 0", conditions)
+        return if (conditions.onlyUsesFolderFields()) {
+            getFolderCounterSum(counterColumn = "unread_count", conditions)
+        } else {
+            getMessageCount(condition = "messages.read = 0", conditions)
+        }
     }
 
     fun getStarredMessageCount(conditions: ConditionsTreeNode?): Int {
-        return getMessageCount(condition = "messages.flagged = 1", conditions)
+        return if (conditions.onlyUsesFolderFields()) {
+            getFolderCounterSum(counterColumn = "flagged_count", conditions)
+        } else {
+            getMessageCount(condition = "messages.flagged = 1", conditions)
+        }
+    }
+
+    /**
+     * Sums up the counters maintained in the `folders` table for all folders matching [conditions].
+     *
+     * [conditions] may only contain search fields that map to columns of the `folders` table.
+     */
+    private fun getFolderCounterSum(counterColumn: String, conditions: ConditionsTreeNode?): Int {
+        val whereBuilder = StringBuilder()
+        val queryArgs = mutableListOf<String>()
+        SqlQueryBuilder.buildWhereClause(conditions, whereBuilder, queryArgs)
+
+        // The column names used by SqlQueryBuilder refer to the 'messages' table. So we rename 'folders.id'.
+        val query =
+            """
+SELECT IFNULL(SUM($counterColumn), 0)
+FROM (
+  SELECT id AS folder_id, integrate, visible, IFNULL($counterColumn, 0) AS $counterColumn
+  FROM folders
+)
+WHERE $whereBuilder
+            """
+
+        return lockableDatabase.execute(false) { db ->
+            db.rawQuery(query, queryArgs.toTypedArray()).use { cursor ->
+                if (cursor.moveToFirst()) cursor.getInt(0) else 0
+            }
+        }
     }
 
     private fun getMessageCount(condition: String, extraConditions: ConditionsTreeNode?): Int {
@@ -1,20 +1,34 @@
 package com.fsck.k9.storage.messages
 
 import android.database.Cursor
+import android.database.sqlite.SQLiteDatabase
+import androidx.core.database.getStringOrNull
 import app.k9mail.legacy.mailstore.MessageDetailsAccessor
 import app.k9mail.legacy.mailstore.MessageMapper
+import app.k9mail.legacy.mailstore.SearchSnippet
 import app.k9mail.legacy.message.extractors.PreviewResult
 import com.fsck.k9.mail.Address
 import com.fsck.k9.mailstore.DatabasePreviewType
 import com.fsck.k9.mailstore.LockableDatabase
 import com.fsck.k9.search.SqlQueryBuilder
 
-internal class RetrieveMessageListOperations(private val lockableDatabase: LockableDatabase) {
+private const val SNIPPET_TOKEN_COUNT = 16
+private const val MAX_RANKED_MESSAGE_COUNT = 1000
+private const val MAX_CACHED_SEARCH_COUNT = 4
+
+internal class RetrieveMessageListOperations(
+    private val lockableDatabase: LockableDatabase,
+    private val threadSummaryOperations: ThreadSummaryOperations,
+    private val maxRankedMessageCount: Int = MAX_RANKED_MESSAGE_COUNT,
+) {
+    // Rankings of the most recent searches, ordered from least to most recently computed. Guarded by itself.
+    private val rankedSearches = LinkedHashMap<RankedSearchKey, RankedSearch>()
 
     fun <T> getMessages(
         selection: String,
         selectionArgs: Array<String>,
         sortOrder: String,
+        limit: Int? = null,
         mapper: MessageMapper<out T?>,
     ): List<T> {
         return lockableDatabase.execute(false) { database ->
@@ -24,9 +38,6 @@ SELECT
   messages.id AS id, 
   uid, 
   folder_id, 
-  sender_list, 
-  to_list, 
-  cc_list, 
   date, 
   internal_date, 
   subject, 
@@ -37,7 +48,8 @@ SELECT
   answered, 
   forwarded, 
   attachment_count, 
-  root
+  root, 
+  sender_sort_key
 FROM messages
 JOIN threads ON (threads.message_id = messages.id)
 LEFT JOIN FOLDERS ON (folders.id = messages.folder_id)
@@ -45,18 +57,11 @@ WHERE
   ($selection)
   AND empty = 0 AND deleted = 0
 ORDER BY $sortOrder
+${buildLimitClause(limit)}
                 """,
                 selectionArgs,
             ).use { cursor ->
-                val cursorMessageAccessor = CursorMessageAccessor(cursor, includesThreadCount = false)
-                buildList {
-                    while (cursor.moveToNext()) {
-                        val value = mapper.map(cursorMessageAccessor)
-                        if (value != null) {
-                            add(value)
-                        }
-                    }
-                }
+                database.mapMessages(cursor, includesThreadCount = false, mapper)
             }
         }
     }
@@ -65,6 +70,7 @@ ORDER BY $sortOrder
         selection: String,
         selectionArgs: Array<String>,
         sortOrder: String,
+        limit: Int? = null,
         mapper: MessageMapper<out T?>,
     ): List<T> {
         val orderBy = SqlQueryBuilder.addPrefixToSelection(AGGREGATED_MESSAGES_COLUMNS, "aggregated.", sortOrder)
@@ -76,9 +82,6 @@ SELECT
   messages.id AS id, 
   uid, 
   folder_id, 
-  sender_list, 
-  to_list, 
-  cc_list, 
   aggregated.date AS date, 
   aggregated.internal_date AS internal_date, 
   subject, 
@@ -90,7 +93,8 @@ SELECT
   aggregated.forwarded AS forwarded, 
   aggregated.attachment_count AS attachment_count, 
   root, 
-  aggregated.thread_count AS thread_count
+  aggregated.thread_count AS thread_count, 
+  messages.sender_sort_key AS sender_sort_key
 FROM (
   SELECT 
     threads.root AS thread_root,
@@ -125,20 +129,360 @@ JOIN messages ON (
 JOIN folders ON (folders.id = messages.folder_id)
 GROUP BY threads.root
 ORDER BY $orderBy
+${buildLimitClause(limit)}
                 """,
                 selectionArgs,
             ).use { cursor ->
-                val cursorMessageAccessor = CursorMessageAccessor(cursor, includesThreadCount = true)
-                buildList {
+                database.mapMessages(cursor, includesThreadCount = true, mapper)
+            }
+        }
+    }
+
+    /**
+     * Retrieve the threaded message list of all threads with messages in the folders matching [folderSelection].
+     *
+     * This uses the precomputed `thread_summary` table. [folderSelection] may only reference the `root` and
+     * `folder_id` columns of that table and the columns of the `folders` table.
+     *
+     * Outdated summaries are updated in a write transaction first. When there are none, the list is read without
+     * waiting for a write transaction.
+     */
+    fun <T> getThreadedMessagesInFolders(
+        folderSelection: String,
+        selectionArgs: Array<String>,
+        sortOrder: String,
+        limit: Int? = null,
+        mapper: MessageMapper<out T?>,
+    ): List<T> {
+        val orderBy = SqlQueryBuilder.addPrefixToSelection(AGGREGATED_MESSAGES_COLUMNS, "aggregated.", sortOrder)
+
+        val hasDirtyThreadSummaries = lockableDatabase.execute(false) { database ->
+            threadSummaryOperations.hasDirtyThreadSummaries(database)
+        }
+        if (hasDirtyThreadSummaries) {
+            lockableDatabase.execute(true) { database ->
+                threadSummaryOperations.updateThreadSummaries(database)
+            }
+        }
+
+        return lockableDatabase.execute(false) { database ->
+            database.rawQuery(
+                """
+SELECT 
+  messages.id AS id, 
+  uid, 
+  messages.folder_id AS folder_id, 
+  aggregated.date AS date, 
+  aggregated.internal_date AS internal_date, 
+  subject, 
+  preview_type,
+  preview, 
+  aggregated.read AS read, 
+  aggregated.flagged AS flagged, 
+  aggregated.answered AS answered, 
+  aggregated.forwarded AS forwarded, 
+  aggregated.attachment_count AS attachment_count, 
+  aggregated.root AS root, 
+  aggregated.thread_count AS thread_count, 
+  messages.sender_sort_key AS sender_sort_key
+FROM (
+  SELECT 
+    thread_summary.root AS root,
+    MAX(thread_summary.date) AS date,
+    MAX(thread_summary.internal_date) AS internal_date,
+    MIN(thread_summary.read) AS read,
+    MAX(thread_summary.flagged) AS flagged,
+    MIN(thread_summary.answered) AS answered,
+    MIN(thread_summary.forwarded) AS forwarded,
+    SUM(thread_summary.attachment_count) AS attachment_count,
+    SUM(thread_summary.thread_count) AS thread_count
+  FROM thread_summary
+  JOIN folders ON (folders.id = thread_summary.folder_id)
+  WHERE ($folderSelection)
+  GROUP BY thread_summary.root
+) aggregated
+JOIN (
+  SELECT
+    thread_summary.root AS root,
+    thread_summary.date AS date,
+    thread_summary.newest_message_id AS newest_message_id
+  FROM thread_summary
+  JOIN folders ON (folders.id = thread_summary.folder_id)
+  WHERE ($folderSelection)
+) newest ON (newest.root = aggregated.root AND newest.date = aggregated.date)
+JOIN messages ON (messages.id = newest.newest_message_id)
+GROUP BY aggregated.root
+ORDER BY $orderBy
+${buildLimitClause(limit)}
+                """,
+                arrayOf(*selectionArgs, *selectionArgs),
+            ).use { cursor ->
+                database.mapMessages(cursor, includesThreadCount = true, mapper)
+            }
+        }
+    }
+
+    /**
+     * Retrieve messages whose text matches [fulltextQuery] ordered by relevance.
+     *
+     * Only the [maxRankedMessageCount] most recent matches are ranked. They are followed by messages that haven't been
+     * added to the full-text search index yet, which are matched by a substring search, and then by the remaining
+     * matches ordered by date. Only the message rows and snippets of the requested page are loaded. The preview of a
+     * returned message is replaced by a snippet of its text surrounding the matches.
+     *
+     * The ranking is computed when the first page (`offset == 0`) is requested and reused for subsequent pages of the
+     * same search.
+     */
+    fun <T> searchMessages(
+        fulltextQuery: String,
+        selection: String,
+        selectionArgs: Array<String>,
+        offset: Int,
+        limit: Int,
+        mapper: MessageMapper<out T?>,
+    ): List<T> {
+        require(offset >= 0) { "'offset' must not be negative" }
+        require(limit > 0) { "'limit' needs to be positive" }
+
+        return lockableDatabase.execute(false) { database ->
+            val messageIds = getMessageIdsForPage(database, fulltextQuery, selection, selectionArgs, offset, limit)
+
+            if (messageIds.isEmpty()) {
+                emptyList()
+            } else {
+                val snippets = getSnippets(database, fulltextQuery, messageIds)
+                val messages = getMessagesById(database, messageIds, snippets, mapper)
+                messageIds.mapNotNull { messageId -> messages[messageId] }
+            }
+        }
+    }
+
+    private fun getMessageIdsForPage(
+        database: SQLiteDatabase,
+        fulltextQuery: String,
+        selection: String,
+        selectionArgs: Array<String>,
+        offset: Int,
+        limit: Int,
+    ): List<Long> {
+        val rankedSearch = getRankedSearch(database, fulltextQuery, selection, selectionArgs, offset)
+        val rankedMessageIds = rankedSearch.messageIds.drop(offset).take(limit)
+        if (rankedMessageIds.size == limit || !rankedSearch.hasUnrankedMatches) {
+            return rankedMessageIds
+        }
+
+        // The first maxRankedMessageCount matches (by date) are part of the ranked messages
+        val unrankedOffset = maxRankedMessageCount + (offset - rankedSearch.messageIds.size).coerceAtLeast(0)
+        val unrankedMessageIds = getFulltextMatchesByDate(
+            database,
+            fulltextQuery,
+            selection,
+            selectionArgs,
+            offset = unrankedOffset,
+            limit = limit - rankedMessageIds.size,
+        ).filterNot { messageId -> messageId in rankedSearch.queuedMessageIds }
+
+        return rankedMessageIds + unrankedMessageIds
+    }
+
+    private fun getRankedSearch(
+        database: SQLiteDatabase,
+        fulltextQuery: String,
+        selection: String,
+        selectionArgs: Array<String>,
+        offset: Int,
+    ): RankedSearch {
+        val key = RankedSearchKey(fulltextQuery, selection, selectionArgs.toList())
+
+        if (offset > 0) {
+            val cachedSearch = synchronized(rankedSearches) { rankedSearches[key] }
+            if (cachedSearch != null) return cachedSearch
+        }
+
+        val rankedSearch = rankMessages(database, fulltextQuery, selection, selectionArgs)
+
+        synchronized(rankedSearches) {
+            rankedSearches.remove(key)
+            rankedSearches[key] = rankedSearch
+            if (rankedSearches.size > MAX_CACHED_SEARCH_COUNT) {
+                rankedSearches.remove(rankedSearches.keys.first())
+            }
+        }
+
+        return rankedSearch
+    }
+
+    private fun rankMessages(
+        database: SQLiteDatabase,
+        fulltextQuery: String,
+        selection: String,
+        selectionArgs: Array<String>,
+    ): RankedSearch {
+        val candidateIds = getFulltextMatchesByDate(
+            database,
+            fulltextQuery,
+            selection,
+            selectionArgs,
+            offset = 0,
+            limit = maxRankedMessageCount + 1,
+        )
+        val hasUnrankedMatches = candidateIds.size > maxRankedMessageCount
+
+        val scores = mutableMapOf<Long, Double>()
+        if (candidateIds.isNotEmpty()) {
+            performChunkedOperation(candidateIds.take(maxRankedMessageCount), Long::toString) { selectionSet, args ->
+                database.rawQuery(
+                    "SELECT docid, matchinfo(messages_fulltext, 'pcnalx') " +
+                        "FROM messages_fulltext WHERE messages_fulltext MATCH ? AND docid $selectionSet",
+                    arrayOf(fulltextQuery, *args),
+                ).use { cursor ->
                     while (cursor.moveToNext()) {
-                        val value = mapper.map(cursorMessageAccessor)
-                        if (value != null) {
-                            add(value)
-                        }
+                        scores[cursor.getLong(0)] = calculateBm25Score(cursor.getBlob(1))
                     }
                 }
             }
         }
+
+        val queuedMessageIds = database.rawQuery(
+            """
+SELECT messages.id
+FROM messages_fulltext_queue
+JOIN messages ON (messages.id = messages_fulltext_queue.message_id)
+JOIN threads ON (threads.message_id = messages.id)
+LEFT JOIN folders ON (folders.id = messages.folder_id)
+WHERE
+  messages_fulltext_queue.fulltext LIKE ? ESCAPE '\'
+  AND ($selection)
+  AND empty = 0 AND deleted = 0
+ORDER BY messages.date DESC, messages.id DESC
+LIMIT $maxRankedMessageCount
+            """,
+            arrayOf("%${SqlQueryBuilder.escapeLikePattern(fulltextQuery)}%", *selectionArgs),
+        ).use { cursor ->
+            buildSet {
+                while (cursor.moveToNext()) {
+                    val messageId = cursor.getLong(0)
+                    if (messageId !in scores) add(messageId)
+                }
+            }
+        }
+
+        val rankedMessageIds = scores.entries
+            .sortedWith(compareByDescending<Map.Entry<Long, Double>> { it.value }.thenByDescending { it.key })
+            .map { it.key }
+
+        return RankedSearch(rankedMessageIds + queuedMessageIds, queuedMessageIds, hasUnrankedMatches)
+    }
+
+    private fun getFulltextMatchesByDate(
+        database: SQLiteDatabase,
+        fulltextQuery: String,
+        selection: String,
+        selectionArgs: Array<String>,
+        offset: Int,
+        limit: Int,
+    ): List<Long> {
+        return database.rawQuery(
+            """
+SELECT messages.id
+FROM messages_fulltext
+JOIN messages ON (messages.id = messages_fulltext.docid)
+JOIN threads ON (threads.message_id = messages.id)
+LEFT JOIN folders ON (folders.id = messages.folder_id)
+WHERE
+  messages_fulltext MATCH ?
+  AND ($selection)
+  AND empty = 0 AND deleted = 0
+ORDER BY messages.date DESC, messages.id DESC
+LIMIT $limit OFFSET $offset
+            """,
+            arrayOf(fulltextQuery, *selectionArgs),
+        ).use { cursor ->
+            buildList {
+                while (cursor.moveToNext()) {
+                    add(cursor.getLong(0))
+                }
+            }
+        }
+    }
+
+    private fun getSnippets(
+        database: SQLiteDatabase,
+        fulltextQuery: String,
+        messageIds: List<Long>,
+    ): Map<Long, String> {
+        val snippets = mutableMapOf<Long, String>()
+        val matchStart = SearchSnippet.MATCH_START.toString()
+        val matchEnd = SearchSnippet.MATCH_END.toString()
+
+        performChunkedOperation(messageIds, Long::toString) { selectionSet, selectionArguments ->
+            database.rawQuery(
+                "SELECT docid, snippet(messages_fulltext, ?, ?, '…', -1, $SNIPPET_TOKEN_COUNT) " +
+                    "FROM messages_fulltext WHERE messages_fulltext MATCH ? AND docid $selectionSet",
+                arrayOf(matchStart, matchEnd, fulltextQuery, *selectionArguments),
+            ).use { cursor ->
+                while (cursor.moveToNext()) {
+                    snippets[cursor.getLong(0)] = cursor.getString(1)
+                }
+            }
+        }
+
+        return snippets
+    }
+
+    private fun <T> getMessagesById(
+        database: SQLiteDatabase,
+        messageIds: List<Long>,
+        snippets: Map<Long, String>,
+        mapper: MessageMapper<out T?>,
+    ): Map<Long, T> {
+        val messages = mutableMapOf<Long, T>()
+        val addresses = database.loadMessageAddresses(messageIds)
+
+        performChunkedOperation(messageIds, Long::toString) { selectionSet, selectionArguments ->
+            database.rawQuery(
+                """
+SELECT 
+  messages.id AS id, 
+  uid, 
+  folder_id, 
+  date, 
+  internal_date, 
+  subject, 
+  preview_type,
+  preview, 
+  read, 
+  flagged, 
+  answered, 
+  forwarded, 
+  attachment_count, 
+  root, 
+  sender_sort_key
+FROM messages
+JOIN threads ON (threads.message_id = messages.id)
+WHERE messages.id $selectionSet AND empty = 0 AND deleted = 0
+                """,
+                selectionArguments,
+            ).use { cursor ->
+                val cursorMessageAccessor = CursorMessageAccessor(cursor, includesThreadCount = false, addresses)
+                while (cursor.moveToNext()) {
+                    val messageId = cursorMessageAccessor.id
+                    val snippet = snippets[messageId]
+                    val messageAccessor = if (snippet != null) {
+                        SnippetMessageAccessor(cursorMessageAccessor, snippet)
+                    } else {
+                        cursorMessageAccessor
+                    }
+
+                    val value = mapper.map(messageAccessor)
+                    if (value != null) {
+                        messages[messageId] = value
+                    }
+                }
+            }
+        }
+
+        return messages
     }
 
     fun <T> getThread(threadId: Long, sortOrder: String, mapper: MessageMapper<out T?>): List<T> {
@@ -149,9 +493,6 @@ SELECT
   messages.id AS id, 
   uid, 
   folder_id, 
-  sender_list, 
-  to_list, 
-  cc_list, 
   date, 
   internal_date, 
   subject, 
@@ -162,7 +503,8 @@ SELECT
   answered, 
   forwarded, 
   attachment_count, 
-  root
+  root, 
+  sender_sort_key
 FROM threads 
 JOIN messages ON (messages.id = threads.message_id)
 LEFT JOIN FOLDERS ON (folders.id = messages.folder_id)
@@ -173,21 +515,72 @@ ORDER BY $sortOrder
                 """,
                 arrayOf(threadId.toString()),
             ).use { cursor ->
-                val cursorMessageAccessor = CursorMessageAccessor(cursor, includesThreadCount = false)
-                buildList {
-                    while (cursor.moveToNext()) {
-                        val value = mapper.map(cursorMessageAccessor)
-                        if (value != null) {
-                            add(value)
-                        }
-                    }
-                }
+                database.mapMessages(cursor, includesThreadCount = false, mapper)
+            }
+        }
+    }
+}
+
+private data class RankedSearchKey(
+    val fulltextQuery: String,
+    val selection: String,
+    val selectionArgs: List<String>,
+)
+
+/**
+ * Ranked messages of a search followed by the matching messages that haven't been indexed yet ([queuedMessageIds]).
+ *
+ * [hasUnrankedMatches] is `true` if there are more full-text matches than were ranked.
+ */
+private class RankedSearch(
+    val messageIds: List<Long>,
+    val queuedMessageIds: Set<Long>,
+    val hasUnrankedMatches: Boolean,
+)
+
+private fun buildLimitClause(limit: Int?): String {
+    return if (limit != null) {
+        require(limit > 0) { "'limit' needs to be positive" }
+        "LIMIT $limit"
+    } else {
+        ""
+    }
+}
+
+private fun <T> SQLiteDatabase.mapMessages(
+    cursor: Cursor,
+    includesThreadCount: Boolean,
+    mapper: MessageMapper<out T?>,
+): List<T> {
+    val messageIds = buildList {
+        while (cursor.moveToNext()) {
+            add(cursor.getLong(0))
+        }
+    }
+    val addresses = loadMessageAddresses(messageIds)
+
+    cursor.moveToPosition(-1)
+    val cursorMessageAccessor = CursorMessageAccessor(cursor, includesThreadCount, addresses)
+    return buildList {
+        while (cursor.moveToNext()) {
+            val value = mapper.map(cursorMessageAccessor)
+            if (value != null) {
+                add(value)
             }
         }
     }
 }
 
-private class CursorMessageAccessor(val cursor: Cursor, val includesThreadCount: Boolean) : MessageDetailsAccessor {
+private class CursorMessageAccessor(
+    val cursor: Cursor,
+    val includesThreadCount: Boolean,
+    val addresses: Map<Long, MessageAddresses>,
+) : MessageDetailsAccessor {
+    private val senderSortKeyColumnIndex = cursor.getColumnIndexOrThrow("sender_sort_key")
+
+    private val messageAddresses: MessageAddresses
+        get() = addresses[id] ?: MessageAddresses.EMPTY
+
     override val id: Long
         get() = cursor.getLong(0)
     override val messageServerId: String
@@ -195,40 +588,50 @@ private class CursorMessageAccessor(val cursor: Cursor, val includesThreadCount:
     override val folderId: Long
         get() = cursor.getLong(2)
     override val fromAddresses: List<Address>
-        get() = Address.unpack(cursor.getString(3)).toList()
+        get() = messageAddresses.fromAddresses
     override val toAddresses: List<Address>
-        get() = Address.unpack(cursor.getString(4)).toList()
+        get() = messageAddresses.toAddresses
     override val ccAddresses: List<Address>
-        get() = Address.unpack(cursor.getString(5)).toList()
+        get() = messageAddresses.ccAddresses
     override val messageDate: Long
-        get() = cursor.getLong(6)
+        get() = cursor.getLong(3)
     override val internalDate: Long
-        get() = cursor.getLong(7)
+        get() = cursor.getLong(4)
     override val subject: String?
-        get() = cursor.getString(8)
+        get() = cursor.getString(5)
+    override val senderSortKey: String?
+        get() = cursor.getStringOrNull(senderSortKeyColumnIndex)
     override val preview: PreviewResult
         get() {
-            return when (DatabasePreviewType.fromDatabaseValue(cursor.getString(9))) {
+            return when (DatabasePreviewType.fromDatabaseValue(cursor.getString(6))) {
                 DatabasePreviewType.NONE -> PreviewResult.none()
-                DatabasePreviewType.TEXT -> PreviewResult.text(cursor.getString(10))
+                DatabasePreviewType.TEXT -> PreviewResult.text(cursor.getString(7))
                 DatabasePreviewType.ENCRYPTED -> PreviewResult.encrypted()
                 DatabasePreviewType.ERROR -> PreviewResult.error()
             }
         }
     override val isRead: Boolean
-        get() = cursor.getInt(11) == 1
+        get() = cursor.getInt(8) == 1
     override val isStarred: Boolean
-        get() = cursor.getInt(12) == 1
+        get() = cursor.getInt(9) == 1
     override val isAnswered: Boolean
-        get() = cursor.getInt(13) == 1
+        get() = cursor.getInt(10) == 1
     override val isForwarded: Boolean
-        get() = cursor.getInt(14) == 1
+        get() = cursor.getInt(11) == 1
     override val hasAttachments: Boolean
-        get() = cursor.getInt(15) > 0
+        get() = cursor.getInt(12) > 0
     override val threadRoot: Long
-        get() = cursor.getLong(16)
+        get() = cursor.getLong(13)
     override val threadCount: Int
-        get() = if (includesThreadCount) cursor.getInt(17) else 0
+        get() = if (includesThreadCount) cursor.getInt(14) else 0
+}
+
+private class SnippetMessageAccessor(
+    private val message: MessageDetailsAccessor,
+    private val snippet: String,
+) : MessageDetailsAccessor by message {
+    override val preview: PreviewResult
+        get() = PreviewResult.text(snippet)
 }
 
 private val AGGREGATED_MESSAGES_COLUMNS = arrayOf(
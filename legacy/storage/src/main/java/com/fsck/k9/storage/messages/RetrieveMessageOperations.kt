@@ -1,5 +1,6 @@
 package com.fsck.k9.storage.messages
 
+import android.database.Cursor
 import androidx.core.database.getLongOrNull
 import com.fsck.k9.K9
 import com.fsck.k9.helper.mapToSet
@@ -110,32 +111,66 @@ internal class RetrieveMessageOperations(private val lockableDatabase: LockableD
             ).use { cursor ->
                 if (!cursor.moveToFirst()) error("Couldn't read flags for $folderId:$messageServerId")
 
-                val deleted = cursor.getInt(0) == 1
-                val read = cursor.getInt(1) == 1
-                val flagged = cursor.getInt(2) == 1
-                val answered = cursor.getInt(3) == 1
-                val forwarded = cursor.getInt(4) == 1
-                val flagsColumnValue = cursor.getString(5)
+                cursor.readFlags(startIndex = 0)
+            }
+        }
+    }
 
-                val otherFlags = if (flagsColumnValue.isNullOrBlank()) {
-                    emptySet()
-                } else {
-                    flagsColumnValue.split(',').map { Flag.valueOf(it) }
-                }
+    fun getMessageFlags(folderId: Long, messageServerIds: Collection<String>): Map<String, Set<Flag>> {
+        if (messageServerIds.isEmpty()) return emptyMap()
+
+        return lockableDatabase.execute(false) { database ->
+            val messageFlags = mutableMapOf<String, Set<Flag>>()
 
-                otherFlags
-                    .toMutableSet()
-                    .apply {
-                        if (deleted) add(Flag.DELETED)
-                        if (read) add(Flag.SEEN)
-                        if (flagged) add(Flag.FLAGGED)
-                        if (answered) add(Flag.ANSWERED)
-                        if (forwarded) add(Flag.FORWARDED)
+            performChunkedOperation(
+                arguments = messageServerIds,
+                argumentTransformation = { it },
+            ) { selectionSet, selectionArguments ->
+                database.query(
+                    "messages",
+                    arrayOf("uid", "deleted", "read", "flagged", "answered", "forwarded", "flags"),
+                    "folder_id = ? AND uid $selectionSet",
+                    arrayOf(folderId.toString()) + selectionArguments,
+                    null,
+                    null,
+                    null,
+                ).use { cursor ->
+                    while (cursor.moveToNext()) {
+                        val messageServerId = cursor.getString(0)
+                        messageFlags[messageServerId] = cursor.readFlags(startIndex = 1)
                     }
+                }
             }
+
+            messageFlags
         }
     }
 
+    private fun Cursor.readFlags(startIndex: Int): Set<Flag> {
+        val deleted = getInt(startIndex) == 1
+        val read = getInt(startIndex + 1) == 1
+        val flagged = getInt(startIndex + 2) == 1
+        val answered = getInt(startIndex + 3) == 1
+        val forwarded = getInt(startIndex + 4) == 1
+        val flagsColumnValue = getString(startIndex + 5)
+
+        val otherFlags = if (flagsColumnValue.isNullOrBlank()) {
+            emptySet()
+        } else {
+            flagsColumnValue.split(',').map { Flag.valueOf(it) }
+        }
+
+        return otherFlags
+            .toMutableSet()
+            .apply {
+                if (deleted) add(Flag.DELETED)
+                if (read) add(Flag.SEEN)
+                if (flagged) add(Flag.FLAGGED)
+                if (answered) add(Flag.ANSWERED)
+                if (forwarded) add(Flag.FORWARDED)
+            }
+    }
+
     fun getAllMessagesAndEffectiveDates(folderId: Long): Map<String, Long?> {
         return lockableDatabase.execute(false) { database ->
             database.rawQuery(
@@ -2,6 +2,8 @@ package com.fsck.k9.storage.messages
 
 import android.content.ContentValues
 import android.database.sqlite.SQLiteDatabase
+import android.database.sqlite.SQLiteStatement
+import androidx.core.database.getStringOrNull
 import app.k9mail.legacy.mailstore.SaveMessageData
 import app.k9mail.legacy.message.extractors.PreviewResult.PreviewType
 import com.fsck.k9.K9
@@ -28,9 +30,12 @@ import java.io.FileInputStream
 import java.io.FileOutputStream
 import java.io.IOException
 import java.io.InputStream
+import java.security.DigestInputStream
 import java.util.Stack
 import java.util.UUID
 import org.apache.commons.io.IOUtils
+import org.apache.commons.io.input.CloseShieldInputStream
+import org.apache.commons.io.output.NullOutputStream
 import org.apache.james.mime4j.codec.Base64InputStream
 import org.apache.james.mime4j.codec.QuotedPrintableInputStream
 import org.apache.james.mime4j.util.MimeUtil
@@ -47,6 +52,27 @@ internal class SaveMessageOperations(
         saveMessage(folderId, messageServerId, messageData)
     }
 
+    fun saveRemoteMessages(folderId: Long, messages: Map<String, SaveMessageData>) {
+        if (messages.isEmpty()) return
+
+        lockableDatabase.execute(true) { database ->
+            val existingMessages = getMessages(database, folderId, messages.keys)
+
+            database.compileFulltextStatement().use { fulltextStatement ->
+                for ((messageServerId, messageData) in messages) {
+                    saveOrReplaceMessage(
+                        database,
+                        fulltextStatement,
+                        folderId,
+                        messageServerId,
+                        messageData,
+                        existingMessageInfo = existingMessages[messageServerId],
+                    )
+                }
+            }
+        }
+    }
+
     fun saveLocalMessage(folderId: Long, messageData: SaveMessageData, existingMessageId: Long?): Long {
         return if (existingMessageId == null) {
             saveLocalMessage(folderId, messageData)
@@ -64,14 +90,17 @@ internal class SaveMessageOperations(
         return lockableDatabase.execute(true) { database ->
             val (messageServerId, rootMessagePartId) = getLocalMessageInfo(folderId, messageId)
 
-            replaceMessage(
-                database,
-                folderId,
-                messageServerId,
-                existingMessageId = messageId,
-                existingRootMessagePartId = rootMessagePartId,
-                messageData,
-            )
+            database.compileFulltextStatement().use { fulltextStatement ->
+                replaceMessage(
+                    database,
+                    fulltextStatement,
+                    folderId,
+                    messageServerId,
+                    existingMessageId = messageId,
+                    existingRootMessagePartId = rootMessagePartId,
+                    messageData,
+                )
+            }
 
             messageId
         }
@@ -79,29 +108,50 @@ internal class SaveMessageOperations(
 
     private fun saveMessage(folderId: Long, messageServerId: String, messageData: SaveMessageData): Long {
         return lockableDatabase.execute(true) { database ->
-            val message = messageData.message
-
             val existingMessageInfo = getMessage(folderId, messageServerId)
-            return@execute if (existingMessageInfo != null) {
-                val (existingMessageId, existingRootMessagePartId) = existingMessageInfo
-                replaceMessage(
+
+            database.compileFulltextStatement().use { fulltextStatement ->
+                saveOrReplaceMessage(
                     database,
+                    fulltextStatement,
                     folderId,
                     messageServerId,
-                    existingMessageId,
-                    existingRootMessagePartId,
                     messageData,
+                    existingMessageInfo,
                 )
-
-                existingMessageId
-            } else {
-                insertMessage(database, folderId, messageServerId, message, messageData)
             }
         }
     }
 
+    private fun saveOrReplaceMessage(
+        database: SQLiteDatabase,
+        fulltextStatement: SQLiteStatement,
+        folderId: Long,
+        messageServerId: String,
+        messageData: SaveMessageData,
+        existingMessageInfo: Pair<Long, Long?>?,
+    ): Long {
+        return if (existingMessageInfo != null) {
+            val (existingMessageId, existingRootMessagePartId) = existingMessageInfo
+            replaceMessage(
+                database,
+                fulltextStatement,
+                folderId,
+                messageServerId,
+                existingMessageId,
+                existingRootMessagePartId,
+                messageData,
+            )
+
+            existingMessageId
+        } else {
+            insertMessage(database, fulltextStatement, folderId, messageServerId, messageData.message, messageData)
+        }
+    }
+
     private fun insertMessage(
         database: SQLiteDatabase,
+        fulltextStatement: SQLiteStatement,
         folderId: Long,
         messageServerId: String,
         message: Message,
@@ -123,13 +173,14 @@ internal class SaveMessageOperations(
             threadMessageOperations.createThreadEntry(database, messageId, threadInfo?.rootId, threadInfo?.parentId)
         }
 
-        createOrReplaceFulltextEntry(database, messageId, messageData)
+        createOrReplaceFulltextEntry(fulltextStatement, messageId, messageData)
 
         return messageId
     }
 
     private fun replaceMessage(
         database: SQLiteDatabase,
+        fulltextStatement: SQLiteStatement,
         folderId: Long,
         messageServerId: String,
         existingMessageId: Long,
@@ -150,7 +201,7 @@ internal class SaveMessageOperations(
             replaceMessageId = existingMessageId,
         )
 
-        createOrReplaceFulltextEntry(database, messageId, messageData)
+        createOrReplaceFulltextEntry(fulltextStatement, messageId, messageData)
     }
 
     private fun saveMessageParts(database: SQLiteDatabase, message: Message): Long {
@@ -214,7 +265,7 @@ internal class SaveMessageOperations(
         }
 
         if (file != null) {
-            attachmentFileManager.moveTemporaryFile(file, messagePartId)
+            attachmentFileManager.storeTemporaryFile(file, values.getAsString("content_hash"))
         }
 
         return messagePartId
@@ -263,8 +314,9 @@ internal class SaveMessageOperations(
         return if (fileSize > MAX_BODY_SIZE_FOR_DATABASE) {
             values.put("data_location", DataLocation.ON_DISK)
             val file = writeBodyToDiskIfNecessary(part)
-            val size = decodeAndCountBytes(file, encoding, fileSize)
+            val (size, contentHash) = decodeCountAndHashBytes(file, encoding, fileSize)
             values.put("decoded_body_size", size)
+            values.put("content_hash", contentHash)
 
             file
         } else {
@@ -278,7 +330,7 @@ internal class SaveMessageOperations(
         }
     }
 
-    private fun writeBodyToDiskIfNecessary(part: Part): File? {
+    private fun writeBodyToDiskIfNecessary(part: Part): File {
         val body = part.body
         return if (body is BinaryTempFileBody) {
             body.file
@@ -287,7 +339,7 @@ internal class SaveMessageOperations(
         }
     }
 
-    private fun writeBodyToDisk(body: Body): File? {
+    private fun writeBodyToDisk(body: Body): File {
         val file = File.createTempFile("body", null, BinaryTempFileBody.getTempDirectory())
         FileOutputStream(file).use { outputStream ->
             body.writeTo(outputStream)
@@ -296,10 +348,21 @@ internal class SaveMessageOperations(
         return file
     }
 
-    private fun decodeAndCountBytes(file: File?, encoding: String, fallbackValue: Long): Long {
-        return FileInputStream(file).use { inputStream ->
-            decodeAndCountBytes(inputStream, encoding, fallbackValue)
+    /**
+     * Calculates the decoded size and the content hash of the file in one pass.
+     */
+    private fun decodeCountAndHashBytes(file: File, encoding: String, fallbackValue: Long): Pair<Long, String> {
+        val messageDigest = createContentHashDigest()
+        val size = DigestInputStream(FileInputStream(file), messageDigest).use { digestInputStream ->
+            val size = decodeAndCountBytes(CloseShieldInputStream.wrap(digestInputStream), encoding, fallbackValue)
+
+            // The decoder might stop before the end of the file, e.g. after invalid data
+            IOUtils.copy(digestInputStream, NullOutputStream.INSTANCE)
+
+            size
         }
+
+        return size to messageDigest.toContentHash()
     }
 
     private fun decodeAndCountBytes(rawInputStream: InputStream, encoding: String, fallbackValue: Long): Long {
@@ -407,6 +470,7 @@ internal class SaveMessageOperations(
             put("cc_list", Address.pack(message.getRecipients(RecipientType.CC)))
             put("bcc_list", Address.pack(message.getRecipients(RecipientType.BCC)))
             put("reply_to_list", Address.pack(message.replyTo))
+            put("sender_sort_key", createSenderSortKey(message.from))
             put("attachment_count", messageData.attachmentCount)
             put("message_id", message.messageId)
             put("mime_type", message.mimeType)
@@ -421,24 +485,39 @@ internal class SaveMessageOperations(
             }
         }
 
-        return if (replaceMessageId != null) {
+        val messageId = if (replaceMessageId != null) {
             values.put("id", replaceMessageId)
             database.replace("messages", null, values)
             replaceMessageId
         } else {
             database.insert("messages", null, values)
         }
+
+        database.saveMessageAddresses(
+            messageId,
+            fromAddresses = message.from,
+            toAddresses = message.getRecipients(RecipientType.TO),
+            ccAddresses = message.getRecipients(RecipientType.CC),
+        )
+
+        return messageId
     }
 
-    private fun createOrReplaceFulltextEntry(database: SQLiteDatabase, messageId: Long, messageData: SaveMessageData) {
-        val fulltext = messageData.textForSearchIndex ?: return
+    private fun SQLiteDatabase.compileFulltextStatement(): SQLiteStatement {
+        return compileStatement("INSERT OR REPLACE INTO messages_fulltext_queue (message_id, fulltext) VALUES (?, ?)")
+    }
 
-        val values = ContentValues().apply {
-            put("docid", messageId)
-            put("fulltext", fulltext)
-        }
+    private fun createOrReplaceFulltextEntry(
+        fulltextStatement: SQLiteStatement,
+        messageId: Long,
+        messageData: SaveMessageData,
+    ) {
+        val fulltext = messageData.textForSearchIndex ?: return
 
-        database.replace("messages_fulltext", null, values)
+        fulltextStatement.bindLong(1, messageId)
+        fulltextStatement.bindString(2, fulltext)
+        fulltextStatement.executeInsert()
+        fulltextStatement.clearBindings()
     }
 
     private fun getMessage(folderId: Long, messageServerId: String): Pair<Long, Long?>? {
@@ -463,6 +542,38 @@ internal class SaveMessageOperations(
         }
     }
 
+    private fun getMessages(
+        database: SQLiteDatabase,
+        folderId: Long,
+        messageServerIds: Collection<String>,
+    ): Map<String, Pair<Long, Long?>> {
+        val messages = mutableMapOf<String, Pair<Long, Long?>>()
+
+        performChunkedOperation(
+            arguments = messageServerIds,
+            argumentTransformation = { it },
+        ) { selectionSet, selectionArguments ->
+            database.query(
+                "messages",
+                arrayOf("uid", "id", "message_part_id"),
+                "folder_id = ? AND uid $selectionSet",
+                arrayOf(folderId.toString()) + selectionArguments,
+                null,
+                null,
+                null,
+            ).use { cursor ->
+                while (cursor.moveToNext()) {
+                    val messageServerId = cursor.getString(0)
+                    val messageId = cursor.getLong(1)
+                    val messagePartId = cursor.getLong(2)
+                    messages[messageServerId] = messageId to messagePartId
+                }
+            }
+        }
+
+        return messages
+    }
+
     private fun getLocalMessageInfo(folderId: Long, messageId: Long): Pair<String, Long?> {
         return lockableDatabase.execute(false) { db ->
             db.query(
@@ -484,14 +595,21 @@ internal class SaveMessageOperations(
     }
 
     private fun deleteMessagePartsAndDataFromDisk(database: SQLiteDatabase, rootMessagePartId: Long) {
-        deleteMessageDataFromDisk(database, rootMessagePartId)
+        val contentHashes = deleteMessageDataFromDisk(database, rootMessagePartId)
         deleteMessageParts(database, rootMessagePartId)
+        attachmentFileManager.deleteUnreferencedFiles(database, contentHashes)
     }
 
-    private fun deleteMessageDataFromDisk(database: SQLiteDatabase, rootMessagePartId: Long) {
+    /**
+     * Deletes files that are not shared with other message parts.
+     *
+     * @return The content hashes of shared files. They need to be checked after the message parts have been deleted.
+     */
+    private fun deleteMessageDataFromDisk(database: SQLiteDatabase, rootMessagePartId: Long): List<String> {
+        val contentHashes = mutableListOf<String>()
         database.query(
             "message_parts",
-            arrayOf("id"),
+            arrayOf("id", "content_hash"),
             "root = ? AND data_location = " + DataLocation.ON_DISK,
             arrayOf(rootMessagePartId.toString()),
             null,
@@ -499,10 +617,17 @@ internal class SaveMessageOperations(
             null,
         ).use { cursor ->
             while (cursor.moveToNext()) {
-                val messagePartId = cursor.getLong(0)
-                attachmentFileManager.deleteFile(messagePartId)
+                val contentHash = cursor.getStringOrNull(1)
+                if (contentHash != null) {
+                    contentHashes.add(contentHash)
+                } else {
+                    val messagePartId = cursor.getLong(0)
+                    attachmentFileManager.deleteFile(messagePartId)
+                }
             }
         }
+
+        return contentHashes
     }
 
     private fun deleteMessageParts(database: SQLiteDatabase, rootMessagePartId: Long) {
@@ -0,0 +1,73 @@
+package com.fsck.k9.storage.messages
+
+import android.database.DatabaseUtils
+import android.database.sqlite.SQLiteDatabase
+
+/**
+ * Keeps the `thread_summary` table up to date.
+ *
+ * The table contains one row per thread and folder with the values the threaded message list displays. Triggers on
+ * the `threads` and `messages` tables record the roots of all threads that have been modified in the
+ * `thread_summary_dirty` table. The summaries of these threads are recalculated in one batch by
+ * [updateThreadSummaries].
+ */
+internal class ThreadSummaryOperations {
+    fun hasDirtyThreadSummaries(database: SQLiteDatabase): Boolean {
+        return DatabaseUtils.queryNumEntries(database, "thread_summary_dirty") > 0L
+    }
+
+    fun updateThreadSummaries(database: SQLiteDatabase) {
+        if (!hasDirtyThreadSummaries(database)) return
+
+        database.execSQL(
+            "DELETE FROM thread_summary WHERE root IN (SELECT root FROM thread_summary_dirty)",
+        )
+
+        database.execSQL(
+            """
+INSERT INTO thread_summary (
+  root, 
+  folder_id, 
+  newest_message_id, 
+  date, 
+  internal_date, 
+  read, 
+  flagged, 
+  answered, 
+  forwarded, 
+  attachment_count, 
+  thread_count
+)
+SELECT 
+  threads.root, 
+  messages.folder_id, 
+  (
+    SELECT newest_message.id
+    FROM threads newest_thread
+    JOIN messages newest_message ON (newest_message.id = newest_thread.message_id)
+    WHERE
+      newest_thread.root = threads.root
+      AND newest_message.folder_id = messages.folder_id
+      AND newest_message.empty = 0 AND newest_message.deleted = 0
+    ORDER BY newest_message.date DESC, newest_message.id DESC
+    LIMIT 1
+  ), 
+  MAX(messages.date), 
+  MAX(messages.internal_date), 
+  MIN(messages.read), 
+  MAX(messages.flagged), 
+  MIN(messages.answered), 
+  MIN(messages.forwarded), 
+  SUM(messages.attachment_count), 
+  COUNT(messages.id)
+FROM thread_summary_dirty
+JOIN threads ON (threads.root = thread_summary_dirty.root)
+JOIN messages ON (messages.id = threads.message_id)
+WHERE messages.empty = 0 AND messages.deleted = 0
+GROUP BY threads.root, messages.folder_id
+            """,
+        )
+
+        database.execSQL("DELETE FROM thread_summary_dirty")
+    }
+}
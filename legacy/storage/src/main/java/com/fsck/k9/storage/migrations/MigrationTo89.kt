@@ -0,0 +1,78 @@
+package com.fsck.k9.storage.migrations
+
+import android.database.sqlite.SQLiteDatabase
+
+/**
+ * Maintain the 'unread_count' and 'flagged_count' columns of the 'folders' table using triggers on the 'messages'
+ * table.
+ */
+internal class MigrationTo89(private val db: SQLiteDatabase) {
+    fun addFolderCountersTriggers() {
+        createTriggers()
+        populateCounters()
+    }
+
+    private fun createTriggers() {
+        db.execSQL("DROP TRIGGER IF EXISTS update_folder_counters_on_insert")
+        db.execSQL(
+            "CREATE TRIGGER update_folder_counters_on_insert " +
+                "AFTER INSERT ON messages " +
+                "WHEN NEW.empty IS 0 AND NEW.deleted IS 0 " +
+                "BEGIN " +
+                "UPDATE folders SET " +
+                "unread_count = IFNULL(unread_count, 0) + (NEW.read IS 0), " +
+                "flagged_count = IFNULL(flagged_count, 0) + (NEW.flagged IS 1) " +
+                "WHERE id = NEW.folder_id; " +
+                "END",
+        )
+
+        db.execSQL("DROP TRIGGER IF EXISTS update_folder_counters_on_delete")
+        db.execSQL(
+            "CREATE TRIGGER update_folder_counters_on_delete " +
+                "AFTER DELETE ON messages " +
+                "WHEN OLD.empty IS 0 AND OLD.deleted IS 0 " +
+                "BEGIN " +
+                "UPDATE folders SET " +
+                "unread_count = IFNULL(unread_count, 0) - (OLD.read IS 0), " +
+                "flagged_count = IFNULL(flagged_count, 0) - (OLD.flagged IS 1) " +
+                "WHERE id = OLD.folder_id; " +
+                "END",
+        )
+
+        db.execSQL("DROP TRIGGER IF EXISTS update_folder_counters_on_update")
+        db.execSQL(
+            "CREATE TRIGGER update_folder_counters_on_update " +
+                "AFTER UPDATE OF folder_id, empty, deleted, read, flagged ON messages " +
+                "WHEN OLD.folder_id IS NOT NEW.folder_id OR OLD.empty IS NOT NEW.empty OR " +
+                "OLD.deleted IS NOT NEW.deleted OR OLD.read IS NOT NEW.read OR OLD.flagged IS NOT NEW.flagged " +
+                "BEGIN " +
+                "UPDATE folders SET " +
+                "unread_count = IFNULL(unread_count, 0) - (OLD.empty IS 0 AND OLD.deleted IS 0 AND OLD.read IS 0), " +
+                "flagged_count = IFNULL(flagged_count, 0) - " +
+                "(OLD.empty IS 0 AND OLD.deleted IS 0 AND OLD.flagged IS 1) " +
+                "WHERE id = OLD.folder_id; " +
+                "UPDATE folders SET " +
+                "unread_count = IFNULL(unread_count, 0) + (NEW.empty IS 0 AND NEW.deleted IS 0 AND NEW.read IS 0), " +
+                "flagged_count = IFNULL(flagged_count, 0) + " +
+                "(NEW.empty IS 0 AND NEW.deleted IS 0 AND NEW.flagged IS 1) " +
+                "WHERE id = NEW.folder_id; " +
+                "END",
+        )
+    }
+
+    private fun populateCounters() {
+        db.execSQL(
+            """
+            UPDATE folders SET
+              unread_count = (
+                SELECT COUNT(id) FROM messages
+                WHERE messages.folder_id = folders.id AND empty = 0 AND deleted = 0 AND read = 0
+              ),
+              flagged_count = (
+                SELECT COUNT(id) FROM messages
+                WHERE messages.folder_id = folders.id AND empty = 0 AND deleted = 0 AND flagged = 1
+              )
+            """.trimIndent(),
+        )
+    }
+}
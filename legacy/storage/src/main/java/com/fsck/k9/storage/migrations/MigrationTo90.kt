@@ -0,0 +1,100 @@
+package com.fsck.k9.storage.migrations
+
+import android.database.sqlite.SQLiteDatabase
+
+/**
+ * Add the 'thread_summary' table that contains precomputed values for the threaded message list, and the triggers
+ * that keep track of threads whose summary needs to be recalculated.
+ *
+ * All existing threads are marked as modified. Their summaries are calculated the first time they are needed.
+ */
+internal class MigrationTo90(private val db: SQLiteDatabase) {
+    fun addThreadSummaryTable() {
+        createTables()
+        createTriggers()
+        markAllThreadsAsModified()
+    }
+
+    private fun createTables() {
+        db.execSQL("DROP TABLE IF EXISTS thread_summary")
+        db.execSQL(
+            "CREATE TABLE thread_summary (" +
+                "root INTEGER NOT NULL, " +
+                "folder_id INTEGER NOT NULL, " +
+                "newest_message_id INTEGER, " +
+                "date INTEGER, " +
+                "internal_date INTEGER, " +
+                "read INTEGER, " +
+                "flagged INTEGER, " +
+                "answered INTEGER, " +
+                "forwarded INTEGER, " +
+                "attachment_count INTEGER, " +
+                "thread_count INTEGER, " +
+                "PRIMARY KEY (root, folder_id)" +
+                ")",
+        )
+
+        db.execSQL("DROP INDEX IF EXISTS thread_summary_folder_date")
+        db.execSQL("CREATE INDEX IF NOT EXISTS thread_summary_folder_date ON thread_summary (folder_id, date)")
+
+        db.execSQL("DROP TABLE IF EXISTS thread_summary_dirty")
+        db.execSQL(
+            "CREATE TABLE thread_summary_dirty (" +
+                "root INTEGER PRIMARY KEY" +
+                ")",
+        )
+    }
+
+    private fun createTriggers() {
+        db.execSQL("DROP TRIGGER IF EXISTS thread_summary_on_thread_insert")
+        db.execSQL(
+            "CREATE TRIGGER thread_summary_on_thread_insert " +
+                "AFTER INSERT ON threads " +
+                "WHEN NEW.root IS NOT NULL " +
+                "BEGIN " +
+                "INSERT OR IGNORE INTO thread_summary_dirty (root) VALUES (NEW.root); " +
+                "END",
+        )
+
+        db.execSQL("DROP TRIGGER IF EXISTS thread_summary_on_thread_update")
+        db.execSQL(
+            "CREATE TRIGGER thread_summary_on_thread_update " +
+                "AFTER UPDATE OF root, message_id ON threads " +
+                "WHEN OLD.root IS NOT NEW.root OR OLD.message_id IS NOT NEW.message_id " +
+                "BEGIN " +
+                "INSERT OR IGNORE INTO thread_summary_dirty (root) SELECT OLD.root WHERE OLD.root IS NOT NULL; " +
+                "INSERT OR IGNORE INTO thread_summary_dirty (root) SELECT NEW.root WHERE NEW.root IS NOT NULL; " +
+                "END",
+        )
+
+        db.execSQL("DROP TRIGGER IF EXISTS thread_summary_on_thread_delete")
+        db.execSQL(
+            "CREATE TRIGGER thread_summary_on_thread_delete " +
+                "AFTER DELETE ON threads " +
+                "WHEN OLD.root IS NOT NULL " +
+                "BEGIN " +
+                "INSERT OR IGNORE INTO thread_summary_dirty (root) VALUES (OLD.root); " +
+                "END",
+        )
+
+        db.execSQL("DROP TRIGGER IF EXISTS thread_summary_on_message_update")
+        db.execSQL(
+            "CREATE TRIGGER thread_summary_on_message_update " +
+                "AFTER UPDATE OF folder_id, empty, deleted, date, internal_date, read, flagged, answered, forwarded, " +
+                "attachment_count ON messages " +
+                "WHEN OLD.folder_id IS NOT NEW.folder_id OR OLD.empty IS NOT NEW.empty OR " +
+                "OLD.deleted IS NOT NEW.deleted OR OLD.date IS NOT NEW.date OR " +
+                "OLD.internal_date IS NOT NEW.internal_date OR OLD.read IS NOT NEW.read OR " +
+                "OLD.flagged IS NOT NEW.flagged OR OLD.answered IS NOT NEW.answered OR " +
+                "OLD.forwarded IS NOT NEW.forwarded OR OLD.attachment_count IS NOT NEW.attachment_count " +
+                "BEGIN " +
+                "INSERT OR IGNORE INTO thread_summary_dirty (root) " +
+                "SELECT root FROM threads WHERE message_id = NEW.id AND root IS NOT NULL; " +
+                "END",
+        )
+    }
+
+    private fun markAllThreadsAsModified() {
+        db.execSQL("INSERT OR IGNORE INTO thread_summary_dirty (root) SELECT root FROM threads WHERE root IS NOT NULL")
+    }
+}
@@ -0,0 +1,31 @@
+package com.fsck.k9.storage.migrations
+
+import android.database.sqlite.SQLiteDatabase
+
+/**
+ * Add the 'messages_fulltext_queue' table that holds the text of messages that haven't been added to the full-text
+ * search index yet, and remove its rows in the 'delete_message' trigger.
+ */
+internal class MigrationTo91(private val db: SQLiteDatabase) {
+    fun addFulltextQueueTable() {
+        db.execSQL("DROP TABLE IF EXISTS messages_fulltext_queue")
+        db.execSQL(
+            "CREATE TABLE messages_fulltext_queue (" +
+                "message_id INTEGER PRIMARY KEY, " +
+                "fulltext TEXT" +
+                ")",
+        )
+
+        db.execSQL("DROP TRIGGER IF EXISTS delete_message")
+        db.execSQL(
+            "CREATE TRIGGER delete_message " +
+                "BEFORE DELETE ON messages " +
+                "BEGIN " +
+                "DELETE FROM message_parts WHERE root = OLD.message_part_id; " +
+                "DELETE FROM messages_fulltext WHERE docid = OLD.id; " +
+                "DELETE FROM messages_fulltext_queue WHERE message_id = OLD.id; " +
+                "DELETE FROM threads WHERE message_id = OLD.id; " +
+                "END",
+        )
+    }
+}
@@ -0,0 +1,113 @@
+package com.fsck.k9.storage.migrations
+
+import android.content.ContentValues
+import android.database.sqlite.SQLiteDatabase
+import android.database.sqlite.SQLiteStatement
+import androidx.core.database.getStringOrNull
+import com.fsck.k9.mail.Address
+import java.util.Locale
+
+private const val ADDRESS_TYPE_FROM = 1
+private const val ADDRESS_TYPE_TO = 2
+private const val ADDRESS_TYPE_CC = 3
+
+/**
+ * Add the 'message_addresses' table containing the sender, 'To', and 'Cc' addresses of messages and the
+ * 'sender_sort_key' column to the 'messages' table. Then populate both from the packed address lists.
+ */
+internal class MigrationTo92(private val db: SQLiteDatabase) {
+    fun addMessageAddressesTable() {
+        createTableAndColumn()
+        updateDeleteMessageTrigger()
+        populateAddresses()
+    }
+
+    private fun createTableAndColumn() {
+        db.execSQL("ALTER TABLE messages ADD sender_sort_key TEXT")
+
+        db.execSQL("DROP INDEX IF EXISTS msg_folder_id_sender_sort_key")
+        db.execSQL(
+            "CREATE INDEX IF NOT EXISTS msg_folder_id_sender_sort_key ON messages (folder_id, sender_sort_key)",
+        )
+
+        db.execSQL("DROP TABLE IF EXISTS message_addresses")
+        db.execSQL(
+            "CREATE TABLE message_addresses (" +
+                "message_id INTEGER NOT NULL, " +
+                "type INTEGER NOT NULL, " +
+                "position INTEGER NOT NULL, " +
+                "address TEXT NOT NULL, " +
+                "display_name TEXT, " +
+                "PRIMARY KEY (message_id, type, position)" +
+                ")",
+        )
+    }
+
+    private fun updateDeleteMessageTrigger() {
+        db.execSQL("DROP TRIGGER IF EXISTS delete_message")
+        db.execSQL(
+            "CREATE TRIGGER delete_message " +
+                "BEFORE DELETE ON messages " +
+                "BEGIN " +
+                "DELETE FROM message_parts WHERE root = OLD.message_part_id; " +
+                "DELETE FROM messages_fulltext WHERE docid = OLD.id; " +
+                "DELETE FROM messages_fulltext_queue WHERE message_id = OLD.id; " +
+                "DELETE FROM message_addresses WHERE message_id = OLD.id; " +
+                "DELETE FROM threads WHERE message_id = OLD.id; " +
+                "END",
+        )
+    }
+
+    private fun populateAddresses() {
+        db.compileStatement(
+            "INSERT INTO message_addresses (message_id, type, position, address, display_name) VALUES (?, ?, ?, ?, ?)",
+        ).use { statement ->
+            db.rawQuery(
+                "SELECT id, sender_list, to_list, cc_list FROM messages WHERE empty = 0 AND deleted = 0",
+                null,
+            ).use { cursor ->
+                while (cursor.moveToNext()) {
+                    val messageId = cursor.getLong(0)
+                    val fromAddresses = Address.unpack(cursor.getStringOrNull(1))
+                    val toAddresses = Address.unpack(cursor.getStringOrNull(2))
+                    val ccAddresses = Address.unpack(cursor.getStringOrNull(3))
+
+                    statement.insertAddresses(messageId, ADDRESS_TYPE_FROM, fromAddresses)
+                    statement.insertAddresses(messageId, ADDRESS_TYPE_TO, toAddresses)
+                    statement.insertAddresses(messageId, ADDRESS_TYPE_CC, ccAddresses)
+                    updateSenderSortKey(messageId, fromAddresses.firstOrNull())
+                }
+            }
+        }
+    }
+
+    private fun SQLiteStatement.insertAddresses(messageId: Long, type: Int, addresses: Array<Address>) {
+        addresses.forEachIndexed { position, address ->
+            bindLong(1, messageId)
+            bindLong(2, type.toLong())
+            bindLong(3, position.toLong())
+            bindString(4, address.address)
+
+            val displayName = address.personal
+            if (displayName != null) {
+                bindString(5, displayName)
+            } else {
+                bindNull(5)
+            }
+
+            executeInsert()
+            clearBindings()
+        }
+    }
+
+    private fun updateSenderSortKey(messageId: Long, sender: Address?) {
+        if (sender == null) return
+
+        val displayName = sender.personal?.trim()?.takeIf { it.isNotEmpty() } ?: sender.address
+        val values = ContentValues().apply {
+            put("sender_sort_key", displayName.lowercase(Locale.ROOT))
+        }
+
+        db.update("messages", values, "id = ?", arrayOf(messageId.toString()))
+    }
+}
@@ -0,0 +1,18 @@
+package com.fsck.k9.storage.migrations
+
+import android.database.sqlite.SQLiteDatabase
+
+/**
+ * Add the 'content_hash' column to the 'message_parts' table.
+ *
+ * Message part files are now stored under the hash of their content so identical files can be shared by multiple
+ * message parts. Existing files keep their old name (the message part ID) until they are copied.
+ */
+internal class MigrationTo93(private val db: SQLiteDatabase) {
+    fun addMessagePartsContentHashColumn() {
+        db.execSQL("ALTER TABLE message_parts ADD content_hash TEXT")
+
+        db.execSQL("DROP INDEX IF EXISTS message_parts_content_hash")
+        db.execSQL("CREATE INDEX IF NOT EXISTS message_parts_content_hash ON message_parts (content_hash)")
+    }
+}
@@ -35,5 +35,10 @@ object Migrations {
         if (oldVersion < 86) MigrationTo86(db, migrationsHelper).addFoldersPushEnabledColumn()
         if (oldVersion < 87) MigrationTo87(db, migrationsHelper).addFoldersSyncEnabledColumn()
         if (oldVersion < 88) MigrationTo88(db, migrationsHelper).addFoldersVisibleColumn()
+        if (oldVersion < 89) MigrationTo89(db).addFolderCountersTriggers()
+        if (oldVersion < 90) MigrationTo90(db).addThreadSummaryTable()
+        if (oldVersion < 91) MigrationTo91(db).addFulltextQueueTable()
+        if (oldVersion < 92) MigrationTo92(db).addMessageAddressesTable()
+        if (oldVersion < 93) MigrationTo93(db).addMessagePartsContentHashColumn()
     }
 }
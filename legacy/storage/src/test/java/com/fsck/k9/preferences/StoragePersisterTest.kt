@@ -6,6 +6,8 @@ import assertk.assertThat
 import assertk.assertions.contains
 import assertk.assertions.containsOnly
 import assertk.assertions.isEmpty
+import assertk.assertions.isEqualTo
+import assertk.assertions.isFalse
 import assertk.assertions.isSameInstanceAs
 import assertk.assertions.isTrue
 import com.fsck.k9.preferences.K9StoragePersister.StoragePersistOperationCallback
@@ -20,6 +22,9 @@ import org.mockito.kotlin.verify
 import org.mockito.kotlin.verifyNoMoreInteractions
 import org.robolectric.RuntimeEnvironment
 
+private const val ACCOUNT_UUID = "00000000-0000-4000-0000-000000000000"
+private const val OTHER_ACCOUNT_UUID = "00000000-0000-4000-0000-000000000001"
+
 class StoragePersisterTest : K9RobolectricTest() {
     private var context: Context = RuntimeEnvironment.getApplication()
     private var storagePersister = K9StoragePersister(context)
@@ -106,6 +111,80 @@ class StoragePersisterTest : K9RobolectricTest() {
         assertThat(values.isEmpty).isTrue()
     }
 
+    @Test
+    fun loadValues_loadsAccountValuesOnFirstAccess() {
+        storagePersister.doInTransaction(
+            prepareCallback(
+                persistOp = { ops ->
+                    ops.put("accountUuids", ACCOUNT_UUID)
+                    ops.put("$ACCOUNT_UUID.description", "Account")
+                    ops.put("$OTHER_ACCOUNT_UUID.description", "Other")
+                },
+            ),
+        )
+
+        val storage = storagePersister.loadValues()
+
+        assertThat(storage.getString("accountUuids", null)).isEqualTo(ACCOUNT_UUID)
+        assertThat(storage.getString("$ACCOUNT_UUID.description", null)).isEqualTo("Account")
+        assertThat(storage.contains("$ACCOUNT_UUID.missing")).isFalse()
+        assertThat(storage.getString("$OTHER_ACCOUNT_UUID.description", null)).isEqualTo("Other")
+    }
+
+    @Test
+    fun loadValues_loadAccountValues_loadsValuesOfAllGivenAccounts() {
+        storagePersister.doInTransaction(
+            prepareCallback(
+                persistOp = { ops ->
+                    ops.put("$ACCOUNT_UUID.description", "Account")
+                    ops.put("$OTHER_ACCOUNT_UUID.description", "Other")
+                },
+            ),
+        )
+        val storage = storagePersister.loadValues()
+
+        storage.loadAccountValues(listOf(ACCOUNT_UUID, OTHER_ACCOUNT_UUID))
+        storagePersister.doInTransaction(
+            prepareCallback(
+                persistOp = { ops ->
+                    ops.put("$ACCOUNT_UUID.description", "Changed")
+                    ops.put("$OTHER_ACCOUNT_UUID.description", "Changed")
+                },
+            ),
+        )
+
+        assertThat(storage.getString("$ACCOUNT_UUID.description", null)).isEqualTo("Account")
+        assertThat(storage.getString("$OTHER_ACCOUNT_UUID.description", null)).isEqualTo("Other")
+    }
+
+    @Test
+    fun loadValues_getAllReturnsGlobalAndAccountValues() {
+        storagePersister.doInTransaction(
+            prepareCallback(
+                persistOp = { ops ->
+                    ops.put("x", "y")
+                    ops.put("$ACCOUNT_UUID.description", "Account")
+                },
+            ),
+        )
+
+        val storage = storagePersister.loadValues()
+        storage.getString("$ACCOUNT_UUID.description", null)
+
+        assertThat(storage.all).containsOnly("x" to "y", "$ACCOUNT_UUID.description" to "Account")
+    }
+
+    @Test
+    fun loadValues_onlyAccountValues_isNotEmpty() {
+        storagePersister.doInTransaction(
+            prepareCallback(persistOp = { ops -> ops.put("$ACCOUNT_UUID.description", "Account") }),
+        )
+
+        val storage = storagePersister.loadValues()
+
+        assertThat(storage.isEmpty).isFalse()
+    }
+
     private fun prepareCallback(
         persistOp: ((StoragePersistOperations) -> Unit)? = null,
         before: ((MutableMap<String, String>) -> Unit)? = null,
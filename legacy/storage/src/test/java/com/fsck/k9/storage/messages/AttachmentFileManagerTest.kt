@@ -0,0 +1,73 @@
+package com.fsck.k9.storage.messages
+
+import assertk.assertThat
+import assertk.assertions.containsExactlyInAnyOrder
+import assertk.assertions.isEqualTo
+import assertk.assertions.isFalse
+import com.fsck.k9.mailstore.StorageManager
+import com.fsck.k9.storage.RobolectricTest
+import java.io.File
+import org.junit.After
+import org.junit.Test
+import org.mockito.kotlin.anyOrNull
+import org.mockito.kotlin.doReturn
+import org.mockito.kotlin.eq
+import org.mockito.kotlin.mock
+
+private const val ACCOUNT_UUID = "00000000-0000-4000-0000-000000000000"
+
+class AttachmentFileManagerTest : RobolectricTest() {
+    private val messagePartDirectory = createRandomTempDirectory()
+    private val sqliteDatabase = createDatabase()
+    private val storageManager = mock<StorageManager> {
+        on { getAttachmentDirectory(eq(ACCOUNT_UUID), anyOrNull()) } doReturn messagePartDirectory
+    }
+    private val attachmentFileManager = AttachmentFileManager(storageManager, ACCOUNT_UUID)
+
+    @After
+    fun tearDown() {
+        messagePartDirectory.deleteRecursively()
+    }
+
+    @Test
+    fun `storeTemporaryFile() should not overwrite file with same content hash`() {
+        val contentHash = calculateContentHash("content".byteInputStream())
+        val temporaryFile1 = createTemporaryFile("content")
+        val temporaryFile2 = createTemporaryFile("content")
+
+        attachmentFileManager.storeTemporaryFile(temporaryFile1, contentHash)
+        attachmentFileManager.storeTemporaryFile(temporaryFile2, contentHash)
+
+        assertThat(messagePartDirectory.list()!!.toList()).containsExactlyInAnyOrder(contentHash)
+        assertThat(temporaryFile2.exists()).isFalse()
+    }
+
+    @Test
+    fun `convertToContentAddressedFile() should rename file`() {
+        messagePartDirectory.resolve("23").writeText("content")
+
+        val contentHash = attachmentFileManager.convertToContentAddressedFile(messagePartId = 23)
+
+        assertThat(contentHash).isEqualTo(calculateContentHash("content".byteInputStream()))
+        assertThat(messagePartDirectory.list()!!.toList()).containsExactlyInAnyOrder(contentHash)
+    }
+
+    @Test
+    fun `deleteAllUnreferencedFiles() should only delete content-addressed files without message part`() {
+        val referencedContentHash = calculateContentHash("referenced".byteInputStream())
+        val unreferencedContentHash = calculateContentHash("unreferenced".byteInputStream())
+        sqliteDatabase.createMessagePart(dataLocation = DataLocation.ON_DISK, contentHash = referencedContentHash)
+        messagePartDirectory.resolve(referencedContentHash).writeText("referenced")
+        messagePartDirectory.resolve(unreferencedContentHash).writeText("unreferenced")
+        messagePartDirectory.resolve("42").writeText("legacy")
+
+        val deletedFileCount = attachmentFileManager.deleteAllUnreferencedFiles(sqliteDatabase)
+
+        assertThat(deletedFileCount).isEqualTo(1)
+        assertThat(messagePartDirectory.list()!!.toList()).containsExactlyInAnyOrder(referencedContentHash, "42")
+    }
+
+    private fun createTemporaryFile(content: String): File {
+        return File.createTempFile("body", null).apply { writeText(content) }
+    }
+}
@@ -1,6 +1,7 @@
 package com.fsck.k9.storage.messages
 
 import assertk.assertThat
+import assertk.assertions.containsExactly
 import assertk.assertions.hasSize
 import assertk.assertions.isEqualTo
 import assertk.assertions.isNotIn
@@ -155,12 +156,38 @@ class CopyMessageOperationsTest : RobolectricTest() {
             ),
         )
 
+        val contentHash = calculateContentHash("Part contents".byteInputStream())
+        assertThat(destinationMessagePart3.contentHash).isEqualTo(contentHash)
+
         val files = messagePartDirectory.list()?.toList() ?: emptyList()
-        assertThat(files).hasSize(2)
+        assertThat(files).containsExactly(contentHash)
+
+        attachmentFileManager.getAttachmentFile(destinationMessagePart3.id!!, contentHash).source().buffer().use {
+            assertThat(it.readUtf8()).isEqualTo("Part contents")
+        }
+    }
 
-        attachmentFileManager.getAttachmentFile(destinationMessagePart3.id!!).source().buffer().use { source ->
-            assertThat(source.readUtf8()).isEqualTo("Part contents")
+    @Test
+    fun `copy message with content-addressed file should not copy the file`() {
+        val contentHash = calculateContentHash("Part contents".byteInputStream())
+        val sourceMessagePartId = sqliteDatabase.createMessagePart(
+            mimeType = "application/octet-stream",
+            dataLocation = DataLocation.ON_DISK,
+            contentHash = contentHash,
+        )
+        attachmentFileManager.getAttachmentFile(sourceMessagePartId, contentHash).sink().buffer().use { sink ->
+            sink.writeUtf8("Part contents")
         }
+        val sourceMessageId = sqliteDatabase.createMessage(folderId = 1, messagePartId = sourceMessagePartId)
+
+        val destinationMessageId = copyMessageOperations.copyMessage(sourceMessageId, destinationFolderId = 2)
+
+        val destinationMessage = sqliteDatabase.readMessages().first { it.id == destinationMessageId }
+        val messageParts = sqliteDatabase.readMessageParts()
+        assertThat(messageParts).hasSize(2)
+        val destinationMessagePart = messageParts.first { it.id == destinationMessage.messagePartId }
+        assertThat(destinationMessagePart.contentHash).isEqualTo(contentHash)
+        assertThat(messagePartDirectory.list()!!.toList()).containsExactly(contentHash)
     }
 
     @Test
@@ -6,8 +6,10 @@ import assertk.assertions.extracting
 import assertk.assertions.hasSize
 import assertk.assertions.isEmpty
 import assertk.assertions.isEqualTo
+import assertk.assertions.isFalse
 import assertk.assertions.isNotNull
 import assertk.assertions.isNull
+import assertk.assertions.isTrue
 import com.fsck.k9.mailstore.StorageManager
 import com.fsck.k9.storage.RobolectricTest
 import org.junit.After
@@ -34,6 +36,24 @@ class DeleteMessageOperationsTest : RobolectricTest() {
         messagePartDirectory.deleteRecursively()
     }
 
+    @Test
+    fun `destroy message should keep file that is shared with another message`() {
+        val folderId = sqliteDatabase.createFolder()
+        val messagePartId1 = sqliteDatabase.createMessagePart(dataLocation = DataLocation.ON_DISK, contentHash = "hash")
+        val messagePartId2 = sqliteDatabase.createMessagePart(dataLocation = DataLocation.ON_DISK, contentHash = "hash")
+        sqliteDatabase.createMessage(folderId = folderId, uid = "delete", messagePartId = messagePartId1)
+        sqliteDatabase.createMessage(folderId = folderId, uid = "keep", messagePartId = messagePartId2)
+        val file = messagePartDirectory.resolve("hash").apply { createNewFile() }
+
+        deleteMessageOperations.destroyMessages(folderId = folderId, messageServerIds = listOf("delete"))
+
+        assertThat(file.exists()).isTrue()
+
+        deleteMessageOperations.destroyMessages(folderId = folderId, messageServerIds = listOf("keep"))
+
+        assertThat(file.exists()).isFalse()
+    }
+
     @Test
     fun `destroy message with empty parent messages`() {
         val folderId = sqliteDatabase.createFolder()
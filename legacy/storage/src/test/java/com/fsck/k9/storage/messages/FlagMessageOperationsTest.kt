@@ -97,4 +97,35 @@ class FlagMessageOperationsTest : RobolectricTest() {
         val message = sqliteDatabase.readMessages().first()
         assertThat(message.flags).isEqualTo("")
     }
+
+    @Test
+    fun `set flags of multiple messages`() {
+        sqliteDatabase.createMessage(folderId = 1, uid = "uid1", read = false, flagged = true, flags = "")
+        sqliteDatabase.createMessage(folderId = 1, uid = "uid2", read = false, flags = "X_DOWNLOADED_FULL")
+        sqliteDatabase.createMessage(folderId = 1, uid = "uid3", read = false, flags = "")
+        sqliteDatabase.createMessage(folderId = 2, uid = "uid1", read = false, flagged = true, flags = "")
+
+        flagMessageOperations.setMessageFlags(
+            folderId = 1,
+            flagChanges = mapOf(
+                "uid1" to mapOf(Flag.SEEN to true, Flag.FLAGGED to false),
+                "uid2" to mapOf(Flag.SEEN to true, Flag.X_DOWNLOADED_FULL to false, Flag.DRAFT to true),
+            ),
+        )
+
+        val messages = sqliteDatabase.readMessages().associateBy { it.folderId to it.uid }
+        with(messages.getValue(1L to "uid1")) {
+            assertThat(read).isEqualTo(1)
+            assertThat(flagged).isEqualTo(0)
+        }
+        with(messages.getValue(1L to "uid2")) {
+            assertThat(read).isEqualTo(1)
+            assertThat(flags).isEqualTo("DRAFT")
+        }
+        assertThat(messages.getValue(1L to "uid3").read).isEqualTo(0)
+        with(messages.getValue(2L to "uid1")) {
+            assertThat(read).isEqualTo(0)
+            assertThat(flagged).isEqualTo(1)
+        }
+    }
 }
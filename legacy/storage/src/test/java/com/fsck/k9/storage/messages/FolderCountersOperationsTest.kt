@@ -0,0 +1,110 @@
+package com.fsck.k9.storage.messages
+
+import androidx.core.content.contentValuesOf
+import assertk.assertThat
+import assertk.assertions.isEqualTo
+import com.fsck.k9.storage.RobolectricTest
+import org.junit.Test
+
+class FolderCountersOperationsTest : RobolectricTest() {
+    private val sqliteDatabase = createDatabase()
+    private val lockableDatabase = createLockableDatabaseMock(sqliteDatabase)
+    private val folderCountersOperations = FolderCountersOperations(lockableDatabase)
+
+    @Test
+    fun `counters should be updated when messages are inserted`() {
+        val folderId = sqliteDatabase.createFolder()
+        sqliteDatabase.createMessage(folderId = folderId, read = false, flagged = true)
+        sqliteDatabase.createMessage(folderId = folderId, read = true, flagged = true)
+        sqliteDatabase.createMessage(folderId = folderId, read = false, flagged = false)
+        sqliteDatabase.createMessage(folderId = folderId, read = false, flagged = true, empty = true)
+        sqliteDatabase.createMessage(folderId = folderId, read = false, flagged = true, deleted = true)
+
+        val folder = sqliteDatabase.readFolders().first()
+
+        assertThat(folder.unreadCount).isEqualTo(2)
+        assertThat(folder.flaggedCount).isEqualTo(2)
+    }
+
+    @Test
+    fun `counters should be updated when messages are changed`() {
+        val folderId = sqliteDatabase.createFolder()
+        val messageId = sqliteDatabase.createMessage(folderId = folderId, read = false, flagged = false)
+        sqliteDatabase.createMessage(folderId = folderId, read = false, flagged = false)
+
+        sqliteDatabase.update(
+            "messages",
+            contentValuesOf("read" to 1, "flagged" to 1),
+            "id = ?",
+            arrayOf(messageId.toString()),
+        )
+
+        val folder = sqliteDatabase.readFolders().first()
+        assertThat(folder.unreadCount).isEqualTo(1)
+        assertThat(folder.flaggedCount).isEqualTo(1)
+    }
+
+    @Test
+    fun `counters should be updated when messages are moved to another folder`() {
+        val sourceFolderId = sqliteDatabase.createFolder()
+        val destinationFolderId = sqliteDatabase.createFolder()
+        val messageId = sqliteDatabase.createMessage(folderId = sourceFolderId, read = false, flagged = true)
+
+        sqliteDatabase.update(
+            "messages",
+            contentValuesOf("folder_id" to destinationFolderId),
+            "id = ?",
+            arrayOf(messageId.toString()),
+        )
+
+        val folders = sqliteDatabase.readFolders().associateBy { it.id }
+        assertThat(folders[sourceFolderId]?.unreadCount).isEqualTo(0)
+        assertThat(folders[sourceFolderId]?.flaggedCount).isEqualTo(0)
+        assertThat(folders[destinationFolderId]?.unreadCount).isEqualTo(1)
+        assertThat(folders[destinationFolderId]?.flaggedCount).isEqualTo(1)
+    }
+
+    @Test
+    fun `counters should be updated when messages are deleted`() {
+        val folderId = sqliteDatabase.createFolder()
+        val messageId = sqliteDatabase.createMessage(folderId = folderId, read = false, flagged = true)
+        sqliteDatabase.createMessage(folderId = folderId, read = false, flagged = true)
+
+        sqliteDatabase.delete("messages", "id = ?", arrayOf(messageId.toString()))
+
+        val folder = sqliteDatabase.readFolders().first()
+        assertThat(folder.unreadCount).isEqualTo(1)
+        assertThat(folder.flaggedCount).isEqualTo(1)
+    }
+
+    @Test
+    fun `checkFolderCounters() with consistent counters should not change anything`() {
+        val folderId = sqliteDatabase.createFolder()
+        sqliteDatabase.createMessage(folderId = folderId, read = false, flagged = true)
+
+        val result = folderCountersOperations.checkFolderCounters()
+
+        assertThat(result).isEqualTo(0)
+    }
+
+    @Test
+    fun `checkFolderCounters() should repair inconsistent counters`() {
+        val folderId = sqliteDatabase.createFolder()
+        sqliteDatabase.createFolder()
+        sqliteDatabase.createMessage(folderId = folderId, read = false, flagged = true)
+        sqliteDatabase.createMessage(folderId = folderId, read = true, flagged = false)
+        sqliteDatabase.update(
+            "folders",
+            contentValuesOf("unread_count" to 42, "flagged_count" to null),
+            "id = ?",
+            arrayOf(folderId.toString()),
+        )
+
+        val result = folderCountersOperations.checkFolderCounters()
+
+        assertThat(result).isEqualTo(1)
+        val folder = sqliteDatabase.readFolders().first { it.id == folderId }
+        assertThat(folder.unreadCount).isEqualTo(1)
+        assertThat(folder.flaggedCount).isEqualTo(1)
+    }
+}
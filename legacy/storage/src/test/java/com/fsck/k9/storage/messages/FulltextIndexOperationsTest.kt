@@ -0,0 +1,90 @@
+package com.fsck.k9.storage.messages
+
+import android.database.sqlite.SQLiteDatabase
+import androidx.core.content.contentValuesOf
+import assertk.assertThat
+import assertk.assertions.containsExactly
+import assertk.assertions.isEmpty
+import assertk.assertions.isEqualTo
+import com.fsck.k9.storage.RobolectricTest
+import org.junit.Test
+
+class FulltextIndexOperationsTest : RobolectricTest() {
+    private val sqliteDatabase = createDatabase()
+    private val lockableDatabase = createLockableDatabaseMock(sqliteDatabase)
+    private val fulltextIndexOperations = FulltextIndexOperations(lockableDatabase)
+
+    @Test
+    fun `indexQueuedMessages() should move queued texts to the full-text index in batches`() {
+        val folderId = sqliteDatabase.createFolder()
+        val messageId1 = sqliteDatabase.createMessage(folderId, uid = "uid1")
+        val messageId2 = sqliteDatabase.createMessage(folderId, uid = "uid2")
+        val messageId3 = sqliteDatabase.createMessage(folderId, uid = "uid3")
+        sqliteDatabase.queueFulltext(messageId1, "one")
+        sqliteDatabase.queueFulltext(messageId2, "two")
+        sqliteDatabase.queueFulltext(messageId3, "three")
+
+        val firstBatchCount = fulltextIndexOperations.indexQueuedMessages(batchSize = 2)
+
+        assertThat(firstBatchCount).isEqualTo(2)
+        assertThat(fulltextIndexOperations.getQueuedMessageCount()).isEqualTo(1)
+        assertThat(sqliteDatabase.findFulltextMatches("two")).containsExactly(messageId2)
+
+        val secondBatchCount = fulltextIndexOperations.indexQueuedMessages(batchSize = 2)
+
+        assertThat(secondBatchCount).isEqualTo(1)
+        assertThat(fulltextIndexOperations.getQueuedMessageCount()).isEqualTo(0)
+        assertThat(sqliteDatabase.findFulltextMatches("three")).containsExactly(messageId3)
+    }
+
+    @Test
+    fun `indexQueuedMessages() with empty queue`() {
+        val result = fulltextIndexOperations.indexQueuedMessages(batchSize = 10)
+
+        assertThat(result).isEqualTo(0)
+    }
+
+    @Test
+    fun `indexQueuedMessages() should replace existing index entry`() {
+        val folderId = sqliteDatabase.createFolder()
+        val messageId = sqliteDatabase.createMessage(folderId, uid = "uid1")
+        sqliteDatabase.queueFulltext(messageId, "old")
+        fulltextIndexOperations.indexQueuedMessages(batchSize = 10)
+        sqliteDatabase.queueFulltext(messageId, "new")
+
+        fulltextIndexOperations.indexQueuedMessages(batchSize = 10)
+
+        assertThat(sqliteDatabase.findFulltextMatches("old")).isEmpty()
+        assertThat(sqliteDatabase.findFulltextMatches("new")).containsExactly(messageId)
+    }
+
+    @Test
+    fun `deleting a message should remove its queued text`() {
+        val folderId = sqliteDatabase.createFolder()
+        val messageId = sqliteDatabase.createMessage(folderId, uid = "uid1")
+        sqliteDatabase.queueFulltext(messageId, "text")
+
+        sqliteDatabase.delete("messages", "id = ?", arrayOf(messageId.toString()))
+
+        assertThat(fulltextIndexOperations.getQueuedMessageCount()).isEqualTo(0)
+    }
+
+    private fun SQLiteDatabase.queueFulltext(messageId: Long, fulltext: String) {
+        insertWithOnConflict(
+            "messages_fulltext_queue",
+            null,
+            contentValuesOf("message_id" to messageId, "fulltext" to fulltext),
+            SQLiteDatabase.CONFLICT_REPLACE,
+        )
+    }
+
+    private fun SQLiteDatabase.findFulltextMatches(query: String): List<Long> {
+        return rawQuery("SELECT docid FROM messages_fulltext WHERE fulltext MATCH ?", arrayOf(query)).use { cursor ->
+            buildList {
+                while (cursor.moveToNext()) {
+                    add(cursor.getLong(0))
+                }
+            }
+        }
+    }
+}
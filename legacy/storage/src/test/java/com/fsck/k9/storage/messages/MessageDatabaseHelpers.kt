@@ -6,6 +6,7 @@ import app.k9mail.core.android.common.database.getIntOrNull
 import app.k9mail.core.android.common.database.getLongOrNull
 import app.k9mail.core.android.common.database.getStringOrNull
 import app.k9mail.core.android.common.database.map
+import com.fsck.k9.mail.Address
 import com.fsck.k9.mailstore.DatabasePreviewType
 import com.fsck.k9.mailstore.LockableDatabase
 import com.fsck.k9.mailstore.MigrationsHelper
@@ -92,9 +93,12 @@ fun SQLiteDatabase.createMessage(
         put("message_part_id", messagePartId)
         put("encryption_type", encryptionType)
         put("new_message", if (newMessage) 1 else 0)
+        put("sender_sort_key", createSenderSortKey(Address.unpack(senderList)))
     }
 
-    return insert("messages", null, values)
+    return insert("messages", null, values).also { messageId ->
+        saveMessageAddresses(messageId, Address.unpack(senderList), Address.unpack(toList), Address.unpack(ccList))
+    }
 }
 
 fun SQLiteDatabase.readMessages(): List<MessageEntry> {
@@ -129,6 +133,7 @@ fun SQLiteDatabase.readMessages(): List<MessageEntry> {
                 messagePartId = cursor.getLongOrNull("message_part_id"),
                 encryptionType = cursor.getStringOrNull("encryption_type"),
                 newMessage = cursor.getIntOrNull("new_message"),
+                senderSortKey = cursor.getStringOrNull("sender_sort_key"),
             )
         }
     }
@@ -162,6 +167,30 @@ data class MessageEntry(
     val messagePartId: Long?,
     val encryptionType: String?,
     val newMessage: Int?,
+    val senderSortKey: String?,
+)
+
+fun SQLiteDatabase.readMessageAddresses(): List<MessageAddressEntry> {
+    val cursor = rawQuery("SELECT * FROM message_addresses ORDER BY message_id, type, position", null)
+    return cursor.use {
+        cursor.map {
+            MessageAddressEntry(
+                messageId = cursor.getLongOrNull("message_id"),
+                type = cursor.getIntOrNull("type"),
+                position = cursor.getIntOrNull("position"),
+                address = cursor.getStringOrNull("address"),
+                displayName = cursor.getStringOrNull("display_name"),
+            )
+        }
+    }
+}
+
+data class MessageAddressEntry(
+    val messageId: Long?,
+    val type: Int?,
+    val position: Int?,
+    val address: String?,
+    val displayName: String?,
 )
 
 fun SQLiteDatabase.createMessagePart(
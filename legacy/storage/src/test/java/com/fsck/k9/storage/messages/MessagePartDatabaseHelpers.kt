@@ -26,6 +26,7 @@ fun SQLiteDatabase.createMessagePart(
     boundary: String? = null,
     contentId: String? = null,
     serverExtra: String? = null,
+    contentHash: String? = null,
 ): Long {
     val values = ContentValues().apply {
         put("type", type)
@@ -45,6 +46,7 @@ fun SQLiteDatabase.createMessagePart(
         put("boundary", boundary)
         put("content_id", contentId)
         put("server_extra", serverExtra)
+        put("content_hash", contentHash)
     }
 
     return insert("message_parts", null, values)
@@ -72,6 +74,7 @@ fun SQLiteDatabase.readMessageParts(): List<MessagePartEntry> {
                 boundary = cursor.getStringOrNull("boundary"),
                 contentId = cursor.getStringOrNull("content_id"),
                 serverExtra = cursor.getStringOrNull("server_extra"),
+                contentHash = cursor.getStringOrNull("content_hash"),
             )
         }
     }
@@ -96,6 +99,7 @@ data class MessagePartEntry(
     val boundary: String?,
     val contentId: String?,
     val serverExtra: String?,
+    val contentHash: String?,
 ) {
     override fun equals(other: Any?): Boolean {
         if (this === other) return true
@@ -131,6 +135,7 @@ data class MessagePartEntry(
         if (boundary != other.boundary) return false
         if (contentId != other.contentId) return false
         if (serverExtra != other.serverExtra) return false
+        if (contentHash != other.contentHash) return false
 
         return true
     }
@@ -154,6 +159,7 @@ data class MessagePartEntry(
         result = 31 * result + (boundary?.hashCode() ?: 0)
         result = 31 * result + (contentId?.hashCode() ?: 0)
         result = 31 * result + (serverExtra?.hashCode() ?: 0)
+        result = 31 * result + (contentHash?.hashCode() ?: 0)
         return result
     }
 
@@ -176,7 +182,8 @@ data class MessagePartEntry(
             "epilogue=$epilogue, " +
             "boundary=$boundary, " +
             "contentId=$contentId, " +
-            "serverExtra=$serverExtra)"
+            "serverExtra=$serverExtra, " +
+            "contentHash=$contentHash)"
     }
 }
 
@@ -1,12 +1,14 @@
 package com.fsck.k9.storage.messages
 
 import assertk.assertThat
+import assertk.assertions.containsExactly
 import assertk.assertions.hasSize
 import assertk.assertions.isEqualTo
 import assertk.assertions.isNotNull
 import assertk.assertions.isNull
 import assertk.assertions.startsWith
 import com.fsck.k9.K9
+import com.fsck.k9.mail.Address
 import com.fsck.k9.storage.RobolectricTest
 import org.junit.Test
 
@@ -187,6 +189,29 @@ class MoveMessageOperationsTest : RobolectricTest() {
         assertThat(destinationMessageThread.parent).isNull()
     }
 
+    @Test
+    fun `move message should move its addresses`() {
+        val originalMessageId = sqliteDatabase.createMessage(
+            folderId = SOURCE_FOLDER_ID,
+            uid = "uid1",
+            senderList = Address.pack(Address.parse("Alice <alice@domain.example>")),
+            toList = Address.pack(Address.parse("bob@domain.example")),
+        )
+        sqliteDatabase.createThread(messageId = originalMessageId)
+
+        val destinationMessageId = moveMessageOperations.moveMessage(
+            messageId = originalMessageId,
+            destinationFolderId = DESTINATION_FOLDER_ID,
+        )
+
+        val destinationMessage = sqliteDatabase.readMessages().first { it.id == destinationMessageId }
+        assertThat(destinationMessage.senderSortKey).isEqualTo("alice")
+        assertThat(sqliteDatabase.readMessageAddresses()).containsExactly(
+            MessageAddressEntry(destinationMessageId, ADDRESS_TYPE_FROM, 0, "alice@domain.example", "Alice"),
+            MessageAddressEntry(destinationMessageId, ADDRESS_TYPE_TO, 0, "bob@domain.example", null),
+        )
+    }
+
     private fun assertPlaceholderEntry(message: MessageEntry) {
         assertThat(message.deleted).isEqualTo(1)
         assertThat(message.empty).isEqualTo(0)
@@ -209,5 +234,6 @@ class MoveMessageOperationsTest : RobolectricTest() {
         assertThat(message.forwarded).isNull()
         assertThat(message.messagePartId).isNull()
         assertThat(message.encryptionType).isNull()
+        assertThat(message.senderSortKey).isNull()
     }
 }
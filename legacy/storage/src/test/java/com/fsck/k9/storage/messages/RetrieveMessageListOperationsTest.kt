@@ -1,6 +1,9 @@
 package com.fsck.k9.storage.messages
 
+import android.database.sqlite.SQLiteDatabase
+import androidx.core.content.contentValuesOf
 import app.k9mail.legacy.mailstore.MessageMapper
+import app.k9mail.legacy.mailstore.SearchSnippet
 import app.k9mail.legacy.message.extractors.PreviewResult.PreviewType
 import assertk.assertThat
 import assertk.assertions.containsExactly
@@ -16,7 +19,10 @@ import org.junit.Test
 class RetrieveMessageListOperationsTest : RobolectricTest() {
     private val sqliteDatabase = createDatabase()
     private val lockableDatabase = createLockableDatabaseMock(sqliteDatabase)
-    private val retrieveMessageListOperations = RetrieveMessageListOperations(lockableDatabase)
+    private val retrieveMessageListOperations = RetrieveMessageListOperations(
+        lockableDatabase,
+        ThreadSummaryOperations(),
+    )
 
     @Test
     fun `getMessages() on empty folder`() {
@@ -135,6 +141,120 @@ class RetrieveMessageListOperationsTest : RobolectricTest() {
         assertThat(result).containsExactly(messageId3, messageId1)
     }
 
+    @Test
+    fun `getMessages() with limit`() {
+        val folderId = sqliteDatabase.createFolder()
+        val messageId1 = sqliteDatabase.createMessage(folderId, uid = "uid1", date = 1L)
+        sqliteDatabase.createThread(messageId1)
+        val messageId2 = sqliteDatabase.createMessage(folderId, uid = "uid2", date = 2L)
+        sqliteDatabase.createThread(messageId2)
+        val messageId3 = sqliteDatabase.createMessage(folderId, uid = "uid3", date = 3L)
+        sqliteDatabase.createThread(messageId3)
+
+        val result = retrieveMessageListOperations.getMessages(
+            selection = "folder_id = ?",
+            selectionArgs = arrayOf(folderId.toString()),
+            sortOrder = "date DESC, id DESC",
+            limit = 2,
+        ) { message ->
+            message.id
+        }
+
+        assertThat(result).containsExactly(messageId3, messageId2)
+    }
+
+    @Test
+    fun `getMessages() with keyset condition and limit`() {
+        val folderId = sqliteDatabase.createFolder()
+        val messageId1 = sqliteDatabase.createMessage(folderId, uid = "uid1", date = 1L)
+        sqliteDatabase.createThread(messageId1)
+        val messageId2 = sqliteDatabase.createMessage(folderId, uid = "uid2", date = 2L)
+        sqliteDatabase.createThread(messageId2)
+        val messageId3 = sqliteDatabase.createMessage(folderId, uid = "uid3", date = 2L)
+        sqliteDatabase.createThread(messageId3)
+        val messageId4 = sqliteDatabase.createMessage(folderId, uid = "uid4", date = 3L)
+        sqliteDatabase.createThread(messageId4)
+
+        val result = retrieveMessageListOperations.getMessages(
+            selection = "(folder_id = ?) AND (date < ? OR (date = ? AND messages.id < ?))",
+            selectionArgs = arrayOf(folderId.toString(), "2", "2", messageId3.toString()),
+            sortOrder = "date DESC, id DESC",
+            limit = 2,
+        ) { message ->
+            message.id
+        }
+
+        assertThat(result).containsExactly(messageId2, messageId1)
+    }
+
+    @Test
+    fun `getMessages() sorted by sender`() {
+        val folderId = sqliteDatabase.createFolder()
+        val messageId1 = sqliteDatabase.createMessage(
+            folderId,
+            uid = "uid1",
+            senderList = Address.pack(Address.parse("bob@domain.example")),
+        )
+        sqliteDatabase.createThread(messageId1)
+        val messageId2 = sqliteDatabase.createMessage(
+            folderId,
+            uid = "uid2",
+            senderList = Address.pack(Address.parse("Alice <zoe@domain.example>")),
+        )
+        sqliteDatabase.createThread(messageId2)
+        val messageId3 = sqliteDatabase.createMessage(
+            folderId,
+            uid = "uid3",
+            senderList = Address.pack(Address.parse("Carol <carol@domain.example>")),
+        )
+        sqliteDatabase.createThread(messageId3)
+
+        val result = retrieveMessageListOperations.getMessages(
+            selection = "folder_id = ?",
+            selectionArgs = arrayOf(folderId.toString()),
+            sortOrder = "sender_sort_key ASC, date DESC, id DESC",
+        ) { message ->
+            message.fromAddresses.first().address
+        }
+
+        assertThat(result).containsExactly("zoe@domain.example", "bob@domain.example", "carol@domain.example")
+    }
+
+    @Test
+    fun `getMessages() should return sender sort key`() {
+        val folderId = sqliteDatabase.createFolder()
+        val messageId = sqliteDatabase.createMessage(
+            folderId,
+            uid = "uid1",
+            senderList = Address.pack(Address.parse("Alice <alice@domain.example>")),
+        )
+        sqliteDatabase.createThread(messageId)
+
+        val result = getMessagesFromFolder(folderId) { message -> message.senderSortKey }
+
+        assertThat(result).containsExactly("alice")
+    }
+
+    @Test
+    fun `getThreadedMessages() with limit`() {
+        val folderId = sqliteDatabase.createFolder()
+        val messageId1 = sqliteDatabase.createMessage(folderId, uid = "uid1", date = 1L)
+        sqliteDatabase.createThread(messageId1)
+        val messageId2 = sqliteDatabase.createMessage(folderId, uid = "uid2", date = 2L)
+        sqliteDatabase.createThread(messageId2)
+
+        val result = retrieveMessageListOperations.getThreadedMessages(
+            selection = "folder_id = ?",
+            selectionArgs = arrayOf(folderId.toString()),
+            sortOrder = "date DESC, id DESC",
+            limit = 1,
+        ) { message ->
+            message.id
+        }
+
+        assertThat(result).containsExactly(messageId2)
+    }
+
     @Test
     fun `getThreadedMessages() on empty folder`() {
         val folderId = sqliteDatabase.createFolder()
@@ -447,6 +567,252 @@ class RetrieveMessageListOperationsTest : RobolectricTest() {
         assertThat(result).containsExactly("OK")
     }
 
+    @Test
+    fun `getThreadedMessagesInFolders() on empty folder`() {
+        val folderId = sqliteDatabase.createFolder()
+
+        val result = getThreadedMessagesInFolder(folderId) { "unexpected" }
+
+        assertThat(result).isEmpty()
+    }
+
+    @Test
+    fun `getThreadedMessagesInFolders() should return aggregated values of thread`() {
+        val folderId = sqliteDatabase.createFolder()
+        val messageId1 = sqliteDatabase.createMessage(folderId, uid = "uid1", date = 1000L, read = true)
+        val threadId1 = sqliteDatabase.createThread(messageId1)
+        val messageId2 = sqliteDatabase.createMessage(folderId, uid = "uid2", date = 2000L, flagged = true)
+        sqliteDatabase.createThread(messageId2, root = threadId1)
+        val messageId3 = sqliteDatabase.createMessage(folderId, uid = "uid3", empty = true)
+        sqliteDatabase.createThread(messageId3, root = threadId1)
+
+        val result = getThreadedMessagesInFolder(folderId) { message ->
+            assertThat(message.id).isEqualTo(messageId2)
+            assertThat(message.messageDate).isEqualTo(2000L)
+            assertThat(message.isRead).isFalse()
+            assertThat(message.isStarred).isTrue()
+            assertThat(message.threadRoot).isEqualTo(threadId1)
+            assertThat(message.threadCount).isEqualTo(2)
+            "OK"
+        }
+
+        assertThat(result).containsExactly("OK")
+    }
+
+    @Test
+    fun `getThreadedMessagesInFolders() should reflect changed messages`() {
+        val folderId = sqliteDatabase.createFolder()
+        val messageId1 = sqliteDatabase.createMessage(folderId, uid = "uid1", date = 1000L, read = false)
+        val threadId1 = sqliteDatabase.createThread(messageId1)
+        val messageId2 = sqliteDatabase.createMessage(folderId, uid = "uid2", date = 2000L, read = true)
+        sqliteDatabase.createThread(messageId2, root = threadId1)
+        getThreadedMessagesInFolder(folderId) { it.isRead }
+
+        sqliteDatabase.update("messages", contentValuesOf("read" to 1), "id = ?", arrayOf(messageId1.toString()))
+        sqliteDatabase.delete("messages", "id = ?", arrayOf(messageId2.toString()))
+
+        val result = getThreadedMessagesInFolder(folderId) { message ->
+            assertThat(message.id).isEqualTo(messageId1)
+            assertThat(message.isRead).isTrue()
+            assertThat(message.threadCount).isEqualTo(1)
+            "OK"
+        }
+
+        assertThat(result).containsExactly("OK")
+    }
+
+    @Test
+    fun `getThreadedMessagesInFolders() should only include messages in matching folders`() {
+        val folderId1 = sqliteDatabase.createFolder()
+        val folderId2 = sqliteDatabase.createFolder()
+        val messageId1 = sqliteDatabase.createMessage(folderId1, uid = "uid1", date = 1000L)
+        val threadId1 = sqliteDatabase.createThread(messageId1)
+        val messageId2 = sqliteDatabase.createMessage(folderId2, uid = "uid2", date = 2000L)
+        sqliteDatabase.createThread(messageId2, root = threadId1)
+
+        val folderResult = getThreadedMessagesInFolder(folderId1) { message -> message.id to message.threadCount }
+        val combinedResult = retrieveMessageListOperations.getThreadedMessagesInFolders(
+            folderSelection = "folder_id IN (?, ?)",
+            selectionArgs = arrayOf(folderId1.toString(), folderId2.toString()),
+            sortOrder = "date DESC, id DESC",
+        ) { message ->
+            message.id to message.threadCount
+        }
+
+        assertThat(folderResult).containsExactly(messageId1 to 1)
+        assertThat(combinedResult).containsExactly(messageId2 to 2)
+    }
+
+    @Test
+    fun `getThreadedMessagesInFolders() should not return newest message of a folder that isn't selected`() {
+        val folderId1 = sqliteDatabase.createFolder()
+        val folderId2 = sqliteDatabase.createFolder()
+        val messageId1 = sqliteDatabase.createMessage(folderId1, uid = "uid1", date = 2000L)
+        val threadId1 = sqliteDatabase.createThread(messageId1)
+        val messageId2 = sqliteDatabase.createMessage(folderId2, uid = "uid2", date = 2000L)
+        sqliteDatabase.createThread(messageId2, root = threadId1)
+
+        val folderResult1 = getThreadedMessagesInFolder(folderId1) { message -> message.id to message.folderId }
+        val folderResult2 = getThreadedMessagesInFolder(folderId2) { message -> message.id to message.folderId }
+
+        assertThat(folderResult1).containsExactly(messageId1 to folderId1)
+        assertThat(folderResult2).containsExactly(messageId2 to folderId2)
+    }
+
+    @Test
+    fun `getThreadedMessagesInFolders() should return the same result as getThreadedMessages()`() {
+        val folderId = sqliteDatabase.createFolder()
+        val messageId1 = sqliteDatabase.createMessage(folderId, uid = "uid1", date = 1000L, attachmentCount = 1)
+        val threadId1 = sqliteDatabase.createThread(messageId1)
+        val messageId2 = sqliteDatabase.createMessage(folderId, uid = "uid2", date = 3000L, answered = true)
+        sqliteDatabase.createThread(messageId2, root = threadId1)
+        val messageId3 = sqliteDatabase.createMessage(folderId, uid = "uid3", date = 2000L, forwarded = true)
+        sqliteDatabase.createThread(messageId3)
+        val mapper = MessageMapper<List<Any>?> { message ->
+            listOf(
+                message.id,
+                message.messageDate,
+                message.isRead,
+                message.isAnswered,
+                message.isForwarded,
+                message.hasAttachments,
+                message.threadCount,
+            )
+        }
+
+        val result = getThreadedMessagesInFolder(folderId, mapper)
+
+        assertThat(result).isEqualTo(getThreadedMessagesFromFolder(folderId, mapper))
+    }
+
+    @Test
+    fun `searchMessages() should return messages ordered by relevance`() {
+        val folderId = sqliteDatabase.createFolder()
+        val messageId1 = sqliteDatabase.createSearchableMessage(folderId, "uid1", "a message about cats and dogs")
+        val messageId2 = sqliteDatabase.createSearchableMessage(folderId, "uid2", "cats cats cats")
+        sqliteDatabase.createSearchableMessage(folderId, "uid3", "nothing to see here")
+
+        val result = searchMessagesInFolder(folderId, "cats", offset = 0, limit = 10) { message -> message.id }
+
+        assertThat(result).containsExactly(messageId2, messageId1)
+    }
+
+    @Test
+    fun `searchMessages() should replace preview with snippet`() {
+        val folderId = sqliteDatabase.createFolder()
+        sqliteDatabase.createSearchableMessage(folderId, "uid1", "the quick brown fox")
+
+        val result = searchMessagesInFolder(folderId, "fox", offset = 0, limit = 10) { message ->
+            message.preview.previewText
+        }
+
+        assertThat(result).containsExactly("the quick brown ${SearchSnippet.MATCH_START}fox${SearchSnippet.MATCH_END}")
+    }
+
+    @Test
+    fun `searchMessages() with offset and limit`() {
+        val folderId = sqliteDatabase.createFolder()
+        val messageId1 = sqliteDatabase.createSearchableMessage(folderId, "uid1", "word")
+        val messageId2 = sqliteDatabase.createSearchableMessage(folderId, "uid2", "word")
+        val messageId3 = sqliteDatabase.createSearchableMessage(folderId, "uid3", "word")
+
+        val firstPage = searchMessagesInFolder(folderId, "word", offset = 0, limit = 2) { message -> message.id }
+        val secondPage = searchMessagesInFolder(folderId, "word", offset = 2, limit = 2) { message -> message.id }
+
+        assertThat(firstPage).containsExactly(messageId3, messageId2)
+        assertThat(secondPage).containsExactly(messageId1)
+    }
+
+    @Test
+    fun `searchMessages() should include messages that haven't been indexed yet`() {
+        val folderId = sqliteDatabase.createFolder()
+        val messageId1 = sqliteDatabase.createQueuedMessage(folderId, "uid1", "queued text")
+        val messageId2 = sqliteDatabase.createSearchableMessage(folderId, "uid2", "indexed text")
+
+        val result = searchMessagesInFolder(folderId, "text", offset = 0, limit = 10) { message -> message.id }
+
+        assertThat(result).containsExactly(messageId2, messageId1)
+    }
+
+    @Test
+    fun `searchMessages() should reuse ranking of first page for subsequent pages`() {
+        val folderId = sqliteDatabase.createFolder()
+        val messageId1 = sqliteDatabase.createSearchableMessage(folderId, "uid1", "word")
+        val messageId2 = sqliteDatabase.createSearchableMessage(folderId, "uid2", "word")
+        val firstPage = searchMessagesInFolder(folderId, "word", offset = 0, limit = 1) { message -> message.id }
+
+        val messageId3 = sqliteDatabase.createSearchableMessage(folderId, "uid3", "word")
+        val secondPage = searchMessagesInFolder(folderId, "word", offset = 1, limit = 1) { message -> message.id }
+        val newFirstPage = searchMessagesInFolder(folderId, "word", offset = 0, limit = 1) { message -> message.id }
+
+        assertThat(firstPage).containsExactly(messageId2)
+        assertThat(secondPage).containsExactly(messageId1)
+        assertThat(newFirstPage).containsExactly(messageId3)
+    }
+
+    @Test
+    fun `searchMessages() should keep rankings of interleaved searches`() {
+        val folderId = sqliteDatabase.createFolder()
+        val messageId1 = sqliteDatabase.createSearchableMessage(folderId, "uid1", "word other")
+        val messageId2 = sqliteDatabase.createSearchableMessage(folderId, "uid2", "word other")
+        val firstWordPage = searchMessagesInFolder(folderId, "word", offset = 0, limit = 1) { message -> message.id }
+        val firstOtherPage = searchMessagesInFolder(folderId, "other", offset = 0, limit = 1) { message -> message.id }
+
+        sqliteDatabase.createSearchableMessage(folderId, "uid3", "word other")
+        val secondWordPage = searchMessagesInFolder(folderId, "word", offset = 1, limit = 1) { message -> message.id }
+        val secondOtherPage = searchMessagesInFolder(folderId, "other", offset = 1, limit = 1) { message -> message.id }
+
+        assertThat(firstWordPage).containsExactly(messageId2)
+        assertThat(firstOtherPage).containsExactly(messageId2)
+        assertThat(secondWordPage).containsExactly(messageId1)
+        assertThat(secondOtherPage).containsExactly(messageId1)
+    }
+
+    @Test
+    fun `searchMessages() should only rank most recent matches and return older matches by date`() {
+        val retrieveMessageListOperations = RetrieveMessageListOperations(
+            lockableDatabase,
+            ThreadSummaryOperations(),
+            maxRankedMessageCount = 2,
+        )
+        val folderId = sqliteDatabase.createFolder()
+        val messageId1 = sqliteDatabase.createSearchableMessage(folderId, "uid1", "cats", date = 1L)
+        val messageId2 = sqliteDatabase.createSearchableMessage(folderId, "uid2", "cats cats cats", date = 2L)
+        val messageId3 = sqliteDatabase.createSearchableMessage(folderId, "uid3", "a message about cats", date = 3L)
+        val messageId4 = sqliteDatabase.createSearchableMessage(folderId, "uid4", "cats cats", date = 4L)
+
+        val firstPage = retrieveMessageListOperations.searchMessages(
+            fulltextQuery = "cats",
+            selection = "folder_id = ?",
+            selectionArgs = arrayOf(folderId.toString()),
+            offset = 0,
+            limit = 3,
+        ) { message -> message.id }
+        val secondPage = retrieveMessageListOperations.searchMessages(
+            fulltextQuery = "cats",
+            selection = "folder_id = ?",
+            selectionArgs = arrayOf(folderId.toString()),
+            offset = 3,
+            limit = 3,
+        ) { message -> message.id }
+
+        assertThat(firstPage).containsExactly(messageId4, messageId3, messageId2)
+        assertThat(secondPage).containsExactly(messageId1)
+    }
+
+    @Test
+    fun `searchMessages() should match wildcard characters literally in messages that haven't been indexed yet`() {
+        val folderId = sqliteDatabase.createFolder()
+        val messageId1 = sqliteDatabase.createQueuedMessage(folderId, "uid1", "100% off_road")
+        sqliteDatabase.createQueuedMessage(folderId, "uid2", "1000 offroad")
+
+        val percentResult = searchMessagesInFolder(folderId, "100%", offset = 0, limit = 10) { message -> message.id }
+        val underscoreResult = searchMessagesInFolder(folderId, "f_r", offset = 0, limit = 10) { message -> message.id }
+
+        assertThat(percentResult).containsExactly(messageId1)
+        assertThat(underscoreResult).containsExactly(messageId1)
+    }
+
     @Test
     fun `getThread() with empty message as thread root`() {
         val folderId = sqliteDatabase.createFolder()
@@ -486,6 +852,59 @@ class RetrieveMessageListOperationsTest : RobolectricTest() {
         )
     }
 
+    private fun <T> searchMessagesInFolder(
+        folderId: Long,
+        fulltextQuery: String,
+        offset: Int,
+        limit: Int,
+        mapper: MessageMapper<T?>,
+    ): List<T> {
+        return retrieveMessageListOperations.searchMessages(
+            fulltextQuery,
+            selection = "folder_id = ?",
+            selectionArgs = arrayOf(folderId.toString()),
+            offset,
+            limit,
+            mapper,
+        )
+    }
+
+    private fun SQLiteDatabase.createSearchableMessage(
+        folderId: Long,
+        uid: String,
+        fulltext: String,
+        date: Long = 0L,
+    ): Long {
+        val messageId = createMessage(folderId, uid = uid, date = date)
+        createThread(messageId)
+        execSQL(
+            "INSERT INTO messages_fulltext (docid, fulltext) VALUES (?, ?)",
+            arrayOf(messageId.toString(), fulltext),
+        )
+
+        return messageId
+    }
+
+    private fun SQLiteDatabase.createQueuedMessage(folderId: Long, uid: String, fulltext: String): Long {
+        val messageId = createMessage(folderId, uid = uid)
+        createThread(messageId)
+        execSQL(
+            "INSERT INTO messages_fulltext_queue (message_id, fulltext) VALUES (?, ?)",
+            arrayOf(messageId.toString(), fulltext),
+        )
+
+        return messageId
+    }
+
+    private fun <T> getThreadedMessagesInFolder(folderId: Long, mapper: MessageMapper<T?>): List<T> {
+        return retrieveMessageListOperations.getThreadedMessagesInFolders(
+            folderSelection = "folder_id = ?",
+            selectionArgs = arrayOf(folderId.toString()),
+            sortOrder = "date DESC, id DESC",
+            mapper,
+        )
+    }
+
     private fun <T> getThreadedMessagesFromFolder(folderId: Long, mapper: MessageMapper<T?>): List<T> {
         return retrieveMessageListOperations.getThreadedMessages(
             selection = "folder_id = ?",
@@ -3,6 +3,8 @@ package com.fsck.k9.storage.messages
 import app.k9mail.legacy.mailstore.SaveMessageData
 import app.k9mail.legacy.message.extractors.PreviewResult
 import assertk.assertThat
+import assertk.assertions.containsExactly
+import assertk.assertions.containsExactlyInAnyOrder
 import assertk.assertions.hasSize
 import assertk.assertions.isEqualTo
 import assertk.assertions.isNotNull
@@ -136,6 +138,76 @@ class SaveMessageOperationsTest : RobolectricTest() {
         }
     }
 
+    @Test
+    fun `save message should store addresses and sender sort key`() {
+        val messageData = buildMessage {
+            header("From", "Alice <alice@domain.example>")
+            header("To", "Bob <bob@domain.example>, carol@domain.example")
+            header("Cc", "<dave@domain.example>")
+
+            textBody("Text")
+        }.toSaveMessageData()
+
+        saveMessageOperations.saveRemoteMessage(folderId = 1, messageServerId = "uid1", messageData)
+
+        val message = sqliteDatabase.readMessages().single()
+        assertThat(message.senderSortKey).isEqualTo("alice")
+        assertThat(sqliteDatabase.readMessageAddresses()).containsExactly(
+            MessageAddressEntry(message.id, ADDRESS_TYPE_FROM, 0, "alice@domain.example", "Alice"),
+            MessageAddressEntry(message.id, ADDRESS_TYPE_TO, 0, "bob@domain.example", "Bob"),
+            MessageAddressEntry(message.id, ADDRESS_TYPE_TO, 1, "carol@domain.example", null),
+            MessageAddressEntry(message.id, ADDRESS_TYPE_CC, 0, "dave@domain.example", null),
+        )
+    }
+
+    @Test
+    fun `replacing a message should replace its addresses`() {
+        val existingMessageData = buildMessage {
+            header("From", "alice@domain.example")
+            header("To", "bob@domain.example, carol@domain.example")
+            textBody("old")
+        }.toSaveMessageData()
+        saveMessageOperations.saveRemoteMessage(folderId = 1, messageServerId = "uid1", existingMessageData)
+        val messageData = buildMessage {
+            header("From", "Dave <dave@domain.example>")
+            header("To", "bob@domain.example")
+            textBody("new")
+        }.toSaveMessageData()
+
+        saveMessageOperations.saveRemoteMessage(folderId = 1, messageServerId = "uid1", messageData)
+
+        val message = sqliteDatabase.readMessages().single()
+        assertThat(message.senderSortKey).isEqualTo("dave")
+        assertThat(sqliteDatabase.readMessageAddresses()).containsExactly(
+            MessageAddressEntry(message.id, ADDRESS_TYPE_FROM, 0, "dave@domain.example", "Dave"),
+            MessageAddressEntry(message.id, ADDRESS_TYPE_TO, 0, "bob@domain.example", null),
+        )
+    }
+
+    @Test
+    fun `save messages with identical large bodies should share one file`() {
+        saveMessageOperations.saveRemoteMessage(folderId = 1, "uid1", buildMessage { dataBody() }.toSaveMessageData())
+        saveMessageOperations.saveRemoteMessage(folderId = 2, "uid1", buildMessage { dataBody() }.toSaveMessageData())
+
+        val messageParts = sqliteDatabase.readMessageParts()
+        assertThat(messageParts).hasSize(2)
+        val contentHash = messageParts.first().contentHash
+        assertThat(contentHash).isNotNull()
+        assertThat(messageParts.last().contentHash).isEqualTo(contentHash)
+        assertThat(messagePartDirectory.list()!!.toList()).containsExactly(contentHash)
+    }
+
+    @Test
+    fun `replacing a message should delete its unreferenced file`() {
+        saveMessageOperations.saveRemoteMessage(folderId = 1, "uid1", buildMessage { dataBody() }.toSaveMessageData())
+
+        val messageData = buildMessage { dataBody(size = 30 * 1024) }.toSaveMessageData()
+        saveMessageOperations.saveRemoteMessage(folderId = 1, "uid1", messageData)
+
+        val messagePart = sqliteDatabase.readMessageParts().single()
+        assertThat(messagePartDirectory.list()!!.toList()).containsExactly(messagePart.contentHash)
+    }
+
     @Test
     fun `save message with multipart body`() {
         val messageData = buildMessage {
@@ -365,6 +437,40 @@ class SaveMessageOperationsTest : RobolectricTest() {
         assertThat(thread.messageId).isEqualTo(message.id)
     }
 
+    @Test
+    fun `save multiple remote messages`() {
+        val existingMessageData = buildMessage {
+            textBody("old")
+        }.toSaveMessageData()
+        saveMessageOperations.saveRemoteMessage(folderId = 1, messageServerId = "uid1", existingMessageData)
+        val messages = mapOf(
+            "uid1" to buildMessage { textBody("new") }.toSaveMessageData(textForSearchIndex = "new"),
+            "uid2" to buildMessage { textBody("two") }.toSaveMessageData(textForSearchIndex = "two"),
+            "uid3" to buildMessage { textBody("three") }.toSaveMessageData(),
+        )
+
+        saveMessageOperations.saveRemoteMessages(folderId = 1, messages)
+
+        val savedMessages = sqliteDatabase.readMessages()
+        assertThat(savedMessages.map { it.uid }).containsExactlyInAnyOrder("uid1", "uid2", "uid3")
+
+        val messageParts = sqliteDatabase.readMessageParts()
+        assertThat(messageParts.map { it.data?.toString(Charsets.UTF_8) })
+            .containsExactlyInAnyOrder("new", "two", "three")
+
+        val fulltextEntries = sqliteDatabase.rawQuery(
+            "SELECT fulltext FROM messages_fulltext_queue",
+            null,
+        ).use { cursor ->
+            buildList {
+                while (cursor.moveToNext()) {
+                    add(cursor.getString(0))
+                }
+            }
+        }
+        assertThat(fulltextEntries).containsExactlyInAnyOrder("new", "two")
+    }
+
     @Test
     fun `save local message`() {
         val messageData = buildMessage {
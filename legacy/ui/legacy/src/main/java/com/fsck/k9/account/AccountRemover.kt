@@ -7,6 +7,7 @@ import com.fsck.k9.Preferences
 import com.fsck.k9.backend.BackendManager
 import com.fsck.k9.controller.MessagingController
 import com.fsck.k9.mailstore.LocalStoreProvider
+import com.fsck.k9.mailstore.RenderedMessageCache
 import timber.log.Timber
 
 /**
@@ -18,6 +19,7 @@ class AccountRemover(
     private val backendManager: BackendManager,
     private val localKeyStoreManager: LocalKeyStoreManager,
     private val preferences: Preferences,
+    private val renderedMessageCache: RenderedMessageCache,
 ) {
 
     fun removeAccount(accountUuid: String) {
@@ -31,6 +33,7 @@ class AccountRemover(
         Timber.v("Removing account '%s'…", accountName)
 
         removeLocalStore(account)
+        renderedMessageCache.removeAccount(accountUuid)
         messagingController.deleteAccount(account)
         removeBackend(account)
 
@@ -26,6 +26,7 @@ import androidx.recyclerview.widget.DiffUtil
 import androidx.recyclerview.widget.RecyclerView
 import androidx.recyclerview.widget.RecyclerView.NO_POSITION
 import app.k9mail.core.ui.legacy.designsystem.atom.icon.Icons
+import app.k9mail.legacy.mailstore.SearchSnippet
 import app.k9mail.legacy.message.controller.MessageReference
 import com.fsck.k9.FontSizes
 import com.fsck.k9.UiDensity
@@ -409,7 +410,7 @@ class MessageListAdapter internal constructor(
             if (appearance.previewLines > 0) {
                 val preview = getPreview(isMessageEncrypted, previewText)
                 if (preview.isNotEmpty()) {
-                    messageStringBuilder.append(" – ").append(preview)
+                    messageStringBuilder.append(" – ").appendPreview(preview)
                 }
             }
             holder.preview.setTextColor(textColor)
@@ -462,6 +463,30 @@ class MessageListAdapter internal constructor(
         )
     }
 
+    // Search results use snippets in which the matching terms are surrounded by marker characters
+    private fun SpannableStringBuilder.appendPreview(preview: String) {
+        var index = 0
+        while (index < preview.length) {
+            val matchStart = preview.indexOf(SearchSnippet.MATCH_START, startIndex = index)
+            if (matchStart == -1) break
+
+            val matchEnd = preview.indexOf(SearchSnippet.MATCH_END, startIndex = matchStart).let { endIndex ->
+                if (endIndex == -1) preview.length else endIndex
+            }
+
+            append(preview, index, matchStart)
+            val spanStart = length
+            append(preview, matchStart + 1, matchEnd)
+            setSpan(StyleSpan(Typeface.BOLD), spanStart, length, Spannable.SPAN_EXCLUSIVE_EXCLUSIVE)
+
+            index = matchEnd + 1
+        }
+
+        if (index < preview.length) {
+            append(preview, index, preview.length)
+        }
+    }
+
     private fun addBeforePreviewSpan(text: Spannable, length: Int, messageRead: Boolean) {
         val fontSize = if (appearance.senderAboveSubject) {
             appearance.fontSizes.messageListSubject
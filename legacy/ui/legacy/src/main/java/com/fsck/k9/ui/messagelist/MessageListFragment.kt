@@ -347,11 +347,25 @@ class MessageListFragment :
         itemTouchHelper.attachToRecyclerView(recyclerView)
 
         recyclerView.adapter = adapter
+        recyclerView.addOnScrollListener(loadMoreScrollListener)
 
         this.recyclerView = recyclerView
         this.itemTouchHelper = itemTouchHelper
     }
 
+    // Only a window of the message list is loaded. Extend it before the user reaches the end of the loaded items.
+    private val loadMoreScrollListener = object : RecyclerView.OnScrollListener() {
+        override fun onScrolled(recyclerView: RecyclerView, dx: Int, dy: Int) {
+            if (dy <= 0) return
+
+            val layoutManager = recyclerView.layoutManager as LinearLayoutManager
+            val lastVisiblePosition = layoutManager.findLastVisibleItemPosition()
+            if (lastVisiblePosition >= adapter.messages.size - LOAD_MORE_THRESHOLD) {
+                viewModel.loadMoreMessages()
+            }
+        }
+    }
+
     private val shouldShowRecentChangesHintObserver = Observer<Boolean> { showRecentChangesHint ->
         val recentChangesSnackbarVisible = recentChangesSnackbar.isShown
         if (showRecentChangesHint && !recentChangesSnackbarVisible) {
@@ -2085,6 +2099,8 @@ class MessageListFragment :
         private const val STATE_ACTIVE_MESSAGE = "activeMessage"
         private const val STATE_REMOTE_SEARCH_PERFORMED = "remoteSearchPerformed"
 
+        private const val LOAD_MORE_THRESHOLD = 25
+
         fun newInstance(search: LocalSearch, isThreadDisplay: Boolean, threadedList: Boolean): MessageListFragment {
             return MessageListFragment().apply {
                 arguments = bundleOf(
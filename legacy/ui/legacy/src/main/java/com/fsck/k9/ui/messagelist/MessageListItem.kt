@@ -11,6 +11,7 @@ data class MessageListItem(
     val messageDate: Long,
     val internalDate: Long,
     val displayName: CharSequence,
+    val senderSortKey: String?,
     val displayAddress: Address?,
     val previewText: String,
     val isMessageEncrypted: Boolean,
@@ -34,6 +34,7 @@ class MessageListItemMapper(
             message.messageDate,
             message.internalDate,
             displayName,
+            message.senderSortKey,
             displayAddress,
             previewText,
             isMessageEncrypted,
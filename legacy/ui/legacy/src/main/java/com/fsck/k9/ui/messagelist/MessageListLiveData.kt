@@ -7,26 +7,52 @@ import app.k9mail.legacy.mailstore.MessageListRepository
 import com.fsck.k9.search.getAccountUuids
 import kotlinx.coroutines.CoroutineScope
 import kotlinx.coroutines.Dispatchers
+import kotlinx.coroutines.Job
 import kotlinx.coroutines.launch
 import kotlinx.coroutines.withContext
 
+/**
+ * Loads a window of the message list.
+ *
+ * The window starts out with [initialWindowSize] items and grows by [PAGE_SIZE] items every time [loadMore] is called.
+ * When the message list changes only the items inside the current window are reloaded.
+ */
 class MessageListLiveData(
     private val messageListLoader: MessageListLoader,
     private val accountManager: AccountManager,
     private val messageListRepository: MessageListRepository,
     private val coroutineScope: CoroutineScope,
     val config: MessageListConfig,
+    initialWindowSize: Int = PAGE_SIZE,
 ) : LiveData<MessageListInfo>() {
+    private var loadJob: Job? = null
+
+    var windowSize: Int = initialWindowSize.coerceAtLeast(PAGE_SIZE)
+        private set
 
     private val messageListChangedListener = MessageListChangedListener {
         loadMessageListAsync()
     }
 
     private fun loadMessageListAsync() {
-        coroutineScope.launch(Dispatchers.Main) {
+        loadJob?.cancel()
+        loadJob = coroutineScope.launch(Dispatchers.Main) {
+            val messageList = withContext(Dispatchers.IO) {
+                messageListLoader.getMessageList(config, windowSize)
+            }
+            value = messageList
+        }
+    }
+
+    fun loadMore() {
+        val messageListInfo = value ?: return
+        if (!messageListInfo.hasNextPage || loadJob?.isActive == true) return
+
+        loadJob = coroutineScope.launch(Dispatchers.Main) {
             val messageList = withContext(Dispatchers.IO) {
-                messageListLoader.getMessageList(config)
+                messageListLoader.getMoreMessages(config, messageListInfo, PAGE_SIZE)
             }
+            windowSize = messageList.messageListItems.size.coerceAtLeast(windowSize)
             value = messageList
         }
     }
@@ -52,4 +78,8 @@ class MessageListLiveData(
             }
         }
     }
+
+    companion object {
+        const val PAGE_SIZE = 100
+    }
 }
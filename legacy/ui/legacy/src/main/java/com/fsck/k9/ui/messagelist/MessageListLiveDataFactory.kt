@@ -9,7 +9,18 @@ class MessageListLiveDataFactory(
     private val preferences: Preferences,
     private val messageListRepository: MessageListRepository,
 ) {
-    fun create(coroutineScope: CoroutineScope, config: MessageListConfig): MessageListLiveData {
-        return MessageListLiveData(messageListLoader, preferences, messageListRepository, coroutineScope, config)
+    fun create(
+        coroutineScope: CoroutineScope,
+        config: MessageListConfig,
+        initialWindowSize: Int = MessageListLiveData.PAGE_SIZE,
+    ): MessageListLiveData {
+        return MessageListLiveData(
+            messageListLoader,
+            preferences,
+            messageListRepository,
+            coroutineScope,
+            config,
+            initialWindowSize,
+        )
     }
 }
@@ -3,6 +3,7 @@ package com.fsck.k9.ui.messagelist
 import app.k9mail.legacy.account.Account
 import app.k9mail.legacy.account.Account.SortType
 import app.k9mail.legacy.mailstore.MessageListRepository
+import app.k9mail.legacy.search.ConditionsTreeNode
 import app.k9mail.legacy.search.LocalSearch
 import app.k9mail.legacy.search.api.SearchField
 import com.fsck.k9.Preferences
@@ -11,6 +12,7 @@ import com.fsck.k9.mailstore.LocalStoreProvider
 import com.fsck.k9.mailstore.MessageColumns
 import com.fsck.k9.search.SqlQueryBuilder
 import com.fsck.k9.search.getAccounts
+import com.fsck.k9.search.onlyUsesFolderFields
 import timber.log.Timber
 
 class MessageListLoader(
@@ -20,9 +22,12 @@ class MessageListLoader(
     private val messageHelper: MessageHelper,
 ) {
 
-    fun getMessageList(config: MessageListConfig): MessageListInfo {
+    /**
+     * Load the first [limit] items of the message list.
+     */
+    fun getMessageList(config: MessageListConfig, limit: Int): MessageListInfo {
         return try {
-            getMessageListInfo(config)
+            getMessageListInfo(config, limit)
         } catch (e: Exception) {
             Timber.e(e, "Error while fetching message list")
 
@@ -31,20 +36,89 @@ class MessageListLoader(
         }
     }
 
-    private fun getMessageListInfo(config: MessageListConfig): MessageListInfo {
+    /**
+     * Load up to [pageSize] items following the last item of [messageListInfo] and append them to the list.
+     *
+     * When sorting by date the next page is loaded using the sort key and database ID of the last item as cursor.
+     * Full-text search results ranked by relevance are paged using an offset. Otherwise the list is reloaded with a
+     * bigger limit.
+     */
+    fun getMoreMessages(config: MessageListConfig, messageListInfo: MessageListInfo, pageSize: Int): MessageListInfo {
+        val lastItem = messageListInfo.messageListItems.lastOrNull()
+        if (lastItem == null || !messageListInfo.hasNextPage) return messageListInfo
+
+        return try {
+            val accounts = config.search.getAccounts(preferences)
+            if (isRankedSearch(accounts, config)) {
+                val offset = messageListInfo.messageListItems.size
+                val (messageListItems, hasNextPage) = loadSearchResults(accounts.single(), config, offset, pageSize)
+
+                messageListInfo.copy(
+                    messageListItems = messageListInfo.messageListItems + messageListItems,
+                    hasNextPage = hasNextPage,
+                )
+            } else if (supportsKeysetPagination(config)) {
+                val (messageListItems, hasNextPage) = loadMessageListWindow(accounts, config, pageSize, lastItem)
+
+                messageListInfo.copy(
+                    messageListItems = messageListInfo.messageListItems + messageListItems,
+                    hasNextPage = hasNextPage,
+                )
+            } else {
+                getMessageListInfo(config, limit = messageListInfo.messageListItems.size + pageSize)
+            }
+        } catch (e: Exception) {
+            Timber.e(e, "Error while fetching more messages")
+            messageListInfo
+        }
+    }
+
+    private fun getMessageListInfo(config: MessageListConfig, limit: Int): MessageListInfo {
         val accounts = config.search.getAccounts(preferences)
+        val (messageListItems, hasNextPage) = if (isRankedSearch(accounts, config)) {
+            loadSearchResults(accounts.single(), config, offset = 0, limit)
+        } else {
+            loadMessageListWindow(accounts, config, limit, after = null)
+        }
+
+        val hasMoreMessages = loadHasMoreMessages(accounts, config.search.folderIds)
+
+        return MessageListInfo(messageListItems, hasMoreMessages, hasNextPage)
+    }
+
+    // Every account returns at most 'limit' items. After merging the results only the first 'limit' items are kept.
+    // This only works if the database returns the items in the same order as sortedWith(). For the other sort types all
+    // items are loaded and the window is applied after sorting.
+    private fun loadMessageListWindow(
+        accounts: List<Account>,
+        config: MessageListConfig,
+        limit: Int,
+        after: MessageListItem?,
+    ): Pair<List<MessageListItem>, Boolean> {
+        val databaseLimit = if (isDatabaseOrderUsedForSorting(config)) limit else null
+
+        var hasNextPage = false
         val messageListItems = accounts
             .flatMap { account ->
-                loadMessageListForAccount(account, config)
+                loadMessageListForAccount(account, config, databaseLimit, after).also { accountItems ->
+                    if (databaseLimit != null && accountItems.size >= databaseLimit) hasNextPage = true
+                }
             }
             .sortedWith(config)
 
-        val hasMoreMessages = loadHasMoreMessages(accounts, config.search.folderIds)
-
-        return MessageListInfo(messageListItems, hasMoreMessages)
+        return if (messageListItems.size > limit) {
+            messageListItems.take(limit) to true
+        } else {
+            messageListItems to hasNextPage
+        }
     }
 
-    private fun loadMessageListForAccount(account: Account, config: MessageListConfig): List<MessageListItem> {
+    private fun loadMessageListForAccount(
+        account: Account,
+        config: MessageListConfig,
+        limit: Int?,
+        after: MessageListItem?,
+    ): List<MessageListItem> {
         val accountUuid = account.uuid
         val threadId = getThreadId(config.search)
         val sortOrder = buildSortOrder(config)
@@ -54,13 +128,134 @@ class MessageListLoader(
             threadId != null -> {
                 messageListRepository.getThread(accountUuid, threadId, sortOrder, mapper)
             }
+            config.showingThreadedList && config.search.conditions.onlyUsesFolderFields() -> {
+                val (folderSelection, selectionArgs) = buildFolderSelection(account, config)
+                messageListRepository.getThreadedMessagesInFolders(
+                    accountUuid,
+                    folderSelection,
+                    selectionArgs,
+                    sortOrder,
+                    limit,
+                    mapper,
+                )
+            }
             config.showingThreadedList -> {
                 val (selection, selectionArgs) = buildSelection(account, config)
-                messageListRepository.getThreadedMessages(accountUuid, selection, selectionArgs, sortOrder, mapper)
+                messageListRepository.getThreadedMessages(
+                    accountUuid,
+                    selection,
+                    selectionArgs,
+                    sortOrder,
+                    limit,
+                    mapper,
+                )
             }
             else -> {
                 val (selection, selectionArgs) = buildSelection(account, config)
-                messageListRepository.getMessages(accountUuid, selection, selectionArgs, sortOrder, mapper)
+                    .withKeysetCondition(account, config, after)
+                messageListRepository.getMessages(accountUuid, selection, selectionArgs, sortOrder, limit, mapper)
+            }
+        }
+    }
+
+    // Searches that require the message contents to match are driven by the full-text index and returned ordered by
+    // relevance. Results of multiple accounts can't be merged by relevance, so these use the regular message list.
+    private fun isRankedSearch(accounts: List<Account>, config: MessageListConfig): Boolean {
+        return accounts.size == 1 && !config.showingThreadedList && getThreadId(config.search) == null &&
+            getRequiredFulltextQuery(config.search) != null
+    }
+
+    private fun loadSearchResults(
+        account: Account,
+        config: MessageListConfig,
+        offset: Int,
+        limit: Int,
+    ): Pair<List<MessageListItem>, Boolean> {
+        val fulltextQuery = getRequiredFulltextQuery(config.search) ?: error("Not a full-text search")
+        val query = StringBuilder()
+        val queryArgs = mutableListOf<String>()
+        SqlQueryBuilder.buildWhereClauseWithoutFulltext(config.search.conditions, query, queryArgs)
+
+        val mapper = MessageListItemMapper(messageHelper, account)
+        val messageListItems = messageListRepository.searchMessages(
+            account.uuid,
+            fulltextQuery,
+            query.toString(),
+            queryArgs.toTypedArray(),
+            offset,
+            limit,
+            mapper,
+        )
+
+        return messageListItems to (messageListItems.size >= limit)
+    }
+
+    // Returns the full-text query if every matching message has to match it, i.e. it's only combined using AND
+    private fun getRequiredFulltextQuery(search: LocalSearch): String? {
+        val fulltextNode = search.leafSet.singleOrNull { it.condition.field == SearchField.MESSAGE_CONTENTS }
+            ?: return null
+
+        var parent = fulltextNode.mParent
+        while (parent != null) {
+            if (parent.mValue != ConditionsTreeNode.Operator.AND) return null
+            parent = parent.mParent
+        }
+
+        return fulltextNode.condition.value
+    }
+
+    // Threaded lists are sorted by aggregated values that aren't available in the selection. And for the other sort
+    // types the sort key can't be reliably derived from MessageListItem.
+    private fun supportsKeysetPagination(config: MessageListConfig): Boolean {
+        return !config.showingThreadedList && getThreadId(config.search) == null && isSortedByDate(config)
+    }
+
+    // For these sort types the ORDER BY clause created by buildSortOrder() and the comparator used by sortedWith()
+    // order items the same way.
+    private fun isDatabaseOrderUsedForSorting(config: MessageListConfig): Boolean {
+        return isSortedByDate(config) || config.sortType == SortType.SORT_SENDER
+    }
+
+    private fun isSortedByDate(config: MessageListConfig): Boolean {
+        return config.sortType == SortType.SORT_DATE || config.sortType == SortType.SORT_ARRIVAL
+    }
+
+    /**
+     * Restricts the selection to the messages of [account] that follow [after] in the order (date, account UUID,
+     * database ID) used by [sortedWith].
+     *
+     * [after] can belong to a different account. Then its database ID must not be used and messages with the same date
+     * are included or excluded depending on the order of the account UUIDs.
+     */
+    private fun Pair<String, Array<String>>.withKeysetCondition(
+        account: Account,
+        config: MessageListConfig,
+        after: MessageListItem?,
+    ): Pair<String, Array<String>> {
+        if (after == null) return this
+
+        val (sortColumn, sortValue) = if (config.sortType == SortType.SORT_ARRIVAL) {
+            MessageColumns.INTERNAL_DATE to after.internalDate.toString()
+        } else {
+            MessageColumns.DATE to after.messageDate.toString()
+        }
+        val operator = if (config.sortAscending) ">" else "<"
+
+        val (selection, selectionArgs) = this
+        val accountOrder = account.uuid.compareTo(after.account.uuid)
+        return when {
+            accountOrder == 0 -> {
+                val databaseId = after.databaseId.toString()
+                val keysetSelection = "($selection) AND " +
+                    "($sortColumn $operator ? OR ($sortColumn = ? AND messages.${MessageColumns.ID} $operator ?))"
+                keysetSelection to arrayOf(*selectionArgs, sortValue, sortValue, databaseId)
+            }
+            (accountOrder > 0) == config.sortAscending -> {
+                // Messages of this account with the same date follow 'after'
+                "($selection) AND $sortColumn $operator= ?" to arrayOf(*selectionArgs, sortValue)
+            }
+            else -> {
+                "($selection) AND $sortColumn $operator ?" to arrayOf(*selectionArgs, sortValue)
             }
         }
     }
@@ -89,6 +284,34 @@ class MessageListLoader(
         return selection to selectionArgs
     }
 
+    // Same as buildSelection(), but for the thread summaries used when the search only restricts the set of folders
+    private fun buildFolderSelection(account: Account, config: MessageListConfig): Pair<String, Array<String>> {
+        val query = StringBuilder()
+        val queryArgs = mutableListOf<String>()
+
+        val activeMessage = config.activeMessage
+        val selectActive = activeMessage != null && activeMessage.accountUuid == account.uuid
+        if (selectActive && activeMessage != null) {
+            query.append(
+                "(${MessageColumns.FOLDER_ID} = ? AND root IN (" +
+                    "SELECT threads.root FROM messages JOIN threads ON (threads.message_id = messages.id) " +
+                    "WHERE messages.${MessageColumns.UID} = ? AND messages.${MessageColumns.FOLDER_ID} = ?" +
+                    ")) OR (",
+            )
+            queryArgs.add(activeMessage.folderId.toString())
+            queryArgs.add(activeMessage.uid)
+            queryArgs.add(activeMessage.folderId.toString())
+        }
+
+        SqlQueryBuilder.buildWhereClause(config.search.conditions, query, queryArgs)
+
+        if (selectActive) {
+            query.append(')')
+        }
+
+        return query.toString() to queryArgs.toTypedArray()
+    }
+
     private fun getThreadId(search: LocalSearch): Long? {
         return search.leafSet.firstOrNull { it.condition.field == SearchField.THREAD_ID }?.condition?.value?.toLong()
     }
@@ -98,7 +321,7 @@ class MessageListLoader(
             SortType.SORT_ARRIVAL -> MessageColumns.INTERNAL_DATE
             SortType.SORT_ATTACHMENT -> "(${MessageColumns.ATTACHMENT_COUNT} < 1)"
             SortType.SORT_FLAGGED -> "(${MessageColumns.FLAGGED} != 1)"
-            SortType.SORT_SENDER -> MessageColumns.SENDER_LIST // FIXME
+            SortType.SORT_SENDER -> MessageColumns.SENDER_SORT_KEY
             SortType.SORT_SUBJECT -> "${MessageColumns.SUBJECT} COLLATE NOCASE"
             SortType.SORT_UNREAD -> MessageColumns.READ
             SortType.SORT_DATE -> MessageColumns.DATE
@@ -106,14 +329,15 @@ class MessageListLoader(
         }
 
         val sortDirection = if (config.sortAscending) " ASC" else " DESC"
-        val secondarySort = if (config.sortType == SortType.SORT_DATE || config.sortType == SortType.SORT_ARRIVAL) {
-            ""
+        if (isSortedByDate(config)) {
+            // Messages with the same date are ordered by ID in the same direction. See withKeysetCondition().
+            return "$sortColumn$sortDirection, ${MessageColumns.ID}$sortDirection"
+        }
+
+        val secondarySort = if (config.sortDateAscending) {
+            "${MessageColumns.DATE} ASC, "
         } else {
-            if (config.sortDateAscending) {
-                "${MessageColumns.DATE} ASC, "
-            } else {
-                "${MessageColumns.DATE} DESC, "
-            }
+            "${MessageColumns.DATE} DESC, "
         }
 
         return "$sortColumn$sortDirection, $secondarySort${MessageColumns.ID} DESC"
@@ -122,17 +346,18 @@ class MessageListLoader(
     private fun List<MessageListItem>.sortedWith(config: MessageListConfig): List<MessageListItem> {
         val comparator = when (config.sortType) {
             SortType.SORT_DATE -> {
-                compareBy(config.sortAscending) { it.messageDate }
+                compareBy<MessageListItem>(config.sortAscending) { it.messageDate }.thenByKeyset(config)
             }
             SortType.SORT_ARRIVAL -> {
-                compareBy(config.sortAscending) { it.internalDate }
+                compareBy<MessageListItem>(config.sortAscending) { it.internalDate }.thenByKeyset(config)
             }
             SortType.SORT_SUBJECT -> {
                 compareStringBy<MessageListItem>(config.sortAscending) { it.subject.orEmpty() }
                     .thenByDate(config)
             }
             SortType.SORT_SENDER -> {
-                compareStringBy<MessageListItem>(config.sortAscending) { it.displayName.toString() }
+                // Same key as the ORDER BY clause created by buildSortOrder()
+                compareBy<MessageListItem>(config.sortAscending) { it.senderSortKey }
                     .thenByDate(config)
             }
             SortType.SORT_UNREAD -> {
@@ -184,6 +409,15 @@ private inline fun <T> compareStringBy(sortAscending: Boolean, crossinline selec
     }
 }
 
+// Order of messages with the same date when sorting by date. Matches the keyset used by the database queries.
+private fun Comparator<MessageListItem>.thenByKeyset(config: MessageListConfig): Comparator<MessageListItem> {
+    return if (config.sortAscending) {
+        thenBy<MessageListItem> { it.account.uuid }.thenBy { it.databaseId }
+    } else {
+        thenByDescending<MessageListItem> { it.account.uuid }.thenByDescending { it.databaseId }
+    }
+}
+
 private fun Comparator<MessageListItem>.thenByDate(config: MessageListConfig): Comparator<MessageListItem> {
     return if (config.sortDateAscending) {
         thenBy { it.messageDate }
@@ -192,4 +426,13 @@ private fun Comparator<MessageListItem>.thenByDate(config: MessageListConfig): C
     }
 }
 
-data class MessageListInfo(val messageListItems: List<MessageListItem>, val hasMoreMessages: Boolean)
+/**
+ * @param hasMoreMessages `true` if more messages can be downloaded from the server.
+ * @param hasNextPage `true` if more items are available locally and can be loaded using
+ *   [MessageListLoader.getMoreMessages].
+ */
+data class MessageListInfo(
+    val messageListItems: List<MessageListItem>,
+    val hasMoreMessages: Boolean,
+    val hasNextPage: Boolean = false,
+)
@@ -18,11 +18,20 @@ class MessageListViewModel(private val messageListLiveDataFactory: MessageListLi
     }
 
     fun loadMessageList(config: MessageListConfig) {
-        if (currentMessageListLiveData?.config == config) return
+        val previousLiveData = currentMessageListLiveData
+        if (previousLiveData?.config == config) return
 
         removeCurrentMessageListLiveData()
 
-        val liveData = messageListLiveDataFactory.create(viewModelScope, config)
+        // Changing the active message creates a new config. Keep the size of the loaded window in that case so the
+        // message list doesn't shrink while the user pages through messages.
+        val initialWindowSize = if (previousLiveData != null && previousLiveData.config.search == config.search) {
+            previousLiveData.windowSize
+        } else {
+            MessageListLiveData.PAGE_SIZE
+        }
+
+        val liveData = messageListLiveDataFactory.create(viewModelScope, config, initialWindowSize)
         currentMessageListLiveData = liveData
 
         messageListLiveData.addSource(liveData) { items ->
@@ -30,6 +39,10 @@ class MessageListViewModel(private val messageListLiveDataFactory: MessageListLi
         }
     }
 
+    fun loadMoreMessages() {
+        currentMessageListLiveData?.loadMore()
+    }
+
     private fun removeCurrentMessageListLiveData() {
         currentMessageListLiveData?.let {
             currentMessageListLiveData = null
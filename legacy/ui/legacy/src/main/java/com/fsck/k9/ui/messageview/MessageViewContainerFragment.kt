@@ -34,6 +34,7 @@ class MessageViewContainerFragment : Fragment() {
         private set
 
     private var activeMessageReference: MessageReference? = null
+    private var viewModel: MessageListViewModel? = null
 
     private lateinit var fragmentListener: MessageViewContainerListener
     private lateinit var viewPager: ViewPager2
@@ -118,6 +119,7 @@ class MessageViewContainerFragment : Fragment() {
     }
 
     fun setViewModel(viewModel: MessageListViewModel) {
+        this.viewModel = viewModel
         viewModel.getMessageListLiveData().observe(this) { messageListInfo ->
             updateMessageList(messageListInfo.messageListItems)
         }
@@ -159,6 +161,11 @@ class MessageViewContainerFragment : Fragment() {
         messageReference = newMessageReference
         activeMessageReference = newMessageReference
         fragmentListener.setActiveMessage(newMessageReference)
+
+        // Only a window of the message list is loaded. Extend it when the user gets close to the last loaded message.
+        if (position >= adapter.itemCount - LOAD_MORE_THRESHOLD) {
+            viewModel?.loadMoreMessages()
+        }
     }
 
     fun showPreviousMessage(): Boolean {
@@ -294,6 +301,8 @@ class MessageViewContainerFragment : Fragment() {
         private const val ARG_REFERENCE = "reference"
         private const val ARG_SHOW_ACCOUNT_CHIP = "showAccountChip"
 
+        private const val LOAD_MORE_THRESHOLD = 5
+
         private const val STATE_MESSAGE_REFERENCE = "messageReference"
 
         fun newInstance(reference: MessageReference, showAccountChip: Boolean): MessageViewContainerFragment {
@@ -3,6 +3,7 @@ package com.fsck.k9.ui.messagelist
 import android.content.Context
 import android.text.Spannable
 import android.text.style.AbsoluteSizeSpan
+import android.text.style.StyleSpan
 import android.view.ContextThemeWrapper
 import android.view.LayoutInflater
 import android.view.View
@@ -13,6 +14,7 @@ import androidx.core.view.isVisible
 import app.k9mail.core.android.testing.RobolectricTest
 import app.k9mail.core.testing.TestClock
 import app.k9mail.legacy.account.Account
+import app.k9mail.legacy.mailstore.SearchSnippet
 import assertk.Assert
 import assertk.assertThat
 import assertk.assertions.isEqualTo
@@ -198,6 +200,18 @@ class MessageListAdapterTest : RobolectricTest() {
         assertThat(view.secondLineView.textString).isEqualTo(secondLine("Subject", "Preview"))
     }
 
+    @Test
+    fun withSearchSnippetAsPreview_shouldShowMatchesInBold() {
+        val adapter = createAdapter(senderAboveSubject = true, previewLines = 1)
+        val previewText = "the quick ${SearchSnippet.MATCH_START}fox${SearchSnippet.MATCH_END} jumps"
+        val messageListItem = createMessageListItem(subject = "Subject", previewText = previewText, isRead = true)
+
+        val view = adapter.createAndBindView(messageListItem)
+
+        assertThat(view.secondLineView.textString).isEqualTo(secondLine("Subject", "the quick fox jumps"))
+        assertThat(view.secondLineView.text).boldText().isEqualTo(listOf("fox"))
+    }
+
     @Test
     fun withMissingSubject_shouldDisplayNoSubjectIndicator() {
         val adapter = createAdapter(senderAboveSubject = false)
@@ -431,6 +445,7 @@ class MessageListAdapterTest : RobolectricTest() {
         messageDate: Long = 0L,
         internalDate: Long = 0L,
         displayName: CharSequence = "irrelevant",
+        senderSortKey: String? = null,
         displayAddress: Address? = Address.parse("irrelevant@domain.example").first(),
         previewText: String = "irrelevant",
         isMessageEncrypted: Boolean = false,
@@ -452,6 +467,7 @@ class MessageListAdapterTest : RobolectricTest() {
             messageDate,
             internalDate,
             displayName,
+            senderSortKey,
             displayAddress,
             previewText,
             isMessageEncrypted,
@@ -519,6 +535,11 @@ class MessageListAdapterTest : RobolectricTest() {
         spans.firstOrNull()?.size
     }
 
+    private fun Assert<CharSequence>.boldText() = transform { text ->
+        val spans = (text as Spannable).getSpans(0, text.length, StyleSpan::class.java)
+        spans.map { span -> text.substring(text.getSpanStart(span), text.getSpanEnd(span)) }
+    }
+
     private val MaterialTextView.textString: String
         get() = text.toString()
 }
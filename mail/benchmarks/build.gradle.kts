@@ -0,0 +1,21 @@
+plugins {
+    id(ThunderbirdPlugins.Library.jvm)
+    alias(libs.plugins.jmh)
+}
+
+dependencies {
+    jmhImplementation(projects.mail.common)
+    jmhImplementation(projects.mail.protocols.imap)
+    jmhImplementation(projects.library.htmlCleaner)
+}
+
+jmh {
+    jmhVersion.set(libs.versions.jmh)
+    includes.set(listOfNotNull(providers.gradleProperty("jmhIncludes").orNull))
+    profilers.add("gc")
+    fork.set(1)
+    warmupIterations.set(3)
+    iterations.set(5)
+    resultFormat.set("JSON")
+    resultsFile.set(layout.buildDirectory.file("reports/jmh/results.json"))
+}
@@ -0,0 +1,40 @@
+package com.fsck.k9.mail.benchmark
+
+import com.fsck.k9.mail.Part
+import com.fsck.k9.mail.internet.MessageExtractor
+import com.fsck.k9.mail.internet.MimeBodyPart
+import com.fsck.k9.mailstore.BinaryMemoryBody
+import java.util.concurrent.TimeUnit
+import org.openjdk.jmh.annotations.Benchmark
+import org.openjdk.jmh.annotations.BenchmarkMode
+import org.openjdk.jmh.annotations.Mode
+import org.openjdk.jmh.annotations.OutputTimeUnit
+import org.openjdk.jmh.annotations.Param
+import org.openjdk.jmh.annotations.Scope
+import org.openjdk.jmh.annotations.Setup
+import org.openjdk.jmh.annotations.State
+
+/**
+ * Extracts the text of a text part, which converts it from its charset using `CharsetSupport`.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+open class CharsetConversionBenchmark {
+    @Param("ISO-8859-1", "windows-1252", "UTF-8")
+    @JvmField
+    var charset: String = ""
+
+    private lateinit var textPart: Part
+
+    @Setup
+    fun setUp() {
+        val body = BinaryMemoryBody(Corpus.textInCharset(charset), "8bit")
+        textPart = MimeBodyPart(body, "text/plain; charset=$charset")
+    }
+
+    @Benchmark
+    fun getTextFromPart(): String? {
+        return MessageExtractor.getTextFromPart(textPart)
+    }
+}
@@ -0,0 +1,196 @@
+package com.fsck.k9.mail.benchmark
+
+import com.fsck.k9.mail.Address
+import java.nio.charset.Charset
+
+/**
+ * Generates the inputs used by the benchmarks.
+ *
+ * The output only depends on the arguments, so every run of a benchmark works on the same data.
+ */
+object Corpus {
+    private const val CRLF = "\r\n"
+
+    /**
+     * A response to `UID FETCH 1:* (UID FLAGS INTERNALDATE RFC822.SIZE BODYSTRUCTURE BODY.PEEK[HEADER.FIELDS (…)])`
+     * followed by the tagged completion response.
+     */
+    fun largeFetchResponse(messageCount: Int = 500): ByteArray {
+        return buildString {
+            for (index in 1..messageCount) {
+                val header = messageHeader(index)
+                append("* $index FETCH (UID ${1000 + index} FLAGS (\\Seen")
+                if (index % 3 == 0) append(" \\Flagged")
+                append(") INTERNALDATE \"${imapDate(index)}\" RFC822.SIZE ${4096 + index * 17} ")
+                append("BODYSTRUCTURE (")
+                append("(\"text\" \"plain\" (\"charset\" \"utf-8\") NIL NIL \"quoted-printable\" 1234 40 NIL NIL NIL)")
+                append("(\"text\" \"html\" (\"charset\" \"utf-8\") NIL NIL \"quoted-printable\" 5678 120 NIL NIL NIL)")
+                append(" \"alternative\" (\"boundary\" \"----=_Part_$index\") NIL NIL) ")
+                append("BODY[HEADER.FIELDS (DATE SUBJECT FROM TO CC MESSAGE-ID REFERENCES IN-REPLY-TO)] ")
+                append("{${header.length}}$CRLF")
+                append(header)
+                append(")$CRLF")
+            }
+            append("A1 OK UID FETCH completed$CRLF")
+        }.toByteArray(Charsets.US_ASCII)
+    }
+
+    /**
+     * A message with `depth` levels of nested `multipart/mixed` parts. Every level contains a text part and a small
+     * base64-encoded attachment.
+     */
+    fun deeplyNestedMultipartMessage(depth: Int = 25): ByteArray {
+        return buildString {
+            append(messageHeader(1))
+            append("MIME-Version: 1.0$CRLF")
+            appendNestedMultipart(level = 0, depth = depth)
+        }.toByteArray(Charsets.US_ASCII)
+    }
+
+    private fun StringBuilder.appendNestedMultipart(level: Int, depth: Int) {
+        val boundary = "----=_Level_$level"
+        append("Content-Type: multipart/mixed; boundary=\"$boundary\"$CRLF")
+        append(CRLF)
+        append("This is a multi-part message in MIME format.$CRLF")
+
+        append("--$boundary$CRLF")
+        append("Content-Type: text/plain; charset=utf-8$CRLF")
+        append("Content-Transfer-Encoding: quoted-printable$CRLF")
+        append(CRLF)
+        repeat(20) { line ->
+            append("Level $level, line $line: Gr=C3=BC=C3=9Fe aus dem Beispieltext mit Umlauten =E2=80=93 ok.$CRLF")
+        }
+
+        append("--$boundary$CRLF")
+        append("Content-Type: application/octet-stream; name=\"attachment-$level.bin\"$CRLF")
+        append("Content-Disposition: attachment; filename=\"attachment-$level.bin\"$CRLF")
+        append("Content-Transfer-Encoding: base64$CRLF")
+        append(CRLF)
+        repeat(30) { line ->
+            append(base64Line(seed = level * 31 + line))
+            append(CRLF)
+        }
+
+        if (level + 1 < depth) {
+            append("--$boundary$CRLF")
+            appendNestedMultipart(level + 1, depth)
+        }
+
+        append("--$boundary--$CRLF")
+    }
+
+    /**
+     * A header value consisting mostly of RFC 2047 encoded words using different charsets and encodings.
+     */
+    fun encodedWordHeader(wordCount: Int = 60): String {
+        return (0 until wordCount).joinToString(separator = "$CRLF ") { index ->
+            when (index % 4) {
+                0 -> "=?UTF-8?B?R3LDvMOfZSBhdXMgZGVtIEJlaXNwaWVs?="
+                1 -> "=?ISO-8859-1?Q?Gr=FC=DFe_aus_K=F6ln?="
+                2 -> "=?ISO-2022-JP?B?GyRCJEgkbCQrJGkkTRsoQg==?="
+                else -> "=?windows-1252?Q?=93quoted=94_text_$index?="
+            }
+        }
+    }
+
+    /**
+     * A `Content-Type` header value with RFC 2231 encoded and continued parameters.
+     */
+    fun contentTypeHeader(): String {
+        return buildString {
+            append("application/octet-stream; format=flowed; delsp=yes;$CRLF")
+            append(" charset=\"utf-8\" (comment); boundary=\"----=_Part_0_123456789.1234567890\";$CRLF")
+            repeat(10) { index ->
+                append(" name*$index*=UTF-8''Gr%C3%BC%C3%9Fe%20aus%20dem%20Beispiel%20$index;$CRLF")
+            }
+            append(" x-unknown=\"value with (parentheses) and \\\"quotes\\\"\"")
+        }
+    }
+
+    /**
+     * A comma separated list of addresses as found in the `To` header of messages sent to a mailing list.
+     */
+    fun addressList(addressCount: Int = 200): String {
+        return (0 until addressCount).joinToString(separator = ",$CRLF ") { index ->
+            when (index % 3) {
+                0 -> "\"Doe, Jane $index\" <jane.doe.$index@domain.example>"
+                1 -> "=?UTF-8?Q?J=C3=BCrgen_M=C3=BCller_$index?= <juergen.$index@domain.example>"
+                else -> "user$index@sub$index.domain.example"
+            }
+        }
+    }
+
+    /**
+     * The address list in the format used by the `sender_list`, `to_list`, and `cc_list` database columns.
+     */
+    fun packedAddressList(addressCount: Int = 200): String {
+        return Address.pack(Address.parse(addressList(addressCount)))
+    }
+
+    /**
+     * The body of a text part in the given charset.
+     */
+    fun textInCharset(charsetName: String, lineCount: Int = 2000): ByteArray {
+        return buildString {
+            repeat(lineCount) { line ->
+                append("Zeile $line: Grüße aus Köln - «Beispiel» für Zeichensätze.$CRLF")
+            }
+        }.toByteArray(Charset.forName(charsetName))
+    }
+
+    /**
+     * An HTML newsletter with nested layout tables, inline styles, tracking images, and plenty of links.
+     */
+    fun htmlNewsletter(articleCount: Int = 150): String {
+        return buildString {
+            append("<!DOCTYPE html><html><head><meta charset=\"utf-8\"><title>Newsletter</title>")
+            append("<style>body{font-family:Arial,sans-serif}.button{background:#0a84ff;color:#fff}</style>")
+            append("<script>trackOpen();</script></head><body style=\"margin:0;padding:0\">")
+            append("<table width=\"100%\" cellpadding=\"0\" cellspacing=\"0\" border=\"0\" bgcolor=\"#f4f4f4\">")
+            append("<tr><td>")
+            for (index in 0 until articleCount) {
+                append("<table class=\"article\" width=\"600\" align=\"center\" style=\"border:1px solid #ddd\">")
+                append("<tr><td style=\"padding:16px\"><h2 style=\"color:#333\">Article $index</h2>")
+                append("<img src=\"https://img.domain.example/$index.png\" width=\"560\" alt=\"Image $index\">")
+                append("<p style=\"font-size:14px;line-height:20px\">Lorem ipsum dolor sit amet, <b>consectetur</b> ")
+                append("<i>adipiscing</i> elit &amp; sed do eiusmod tempor &lt;incididunt&gt; ut labore.</p>")
+                append("<a class=\"button\" href=\"https://links.domain.example/click?id=$index&amp;u=42\" ")
+                append("onclick=\"track($index)\">Read more</a>")
+                append("<img src=\"https://track.domain.example/open/$index.gif\" width=\"1\" height=\"1\">")
+                append("</td></tr></table>")
+            }
+            append("</td></tr></table>")
+            append("<p style=\"font-size:11px\"><a href=\"https://domain.example/unsubscribe\">Unsubscribe</a></p>")
+            append("</body></html>")
+        }
+    }
+
+    private fun messageHeader(index: Int): String {
+        return buildString {
+            append("Date: Mon, ${index % 28 + 1} Jan 2024 10:${(index % 60).pad()}:00 +0100$CRLF")
+            append("Subject: =?UTF-8?Q?Re:_Gr=C3=BC=C3=9Fe_=E2=80=93_message_$index?=$CRLF")
+            append("From: \"Sender $index\" <sender$index@domain.example>$CRLF")
+            append("To: recipient@domain.example, \"Other Recipient\" <other@domain.example>$CRLF")
+            append("Cc: =?ISO-8859-1?Q?J=FCrgen?= <juergen@domain.example>$CRLF")
+            append("Message-ID: <message$index@domain.example>$CRLF")
+            append("References: <message${index - 1}@domain.example> <message${index - 2}@domain.example>$CRLF")
+            append("In-Reply-To: <message${index - 1}@domain.example>$CRLF")
+            append(CRLF)
+        }
+    }
+
+    private fun imapDate(index: Int): String {
+        return "${(index % 28 + 1).pad()}-Jan-2024 10:${(index % 60).pad()}:00 +0100"
+    }
+
+    private fun base64Line(seed: Int): String {
+        val alphabet = "ABCDEFGHIJKLMNOPQRSTUVWXYZabcdefghijklmnopqrstuvwxyz0123456789+/"
+        return buildString {
+            repeat(76) { position ->
+                append(alphabet[(seed * 7 + position * 13) % alphabet.length])
+            }
+        }
+    }
+
+    private fun Int.pad(): String = toString().padStart(2, '0')
+}
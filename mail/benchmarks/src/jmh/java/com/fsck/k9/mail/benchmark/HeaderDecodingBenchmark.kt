@@ -0,0 +1,61 @@
+package com.fsck.k9.mail.benchmark
+
+import com.fsck.k9.mail.Address
+import com.fsck.k9.mail.internet.MimeHeaderParser
+import com.fsck.k9.mail.internet.MimeParameterDecoder
+import com.fsck.k9.mail.internet.MimeUtility
+import com.fsck.k9.mail.internet.MimeValue
+import java.util.concurrent.TimeUnit
+import org.openjdk.jmh.annotations.Benchmark
+import org.openjdk.jmh.annotations.BenchmarkMode
+import org.openjdk.jmh.annotations.Mode
+import org.openjdk.jmh.annotations.OutputTimeUnit
+import org.openjdk.jmh.annotations.Scope
+import org.openjdk.jmh.annotations.Setup
+import org.openjdk.jmh.annotations.State
+
+/**
+ * Decodes header values: encoded words (`DecoderUtil`), MIME parameters (`MimeHeaderParser`), and address lists.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+open class HeaderDecodingBenchmark {
+    private lateinit var encodedWordHeader: String
+    private lateinit var contentTypeHeader: String
+    private lateinit var addressList: String
+    private lateinit var packedAddressList: String
+
+    @Setup
+    fun setUp() {
+        encodedWordHeader = Corpus.encodedWordHeader()
+        contentTypeHeader = Corpus.contentTypeHeader()
+        addressList = Corpus.addressList()
+        packedAddressList = Corpus.packedAddressList()
+    }
+
+    @Benchmark
+    fun unfoldAndDecodeEncodedWords(): String {
+        return MimeUtility.unfoldAndDecode(encodedWordHeader)
+    }
+
+    @Benchmark
+    fun readHeaderValue(): String {
+        return MimeHeaderParser(contentTypeHeader).readHeaderValue()
+    }
+
+    @Benchmark
+    fun decodeMimeParameters(): MimeValue {
+        return MimeParameterDecoder.decode(contentTypeHeader)
+    }
+
+    @Benchmark
+    fun parseAddressList(): Array<Address> {
+        return Address.parse(addressList)
+    }
+
+    @Benchmark
+    fun unpackAddressList(): Array<Address> {
+        return Address.unpack(packedAddressList)
+    }
+}
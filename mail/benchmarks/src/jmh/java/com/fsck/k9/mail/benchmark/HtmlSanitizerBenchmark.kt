@@ -0,0 +1,37 @@
+package com.fsck.k9.mail.benchmark
+
+import app.k9mail.html.cleaner.HtmlHeadProvider
+import app.k9mail.html.cleaner.HtmlProcessor
+import java.util.concurrent.TimeUnit
+import org.openjdk.jmh.annotations.Benchmark
+import org.openjdk.jmh.annotations.BenchmarkMode
+import org.openjdk.jmh.annotations.Mode
+import org.openjdk.jmh.annotations.OutputTimeUnit
+import org.openjdk.jmh.annotations.Scope
+import org.openjdk.jmh.annotations.Setup
+import org.openjdk.jmh.annotations.State
+
+/**
+ * Sanitizes a large HTML newsletter the way it's done before displaying a message (`HtmlSanitizer`).
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+open class HtmlSanitizerBenchmark {
+    private val htmlProcessor = HtmlProcessor(
+        object : HtmlHeadProvider {
+            override val headHtml = "<meta name=\"viewport\" content=\"width=device-width\"/>"
+        },
+    )
+    private lateinit var newsletter: String
+
+    @Setup
+    fun setUp() {
+        newsletter = Corpus.htmlNewsletter()
+    }
+
+    @Benchmark
+    fun sanitizeNewsletter(): String {
+        return htmlProcessor.processForDisplay(newsletter)
+    }
+}
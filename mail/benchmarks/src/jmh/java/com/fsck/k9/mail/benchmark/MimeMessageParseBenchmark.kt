@@ -0,0 +1,44 @@
+package com.fsck.k9.mail.benchmark
+
+import com.fsck.k9.mail.internet.BinaryTempFileBody
+import com.fsck.k9.mail.internet.MimeMessage
+import java.io.File
+import java.nio.file.Files
+import java.util.concurrent.TimeUnit
+import org.openjdk.jmh.annotations.Benchmark
+import org.openjdk.jmh.annotations.BenchmarkMode
+import org.openjdk.jmh.annotations.Mode
+import org.openjdk.jmh.annotations.OutputTimeUnit
+import org.openjdk.jmh.annotations.Scope
+import org.openjdk.jmh.annotations.Setup
+import org.openjdk.jmh.annotations.State
+import org.openjdk.jmh.annotations.TearDown
+
+/**
+ * Parses a message with 25 levels of nested `multipart/mixed` parts.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+open class MimeMessageParseBenchmark {
+    private lateinit var tempDirectory: File
+    private lateinit var nestedMultipartMessage: ByteArray
+
+    @Setup
+    fun setUp() {
+        tempDirectory = Files.createTempDirectory("MimeMessageParseBenchmark").toFile()
+        BinaryTempFileBody.setTempDirectory(tempDirectory)
+
+        nestedMultipartMessage = Corpus.deeplyNestedMultipartMessage()
+    }
+
+    @TearDown
+    fun tearDown() {
+        tempDirectory.deleteRecursively()
+    }
+
+    @Benchmark
+    fun parseDeeplyNestedMultipart(): MimeMessage {
+        return MimeMessage.parseMimeMessage(nestedMultipartMessage.inputStream(), true)
+    }
+}
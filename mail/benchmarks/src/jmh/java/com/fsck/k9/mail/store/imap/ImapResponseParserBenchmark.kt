@@ -0,0 +1,40 @@
+package com.fsck.k9.mail.store.imap
+
+import com.fsck.k9.mail.benchmark.Corpus
+import com.fsck.k9.mail.filter.PeekableInputStream
+import java.util.concurrent.TimeUnit
+import org.openjdk.jmh.annotations.Benchmark
+import org.openjdk.jmh.annotations.BenchmarkMode
+import org.openjdk.jmh.annotations.Mode
+import org.openjdk.jmh.annotations.OutputTimeUnit
+import org.openjdk.jmh.annotations.Scope
+import org.openjdk.jmh.annotations.Setup
+import org.openjdk.jmh.annotations.State
+
+/**
+ * Parses the responses to a `UID FETCH` command for 500 messages, including the message headers sent as literals.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+open class ImapResponseParserBenchmark {
+    private lateinit var fetchResponse: ByteArray
+
+    @Setup
+    fun setUp() {
+        fetchResponse = Corpus.largeFetchResponse()
+    }
+
+    @Benchmark
+    fun parseLargeFetchResponse(): Int {
+        val parser = ImapResponseParser(PeekableInputStream(fetchResponse.inputStream()))
+
+        var responseCount = 0
+        do {
+            val response = parser.readResponse()
+            responseCount++
+        } while (!response.isTagged)
+
+        return responseCount
+    }
+}
@@ -238,6 +238,14 @@ public class Address implements Serializable {
         return addresses.toArray(new Address[addresses.size()]);
     }
 
+    /**
+     * Creates an Address from an address and personal part that have already been parsed, e.g. when reading them from
+     * the database. Unlike {@link #Address(String, String)} this doesn't tokenize the address again.
+     */
+    public static Address fromParsedValues(String address, String personal) {
+        return new Address(address, personal, false);
+    }
+
     /**
      * Packs an address list into a String that is very quick to read
      * and parse. Packed lists can be unpacked with unpackAddressList()
@@ -12,14 +12,21 @@ import org.apache.james.mime4j.util.MimeUtil;
 
 
 public class DefaultBodyFactory implements BodyFactory {
+    /**
+     * Bodies up to this size are kept in memory. This matches the size up to which bodies are stored inside the
+     * database, so those never have to be written to a temp file.
+     */
+    public static final int MEMORY_BACKED_THRESHOLD = 16 * 1024;
+
+
     public Body createBody(String contentTransferEncoding, String contentType, InputStream inputStream)
             throws IOException {
 
         final BinaryTempFileBody tempBody;
         if (MimeUtil.isMessage(contentType)) {
-            tempBody = new BinaryTempFileMessageBody(contentTransferEncoding);
+            tempBody = new BinaryTempFileMessageBody(contentTransferEncoding, MEMORY_BACKED_THRESHOLD);
         } else {
-            tempBody = new BinaryTempFileBody(contentTransferEncoding);
+            tempBody = new BinaryTempFileBody(contentTransferEncoding, MEMORY_BACKED_THRESHOLD);
         }
 
         OutputStream outputStream = tempBody.getOutputStream();
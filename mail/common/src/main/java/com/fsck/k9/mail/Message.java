@@ -11,6 +11,7 @@ import java.util.Set;
 import com.fsck.k9.logging.Timber;
 import com.fsck.k9.mail.filter.CountingOutputStream;
 import com.fsck.k9.mail.filter.EOLConvertingOutputStream;
+import com.fsck.k9.mail.internet.MessageSizeEstimator;
 import org.jetbrains.annotations.NotNull;
 
 
@@ -168,4 +169,18 @@ public abstract class Message implements Part, Body {
         }
         return 0;
     }
+
+    /**
+     * Returns the approximate size of this message without serializing the message bodies.
+     * <p>
+     * Use {@link #calculateSize()} where the exact size is required.
+     */
+    public long estimateSize() {
+        try {
+            return MessageSizeEstimator.INSTANCE.estimateSize(this);
+        } catch (IOException | MessagingException e) {
+            Timber.e(e, "Failed to estimate a message size");
+        }
+        return 0;
+    }
 }
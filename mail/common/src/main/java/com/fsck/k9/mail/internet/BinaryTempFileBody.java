@@ -1,6 +1,8 @@
 package com.fsck.k9.mail.internet;
 
 
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayInputStream;
 import java.io.File;
 import java.io.FileInputStream;
 import java.io.FileOutputStream;
@@ -8,6 +10,7 @@ import java.io.FilterInputStream;
 import java.io.IOException;
 import java.io.InputStream;
 import java.io.OutputStream;
+import java.util.Arrays;
 
 import com.fsck.k9.logging.Timber;
 import com.fsck.k9.mail.MessagingException;
@@ -22,11 +25,23 @@ import org.apache.james.mime4j.util.MimeUtil;
  * the user to write to the temp file. After the write the body is available via getInputStream
  * and writeTo one time. After writeTo is called, or the InputStream returned from
  * getInputStream is closed the file is deleted and the Body should be considered disposed of.
+ * <p/>
+ * When created with a memory threshold, data up to that size is kept in memory and a temp file is only created when
+ * more data is written. Memory-backed data can be read any number of times.
  */
 public class BinaryTempFileBody implements RawDataBody, SizeAware {
     private static File mTempDirectory;
 
+    /**
+     * Staging buffer reused by memory-backed output streams created on the same thread. Only a copy of the written
+     * data is retained by the body.
+     */
+    private static final ThreadLocal<byte[]> sStagingBuffer = new ThreadLocal<>();
+
+    private final int mMemoryThreshold;
+
     private File mFile;
+    private byte[] mData;
 
     String mEncoding = null;
 
@@ -78,6 +93,7 @@ public class BinaryTempFileBody implements RawDataBody, SizeAware {
             }
 
             mFile = newFile;
+            mData = null;
             mEncoding = encoding;
         } catch (IOException e) {
             throw new MessagingException("Unable to convert body", e);
@@ -85,20 +101,40 @@ public class BinaryTempFileBody implements RawDataBody, SizeAware {
     }
 
     public BinaryTempFileBody(String encoding) {
+        this(encoding, 0);
+    }
+
+    /**
+     * @param memoryThreshold The number of bytes kept in memory before the data is written to a temp file.
+     */
+    public BinaryTempFileBody(String encoding, int memoryThreshold) {
         if (mTempDirectory == null) {
             throw new RuntimeException("setTempDirectory has not been called on BinaryTempFileBody!");
         }
 
         mEncoding = encoding;
+        mMemoryThreshold = memoryThreshold;
     }
 
     public OutputStream getOutputStream() throws IOException {
+        if (mMemoryThreshold > 0) {
+            return new MemoryOrFileOutputStream();
+        }
+
+        return createTempFileOutputStream();
+    }
+
+    private OutputStream createTempFileOutputStream() throws IOException {
         mFile = File.createTempFile("body", null, mTempDirectory);
         mFile.deleteOnExit();
         return new FileOutputStream(mFile);
     }
 
     public InputStream getInputStream() throws MessagingException {
+        if (mData != null) {
+            return new ByteArrayInputStream(mData);
+        }
+
         try {
             return new BinaryTempFileBodyInputStream(new FileInputStream(mFile));
         } catch (IOException ioe) {
@@ -117,13 +153,106 @@ public class BinaryTempFileBody implements RawDataBody, SizeAware {
 
     @Override
     public long getSize() {
+        if (mData != null) {
+            return mData.length;
+        }
+
         return mFile.length();
     }
 
-    public File getFile() {
+    /**
+     * Returns the temp file containing the data. A memory-backed body is written to a temp file first.
+     */
+    public File getFile() throws IOException {
+        if (mData != null) {
+            OutputStream outputStream = createTempFileOutputStream();
+            try {
+                outputStream.write(mData);
+            } finally {
+                outputStream.close();
+            }
+            mData = null;
+        }
+
         return mFile;
     }
 
+    boolean isInMemory() {
+        return mData != null;
+    }
+
+    private class MemoryOrFileOutputStream extends OutputStream {
+        private byte[] buffer;
+        private int count;
+        private OutputStream fileOutputStream;
+
+        MemoryOrFileOutputStream() {
+            buffer = sStagingBuffer.get();
+            if (buffer == null || buffer.length < mMemoryThreshold) {
+                buffer = new byte[mMemoryThreshold];
+            } else {
+                // Take the buffer so it's not used by another stream on this thread while we're writing
+                sStagingBuffer.set(null);
+            }
+        }
+
+        @Override
+        public void write(int b) throws IOException {
+            if (fileOutputStream == null && count >= mMemoryThreshold) {
+                switchToFile();
+            }
+
+            if (fileOutputStream != null) {
+                fileOutputStream.write(b);
+            } else {
+                buffer[count++] = (byte) b;
+            }
+        }
+
+        @Override
+        public void write(byte[] b, int off, int len) throws IOException {
+            if (fileOutputStream == null && count + len > mMemoryThreshold) {
+                switchToFile();
+            }
+
+            if (fileOutputStream != null) {
+                fileOutputStream.write(b, off, len);
+            } else {
+                System.arraycopy(b, off, buffer, count, len);
+                count += len;
+            }
+        }
+
+        @Override
+        public void flush() throws IOException {
+            if (fileOutputStream != null) {
+                fileOutputStream.flush();
+            }
+        }
+
+        @Override
+        public void close() throws IOException {
+            if (fileOutputStream != null) {
+                fileOutputStream.close();
+            } else if (buffer != null) {
+                mData = Arrays.copyOf(buffer, count);
+                releaseBuffer();
+            }
+        }
+
+        private void switchToFile() throws IOException {
+            // Buffered because callers may keep writing single bytes
+            fileOutputStream = new BufferedOutputStream(createTempFileOutputStream());
+            fileOutputStream.write(buffer, 0, count);
+            releaseBuffer();
+        }
+
+        private void releaseBuffer() {
+            sStagingBuffer.set(buffer);
+            buffer = null;
+        }
+    }
+
     class BinaryTempFileBodyInputStream extends FilterInputStream {
         public BinaryTempFileBodyInputStream(InputStream in) {
             super(in);
@@ -0,0 +1,108 @@
+package com.fsck.k9.mail.internet
+
+import com.fsck.k9.mail.Body
+import com.fsck.k9.mail.MessagingException
+import com.fsck.k9.mail.Multipart
+import com.fsck.k9.mail.Part
+import com.fsck.k9.mail.filter.Base64OutputStream
+import com.fsck.k9.mail.filter.CountingOutputStream
+import java.io.IOException
+import java.io.OutputStream
+import org.apache.james.mime4j.util.MimeUtil
+
+private const val CRLF_LENGTH = 2
+private const val BOUNDARY_DELIMITER_LENGTH = 2
+private const val BASE64_LINE_LENGTH = 76
+
+/**
+ * Estimates the number of bytes [Part.writeTo] will write without serializing the bodies of the message.
+ *
+ * Headers are written to a counting stream. For bodies implementing [SizeAware] the stored size is used. If that size
+ * is the size of the unencoded data (e.g. an attachment stored as a file), the size after applying the part's
+ * `Content-Transfer-Encoding` is calculated for base64. Other bodies, including unencoded data that has to be
+ * quoted-printable encoded, are written to count their size. Line endings are not converted, so the result can be a bit
+ * smaller than the number of bytes that are actually sent to a server.
+ */
+object MessageSizeEstimator {
+    @Throws(IOException::class, MessagingException::class)
+    fun estimateSize(part: Part): Long {
+        val headerSize = countBytes { part.writeHeaderTo(it) } + CRLF_LENGTH
+        val body = part.body ?: return headerSize
+
+        return headerSize + estimateBodySize(body, part)
+    }
+
+    private fun estimateBodySize(body: Body, part: Part): Long {
+        return when (body) {
+            is Part -> estimateSize(body)
+            is Multipart -> estimateMultipartSize(body)
+            is SizeAware -> body.sizeOrNull()?.let { size -> estimateEncodedSize(body, size, part) }
+                ?: countBytes { body.writeTo(it) }
+            else -> countBytes { body.writeTo(it) }
+        }
+    }
+
+    private fun estimateEncodedSize(body: Body, size: Long, part: Part): Long {
+        // These bodies contain the data in the transfer encoding that is written by Body.writeTo()
+        if (body is RawDataBody || body is TextBody) return size
+
+        val transferEncoding = part.getHeader(MimeHeader.HEADER_CONTENT_TRANSFER_ENCODING).firstOrNull()?.trim()
+        return when {
+            MimeUtil.isBase64Encoding(transferEncoding) -> base64EncodedSize(size)
+            MimeUtil.isQuotedPrintableEncoded(transferEncoding) -> countBytes { body.writeTo(it) }
+            else -> size
+        }
+    }
+
+    /**
+     * Size of base64 encoded data as written by [Base64OutputStream]: 4 characters for every 3 bytes, a line break
+     * after every full line, and a final line break.
+     */
+    private fun base64EncodedSize(size: Long): Long {
+        val encodedSize = (size + 2) / 3 * 4
+        val lineBreakCount = encodedSize / BASE64_LINE_LENGTH + 1
+        return encodedSize + lineBreakCount * CRLF_LENGTH
+    }
+
+    private fun estimateMultipartSize(multipart: Multipart): Long {
+        val boundaryLineSize = BOUNDARY_DELIMITER_LENGTH + multipart.boundary.length + CRLF_LENGTH
+
+        var size = 0L
+        multipart.preamble?.let { preamble ->
+            size += preamble.size + CRLF_LENGTH
+        }
+
+        if (multipart.bodyParts.isEmpty()) {
+            size += boundaryLineSize
+        } else {
+            for (bodyPart in multipart.bodyParts) {
+                size += boundaryLineSize + estimateSize(bodyPart) + CRLF_LENGTH
+            }
+        }
+
+        // Closing boundary: "--" + boundary + "--" + CRLF
+        size += boundaryLineSize + BOUNDARY_DELIMITER_LENGTH
+
+        multipart.epilogue?.let { epilogue ->
+            size += epilogue.size
+        }
+
+        return size
+    }
+
+    private fun SizeAware.sizeOrNull(): Long? {
+        return try {
+            size
+        } catch (e: IllegalStateException) {
+            // e.g. TextBody can't calculate the size for all transfer encodings
+            null
+        }
+    }
+
+    private inline fun countBytes(block: (OutputStream) -> Unit): Long {
+        return CountingOutputStream().use { outputStream ->
+            block(outputStream)
+            outputStream.count
+        }
+    }
+}
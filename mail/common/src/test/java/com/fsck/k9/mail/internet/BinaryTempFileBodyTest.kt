@@ -0,0 +1,129 @@
+package com.fsck.k9.mail.internet
+
+import assertk.assertThat
+import assertk.assertions.hasSize
+import assertk.assertions.isEmpty
+import assertk.assertions.isEqualTo
+import assertk.assertions.isFalse
+import assertk.assertions.isTrue
+import java.io.File
+import java.nio.file.Files
+import org.apache.james.mime4j.util.MimeUtil
+import org.junit.After
+import org.junit.Before
+import org.junit.Test
+
+private const val MEMORY_THRESHOLD = 16
+
+class BinaryTempFileBodyTest {
+    private lateinit var tempDirectory: File
+
+    @Before
+    fun setUp() {
+        tempDirectory = Files.createTempDirectory("BinaryTempFileBodyTest").toFile()
+        BinaryTempFileBody.setTempDirectory(tempDirectory)
+    }
+
+    @After
+    fun tearDown() {
+        tempDirectory.deleteRecursively()
+    }
+
+    @Test
+    fun `data up to memory threshold should be kept in memory`() {
+        val body = createBody("0123456789abcdef")
+
+        assertThat(body.isInMemory).isTrue()
+        assertThat(body.size).isEqualTo(16L)
+        assertThat(tempDirectory.listFiles()!!).isEmpty()
+    }
+
+    @Test
+    fun `memory-backed data can be read multiple times`() {
+        val body = createBody("text")
+
+        assertThat(body.readText()).isEqualTo("text")
+        assertThat(body.readText()).isEqualTo("text")
+    }
+
+    @Test
+    fun `data exceeding memory threshold should be written to temp file`() {
+        val body = createBody("0123456789abcdef-")
+
+        assertThat(body.isInMemory).isFalse()
+        assertThat(body.size).isEqualTo(17L)
+        assertThat(tempDirectory.listFiles()!!).hasSize(1)
+        assertThat(body.readText()).isEqualTo("0123456789abcdef-")
+    }
+
+    @Test
+    fun `data written in multiple chunks exceeding memory threshold`() {
+        val body = BinaryTempFileBody(MimeUtil.ENC_8BIT, MEMORY_THRESHOLD)
+        body.outputStream.use { outputStream ->
+            outputStream.write("0123456789".toByteArray())
+            outputStream.write('-'.code)
+            outputStream.write("0123456789".toByteArray())
+        }
+
+        assertThat(body.isInMemory).isFalse()
+        assertThat(body.readText()).isEqualTo("0123456789-0123456789")
+    }
+
+    @Test
+    fun `data written byte by byte exceeding memory threshold`() {
+        val text = "0123456789abcdef-0123456789"
+        val body = BinaryTempFileBody(MimeUtil.ENC_8BIT, MEMORY_THRESHOLD)
+        body.outputStream.use { outputStream ->
+            for (byte in text.toByteArray()) {
+                outputStream.write(byte.toInt())
+            }
+        }
+
+        assertThat(body.isInMemory).isFalse()
+        assertThat(body.size).isEqualTo(27L)
+        assertThat(body.readText()).isEqualTo(text)
+    }
+
+    @Test
+    fun `data written byte by byte up to memory threshold should be kept in memory`() {
+        val body = BinaryTempFileBody(MimeUtil.ENC_8BIT, MEMORY_THRESHOLD)
+        body.outputStream.use { outputStream ->
+            for (byte in "0123456789abcdef".toByteArray()) {
+                outputStream.write(byte.toInt())
+            }
+        }
+
+        assertThat(body.isInMemory).isTrue()
+        assertThat(body.readText()).isEqualTo("0123456789abcdef")
+    }
+
+    @Test
+    fun `getFile() should write memory-backed data to temp file`() {
+        val body = createBody("text")
+
+        val file = body.file
+
+        assertThat(body.isInMemory).isFalse()
+        assertThat(file.readText()).isEqualTo("text")
+        assertThat(body.size).isEqualTo(4L)
+    }
+
+    @Test
+    fun `body without memory threshold should be written to temp file`() {
+        val body = BinaryTempFileBody(MimeUtil.ENC_8BIT)
+        body.outputStream.use { it.write("text".toByteArray()) }
+
+        assertThat(body.isInMemory).isFalse()
+        assertThat(tempDirectory.listFiles()!!).hasSize(1)
+    }
+
+    private fun createBody(text: String): BinaryTempFileBody {
+        return BinaryTempFileBody(MimeUtil.ENC_8BIT, MEMORY_THRESHOLD).apply {
+            outputStream.use { it.write(text.toByteArray()) }
+        }
+    }
+
+    private fun BinaryTempFileBody.readText(): String {
+        return inputStream.use { it.readBytes().decodeToString() }
+    }
+}
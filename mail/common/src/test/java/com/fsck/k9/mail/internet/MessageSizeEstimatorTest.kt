@@ -0,0 +1,103 @@
+package com.fsck.k9.mail.internet
+
+import assertk.assertThat
+import assertk.assertions.isEqualTo
+import assertk.assertions.isGreaterThan
+import com.fsck.k9.mail.Body
+import com.fsck.k9.mail.filter.Base64OutputStream
+import com.fsck.k9.mailstore.BinaryMemoryBody
+import java.io.InputStream
+import java.io.OutputStream
+import kotlin.random.Random
+import org.junit.Test
+
+class MessageSizeEstimatorTest {
+    @Test
+    fun `estimated size of message with CRLF line endings should match calculated size`() {
+        val message = MimeMessage().apply {
+            setHeader("Subject", "Test")
+            val multipart = MimeMultipart("boundary").apply {
+                addBodyPart(MimeBodyPart(BinaryMemoryBody("Text\r\n".toByteArray(), "7bit"), "text/plain"))
+                addBodyPart(
+                    MimeBodyPart(
+                        BinaryMemoryBody("QXR0YWNobWVudA==\r\n".toByteArray(), "base64"),
+                        "application/octet-stream",
+                    ),
+                )
+            }
+            MimeMessageHelper.setBody(this, multipart)
+        }
+
+        val estimatedSize = MessageSizeEstimator.estimateSize(message)
+
+        assertThat(estimatedSize).isEqualTo(message.calculateSize())
+    }
+
+    @Test
+    fun `estimated size of single part message should match calculated size`() {
+        val message = MimeMessage().apply {
+            setHeader("Subject", "Test")
+            MimeMessageHelper.setBody(this, BinaryMemoryBody("Line 1\r\nLine 2\r\n".toByteArray(), "7bit"))
+        }
+
+        val estimatedSize = MessageSizeEstimator.estimateSize(message)
+
+        assertThat(estimatedSize).isEqualTo(message.calculateSize())
+    }
+
+    @Test
+    fun `estimated size of message with unencoded binary attachment should include base64 expansion`() {
+        val sizeLimit = 10_000L
+        val attachmentData = Random(42).nextBytes(sizeLimit.toInt() - 2_000)
+        val message = MimeMessage().apply {
+            setHeader("Subject", "Test")
+            val multipart = MimeMultipart("boundary").apply {
+                addBodyPart(MimeBodyPart(BinaryMemoryBody("Text\r\n".toByteArray(), "7bit"), "text/plain"))
+                addBodyPart(
+                    MimeBodyPart(UnencodedAttachmentBody(attachmentData), "application/octet-stream").apply {
+                        setEncoding("base64")
+                    },
+                )
+            }
+            MimeMessageHelper.setBody(this, multipart)
+        }
+
+        val estimatedSize = MessageSizeEstimator.estimateSize(message)
+
+        assertThat(estimatedSize).isEqualTo(message.calculateSize())
+        assertThat(estimatedSize).isGreaterThan(sizeLimit)
+    }
+
+    @Test
+    fun `estimated size of unencoded body should match base64 output for all line lengths`() {
+        for (length in listOf(0, 1, 2, 3, 56, 57, 58, 113, 114, 115)) {
+            val message = MimeMessage().apply {
+                MimeMessageHelper.setBody(this, UnencodedAttachmentBody(ByteArray(length)))
+                setEncoding("base64")
+            }
+
+            assertThat(MessageSizeEstimator.estimateSize(message), name = "length=$length")
+                .isEqualTo(message.calculateSize())
+        }
+    }
+
+    /**
+     * Stores unencoded data and applies the transfer encoding when writing, like the attachment bodies in the app.
+     */
+    private class UnencodedAttachmentBody(private val data: ByteArray) : Body, SizeAware {
+        private var encoding: String? = null
+
+        override fun getInputStream(): InputStream = data.inputStream()
+
+        override fun setEncoding(encoding: String) {
+            this.encoding = encoding
+        }
+
+        override fun writeTo(out: OutputStream) {
+            check(encoding == "base64")
+            Base64OutputStream(out).use { it.write(data) }
+        }
+
+        override fun getSize(): Long = data.size.toLong()
+    }
+}
@@ -6,6 +6,7 @@ class Commands {
     public static final String NAMESPACE = "NAMESPACE";
     public static final String CAPABILITY = "CAPABILITY";
     public static final String COMPRESS_DEFLATE = "COMPRESS DEFLATE";
+    public static final String ENABLE_QRESYNC = "ENABLE QRESYNC";
     public static final String STARTTLS = "STARTTLS";
     public static final String AUTHENTICATE_XOAUTH2 = "AUTHENTICATE XOAUTH2";
     public static final String AUTHENTICATE_OAUTHBEARER = "AUTHENTICATE OAUTHBEARER";
@@ -21,4 +22,10 @@ class Commands {
     public static final String UID_COPY = "UID COPY";
     public static final String UID_MOVE = "UID MOVE";
     public static final String UID_EXPUNGE = "UID EXPUNGE";
+    public static final String EXAMINE = "EXAMINE";
+    public static final String CLOSE = "CLOSE";
+    public static final String UNSELECT = "UNSELECT";
+    public static final String STATUS = "STATUS";
+    public static final String NOTIFY_SET_STATUS = "NOTIFY SET STATUS";
+    public static final String NOTIFY_NONE = "NOTIFY NONE";
 }
@@ -24,7 +24,12 @@ class FetchBodyCallback implements ImapResponseCallback {
             String uid = fetchList.getKeyedString("UID");
 
             ImapMessage message = mMessageMap.get(uid);
-            message.parse(literal);
+            if (message == null) {
+                // We didn't ask for this message. Discard the data instead of keeping it around.
+                literal.skipRemaining();
+            } else {
+                message.parse(literal);
+            }
 
             // Return placeholder object
             return 1;
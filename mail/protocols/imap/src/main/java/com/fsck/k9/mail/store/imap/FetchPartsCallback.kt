@@ -0,0 +1,104 @@
+package com.fsck.k9.mail.store.imap
+
+import com.fsck.k9.mail.BodyFactory
+import com.fsck.k9.mail.Part
+import com.fsck.k9.mail.filter.FixedLengthInputStream
+import com.fsck.k9.mail.internet.MimeHeader
+import com.fsck.k9.mail.store.imap.ImapResponseParser.equalsIgnoreCase
+import java.util.Locale
+
+private val ORIGIN_OCTET_REGEX = Regex("<[0-9]+>")
+
+/**
+ * The parts of a message requested by [ImapFolder.fetchParts].
+ */
+internal class PartFetchRequest(val message: ImapMessage, parts: List<Part>) {
+    val partsBySection: Map<String, Part> = parts
+        .filter { it.serverExtra != null }
+        .associateBy { it.serverExtra.uppercase(Locale.ROOT) }
+
+    fun buildFetchItems(maxDownloadSize: Int): String {
+        return partsBySection.keys.joinToString(separator = " ") { section ->
+            if (section == "TEXT") {
+                String.format(Locale.US, "BODY.PEEK[TEXT]<0.%d>", maxDownloadSize)
+            } else {
+                String.format("BODY.PEEK[%s]", section)
+            }
+        }
+    }
+}
+
+/**
+ * Routes body literals of `FETCH` responses to the [Part] they were requested for, using the message's UID and the
+ * body section contained in the response, e.g. `BODY[1.2]`.
+ *
+ * Literals that can't be matched to a part are returned to the parser unconsumed.
+ */
+internal class FetchPartsCallback(
+    private val requestsByUid: Map<String, PartFetchRequest>,
+    private val bodyFactory: BodyFactory,
+) : ImapResponseCallback {
+    override fun foundLiteral(response: ImapResponse, literal: FixedLengthInputStream): Any? {
+        if (response.tag != null || !equalsIgnoreCase(response[1], "FETCH")) return null
+
+        val fetchList = response.getKeyedValue("FETCH") as? ImapList ?: return null
+        if (!fetchList.containsKey("UID")) return null
+
+        val request = requestsByUid[fetchList.getKeyedString("UID")] ?: return null
+        val section = fetchList.findSectionOfTrailingLiteral() ?: return null
+        val part = request.partsBySection[section] ?: return null
+
+        val contentTransferEncoding = part.getHeader(MimeHeader.HEADER_CONTENT_TRANSFER_ENCODING).firstOrNull()
+        val contentType = part.getHeader(MimeHeader.HEADER_CONTENT_TYPE).firstOrNull()
+
+        return bodyFactory.createBody(contentTransferEncoding, contentType, literal)
+    }
+
+    // When the callback is invoked the FETCH list ends with the data item name of the literal, e.g. `BODY [1.2]` or
+    // `BODY [TEXT] <0>`.
+    private fun ImapList.findSectionOfTrailingLiteral(): String? {
+        var index = lastIndex
+        if (index >= 0 && isString(index) && ORIGIN_OCTET_REGEX.matches(getString(index))) {
+            index--
+        }
+
+        if (index < 1 || !isList(index) || !equalsIgnoreCase(get(index - 1), "BODY")) return null
+
+        return getList(index).getSectionOrNull()
+    }
+}
+
+/**
+ * Returns the body section values contained in a FETCH response, e.g. `BODY[1.2] {42}` results in an entry
+ * `"1.2" to <literal>`.
+ */
+internal fun ImapList.getBodySectionValues(): Map<String, Any> {
+    val values = mutableMapOf<String, Any>()
+
+    var index = 0
+    while (index < size - 2) {
+        if (equalsIgnoreCase(get(index), "BODY") && isList(index + 1)) {
+            val section = getList(index + 1).getSectionOrNull()
+
+            var valueIndex = index + 2
+            if (isString(valueIndex) && ORIGIN_OCTET_REGEX.matches(getString(valueIndex)) && valueIndex + 1 < size) {
+                valueIndex++
+            }
+
+            val value = get(valueIndex)
+            if (section != null && value != null) {
+                values[section] = value
+            }
+
+            index = valueIndex + 1
+        } else {
+            index++
+        }
+    }
+
+    return values
+}
+
+private fun ImapList.getSectionOrNull(): String? {
+    return if (size == 1 && isString(0)) getString(0).uppercase(Locale.ROOT) else null
+}
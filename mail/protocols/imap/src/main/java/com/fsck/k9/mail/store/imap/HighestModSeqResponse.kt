@@ -0,0 +1,33 @@
+package com.fsck.k9.mail.store.imap
+
+import com.fsck.k9.mail.store.imap.ImapResponseParser.equalsIgnoreCase
+
+/**
+ * Extracts the `HIGHESTMODSEQ` or `NOMODSEQ` response code from an untagged `OK` response (RFC 7162).
+ */
+internal class HighestModSeqResponse private constructor(val highestModSeq: Long?) {
+    companion object {
+        @JvmStatic
+        fun parse(response: ImapResponse): HighestModSeqResponse? {
+            if (response.isTagged || !equalsIgnoreCase(response[0], Responses.OK) || !response.isList(1)) return null
+
+            val responseTextList = response.getList(1)
+            if (responseTextList.isEmpty()) return null
+
+            if (equalsIgnoreCase(responseTextList[0], Responses.NOMODSEQ)) {
+                return HighestModSeqResponse(highestModSeq = null)
+            }
+
+            if (responseTextList.size < 2 || !equalsIgnoreCase(responseTextList[0], Responses.HIGHESTMODSEQ) ||
+                !responseTextList.isLong(1)
+            ) {
+                return null
+            }
+
+            val highestModSeq = responseTextList.getLong(1)
+            if (highestModSeq < 0L) return null
+
+            return HighestModSeqResponse(highestModSeq)
+        }
+    }
+}
@@ -12,6 +12,8 @@ internal interface ImapConnection {
     val outputStream: OutputStream
     val isUidPlusCapable: Boolean
     val isIdleCapable: Boolean
+    val isCondstoreCapable: Boolean
+    val isQresyncEnabled: Boolean
 
     @Throws(IOException::class, MessagingException::class)
     fun open()
@@ -21,6 +23,14 @@ internal interface ImapConnection {
     @Throws(IOException::class, MessagingException::class)
     fun hasCapability(capability: String): Boolean
 
+    /**
+     * Enables the QRESYNC extension (RFC 7162) for this connection if the server supports it.
+     *
+     * @return `true` if QRESYNC is enabled for this connection.
+     */
+    @Throws(IOException::class, MessagingException::class)
+    fun enableQresync(): Boolean
+
     @Throws(IOException::class, MessagingException::class)
     fun executeSimpleCommand(command: String): List<ImapResponse>
 
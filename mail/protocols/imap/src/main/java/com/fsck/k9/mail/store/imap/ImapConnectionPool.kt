@@ -0,0 +1,213 @@
+package com.fsck.k9.mail.store.imap
+
+import com.fsck.k9.logging.Timber
+import com.fsck.k9.mail.MessagingException
+import java.io.IOException
+import java.util.ArrayDeque
+import java.util.Deque
+import java.util.concurrent.Executors
+import java.util.concurrent.ScheduledExecutorService
+import java.util.concurrent.ScheduledFuture
+import java.util.concurrent.TimeUnit
+import java.util.concurrent.atomic.AtomicLong
+
+/**
+ * Pool of idle [ImapConnection]s.
+ *
+ * Connections are handed out most recently used first. Only connections that have been idle for longer than
+ * [ImapConnectionPoolSettings.validationIntervalMillis] are checked with a `NOOP` command before being handed out.
+ * Connections idle for longer than [ImapConnectionPoolSettings.maxIdleTimeMillis] are closed in the background.
+ *
+ * The number of connections that are in use isn't limited. A new connection is created whenever the pool is empty.
+ */
+internal class ImapConnectionPool(
+    private val settings: ImapConnectionPoolSettings,
+    private val logLabel: String,
+    private val nanoTimeProvider: () -> Long = System::nanoTime,
+    private val evictionExecutor: ScheduledExecutorService = sharedEvictionExecutor,
+) {
+    // Most recently released connection first
+    private val idleConnections: Deque<PooledConnection> = ArrayDeque()
+    private var evictionTask: ScheduledFuture<*>? = null
+
+    private val validationIntervalNanos = TimeUnit.MILLISECONDS.toNanos(settings.validationIntervalMillis)
+    private val maxIdleTimeNanos = TimeUnit.MILLISECONDS.toNanos(settings.maxIdleTimeMillis)
+
+    private val hitCount = AtomicLong()
+    private val missCount = AtomicLong()
+    private val failedValidationCount = AtomicLong()
+    private val evictionCount = AtomicLong()
+    private val checkoutCount = AtomicLong()
+    private val totalCheckoutTimeNanos = AtomicLong()
+
+    val stats: ImapConnectionPoolStats
+        get() = ImapConnectionPoolStats(
+            hitCount = hitCount.get(),
+            missCount = missCount.get(),
+            failedValidationCount = failedValidationCount.get(),
+            evictionCount = evictionCount.get(),
+            checkoutCount = checkoutCount.get(),
+            totalCheckoutTimeNanos = totalCheckoutTimeNanos.get(),
+        )
+
+    /**
+     * Returns an idle connection that is still usable or the connection created by [createConnection] if the pool
+     * doesn't contain one.
+     */
+    @Throws(MessagingException::class)
+    fun getConnection(createConnection: () -> ImapConnection): ImapConnection {
+        val startTime = nanoTimeProvider()
+        try {
+            while (true) {
+                val pooledConnection = pollConnection()
+                if (pooledConnection == null) {
+                    missCount.incrementAndGet()
+                    return createConnection()
+                }
+
+                val connection = pooledConnection.connection
+                if (startTime - pooledConnection.releaseTime < validationIntervalNanos) {
+                    hitCount.incrementAndGet()
+                    return connection
+                }
+
+                try {
+                    connection.executeSimpleCommand(Commands.NOOP)
+
+                    // If the command completes without an error this connection is still usable.
+                    hitCount.incrementAndGet()
+                    return connection
+                } catch (ioe: IOException) {
+                    failedValidationCount.incrementAndGet()
+                    connection.close()
+                }
+            }
+        } finally {
+            checkoutCount.incrementAndGet()
+            totalCheckoutTimeNanos.addAndGet(nanoTimeProvider() - startTime)
+        }
+    }
+
+    /**
+     * Returns a connection to the pool. The connection is closed if the pool is full.
+     */
+    fun releaseConnection(connection: ImapConnection) {
+        val addedToPool = synchronized(idleConnections) {
+            if (idleConnections.size < settings.maxIdleConnections) {
+                idleConnections.addFirst(PooledConnection(connection, releaseTime = nanoTimeProvider()))
+                scheduleEvictionTask()
+                true
+            } else {
+                false
+            }
+        }
+
+        if (!addedToPool) {
+            connection.close()
+        }
+    }
+
+    /**
+     * Closes connections that have been idle for longer than [ImapConnectionPoolSettings.maxIdleTimeMillis], keeping at
+     * least [ImapConnectionPoolSettings.minIdleConnections] connections.
+     */
+    fun evictIdleConnections() {
+        val now = nanoTimeProvider()
+        val connectionsToClose = synchronized(idleConnections) {
+            val connectionsToClose = mutableListOf<ImapConnection>()
+            while (idleConnections.size > settings.minIdleConnections) {
+                val oldestConnection = idleConnections.peekLast()
+                if (now - oldestConnection.releaseTime < maxIdleTimeNanos) break
+
+                idleConnections.removeLast()
+                connectionsToClose.add(oldestConnection.connection)
+            }
+
+            if (idleConnections.isEmpty()) {
+                cancelEvictionTask()
+            }
+
+            connectionsToClose
+        }
+
+        if (connectionsToClose.isNotEmpty()) {
+            evictionCount.addAndGet(connectionsToClose.size.toLong())
+            Timber.v("%s: Closing %d idle IMAP connection(s); %s", logLabel, connectionsToClose.size, stats)
+
+            for (connection in connectionsToClose) {
+                connection.close()
+            }
+        }
+    }
+
+    fun closeAllConnections() {
+        val connectionsToClose = synchronized(idleConnections) {
+            val connectionsToClose = idleConnections.map { it.connection }
+            idleConnections.clear()
+            cancelEvictionTask()
+
+            connectionsToClose
+        }
+
+        for (connection in connectionsToClose) {
+            connection.close()
+        }
+    }
+
+    private fun pollConnection(): PooledConnection? {
+        return synchronized(idleConnections) {
+            idleConnections.pollFirst()
+        }
+    }
+
+    private fun scheduleEvictionTask() {
+        if (evictionTask != null) return
+
+        val interval = settings.maxIdleTimeMillis
+        evictionTask = evictionExecutor.scheduleWithFixedDelay(
+            ::evictIdleConnectionsSafely,
+            interval,
+            interval,
+            TimeUnit.MILLISECONDS,
+        )
+    }
+
+    private fun cancelEvictionTask() {
+        evictionTask?.cancel(false)
+        evictionTask = null
+    }
+
+    private fun evictIdleConnectionsSafely() {
+        try {
+            evictIdleConnections()
+        } catch (e: Exception) {
+            // An exception would stop the scheduled task
+            Timber.w(e, "%s: Error while closing idle IMAP connections", logLabel)
+        }
+    }
+
+    private class PooledConnection(val connection: ImapConnection, val releaseTime: Long)
+
+    companion object {
+        private val sharedEvictionExecutor: ScheduledExecutorService by lazy {
+            Executors.newSingleThreadScheduledExecutor { runnable ->
+                Thread(runnable, "ImapConnectionPoolEviction").apply { isDaemon = true }
+            }
+        }
+    }
+}
+
+internal data class ImapConnectionPoolStats(
+    val hitCount: Long,
+    val missCount: Long,
+    val failedValidationCount: Long,
+    val evictionCount: Long,
+    val checkoutCount: Long,
+    val totalCheckoutTimeNanos: Long,
+) {
+    val hitRate: Double
+        get() = if (hitCount + missCount == 0L) 0.0 else hitCount.toDouble() / (hitCount + missCount)
+
+    val averageCheckoutTimeNanos: Long
+        get() = if (checkoutCount == 0L) 0L else totalCheckoutTimeNanos / checkoutCount
+}
@@ -0,0 +1,27 @@
+package com.fsck.k9.mail.store.imap
+
+/**
+ * Settings for the pool of idle IMAP connections kept by an [ImapStore].
+ *
+ * @param minIdleConnections Number of idle connections that are never evicted because of their idle time.
+ * @param maxIdleConnections Maximum number of idle connections kept in the pool. Connections released when the pool is
+ *   full are closed.
+ * @param validationIntervalMillis Connections that were released less than this many milliseconds ago are handed out
+ *   without checking whether they are still usable (by sending a `NOOP` command).
+ * @param maxIdleTimeMillis Connections that have been idle for longer than this are closed by a background task.
+ */
+internal data class ImapConnectionPoolSettings(
+    val minIdleConnections: Int = 0,
+    val maxIdleConnections: Int = 3,
+    val validationIntervalMillis: Long = 30_000L,
+    val maxIdleTimeMillis: Long = 5 * 60_000L,
+) {
+    init {
+        require(minIdleConnections >= 0) { "'minIdleConnections' must not be negative" }
+        require(maxIdleConnections >= minIdleConnections) {
+            "'maxIdleConnections' must not be smaller than 'minIdleConnections'"
+        }
+        require(validationIntervalMillis >= 0) { "'validationIntervalMillis' must not be negative" }
+        require(maxIdleTimeMillis > 0) { "'maxIdleTimeMillis' needs to be positive" }
+    }
+}
@@ -22,10 +22,25 @@ interface ImapFolder {
     @Throws(MessagingException::class)
     fun open(mode: OpenMode)
 
+    /**
+     * Opens the folder passing the QRESYNC parameter (RFC 7162) to the SELECT/EXAMINE command.
+     *
+     * Returns `null` if the server doesn't support the QRESYNC extension. In that case the folder was opened as if
+     * [open] had been called and the caller needs to fall back to a full synchronization.
+     */
+    @Throws(MessagingException::class)
+    fun openWithQresync(mode: OpenMode, knownUidValidity: Long, knownHighestModSeq: Long): QresyncResponse?
+
     fun close()
 
     fun getUidValidity(): Long?
 
+    /**
+     * Returns the HIGHESTMODSEQ value reported when opening the folder or `null` if the server doesn't support
+     * mod-sequences (CONDSTORE) for this folder.
+     */
+    fun getHighestModSeq(): Long?
+
     fun getMessage(uid: String): ImapMessage
 
     @Throws(MessagingException::class)
@@ -50,6 +65,15 @@ interface ImapFolder {
         maxDownloadSize: Int,
     )
 
+    /**
+     * Fetches the flags of those of the given messages whose mod-sequence is higher than [changedSince], using the
+     * CHANGEDSINCE FETCH modifier of the CONDSTORE extension (RFC 7162).
+     *
+     * [listener] is only called for messages whose flags were changed.
+     */
+    @Throws(MessagingException::class)
+    fun fetchChangedFlags(messages: List<ImapMessage>, changedSince: Long, listener: FetchListener?)
+
     @Throws(MessagingException::class)
     fun fetchPart(
         message: ImapMessage,
@@ -58,6 +82,19 @@ interface ImapFolder {
         maxDownloadSize: Int,
     )
 
+    /**
+     * Fetches the bodies of the given parts of multiple messages.
+     *
+     * One `UID FETCH` command is sent per message, requesting all of its parts. Multiple commands are pipelined, so
+     * the number of round trips doesn't depend on the number of parts or messages.
+     */
+    @Throws(MessagingException::class)
+    fun fetchParts(
+        partsToFetch: Map<ImapMessage, List<Part>>,
+        bodyFactory: BodyFactory,
+        maxDownloadSize: Int,
+    )
+
     @Throws(MessagingException::class)
     fun search(
         queryString: String?,
@@ -0,0 +1,57 @@
+package com.fsck.k9.mail.store.imap
+
+import com.fsck.k9.mail.power.WakeLock
+
+/**
+ * Listens for changes to multiple IMAP folders using a single connection.
+ *
+ * Uses the NOTIFY extension (RFC 5465) if the server supports it. Otherwise one of the folders is monitored using IDLE
+ * and the others are checked using `STATUS` commands whenever the IDLE command is refreshed.
+ */
+interface ImapMultiFolderIdler {
+    fun idle(folderServerIds: Collection<String>): MultiFolderIdleResult
+    fun refresh()
+
+    /**
+     * Ends the current call to [idle], if any. The next call to [idle] returns [IdleResult.STOPPED] right away, even if
+     * the current call already ended on its own.
+     */
+    fun stop()
+
+    companion object {
+        fun create(
+            idleRefreshManager: IdleRefreshManager,
+            wakeLock: WakeLock,
+            imapStore: ImapStore,
+            idleRefreshTimeoutProvider: IdleRefreshTimeoutProvider,
+        ): ImapMultiFolderIdler {
+            require(imapStore is RealImapStore)
+
+            return RealImapMultiFolderIdler(
+                idleRefreshManager,
+                wakeLock,
+                internalImapStore = imapStore,
+                connectionManager = imapStore,
+                folderNameCodec = imapStore.folderNameCodec,
+                idleRefreshTimeoutProvider,
+            )
+        }
+    }
+}
+
+/**
+ * Result of [ImapMultiFolderIdler.idle].
+ *
+ * [changedFolderServerIds] contains the folders that need to be synchronized. It can be non-empty even if [result] is
+ * [IdleResult.STOPPED].
+ */
+data class MultiFolderIdleResult(
+    val result: IdleResult,
+    val changedFolderServerIds: Set<String> = emptySet(),
+)
+
+enum class IdleResult {
+    SYNC,
+    STOPPED,
+    NOT_SUPPORTED,
+}
@@ -1,7 +1,10 @@
 package com.fsck.k9.mail.store.imap;
 
 
+import java.io.File;
+import java.io.FileOutputStream;
 import java.io.IOException;
+import java.io.OutputStream;
 import java.util.ArrayList;
 import java.util.Iterator;
 import java.util.List;
@@ -10,19 +13,33 @@ import com.fsck.k9.logging.Timber;
 import com.fsck.k9.mail.K9MailLib;
 import com.fsck.k9.mail.filter.FixedLengthInputStream;
 import com.fsck.k9.mail.filter.PeekableInputStream;
+import com.fsck.k9.mail.internet.BinaryTempFileBody;
 import okio.Buffer;
+import org.apache.commons.io.IOUtils;
 
 import static com.fsck.k9.mail.K9MailLib.DEBUG_PROTOCOL_IMAP;
 
 
 class ImapResponseParser {
+    /**
+     * Literals larger than this that aren't consumed by an {@link ImapResponseCallback} are written to a temp file
+     * instead of being kept in memory. See {@link TempFileLiteral}.
+     */
+    static final int DEFAULT_MAX_IN_MEMORY_LITERAL_SIZE = 32 * 1024;
+
     private PeekableInputStream inputStream;
+    private final int maxInMemoryLiteralSize;
     private ImapResponse response;
     private Exception exception;
 
 
     public ImapResponseParser(PeekableInputStream in) {
+        this(in, DEFAULT_MAX_IN_MEMORY_LITERAL_SIZE);
+    }
+
+    ImapResponseParser(PeekableInputStream in, int maxInMemoryLiteralSize) {
         this.inputStream = in;
+        this.maxInMemoryLiteralSize = maxInMemoryLiteralSize;
     }
 
     public ImapResponse readResponse() throws IOException {
@@ -241,7 +258,7 @@ class ImapResponseParser {
             } else if (ch == '"') {
                 return parseQuoted();
             } else if (ch == '{') {
-                return parseLiteral();
+                return parseLiteral(true);
             } else if (ch == ' ') {
                 expect(' ');
             } else if (ch == '\r') {
@@ -265,7 +282,7 @@ class ImapResponseParser {
         if (ch == '"') {
             return parseQuoted();
         } else if (ch == '{') {
-            return (String) parseLiteral();
+            return (String) parseLiteral(false);
         } else {
             return parseBareString(false);
         }
@@ -337,7 +354,7 @@ class ImapResponseParser {
      * A "{" has been read. Read the rest of the size string, the space and then notify the callback with an
      * {@code InputStream}.
      */
-    private Object parseLiteral() throws IOException {
+    private Object parseLiteral(boolean allowTempFile) throws IOException {
         expect('{');
 
         int size;
@@ -392,6 +409,10 @@ class ImapResponseParser {
             }
         }
 
+        if (allowTempFile && size > maxInMemoryLiteralSize && BinaryTempFileBody.getTempDirectory() != null) {
+            return readLiteralToTempFile(size);
+        }
+
         byte[] data = new byte[size];
         int read = 0;
         while (read != size) {
@@ -405,6 +426,30 @@ class ImapResponseParser {
         return new String(data, "US-ASCII");
     }
 
+    private TempFileLiteral readLiteralToTempFile(int size) throws IOException {
+        File file = File.createTempFile("literal", null, BinaryTempFileBody.getTempDirectory());
+        TempFileLiteral literal = new TempFileLiteral(file, size);
+
+        FixedLengthInputStream fixed = new FixedLengthInputStream(inputStream, size);
+        try {
+            OutputStream outputStream = new FileOutputStream(file);
+            try {
+                IOUtils.copy(fixed, outputStream);
+            } finally {
+                outputStream.close();
+            }
+
+            if (fixed.available() != 0) {
+                throw new IOException("readLiteralToTempFile(): end of stream reached");
+            }
+        } catch (IOException e) {
+            literal.delete();
+            throw e;
+        }
+
+        return literal;
+    }
+
     private String parseQuoted() throws IOException {
         expect('"');
 
@@ -0,0 +1,21 @@
+package com.fsck.k9.mail.store.imap
+
+/**
+ * Changes reported by the server when a folder was opened using the QRESYNC extension (RFC 7162).
+ *
+ * @param vanishedUidRanges UIDs of messages that were expunged since the mod-sequence passed to
+ *   [ImapFolder.openWithQresync]. These ranges may include UIDs that never existed in the folder.
+ * @param changedMessages Messages that were added or whose flags were changed since the mod-sequence passed to
+ *   [ImapFolder.openWithQresync]. Only the UID and flags are populated.
+ */
+class QresyncResponse(
+    val vanishedUidRanges: List<LongRange>,
+    val changedMessages: List<ImapMessage>,
+) {
+    val hasChanges: Boolean
+        get() = vanishedUidRanges.isNotEmpty() || changedMessages.isNotEmpty()
+
+    fun isVanished(uid: Long): Boolean {
+        return vanishedUidRanges.any { uid in it }
+    }
+}
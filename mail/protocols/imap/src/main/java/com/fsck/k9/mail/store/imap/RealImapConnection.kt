@@ -59,6 +59,10 @@ internal class RealImapConnection(
     private var open = false
     private var retryOAuthWithNewToken = true
 
+    @get:Synchronized
+    override var isQresyncEnabled = false
+        private set
+
     @get:Synchronized
     override val outputStream: OutputStream
         get() = checkNotNull(imapOutputStream)
@@ -666,9 +670,34 @@ internal class RealImapConnection(
         return capabilities.contains(capability.uppercase())
     }
 
-    private val isCondstoreCapable: Boolean
+    override val isCondstoreCapable: Boolean
         get() = hasCapability(Capabilities.CONDSTORE)
 
+    @Synchronized
+    @Throws(IOException::class, MessagingException::class)
+    override fun enableQresync(): Boolean {
+        if (isQresyncEnabled) return true
+        if (!hasCapability(Capabilities.QRESYNC) || !hasCapability(Capabilities.ENABLE)) return false
+
+        val responses = try {
+            executeSimpleCommand(Commands.ENABLE_QRESYNC)
+        } catch (e: NegativeImapResponseException) {
+            Timber.d(e, "Ignoring negative response to ENABLE QRESYNC command")
+            return false
+        }
+
+        isQresyncEnabled = responses.any { response ->
+            !response.isTagged && ImapResponseParser.equalsIgnoreCase(response[0], Responses.ENABLED) &&
+                response.drop(1).any { ImapResponseParser.equalsIgnoreCase(it, Capabilities.QRESYNC) }
+        }
+
+        if (K9MailLib.isDebug()) {
+            Timber.d("QRESYNC enabled for %s: %s", logId, isQresyncEnabled)
+        }
+
+        return isQresyncEnabled
+    }
+
     override val isIdleCapable: Boolean
         get() {
             if (K9MailLib.isDebug()) {
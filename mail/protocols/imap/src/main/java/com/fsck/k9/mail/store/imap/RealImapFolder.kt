@@ -39,6 +39,7 @@ internal class RealImapFolder(
     private var inSearch = false
     private var canCreateKeywords = false
     private var uidValidity: Long? = null
+    private var highestModSeq: Long? = null
 
     /**
      * Specifies whether the folder was opened in read-only or read-write mode based on the tagged OK response to
@@ -68,6 +69,11 @@ internal class RealImapFolder(
         return uidValidity
     }
 
+    override fun getHighestModSeq(): Long? {
+        check(isOpen) { "ImapFolder needs to be open" }
+        return highestModSeq
+    }
+
     @get:Throws(MessagingException::class)
     private val prefixedName: String
         get() {
@@ -113,9 +119,48 @@ internal class RealImapFolder(
         }
     }
 
+    /**
+     * Opens the folder like [open] but asks the server to report all changes since [knownHighestModSeq] using the
+     * QRESYNC extension.
+     */
+    @Throws(MessagingException::class)
+    override fun openWithQresync(
+        mode: OpenMode,
+        knownUidValidity: Long,
+        knownHighestModSeq: Long,
+    ): QresyncResponse? {
+        val responses = internalOpen(mode, QresyncParameters(knownUidValidity, knownHighestModSeq))
+
+        if (messageCount == -1) {
+            throw MessagingException("Did not find message count during open")
+        }
+
+        if (!connection.isQresyncEnabled) {
+            return null
+        }
+
+        val vanishedUidRanges = mutableListOf<LongRange>()
+        val changedMessages = mutableListOf<ImapMessage>()
+        for (response in responses) {
+            val vanishedResponse = VanishedResponse.parse(response)
+            if (vanishedResponse != null) {
+                vanishedUidRanges.addAll(vanishedResponse.uidRanges)
+            } else if (response.isFetchResponse) {
+                val fetchList = response.getKeyedValue("FETCH") as? ImapList ?: continue
+                if (!fetchList.containsKey("UID")) continue
+
+                val message = ImapMessage(fetchList.getKeyedString("UID"))
+                handleFetchResponse(message, fetchList)
+                changedMessages.add(message)
+            }
+        }
+
+        return QresyncResponse(vanishedUidRanges, changedMessages)
+    }
+
     @Throws(MessagingException::class)
-    private fun internalOpen(mode: OpenMode): List<ImapResponse> {
-        if (isOpen && this.mode == mode) {
+    private fun internalOpen(mode: OpenMode, qresyncParameters: QresyncParameters? = null): List<ImapResponse> {
+        if (isOpen && this.mode == mode && qresyncParameters == null) {
             // Make sure the connection is valid. If it's not we'll close it down and continue on to get a new one.
             try {
                 return executeSimpleCommand(Commands.NOOP)
@@ -135,13 +180,16 @@ internal class RealImapFolder(
             val openCommand = if (mode == OpenMode.READ_WRITE) "SELECT" else "EXAMINE"
             val encodedFolderName = folderNameCodec.encode(prefixedName)
             val escapedFolderName = ImapUtility.encodeString(encodedFolderName)
-            val command = String.format("%s %s", openCommand, escapedFolderName)
+            val selectParameters = buildSelectParameters(qresyncParameters)
+            val command = String.format("%s %s%s", openCommand, escapedFolderName, selectParameters)
             val responses = executeSimpleCommand(command)
 
             this.mode = mode
+            highestModSeq = null
 
             for (response in responses) {
                 extractUidValidity(response)
+                extractHighestModSeq(response)
                 handlePermanentFlags(response)
             }
 
@@ -158,6 +206,29 @@ internal class RealImapFolder(
         }
     }
 
+    private fun buildSelectParameters(qresyncParameters: QresyncParameters?): String {
+        val connection = connection!!
+        return if (qresyncParameters != null && connection.enableQresync()) {
+            String.format(
+                Locale.US,
+                " (QRESYNC (%d %d))",
+                qresyncParameters.uidValidity,
+                qresyncParameters.highestModSeq,
+            )
+        } else if (connection.isCondstoreCapable) {
+            " (CONDSTORE)"
+        } else {
+            ""
+        }
+    }
+
+    private fun extractHighestModSeq(response: ImapResponse) {
+        val highestModSeqResponse = HighestModSeqResponse.parse(response)
+        if (highestModSeqResponse != null) {
+            highestModSeq = highestModSeqResponse.highestModSeq
+        }
+    }
+
     private fun extractUidValidity(response: ImapResponse) {
         val uidValidityResponse = UidValidityResponse.parse(response)
         if (uidValidityResponse != null) {
@@ -607,42 +678,49 @@ internal class RealImapFolder(
                 var response: ImapResponse
                 do {
                     response = connection!!.readResponse(callback)
-                    if (response.tag == null && ImapResponseParser.equalsIgnoreCase(response[1], "FETCH")) {
-                        val fetchList = response.getKeyedValue("FETCH") as ImapList
-                        val uid = fetchList.getKeyedString("UID")
-
-                        val message = messageMap[uid]
-                        if (message == null) {
-                            if (K9MailLib.isDebug()) {
-                                Timber.d("Do not have message in messageMap for UID %s for %s", uid, logId)
+                    try {
+                        if (response.tag == null && ImapResponseParser.equalsIgnoreCase(response[1], "FETCH")) {
+                            val fetchList = response.getKeyedValue("FETCH") as ImapList
+                            val uid = fetchList.getKeyedString("UID")
+
+                            val message = messageMap[uid]
+                            if (message == null) {
+                                if (K9MailLib.isDebug()) {
+                                    Timber.d("Do not have message in messageMap for UID %s for %s", uid, logId)
+                                }
+                                handleUntaggedResponse(response)
+                                continue
                             }
-                            handleUntaggedResponse(response)
-                            continue
-                        }
 
-                        val literal = handleFetchResponse(message, fetchList)
-                        if (literal != null) {
-                            when (literal) {
-                                is String -> {
-                                    val bodyStream: InputStream = literal.toByteArray().inputStream()
-                                    message.parse(bodyStream)
-                                }
-                                is Int -> {
-                                    // All the work was done in FetchBodyCallback.foundLiteral()
-                                }
-                                else -> {
-                                    // This shouldn't happen
-                                    throw MessagingException("Got FETCH response with bogus parameters")
+                            val literal = handleFetchResponse(message, fetchList)
+                            if (literal != null) {
+                                when (literal) {
+                                    is String -> {
+                                        val bodyStream: InputStream = literal.toByteArray().inputStream()
+                                        message.parse(bodyStream)
+                                    }
+                                    is TempFileLiteral -> {
+                                        literal.inputStream.use { bodyStream -> message.parse(bodyStream) }
+                                    }
+                                    is Int -> {
+                                        // All the work was done in FetchBodyCallback.foundLiteral()
+                                    }
+                                    else -> {
+                                        // This shouldn't happen
+                                        throw MessagingException("Got FETCH response with bogus parameters")
+                                    }
                                 }
                             }
-                        }
 
-                        val isFirstResponse = uid !in processedUids
-                        processedUids.add(uid)
+                            val isFirstResponse = uid !in processedUids
+                            processedUids.add(uid)
 
-                        listener?.onFetchResponse(message, isFirstResponse)
-                    } else {
-                        handleUntaggedResponse(response)
+                            listener?.onFetchResponse(message, isFirstResponse)
+                        } else {
+                            handleUntaggedResponse(response)
+                        }
+                    } finally {
+                        TempFileLiteral.deleteAll(response)
                     }
                 } while (response.tag == null)
             } catch (ioe: IOException) {
@@ -653,6 +731,42 @@ internal class RealImapFolder(
         }
     }
 
+    @Throws(MessagingException::class)
+    override fun fetchChangedFlags(messages: List<ImapMessage>, changedSince: Long, listener: FetchListener?) {
+        if (messages.isEmpty()) {
+            return
+        }
+
+        checkOpen()
+
+        val messageMap = messages.associateBy { it.uid }
+        val uids = messages.map { it.uid.toLong() }.toSet()
+        val commandSuffix = String.format(Locale.US, "(UID FLAGS) (CHANGEDSINCE %d)", changedSince)
+
+        try {
+            val imapResponses = connection!!.executeCommandWithIdSet(Commands.UID_FETCH, commandSuffix, uids)
+            for (response in imapResponses) {
+                if (!response.isFetchResponse) {
+                    handleUntaggedResponse(response)
+                    continue
+                }
+
+                val fetchList = response.getKeyedValue("FETCH") as? ImapList ?: continue
+                val uid = fetchList.getKeyedValue("UID") as? String
+                val message = uid?.let { messageMap[it] }
+                if (message == null) {
+                    handleUntaggedResponse(response)
+                    continue
+                }
+
+                handleFetchResponse(message, fetchList)
+                listener?.onFetchResponse(message, isFirstResponse = true)
+            }
+        } catch (ioe: IOException) {
+            throw ioExceptionHandler(connection, ioe)
+        }
+    }
+
     @Throws(MessagingException::class)
     override fun fetchPart(
         message: ImapMessage,
@@ -679,48 +793,149 @@ internal class RealImapFolder(
             var response: ImapResponse
             do {
                 response = connection!!.readResponse(callback)
+                try {
+                    if (response.tag == null && ImapResponseParser.equalsIgnoreCase(response[1], "FETCH")) {
+                        val fetchList = response.getKeyedValue("FETCH") as ImapList
+                        val uid = fetchList.getKeyedString("UID")
+                        if (message.uid != uid) {
+                            if (K9MailLib.isDebug()) {
+                                Timber.d("Did not ask for UID %s for %s", uid, logId)
+                            }
+                            handleUntaggedResponse(response)
+                            continue
+                        }
 
-                if (response.tag == null && ImapResponseParser.equalsIgnoreCase(response[1], "FETCH")) {
-                    val fetchList = response.getKeyedValue("FETCH") as ImapList
-                    val uid = fetchList.getKeyedString("UID")
-                    if (message.uid != uid) {
-                        if (K9MailLib.isDebug()) {
-                            Timber.d("Did not ask for UID %s for %s", uid, logId)
+                        val literal = handleFetchResponse(message, fetchList)
+                        if (literal != null) {
+                            when (literal) {
+                                is Body -> {
+                                    // Most of the work was done in FetchAttachmentCallback.foundLiteral()
+                                    MimeMessageHelper.setBody(part, literal as Body?)
+                                }
+                                is String -> {
+                                    val bodyStream: InputStream = literal.toByteArray().inputStream()
+                                    setBodyFromStream(part, bodyStream, bodyFactory)
+                                }
+                                is TempFileLiteral -> {
+                                    literal.inputStream.use { bodyStream ->
+                                        setBodyFromStream(part, bodyStream, bodyFactory)
+                                    }
+                                }
+                                else -> {
+                                    // This shouldn't happen
+                                    throw MessagingException("Got FETCH response with bogus parameters")
+                                }
+                            }
                         }
+                    } else {
                         handleUntaggedResponse(response)
-                        continue
                     }
+                } finally {
+                    TempFileLiteral.deleteAll(response)
+                }
+            } while (response.tag == null)
+        } catch (ioe: IOException) {
+            throw ioExceptionHandler(connection, ioe)
+        }
+    }
 
-                    val literal = handleFetchResponse(message, fetchList)
-                    if (literal != null) {
-                        when (literal) {
-                            is Body -> {
-                                // Most of the work was done in FetchAttachmentCallback.foundLiteral()
-                                MimeMessageHelper.setBody(part, literal as Body?)
-                            }
-                            is String -> {
-                                val bodyStream: InputStream = literal.toByteArray().inputStream()
-                                val contentTransferEncoding =
-                                    part.getHeader(MimeHeader.HEADER_CONTENT_TRANSFER_ENCODING)[0]
-                                val contentType = part.getHeader(MimeHeader.HEADER_CONTENT_TYPE)[0]
-                                val body = bodyFactory.createBody(contentTransferEncoding, contentType, bodyStream)
-                                MimeMessageHelper.setBody(part, body)
-                            }
-                            else -> {
-                                // This shouldn't happen
-                                throw MessagingException("Got FETCH response with bogus parameters")
-                            }
+    @Throws(MessagingException::class)
+    override fun fetchParts(
+        partsToFetch: Map<ImapMessage, List<Part>>,
+        bodyFactory: BodyFactory,
+        maxDownloadSize: Int,
+    ) {
+        checkOpen()
+
+        val requests = partsToFetch
+            .map { (message, parts) -> PartFetchRequest(message, parts) }
+            .filter { it.partsBySection.isNotEmpty() }
+        if (requests.isEmpty()) return
+
+        val requestsByUid = requests.associateBy { it.message.uid }
+        val callback = FetchPartsCallback(requestsByUid, bodyFactory)
+
+        try {
+            val connection = connection!!
+            val pendingTags = mutableSetOf<String>()
+            var nextRequestIndex = 0
+
+            while (nextRequestIndex < requests.size || pendingTags.isNotEmpty()) {
+                // Limit the number of commands in flight so we don't block on writing while the server is blocked on
+                // sending us responses we haven't read yet.
+                while (nextRequestIndex < requests.size && pendingTags.size < MAX_PIPELINED_FETCH_COMMANDS) {
+                    val request = requests[nextRequestIndex++]
+                    val fetchItems = request.buildFetchItems(maxDownloadSize)
+                    val command = String.format("UID FETCH %s (UID %s)", request.message.uid, fetchItems)
+                    pendingTags.add(connection.sendCommand(command, false))
+                }
+
+                val response = connection.readResponse(callback)
+                try {
+                    val tag = response.tag
+                    if (tag != null) {
+                        if (!pendingTags.remove(tag)) {
+                            Timber.w("Received response with unexpected tag %s for %s", tag, logId)
+                        } else if (!ImapResponseParser.equalsIgnoreCase(response[0], Responses.OK)) {
+                            Timber.w("Fetching parts failed for %s: %s", logId, response)
                         }
+                    } else if (response.isFetchResponse) {
+                        handlePartsFetchResponse(requestsByUid, response, bodyFactory)
+                    } else {
+                        handleUntaggedResponse(response)
                     }
-                } else {
-                    handleUntaggedResponse(response)
+                } finally {
+                    TempFileLiteral.deleteAll(response)
                 }
-            } while (response.tag == null)
+            }
         } catch (ioe: IOException) {
             throw ioExceptionHandler(connection, ioe)
         }
     }
 
+    private fun handlePartsFetchResponse(
+        requestsByUid: Map<String, PartFetchRequest>,
+        response: ImapResponse,
+        bodyFactory: BodyFactory,
+    ) {
+        val fetchList = response.getKeyedValue("FETCH") as ImapList
+        val request = if (fetchList.containsKey("UID")) requestsByUid[fetchList.getKeyedString("UID")] else null
+        if (request == null) {
+            handleUntaggedResponse(response)
+            return
+        }
+
+        handleFetchResponse(request.message, fetchList)
+
+        for ((section, value) in fetchList.getBodySectionValues()) {
+            val part = request.partsBySection[section] ?: continue
+            when (value) {
+                is Body -> {
+                    // Most of the work was done in FetchPartsCallback.foundLiteral()
+                    MimeMessageHelper.setBody(part, value)
+                }
+                is String -> {
+                    val bodyStream: InputStream = value.toByteArray().inputStream()
+                    setBodyFromStream(part, bodyStream, bodyFactory)
+                }
+                is TempFileLiteral -> {
+                    value.inputStream.use { bodyStream -> setBodyFromStream(part, bodyStream, bodyFactory) }
+                }
+                else -> {
+                    // This shouldn't happen
+                    throw MessagingException("Got FETCH response with bogus parameters")
+                }
+            }
+        }
+    }
+
+    private fun setBodyFromStream(part: Part, bodyStream: InputStream, bodyFactory: BodyFactory) {
+        val contentTransferEncoding = part.getHeader(MimeHeader.HEADER_CONTENT_TRANSFER_ENCODING)[0]
+        val contentType = part.getHeader(MimeHeader.HEADER_CONTENT_TYPE)[0]
+        val body = bodyFactory.createBody(contentTransferEncoding, contentType, bodyStream)
+        MimeMessageHelper.setBody(part, body)
+    }
+
     // Returns value of body field
     @Throws(MessagingException::class)
     private fun handleFetchResponse(message: ImapMessage, fetchList: ImapList): Any? {
@@ -819,8 +1034,12 @@ internal class RealImapFolder(
 
     /**
      * Handle an untagged response that the caller doesn't care to handle themselves.
+     *
+     * Literals in this response that were written to temp files are deleted.
      */
     private fun handleUntaggedResponse(response: ImapResponse) {
+        TempFileLiteral.deleteAll(response)
+
         if (response.tag == null && response.size > 1) {
             if (ImapResponseParser.equalsIgnoreCase(response[1], "EXISTS")) {
                 messageCount = response.getNumber(0)
@@ -837,6 +1056,15 @@ internal class RealImapFolder(
                     Timber.d("Got untagged EXPUNGE with messageCount %d for %s", messageCount, logId)
                 }
             }
+
+            // With QRESYNC enabled the server sends VANISHED instead of EXPUNGE responses
+            val vanishedResponse = VanishedResponse.parse(response)
+            if (vanishedResponse != null && !vanishedResponse.isEarlier && messageCount > 0) {
+                messageCount = max(0L, messageCount - vanishedResponse.uidCount).toInt()
+                if (K9MailLib.isDebug()) {
+                    Timber.d("Got untagged VANISHED with messageCount %d for %s", messageCount, logId)
+                }
+            }
         }
     }
 
@@ -1256,9 +1484,12 @@ internal class RealImapFolder(
         }
     }
 
+    private class QresyncParameters(val uidValidity: Long, val highestModSeq: Long)
+
     companion object {
         private const val MORE_MESSAGES_WINDOW_SIZE = 500
         private const val FETCH_WINDOW_SIZE = 100
+        private const val MAX_PIPELINED_FETCH_COMMANDS = 10
 
         const val INBOX = "INBOX"
 
@@ -1274,6 +1505,12 @@ private fun ImapConnection?.hasCapability(capability: String): Boolean {
     return this?.hasCapability(capability) == true
 }
 
+private val ImapConnection?.isQresyncEnabled: Boolean
+    get() = this?.isQresyncEnabled == true
+
+private val ImapResponse.isFetchResponse: Boolean
+    get() = tag == null && size > 2 && ImapResponseParser.equalsIgnoreCase(this[1], "FETCH")
+
 enum class OpenMode {
     READ_WRITE,
     READ_ONLY,
@@ -0,0 +1,393 @@
+package com.fsck.k9.mail.store.imap
+
+import com.fsck.k9.logging.Timber
+import com.fsck.k9.mail.MessagingException
+import com.fsck.k9.mail.power.WakeLock
+import java.io.IOException
+import java.util.concurrent.atomic.AtomicBoolean
+
+private const val SOCKET_EXTRA_TIMEOUT_MS = 2 * 60 * 1000L
+private const val STATUS_POLL_INTERVAL_MS = 5 * 60 * 1000L
+private const val INBOX = "INBOX"
+
+internal class RealImapMultiFolderIdler(
+    private val idleRefreshManager: IdleRefreshManager,
+    private val wakeLock: WakeLock,
+    private val internalImapStore: InternalImapStore,
+    private val connectionManager: ImapConnectionManager,
+    private val folderNameCodec: FolderNameCodec,
+    private val idleRefreshTimeoutProvider: IdleRefreshTimeoutProvider,
+) : ImapMultiFolderIdler {
+    private val logTag = "ImapMultiFolderIdler[${internalImapStore.logLabel}]"
+
+    @get:Synchronized
+    @set:Synchronized
+    private var connection: ImapConnection? = null
+
+    @get:Synchronized
+    @set:Synchronized
+    private var idleRefreshTimer: IdleRefreshTimer? = null
+
+    // Only cleared when idle() is entered, so a call to stop() is never lost between two idle cycles
+    private val stopIdle = AtomicBoolean(false)
+
+    private var idleSent = false
+    private var doneSent = false
+
+    // Last known status of each folder, keyed by the encoded mailbox name
+    private val folderStatus = mutableMapOf<String, StatusResponse>()
+
+    override fun idle(folderServerIds: Collection<String>): MultiFolderIdleResult {
+        Timber.v("%s.idle(%s)", logTag, folderServerIds)
+        require(folderServerIds.isNotEmpty()) { "'folderServerIds' must not be empty" }
+
+        if (stopIdle.getAndSet(false)) {
+            Timber.v("%s.idle(): stop() was called before idle()", logTag)
+            return MultiFolderIdleResult(IdleResult.STOPPED)
+        }
+
+        val connection = connectionManager.getConnection().also { this.connection = it }
+        var releaseConnection = false
+        try {
+            connection.open()
+
+            val mailboxes = buildMailboxMap(folderServerIds)
+            folderStatus.keys.retainAll(mailboxes.keys)
+
+            val result = when {
+                connection.hasCapability(Capabilities.NOTIFY) -> {
+                    connection.idleWithNotify(mailboxes) ?: connection.idleWithStatusPolling(mailboxes)
+                }
+                connection.isIdleCapable -> connection.idleWithStatusPolling(mailboxes)
+                else -> {
+                    Timber.w("%s: Neither NOTIFY nor IDLE supported by server", logTag)
+                    MultiFolderIdleResult(IdleResult.NOT_SUPPORTED)
+                }
+            }
+
+            releaseConnection = true
+            Timber.v("%s.idle(): result=%s", logTag, result)
+
+            return result
+        } finally {
+            this.connection = null
+            if (releaseConnection) {
+                connectionManager.releaseConnection(connection)
+            } else {
+                connection.close()
+            }
+        }
+    }
+
+    @Synchronized
+    override fun refresh() {
+        Timber.v("%s.refresh()", logTag)
+        endIdle()
+    }
+
+    @Synchronized
+    override fun stop() {
+        Timber.v("%s.stop()", logTag)
+        stopIdle.set(true)
+        endIdle()
+    }
+
+    private fun endIdle() {
+        if (idleSent && !doneSent) {
+            idleRefreshTimer?.cancel()
+
+            try {
+                sendDone()
+            } catch (e: IOException) {
+                Timber.v(e, "%s: IOException while sending DONE", logTag)
+            }
+        }
+    }
+
+    /**
+     * Returns a map of encoded mailbox names to folder server IDs.
+     */
+    private fun buildMailboxMap(folderServerIds: Collection<String>): Map<String, String> {
+        return folderServerIds.associateBy { folderServerId ->
+            if (INBOX.equals(folderServerId, ignoreCase = true)) {
+                INBOX
+            } else {
+                folderNameCodec.encode(internalImapStore.getCombinedPrefix() + folderServerId)
+            }
+        }
+    }
+
+    /**
+     * Asks the server to send `STATUS` responses for changes to any of the [mailboxes] and waits for them using IDLE.
+     *
+     * Returns `null` if the server rejected the `NOTIFY` command.
+     */
+    private fun ImapConnection.idleWithNotify(mailboxes: Map<String, String>): MultiFolderIdleResult? {
+        val changedFolderServerIds = mutableSetOf<String>()
+
+        val mailboxList = mailboxes.keys.joinToString(separator = " ") { ImapUtility.encodeString(it) }
+        val notifyCommand = "${Commands.NOTIFY_SET_STATUS} (MAILBOXES ($mailboxList) (MessageNew MessageExpunge))"
+        val responses = try {
+            executeSimpleCommand(notifyCommand)
+        } catch (e: NegativeImapResponseException) {
+            Timber.w(e, "%s: NOTIFY command failed. Falling back to STATUS polling.", logTag)
+            return null
+        }
+
+        // Compare the initial STATUS responses with what we've seen during the previous call to idle()
+        for (response in responses) {
+            handleStatusResponse(response, mailboxes, changedFolderServerIds, reportUnknownMailboxes = false)
+        }
+
+        var idleSupported = true
+        while (idleSupported && changedFolderServerIds.isEmpty() && !stopIdle.get()) {
+            idleSupported = idleRound(idleRefreshTimeoutProvider.idleRefreshTimeoutMs) { response ->
+                handleStatusResponse(response, mailboxes, changedFolderServerIds, reportUnknownMailboxes = true)
+            }
+        }
+
+        executeSimpleCommand(Commands.NOTIFY_NONE)
+
+        return if (idleSupported) {
+            buildResult(changedFolderServerIds)
+        } else {
+            Timber.w("%s: IDLE command completed without a continuation request response", logTag)
+            MultiFolderIdleResult(IdleResult.NOT_SUPPORTED, changedFolderServerIds)
+        }
+    }
+
+    /**
+     * Uses IDLE on one folder and checks the other [mailboxes] using `STATUS` commands after every IDLE round.
+     */
+    private fun ImapConnection.idleWithStatusPolling(mailboxes: Map<String, String>): MultiFolderIdleResult {
+        if (!isIdleCapable) {
+            Timber.w("%s: IDLE not supported by server", logTag)
+            return MultiFolderIdleResult(IdleResult.NOT_SUPPORTED)
+        }
+
+        val idleMailbox = if (INBOX in mailboxes) INBOX else mailboxes.keys.first()
+        val idleFolderServerId = mailboxes.getValue(idleMailbox)
+        val statusMailboxes = mailboxes - idleMailbox
+
+        executeSimpleCommand("${Commands.EXAMINE} ${ImapUtility.encodeString(idleMailbox)}")
+
+        val result = idleAndPollStatus(idleFolderServerId, statusMailboxes)
+
+        // Don't return the connection to the pool with a selected mailbox
+        closeSelectedMailbox()
+
+        return result
+    }
+
+    private fun ImapConnection.idleAndPollStatus(
+        idleFolderServerId: String,
+        statusMailboxes: Map<String, String>,
+    ): MultiFolderIdleResult {
+        val changedFolderServerIds = mutableSetOf<String>()
+        pollStatus(statusMailboxes, changedFolderServerIds)
+
+        val timeout = idleRefreshTimeoutProvider.idleRefreshTimeoutMs.coerceAtMost(STATUS_POLL_INTERVAL_MS)
+        while (changedFolderServerIds.isEmpty() && !stopIdle.get()) {
+            val idleSupported = idleRound(timeout) { response ->
+                response.isRelevantForSelectedFolder.also { isRelevant ->
+                    if (isRelevant) changedFolderServerIds.add(idleFolderServerId)
+                }
+            }
+
+            if (!idleSupported) {
+                Timber.w("%s: IDLE command completed without a continuation request response", logTag)
+                return MultiFolderIdleResult(IdleResult.NOT_SUPPORTED, changedFolderServerIds)
+            }
+
+            if (!stopIdle.get()) {
+                pollStatus(statusMailboxes, changedFolderServerIds)
+            }
+        }
+
+        return buildResult(changedFolderServerIds)
+    }
+
+    private fun ImapConnection.closeSelectedMailbox() {
+        if (hasCapability(Capabilities.UNSELECT)) {
+            executeSimpleCommand(Commands.UNSELECT)
+        } else {
+            // CLOSE doesn't expunge messages when the mailbox was opened using EXAMINE
+            executeSimpleCommand(Commands.CLOSE)
+        }
+    }
+
+    private fun ImapConnection.pollStatus(mailboxes: Map<String, String>, changedFolderServerIds: MutableSet<String>) {
+        val statusItems = if (isCondstoreCapable) {
+            "(MESSAGES UIDNEXT UIDVALIDITY HIGHESTMODSEQ)"
+        } else {
+            "(MESSAGES UIDNEXT UIDVALIDITY)"
+        }
+
+        for (mailbox in mailboxes.keys) {
+            val responses = executeSimpleCommand("${Commands.STATUS} ${ImapUtility.encodeString(mailbox)} $statusItems")
+            for (response in responses) {
+                handleStatusResponse(response, mailboxes, changedFolderServerIds, reportUnknownMailboxes = false)
+            }
+        }
+    }
+
+    /**
+     * Returns `true` if [response] is a `STATUS` response for one of the [mailboxes] that differs from the last known
+     * status of that folder. In that case the folder is added to [changedFolderServerIds].
+     */
+    private fun handleStatusResponse(
+        response: ImapResponse,
+        mailboxes: Map<String, String>,
+        changedFolderServerIds: MutableSet<String>,
+        reportUnknownMailboxes: Boolean,
+    ): Boolean {
+        val statusResponse = StatusResponse.parse(response) ?: return false
+
+        val mailbox = if (INBOX.equals(statusResponse.mailbox, ignoreCase = true)) INBOX else statusResponse.mailbox
+        val folderServerId = mailboxes[mailbox] ?: return false
+
+        val previousStatus = folderStatus[mailbox]
+        val isChanged = if (previousStatus == null) {
+            reportUnknownMailboxes
+        } else {
+            statusResponse.differsFrom(previousStatus)
+        }
+        if (isChanged) {
+            Timber.v("%s: Status of folder %s changed", logTag, folderServerId)
+            changedFolderServerIds.add(folderServerId)
+        }
+
+        folderStatus[mailbox] = statusResponse.mergeWith(previousStatus)
+
+        return isChanged
+    }
+
+    /**
+     * Sends an IDLE command and waits until it's completed.
+     *
+     * [handleResponse] is called for every untagged response and needs to return `true` if IDLE should be ended.
+     *
+     * Returns `false` if the server completed the IDLE command without sending a continuation request.
+     */
+    private fun ImapConnection.idleRound(timeout: Long, handleResponse: (ImapResponse) -> Boolean): Boolean {
+        synchronized(this@RealImapMultiFolderIdler) {
+            idleSent = false
+            doneSent = false
+        }
+
+        val tag = sendCommand(Commands.IDLE, false)
+
+        synchronized(this@RealImapMultiFolderIdler) {
+            idleSent = true
+        }
+
+        var receivedRelevantResponse = false
+        do {
+            val response = readResponse()
+            if (response.tag == tag) {
+                return false
+            } else if (!response.isContinuationRequested && handleResponse(response)) {
+                receivedRelevantResponse = true
+            }
+        } while (!response.isContinuationRequested)
+
+        if (receivedRelevantResponse || stopIdle.get()) {
+            Timber.v("%s.idle(): Received a relevant untagged response right after sending IDLE command", logTag)
+            sendDone()
+        } else {
+            setSocketReadTimeout((timeout + SOCKET_EXTRA_TIMEOUT_MS).toInt())
+        }
+
+        var response: ImapResponse
+        do {
+            idleRefreshTimer = idleRefreshManager.startTimer(timeout = timeout, callback = ::idleRefresh)
+
+            wakeLock.release()
+
+            try {
+                response = readResponse()
+            } finally {
+                wakeLock.acquire()
+                idleRefreshTimer?.cancel()
+            }
+
+            if (!response.isTagged && handleResponse(response) && !doneSent) {
+                Timber.v("%s.idle(): Received a relevant untagged response during IDLE", logTag)
+                sendDone()
+            }
+        } while (response.tag != tag)
+
+        if (!response.isOk) {
+            throw MessagingException("Received non-OK response to IDLE command")
+        }
+
+        return true
+    }
+
+    @Synchronized
+    private fun idleRefresh() {
+        Timber.v("%s.idleRefresh()", logTag)
+
+        if (!idleSent || doneSent) {
+            Timber.v("%s: Connection is not in a state where it can be refreshed.", logTag)
+            return
+        }
+
+        try {
+            sendDone()
+        } catch (e: IOException) {
+            Timber.v(e, "%s: IOException while sending DONE", logTag)
+        }
+    }
+
+    @Synchronized
+    private fun sendDone() {
+        val connection = connection ?: return
+
+        synchronized(connection) {
+            if (connection.isConnected) {
+                doneSent = true
+                connection.setSocketDefaultReadTimeout()
+                connection.sendContinuation("DONE")
+            }
+        }
+    }
+
+    private fun buildResult(changedFolderServerIds: Set<String>): MultiFolderIdleResult {
+        val result = if (changedFolderServerIds.isNotEmpty()) IdleResult.SYNC else IdleResult.STOPPED
+        return MultiFolderIdleResult(result, changedFolderServerIds)
+    }
+
+    private fun StatusResponse.differsFrom(previous: StatusResponse): Boolean {
+        return (messages != null && messages != previous.messages) ||
+            (uidNext != null && uidNext != previous.uidNext) ||
+            (uidValidity != null && uidValidity != previous.uidValidity) ||
+            (highestModSeq != null && highestModSeq != previous.highestModSeq)
+    }
+
+    private fun StatusResponse.mergeWith(previous: StatusResponse?): StatusResponse {
+        if (previous == null) return this
+
+        return copy(
+            messages = messages ?: previous.messages,
+            uidNext = uidNext ?: previous.uidNext,
+            uidValidity = uidValidity ?: previous.uidValidity,
+            highestModSeq = highestModSeq ?: previous.highestModSeq,
+        )
+    }
+
+    private val ImapResponse.isRelevantForSelectedFolder: Boolean
+        get() {
+            return if (!isTagged && size >= 2) {
+                ImapResponseParser.equalsIgnoreCase(get(1), Responses.EXISTS) ||
+                    ImapResponseParser.equalsIgnoreCase(get(1), Responses.EXPUNGE) ||
+                    ImapResponseParser.equalsIgnoreCase(get(1), "FETCH") ||
+                    ImapResponseParser.equalsIgnoreCase(get(0), Responses.VANISHED)
+            } else {
+                false
+            }
+        }
+
+    private val ImapResponse.isOk: Boolean
+        get() = isTagged && size >= 1 && ImapResponseParser.equalsIgnoreCase(get(0), Responses.OK)
+}
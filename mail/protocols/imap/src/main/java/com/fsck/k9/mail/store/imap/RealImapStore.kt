@@ -15,16 +15,15 @@ import com.fsck.k9.mail.store.imap.ImapStoreSettings.isSendClientInfo
 import com.fsck.k9.mail.store.imap.ImapStoreSettings.isUseCompression
 import com.fsck.k9.mail.store.imap.ImapStoreSettings.pathPrefix
 import java.io.IOException
-import java.util.Deque
-import java.util.LinkedList
 
 internal open class RealImapStore(
     private val serverSettings: ServerSettings,
     override val config: ImapStoreConfig,
     private val trustedSocketFactory: TrustedSocketFactory,
     private val oauthTokenProvider: OAuth2TokenProvider?,
+    nanoTimeProvider: () -> Long = System::nanoTime,
 ) : ImapStore, ImapConnectionManager, InternalImapStore {
-    private val folderNameCodec: FolderNameCodec = FolderNameCodec()
+    internal val folderNameCodec: FolderNameCodec = FolderNameCodec()
 
     private val host: String = checkNotNull(serverSettings.host)
 
@@ -33,7 +32,7 @@ internal open class RealImapStore(
     private var pathDelimiter: String? = null
 
     private val permanentFlagsIndex: MutableSet<Flag> = mutableSetOf()
-    private val connections: Deque<ImapConnection> = LinkedList()
+    private val connectionPool = ImapConnectionPool(ImapConnectionPoolSettings(), config.logLabel, nanoTimeProvider)
 
     @Volatile
     private var connectionGeneration = 1
@@ -233,32 +232,13 @@ internal open class RealImapStore(
 
     @Throws(MessagingException::class)
     override fun getConnection(): ImapConnection {
-        while (true) {
-            val connection = pollConnection() ?: return createImapConnection()
-
-            try {
-                connection.executeSimpleCommand(Commands.NOOP)
-
-                // If the command completes without an error this connection is still usable.
-                return connection
-            } catch (ioe: IOException) {
-                connection.close()
-            }
-        }
-    }
-
-    private fun pollConnection(): ImapConnection? {
-        return synchronized(connections) {
-            connections.poll()
-        }
+        return connectionPool.getConnection(::createImapConnection)
     }
 
     override fun releaseConnection(connection: ImapConnection?) {
         if (connection != null && connection.isConnected) {
             if (connection.connectionGeneration == connectionGeneration) {
-                synchronized(connections) {
-                    connections.offer(connection)
-                }
+                connectionPool.releaseConnection(connection)
             } else {
                 connection.close()
             }
@@ -268,18 +248,9 @@ internal open class RealImapStore(
     override fun closeAllConnections() {
         Timber.v("ImapStore.closeAllConnections()")
 
-        val connectionsToClose = synchronized(connections) {
-            val connectionsToClose = connections.toList()
-
-            connectionGeneration++
-            connections.clear()
-
-            connectionsToClose
-        }
-
-        for (connection in connectionsToClose) {
-            connection.close()
-        }
+        // Connections created before this point are closed when they are released
+        connectionGeneration++
+        connectionPool.closeAllConnections()
     }
 
     open fun createImapConnection(): ImapConnection {
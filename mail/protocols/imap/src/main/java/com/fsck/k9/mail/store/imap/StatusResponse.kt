@@ -0,0 +1,41 @@
+package com.fsck.k9.mail.store.imap
+
+import com.fsck.k9.mail.store.imap.ImapResponseParser.equalsIgnoreCase
+
+/**
+ * An untagged `STATUS` response (RFC 3501).
+ *
+ * [mailbox] is the encoded mailbox name as sent by the server. Attributes that weren't included in the response are
+ * `null`.
+ */
+internal data class StatusResponse(
+    val mailbox: String,
+    val messages: Long?,
+    val uidNext: Long?,
+    val uidValidity: Long?,
+    val highestModSeq: Long?,
+) {
+    companion object {
+        @JvmStatic
+        fun parse(response: ImapResponse): StatusResponse? {
+            if (response.isTagged || response.size < 3 || !equalsIgnoreCase(response[0], Responses.STATUS) ||
+                !response.isString(1) || !response.isList(2)
+            ) {
+                return null
+            }
+
+            val attributes = response.getList(2)
+            return StatusResponse(
+                mailbox = response.getString(1),
+                messages = attributes.getKeyedLong("MESSAGES"),
+                uidNext = attributes.getKeyedLong("UIDNEXT"),
+                uidValidity = attributes.getKeyedLong("UIDVALIDITY"),
+                highestModSeq = attributes.getKeyedLong(Responses.HIGHESTMODSEQ),
+            )
+        }
+
+        private fun ImapList.getKeyedLong(key: String): Long? {
+            return (getKeyedValue(key) as? String)?.toLongOrNull()
+        }
+    }
+}
@@ -0,0 +1,70 @@
+package com.fsck.k9.mail.store.imap;
+
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FilterInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.List;
+
+
+/**
+ * A literal that was too large to be kept in memory and has been written to a temp file by
+ * {@link ImapResponseParser}.
+ * <p>
+ * The data can be read once using {@link #getInputStream()}. The temp file is deleted when that stream is closed.
+ */
+class TempFileLiteral {
+    private final File file;
+    private final int size;
+
+
+    TempFileLiteral(File file, int size) {
+        this.file = file;
+        this.size = size;
+    }
+
+    public int getSize() {
+        return size;
+    }
+
+    public InputStream getInputStream() throws IOException {
+        return new FilterInputStream(new FileInputStream(file)) {
+            @Override
+            public void close() throws IOException {
+                try {
+                    super.close();
+                } finally {
+                    delete();
+                }
+            }
+        };
+    }
+
+    public void delete() {
+        if (file.exists() && !file.delete()) {
+            file.deleteOnExit();
+        }
+    }
+
+    /**
+     * Deletes the temp files of all {@link TempFileLiteral}s contained in {@code list} or one of its nested lists.
+     * <p>
+     * Call this once a response has been processed, so literals that weren't consumed don't leave files behind.
+     */
+    static void deleteAll(List<?> list) {
+        for (Object item : list) {
+            if (item instanceof TempFileLiteral) {
+                ((TempFileLiteral) item).delete();
+            } else if (item instanceof List) {
+                deleteAll((List<?>) item);
+            }
+        }
+    }
+
+    @Override
+    public String toString() {
+        return "{" + size + " bytes}";
+    }
+}
@@ -0,0 +1,56 @@
+package com.fsck.k9.mail.store.imap
+
+import com.fsck.k9.mail.store.imap.ImapResponseParser.equalsIgnoreCase
+
+/**
+ * Parses the untagged `VANISHED` response of the QRESYNC extension (RFC 7162).
+ *
+ * The UID set is kept as a list of ranges because `VANISHED (EARLIER)` responses may legitimately cover UIDs that
+ * never existed, e.g. `1:4000`.
+ */
+internal class VanishedResponse private constructor(
+    val isEarlier: Boolean,
+    val uidRanges: List<LongRange>,
+) {
+    val uidCount: Long
+        get() = uidRanges.sumOf { it.last - it.first + 1 }
+
+    companion object {
+        @JvmStatic
+        fun parse(response: ImapResponse): VanishedResponse? {
+            if (response.isTagged || response.size < 2 || !equalsIgnoreCase(response[0], Responses.VANISHED)) {
+                return null
+            }
+
+            val isEarlier = response.isList(1) && equalsIgnoreCase(response.getList(1).firstOrNull(), "EARLIER")
+            val uidSetIndex = if (isEarlier) 2 else 1
+            if (!response.isString(uidSetIndex)) return null
+
+            val uidRanges = parseUidSet(response.getString(uidSetIndex)) ?: return null
+
+            return VanishedResponse(isEarlier, uidRanges)
+        }
+
+        private fun parseUidSet(uidSet: String): List<LongRange>? {
+            return uidSet.split(',').map { element ->
+                val parts = element.split(':')
+                when (parts.size) {
+                    1 -> {
+                        val uid = parts[0].toUidOrNull() ?: return null
+                        uid..uid
+                    }
+                    2 -> {
+                        val first = parts[0].toUidOrNull() ?: return null
+                        val second = parts[1].toUidOrNull() ?: return null
+                        minOf(first, second)..maxOf(first, second)
+                    }
+                    else -> return null
+                }
+            }
+        }
+
+        private fun String.toUidOrNull(): Long? {
+            return toLongOrNull()?.takeIf { it in 1L..0xFFFFFFFFL }
+        }
+    }
+}
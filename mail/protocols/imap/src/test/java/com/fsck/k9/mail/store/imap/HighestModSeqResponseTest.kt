@@ -0,0 +1,51 @@
+package com.fsck.k9.mail.store.imap
+
+import assertk.assertThat
+import assertk.assertions.isEqualTo
+import assertk.assertions.isNotNull
+import assertk.assertions.isNull
+import assertk.assertions.prop
+import org.junit.Test
+
+class HighestModSeqResponseTest {
+    @Test
+    fun validResponse() {
+        val response = ImapResponseHelper.createImapResponse("* OK [HIGHESTMODSEQ 715194045007] Highest")
+
+        val result = HighestModSeqResponse.parse(response)
+
+        assertThat(result).isNotNull()
+            .prop(HighestModSeqResponse::highestModSeq).isEqualTo(715194045007L)
+    }
+
+    @Test
+    fun noModSeqResponse() {
+        val response = ImapResponseHelper.createImapResponse("* OK [NOMODSEQ] Sorry, no modsequences")
+
+        val result = HighestModSeqResponse.parse(response)
+
+        assertThat(result).isNotNull()
+            .prop(HighestModSeqResponse::highestModSeq).isNull()
+    }
+
+    @Test
+    fun taggedResponse_shouldReturnNull() {
+        assertNotValid("99 OK [HIGHESTMODSEQ 42]")
+    }
+
+    @Test
+    fun otherResponseCode_shouldReturnNull() {
+        assertNotValid("* OK [UIDVALIDITY 42]")
+    }
+
+    @Test
+    fun modSeqIsNotANumber_shouldReturnNull() {
+        assertNotValid("* OK [HIGHESTMODSEQ fourtytwo]")
+    }
+
+    private fun assertNotValid(response: String) {
+        val result = HighestModSeqResponse.parse(ImapResponseHelper.createImapResponse(response))
+
+        assertThat(result).isNull()
+    }
+}
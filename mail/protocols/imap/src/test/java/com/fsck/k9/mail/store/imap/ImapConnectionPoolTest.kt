@@ -0,0 +1,99 @@
+package com.fsck.k9.mail.store.imap
+
+import assertk.assertThat
+import assertk.assertions.isEqualTo
+import assertk.assertions.isSameInstanceAs
+import java.util.concurrent.TimeUnit
+import org.junit.Test
+import org.mockito.kotlin.mock
+import org.mockito.kotlin.never
+import org.mockito.kotlin.verify
+
+class ImapConnectionPoolTest {
+    private var currentTimeNanos = 0L
+
+    @Test
+    fun `releaseConnection() with full pool should close connection`() {
+        val pool = createConnectionPool(ImapConnectionPoolSettings(maxIdleConnections = 1))
+        val connectionOne = mock<ImapConnection>()
+        val connectionTwo = mock<ImapConnection>()
+
+        pool.releaseConnection(connectionOne)
+        pool.releaseConnection(connectionTwo)
+
+        verify(connectionOne, never()).close()
+        verify(connectionTwo).close()
+    }
+
+    @Test
+    fun `getConnection() should return most recently released connection`() {
+        val pool = createConnectionPool()
+        val connectionOne = mock<ImapConnection>()
+        val connectionTwo = mock<ImapConnection>()
+        pool.releaseConnection(connectionOne)
+        pool.releaseConnection(connectionTwo)
+
+        val result = pool.getConnection { throw AssertionError("Unexpectedly tried to create a connection") }
+
+        assertThat(result).isSameInstanceAs(connectionTwo)
+    }
+
+    @Test
+    fun `evictIdleConnections() should close connections idle for longer than max idle time`() {
+        val pool = createConnectionPool(ImapConnectionPoolSettings(maxIdleTimeMillis = 60_000L))
+        val oldConnection = mock<ImapConnection>()
+        val recentConnection = mock<ImapConnection>()
+        pool.releaseConnection(oldConnection)
+        currentTimeNanos += TimeUnit.SECONDS.toNanos(50)
+        pool.releaseConnection(recentConnection)
+        currentTimeNanos += TimeUnit.SECONDS.toNanos(20)
+
+        pool.evictIdleConnections()
+
+        verify(oldConnection).close()
+        verify(recentConnection, never()).close()
+        assertThat(pool.stats.evictionCount).isEqualTo(1L)
+    }
+
+    @Test
+    fun `evictIdleConnections() should keep min idle connections`() {
+        val pool = createConnectionPool(
+            ImapConnectionPoolSettings(minIdleConnections = 1, maxIdleTimeMillis = 60_000L),
+        )
+        val connectionOne = mock<ImapConnection>()
+        val connectionTwo = mock<ImapConnection>()
+        pool.releaseConnection(connectionOne)
+        pool.releaseConnection(connectionTwo)
+        currentTimeNanos += TimeUnit.MINUTES.toNanos(2)
+
+        pool.evictIdleConnections()
+
+        verify(connectionOne).close()
+        verify(connectionTwo, never()).close()
+    }
+
+    @Test
+    fun `stats should count hits and misses`() {
+        val pool = createConnectionPool()
+        val connection = mock<ImapConnection>()
+
+        pool.getConnection { connection }
+        pool.releaseConnection(connection)
+        pool.getConnection { throw AssertionError("Unexpectedly tried to create a connection") }
+
+        assertThat(pool.stats.hitCount).isEqualTo(1L)
+        assertThat(pool.stats.missCount).isEqualTo(1L)
+        assertThat(pool.stats.hitRate).isEqualTo(0.5)
+    }
+
+    private fun createConnectionPool(
+        settings: ImapConnectionPoolSettings = ImapConnectionPoolSettings(),
+    ): ImapConnectionPool {
+        return ImapConnectionPool(
+            settings,
+            logLabel = "test",
+            nanoTimeProvider = { currentTimeNanos },
+            evictionExecutor = mock(),
+        )
+    }
+}
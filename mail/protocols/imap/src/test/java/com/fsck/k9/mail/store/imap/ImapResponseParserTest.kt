@@ -8,6 +8,7 @@ import assertk.assertions.containsExactly
 import assertk.assertions.hasMessage
 import assertk.assertions.hasSize
 import assertk.assertions.index
+import assertk.assertions.isEmpty
 import assertk.assertions.isEqualTo
 import assertk.assertions.isInstanceOf
 import assertk.assertions.isNotNull
@@ -17,8 +18,10 @@ import assertk.assertions.isTrue
 import assertk.assertions.prop
 import com.fsck.k9.mail.filter.FixedLengthInputStream
 import com.fsck.k9.mail.filter.PeekableInputStream
+import com.fsck.k9.mail.internet.BinaryTempFileBody
 import java.io.ByteArrayInputStream
 import java.io.IOException
+import java.nio.file.Files
 import org.junit.Test
 
 class ImapResponseParserTest {
@@ -274,6 +277,32 @@ class ImapResponseParserTest {
         }.isInstanceOf<IOException>()
     }
 
+    @Test
+    fun `readResponse() with literal exceeding in-memory limit should write literal to temp file`() {
+        val tempDirectory = Files.createTempDirectory("ImapResponseParserTest").toFile()
+        BinaryTempFileBody.setTempDirectory(tempDirectory)
+        try {
+            val parser = createParserWithResponses(
+                "* 1 FETCH (UID 23 BODY[] {10}\r\n0123456789)",
+                maxInMemoryLiteralSize = 4,
+            )
+
+            val response = parser.readResponse()
+
+            val fetchList = response.getKeyedList("FETCH")
+            assertThat(fetchList).hasSize(5)
+            assertThat(fetchList[4]).isInstanceOf<TempFileLiteral>().all {
+                transform { it.size }.isEqualTo(10)
+                transform { it.inputStream.use { stream -> stream.readBytes().decodeToString() } }
+                    .isEqualTo("0123456789")
+            }
+            assertThat(tempDirectory.listFiles()!!).isEmpty()
+            assertThatAllInputWasConsumed()
+        } finally {
+            tempDirectory.deleteRecursively()
+        }
+    }
+
     @Test
     fun `readResponse() with literal should include return value of ImapResponseCallback_foundLiteral() in response`() {
         val parser = createParserWithResponses("* {4}\r\ntest")
@@ -549,16 +578,22 @@ class ImapResponseParserTest {
             .prop(NegativeImapResponseException::alertText).isEqualTo("Access denied")
     }
 
-    private fun createParserWithResponses(vararg responses: String): ImapResponseParser {
+    private fun createParserWithResponses(
+        vararg responses: String,
+        maxInMemoryLiteralSize: Int = ImapResponseParser.DEFAULT_MAX_IN_MEMORY_LITERAL_SIZE,
+    ): ImapResponseParser {
         val response = responses.joinToString(separator = "\r\n", postfix = "\r\n")
-        return createParserWithData(response)
+        return createParserWithData(response, maxInMemoryLiteralSize)
     }
 
-    private fun createParserWithData(response: String): ImapResponseParser {
+    private fun createParserWithData(
+        response: String,
+        maxInMemoryLiteralSize: Int = ImapResponseParser.DEFAULT_MAX_IN_MEMORY_LITERAL_SIZE,
+    ): ImapResponseParser {
         val byteArrayInputStream = ByteArrayInputStream(response.toByteArray(Charsets.UTF_8))
         peekableInputStream = PeekableInputStream(byteArrayInputStream)
 
-        return ImapResponseParser(peekableInputStream)
+        return ImapResponseParser(peekableInputStream, maxInMemoryLiteralSize)
     }
 
     private fun assertThatAllInputWasConsumed() {
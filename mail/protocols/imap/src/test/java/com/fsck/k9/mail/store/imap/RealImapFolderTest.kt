@@ -8,6 +8,7 @@ import assertk.assertions.containsExactly
 import assertk.assertions.containsOnly
 import assertk.assertions.extracting
 import assertk.assertions.hasMessage
+import assertk.assertions.isEmpty
 import assertk.assertions.isEqualTo
 import assertk.assertions.isFalse
 import assertk.assertions.isInstanceOf
@@ -1055,6 +1056,76 @@ class RealImapFolderTest {
         assertThat(buffer.readUtf8()).isEqualTo("text")
     }
 
+    @Test
+    fun `fetchParts() should pipeline one command per message and route bodies to parts`() {
+        val folder = createFolder("Folder")
+        prepareImapFolderForOpen(OpenMode.READ_ONLY)
+        folder.open(OpenMode.READ_ONLY)
+        val messageOne = createImapMessage("1")
+        val messageTwo = createImapMessage("2")
+        val partOne = createPlainTextPart("1")
+        val partTwo = createPlainTextPart("2")
+        val textPart = createPlainTextPart("TEXT")
+        whenever(imapConnection.sendCommand(anyString(), eq(false))).thenReturn("TAG1", "TAG2")
+        whenever(imapConnection.readResponse(anyOrNull())).thenReturn(
+            createImapResponse("* 1 FETCH (UID 1 BODY[1] \"one\" BODY[2] \"two\")"),
+            createImapResponse("* 2 FETCH (UID 2 BODY[TEXT]<0> \"text\")"),
+            createImapResponse("TAG1 OK Fetch completed"),
+            createImapResponse("TAG2 OK Fetch completed"),
+        )
+
+        folder.fetchParts(
+            partsToFetch = mapOf(messageOne to listOf(partOne, partTwo), messageTwo to listOf(textPart)),
+            bodyFactory = DefaultBodyFactory(),
+            maxDownloadSize = 4096,
+        )
+
+        verify(imapConnection).sendCommand("UID FETCH 1 (UID BODY.PEEK[1] BODY.PEEK[2])", false)
+        verify(imapConnection).sendCommand("UID FETCH 2 (UID BODY.PEEK[TEXT]<0.4096>)", false)
+        assertThat(partOne.capturedBodyText()).isEqualTo("one")
+        assertThat(partTwo.capturedBodyText()).isEqualTo("two")
+        assertThat(textPart.capturedBodyText()).isEqualTo("text")
+    }
+
+    @Test
+    fun `fetch() should delete temp file of large literal in response for unknown UID`() {
+        val folder = createFolder("Folder")
+        prepareImapFolderForOpen(OpenMode.READ_ONLY)
+        folder.open(OpenMode.READ_ONLY)
+        val messages = createImapMessages("1")
+        val fetchProfile = createFetchProfile(FetchProfile.Item.FLAGS)
+        whenever(imapConnection.readResponse(anyOrNull()))
+            .thenReturn(createImapResponseWithLargeLiteral("* 2 FETCH (UID 2 BODY[]", ")"))
+            .thenReturn(createImapResponse("x OK"))
+
+        folder.fetch(messages, fetchProfile, null, MAX_DOWNLOAD_SIZE)
+
+        assertThat(tempDirectory.listFiles()!!).isEmpty()
+    }
+
+    @Test
+    fun `fetchParts() should delete temp file of large literal for section that wasn't requested`() {
+        val folder = createFolder("Folder")
+        prepareImapFolderForOpen(OpenMode.READ_ONLY)
+        folder.open(OpenMode.READ_ONLY)
+        val message = createImapMessage("1")
+        val part = createPlainTextPart("1")
+        whenever(imapConnection.sendCommand(anyString(), eq(false))).thenReturn("TAG1")
+        whenever(imapConnection.readResponse(anyOrNull())).thenReturn(
+            createImapResponseWithLargeLiteral("* 1 FETCH (UID 1 BODY[1] \"one\" BODY[3]", ")"),
+            createImapResponse("TAG1 OK Fetch completed"),
+        )
+
+        folder.fetchParts(
+            partsToFetch = mapOf(message to listOf(part)),
+            bodyFactory = DefaultBodyFactory(),
+            maxDownloadSize = 4096,
+        )
+
+        assertThat(part.capturedBodyText()).isEqualTo("one")
+        assertThat(tempDirectory.listFiles()!!).isEmpty()
+    }
+
     @Test
     fun `appendMessages() on closed folder should throw`() {
         val folder = createFolder("Folder")
@@ -1470,6 +1541,14 @@ class RealImapFolderTest {
         return part
     }
 
+    private fun Part.capturedBodyText(): String {
+        val bodyArgumentCaptor = argumentCaptor<Body>()
+        verify(this).body = bodyArgumentCaptor.capture()
+        val buffer = Buffer()
+        bodyArgumentCaptor.firstValue.writeTo(buffer.outputStream())
+        return buffer.readUtf8()
+    }
+
     private fun setupSingleFetchResponseToCallback() {
         whenever(imapConnection.readResponse(anyOrNull()))
             .thenAnswer { invocation ->
@@ -1496,6 +1575,11 @@ class RealImapFolderTest {
         return response
     }
 
+    private fun createImapResponseWithLargeLiteral(prefix: String, suffix: String): ImapResponse {
+        val literalSize = ImapResponseParser.DEFAULT_MAX_IN_MEMORY_LITERAL_SIZE + 1
+        return createImapResponse("$prefix {$literalSize}\r\n${"x".repeat(literalSize)}$suffix")
+    }
+
     private fun createFolder(folderName: String): RealImapFolder {
         return RealImapFolder(internalImapStore, testConnectionManager, folderName, FolderNameCodec())
     }
@@ -0,0 +1,283 @@
+package com.fsck.k9.mail.store.imap
+
+import assertk.assertFailure
+import assertk.assertThat
+import assertk.assertions.hasMessage
+import assertk.assertions.isEqualTo
+import assertk.assertions.isFalse
+import assertk.assertions.isInstanceOf
+import assertk.assertions.isNull
+import assertk.assertions.isSameInstanceAs
+import assertk.assertions.isTrue
+import java.io.IOException
+import java.net.SocketException
+import java.util.concurrent.CountDownLatch
+import java.util.concurrent.TimeUnit
+import kotlin.concurrent.thread
+import org.junit.Test
+
+private const val INBOX = "INBOX"
+private const val FOLDER_SERVER_ID = "Folder"
+private const val TEST_TIMEOUT_SECONDS = 5L
+private const val IDLE_TIMEOUT_MS = 28 * 60 * 1000L
+
+class RealImapMultiFolderIdlerTest {
+    private val idleRefreshManager = TestIdleRefreshManager()
+    private val wakeLock = TestWakeLock(timeoutSeconds = TEST_TIMEOUT_SECONDS, isHeld = true)
+    private val imapConnection = TestImapConnection(timeout = TEST_TIMEOUT_SECONDS)
+    private val imapStore = TestImapStore(imapConnection)
+    private val idleRefreshTimeoutProvider = object : IdleRefreshTimeoutProvider {
+        override val idleRefreshTimeoutMs = IDLE_TIMEOUT_MS
+    }
+    private val idler = RealImapMultiFolderIdler(
+        idleRefreshManager,
+        wakeLock,
+        internalImapStore = imapStore,
+        connectionManager = imapStore,
+        folderNameCodec = FolderNameCodec(),
+        idleRefreshTimeoutProvider,
+    )
+
+    @Test
+    fun `new message in IDLE folder`() {
+        val latch = CountDownLatch(1)
+
+        thread {
+            val idleResult = idler.idle(listOf(INBOX))
+
+            assertThat(idleResult).isEqualTo(MultiFolderIdleResult(IdleResult.SYNC, setOf(INBOX)))
+            latch.countDown()
+        }
+
+        imapConnection.waitForCommand("EXAMINE \"INBOX\"")
+        imapConnection.enqueueTaggedServerResponse("OK")
+        imapConnection.waitForCommand("IDLE")
+        imapConnection.enqueueContinuationServerResponse()
+        imapConnection.enqueueUntaggedServerResponse("1 EXISTS")
+        imapConnection.waitForCommand("DONE")
+        imapConnection.enqueueTaggedServerResponse("OK")
+        imapConnection.waitForCommand("CLOSE")
+        imapConnection.enqueueTaggedServerResponse("OK")
+
+        latch.awaitWithTimeout()
+        assertThat(imapStore.releasedConnection).isSameInstanceAs(imapConnection)
+    }
+
+    @Test
+    fun `status change of other folder after IDLE refresh`() {
+        val latch = CountDownLatch(1)
+
+        thread {
+            val idleResult = idler.idle(listOf(INBOX, FOLDER_SERVER_ID))
+
+            assertThat(idleResult).isEqualTo(MultiFolderIdleResult(IdleResult.SYNC, setOf(FOLDER_SERVER_ID)))
+            latch.countDown()
+        }
+
+        imapConnection.waitForCommand("EXAMINE \"INBOX\"")
+        imapConnection.enqueueTaggedServerResponse("OK")
+        imapConnection.waitForCommand("STATUS \"Folder\" (MESSAGES UIDNEXT UIDVALIDITY)")
+        imapConnection.enqueueUntaggedServerResponse("STATUS \"Folder\" (MESSAGES 1 UIDNEXT 2 UIDVALIDITY 3)")
+        imapConnection.enqueueTaggedServerResponse("OK")
+        imapConnection.waitForCommand("IDLE")
+        imapConnection.enqueueContinuationServerResponse()
+        wakeLock.waitForRelease()
+        idleRefreshManager.resetTimers()
+        imapConnection.waitForCommand("DONE")
+        imapConnection.enqueueTaggedServerResponse("OK")
+        imapConnection.waitForCommand("STATUS \"Folder\" (MESSAGES UIDNEXT UIDVALIDITY)")
+        imapConnection.enqueueUntaggedServerResponse("STATUS \"Folder\" (MESSAGES 2 UIDNEXT 3 UIDVALIDITY 3)")
+        imapConnection.enqueueTaggedServerResponse("OK")
+        imapConnection.waitForCommand("CLOSE")
+        imapConnection.enqueueTaggedServerResponse("OK")
+
+        latch.awaitWithTimeout()
+        assertThat(imapStore.releasedConnection).isSameInstanceAs(imapConnection)
+    }
+
+    @Test
+    fun `stop ImapMultiFolderIdler while IDLE`() {
+        val latch = CountDownLatch(1)
+
+        thread {
+            val idleResult = idler.idle(listOf(INBOX))
+
+            assertThat(idleResult).isEqualTo(MultiFolderIdleResult(IdleResult.STOPPED))
+            latch.countDown()
+        }
+
+        imapConnection.waitForCommand("EXAMINE \"INBOX\"")
+        imapConnection.enqueueTaggedServerResponse("OK")
+        imapConnection.waitForCommand("IDLE")
+        imapConnection.enqueueContinuationServerResponse()
+        wakeLock.waitForRelease()
+        idler.stop()
+        imapConnection.waitForCommand("DONE")
+        imapConnection.enqueueTaggedServerResponse("OK")
+        imapConnection.waitForCommand("CLOSE")
+        imapConnection.enqueueTaggedServerResponse("OK")
+
+        latch.awaitWithTimeout()
+        assertThat(imapStore.releasedConnection).isSameInstanceAs(imapConnection)
+    }
+
+    @Test
+    fun `UNSELECT is used to deselect mailbox if supported`() {
+        val latch = CountDownLatch(1)
+        imapConnection.addCapability(Capabilities.UNSELECT)
+
+        thread {
+            val idleResult = idler.idle(listOf(INBOX))
+
+            assertThat(idleResult).isEqualTo(MultiFolderIdleResult(IdleResult.STOPPED))
+            latch.countDown()
+        }
+
+        imapConnection.waitForCommand("EXAMINE \"INBOX\"")
+        imapConnection.enqueueTaggedServerResponse("OK")
+        imapConnection.waitForCommand("IDLE")
+        imapConnection.enqueueContinuationServerResponse()
+        wakeLock.waitForRelease()
+        idler.stop()
+        imapConnection.waitForCommand("DONE")
+        imapConnection.enqueueTaggedServerResponse("OK")
+        imapConnection.waitForCommand("UNSELECT")
+        imapConnection.enqueueTaggedServerResponse("OK")
+
+        latch.awaitWithTimeout()
+        assertThat(imapStore.releasedConnection).isSameInstanceAs(imapConnection)
+    }
+
+    @Test
+    fun `stop() before idle() only ends the next idle cycle`() {
+        val latch = CountDownLatch(1)
+
+        idler.stop()
+        val firstIdleResult = idler.idle(listOf(INBOX))
+
+        assertThat(firstIdleResult).isEqualTo(MultiFolderIdleResult(IdleResult.STOPPED))
+        assertThat(imapStore.releasedConnection).isNull()
+
+        thread {
+            val idleResult = idler.idle(listOf(INBOX))
+
+            assertThat(idleResult).isEqualTo(MultiFolderIdleResult(IdleResult.SYNC, setOf(INBOX)))
+            latch.countDown()
+        }
+
+        imapConnection.waitForCommand("EXAMINE \"INBOX\"")
+        imapConnection.enqueueTaggedServerResponse("OK")
+        imapConnection.waitForCommand("IDLE")
+        imapConnection.enqueueContinuationServerResponse()
+        imapConnection.enqueueUntaggedServerResponse("1 EXISTS")
+        imapConnection.waitForCommand("DONE")
+        imapConnection.enqueueTaggedServerResponse("OK")
+        imapConnection.waitForCommand("CLOSE")
+        imapConnection.enqueueTaggedServerResponse("OK")
+
+        latch.awaitWithTimeout()
+    }
+
+    @Test
+    fun `stop() after IDLE ended but before idle() returned should stop next idle cycle`() {
+        val latch = CountDownLatch(1)
+
+        thread {
+            val idleResult = idler.idle(listOf(INBOX))
+
+            assertThat(idleResult).isEqualTo(MultiFolderIdleResult(IdleResult.SYNC, setOf(INBOX)))
+            latch.countDown()
+        }
+
+        imapConnection.waitForCommand("EXAMINE \"INBOX\"")
+        imapConnection.enqueueTaggedServerResponse("OK")
+        imapConnection.waitForCommand("IDLE")
+        imapConnection.enqueueContinuationServerResponse()
+        imapConnection.enqueueUntaggedServerResponse("1 EXISTS")
+        imapConnection.waitForCommand("DONE")
+        imapConnection.enqueueTaggedServerResponse("OK")
+        imapConnection.waitForCommand("CLOSE")
+        idler.stop()
+        imapConnection.enqueueTaggedServerResponse("OK")
+
+        latch.awaitWithTimeout()
+        assertThat(imapStore.releasedConnection).isSameInstanceAs(imapConnection)
+
+        val nextIdleLatch = CountDownLatch(1)
+        thread {
+            val idleResult = idler.idle(listOf(INBOX))
+
+            assertThat(idleResult).isEqualTo(MultiFolderIdleResult(IdleResult.STOPPED))
+            nextIdleLatch.countDown()
+        }
+
+        nextIdleLatch.awaitWithTimeout()
+    }
+
+    @Test
+    fun `status change reported via NOTIFY`() {
+        val latch = CountDownLatch(1)
+        imapConnection.addCapability(Capabilities.NOTIFY)
+
+        thread {
+            val idleResult = idler.idle(listOf(INBOX, FOLDER_SERVER_ID))
+
+            assertThat(idleResult).isEqualTo(MultiFolderIdleResult(IdleResult.SYNC, setOf(FOLDER_SERVER_ID)))
+            latch.countDown()
+        }
+
+        imapConnection.waitForCommand(
+            "NOTIFY SET STATUS (MAILBOXES (\"INBOX\" \"Folder\") (MessageNew MessageExpunge))",
+        )
+        imapConnection.enqueueTaggedServerResponse("OK")
+        imapConnection.waitForCommand("IDLE")
+        imapConnection.enqueueContinuationServerResponse()
+        imapConnection.enqueueUntaggedServerResponse("STATUS \"Folder\" (MESSAGES 2 UIDNEXT 3)")
+        imapConnection.waitForCommand("DONE")
+        imapConnection.enqueueTaggedServerResponse("OK")
+        imapConnection.waitForCommand("NOTIFY NONE")
+        imapConnection.enqueueTaggedServerResponse("OK")
+
+        latch.awaitWithTimeout()
+        assertThat(imapStore.releasedConnection).isSameInstanceAs(imapConnection)
+    }
+
+    @Test
+    fun `IDLE not supported`() {
+        imapConnection.setIdleNotSupported()
+
+        val idleResult = idler.idle(listOf(INBOX))
+
+        assertThat(idleResult).isEqualTo(MultiFolderIdleResult(IdleResult.NOT_SUPPORTED))
+        assertThat(imapStore.releasedConnection).isSameInstanceAs(imapConnection)
+    }
+
+    @Test
+    fun `network error on IDLE`() {
+        val latch = CountDownLatch(1)
+
+        thread {
+            assertFailure {
+                idler.idle(listOf(INBOX))
+            }.isInstanceOf<IOException>()
+                .hasMessage("Socket closed during IDLE")
+
+            latch.countDown()
+        }
+
+        imapConnection.waitForCommand("EXAMINE \"INBOX\"")
+        imapConnection.enqueueTaggedServerResponse("OK")
+        imapConnection.waitForCommand("IDLE")
+        imapConnection.enqueueContinuationServerResponse()
+        imapConnection.waitForBlockingRead()
+        imapConnection.throwOnRead { throw SocketException("Socket closed during IDLE") }
+
+        latch.awaitWithTimeout()
+        assertThat(imapConnection.isConnected).isFalse()
+        assertThat(imapStore.releasedConnection).isNull()
+    }
+}
+
+private fun CountDownLatch.awaitWithTimeout() {
+    assertThat(await(TEST_TIMEOUT_SECONDS, TimeUnit.SECONDS), "Test timed out").isTrue()
+}
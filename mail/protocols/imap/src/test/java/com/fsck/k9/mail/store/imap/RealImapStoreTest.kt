@@ -3,6 +3,7 @@ package com.fsck.k9.mail.store.imap
 import assertk.assertFailure
 import assertk.assertThat
 import assertk.assertions.containsExactly
+import assertk.assertions.isEqualTo
 import assertk.assertions.isInstanceOf
 import assertk.assertions.isNotNull
 import assertk.assertions.isSameInstanceAs
@@ -18,6 +19,7 @@ import com.fsck.k9.mail.store.imap.ImapStoreSettings.createExtra
 import java.io.IOException
 import java.util.ArrayDeque
 import java.util.Deque
+import java.util.concurrent.TimeUnit
 import org.junit.Test
 import org.mockito.ArgumentMatchers.anyString
 import org.mockito.kotlin.doReturn
@@ -28,6 +30,7 @@ import org.mockito.kotlin.stub
 import org.mockito.kotlin.verify
 
 class RealImapStoreTest {
+    private var currentTimeNanos = 0L
     private val imapStore = createTestImapStore()
 
     @Test
@@ -361,12 +364,47 @@ class RealImapStoreTest {
             on { executeSimpleCommand(Commands.NOOP) } doThrow IOException::class
         }
         imapStore.releaseConnection(imapConnectionOne)
+        currentTimeNanos += TimeUnit.MINUTES.toNanos(1)
 
         val result = imapStore.getConnection()
 
         assertThat(result).isSameInstanceAs(imapConnectionTwo)
     }
 
+    @Test
+    fun `getConnection() with recently released connection in pool should not send NOOP`() {
+        val imapConnection = createMockConnection().stub {
+            on { isConnected } doReturn true
+        }
+        imapStore.enqueueImapConnection(imapConnection)
+
+        imapStore.getConnection()
+        imapStore.releaseConnection(imapConnection)
+        currentTimeNanos += TimeUnit.SECONDS.toNanos(1)
+
+        val result = imapStore.getConnection()
+
+        assertThat(result).isSameInstanceAs(imapConnection)
+        verify(imapConnection, never()).executeSimpleCommand(Commands.NOOP)
+    }
+
+    @Test
+    fun `getConnection() with connection idle for longer than validation interval should send NOOP`() {
+        val imapConnection = createMockConnection().stub {
+            on { isConnected } doReturn true
+        }
+        imapStore.enqueueImapConnection(imapConnection)
+
+        imapStore.getConnection()
+        imapStore.releaseConnection(imapConnection)
+        currentTimeNanos += TimeUnit.MINUTES.toNanos(1)
+
+        val result = imapStore.getConnection()
+
+        assertThat(result).isSameInstanceAs(imapConnection)
+        verify(imapConnection).executeSimpleCommand(Commands.NOOP)
+    }
+
     @Test
     fun `getConnection() with connection in pool and closeAllConnections() should return new ImapConnection instance`() {
         val imapConnectionOne = createMockConnection(1)
@@ -438,6 +476,7 @@ class RealImapStoreTest {
             config = createImapStoreConfig(isSubscribedFoldersOnly),
             trustedSocketFactory = mock(),
             oauth2TokenProvider = null,
+            nanoTimeProvider = { currentTimeNanos },
         )
     }
 
@@ -457,11 +496,13 @@ class RealImapStoreTest {
         config: ImapStoreConfig,
         trustedSocketFactory: TrustedSocketFactory,
         oauth2TokenProvider: OAuth2TokenProvider?,
+        nanoTimeProvider: () -> Long,
     ) : RealImapStore(
         serverSettings,
         config,
         trustedSocketFactory,
         oauth2TokenProvider,
+        nanoTimeProvider,
     ) {
         private val imapConnections: Deque<ImapConnection> = ArrayDeque()
         private var testCombinedPrefix: String? = null
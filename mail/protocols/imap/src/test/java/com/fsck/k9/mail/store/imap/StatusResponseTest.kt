@@ -0,0 +1,59 @@
+package com.fsck.k9.mail.store.imap
+
+import assertk.assertThat
+import assertk.assertions.isEqualTo
+import assertk.assertions.isNull
+import org.junit.Test
+
+class StatusResponseTest {
+    @Test
+    fun validResponse() {
+        val response = ImapResponseHelper.createImapResponse(
+            "* STATUS \"Sent Items\" (MESSAGES 231 UIDNEXT 44292 UIDVALIDITY 1 HIGHESTMODSEQ 7011231777)",
+        )
+
+        val result = StatusResponse.parse(response)
+
+        assertThat(result).isEqualTo(
+            StatusResponse(
+                mailbox = "Sent Items",
+                messages = 231L,
+                uidNext = 44292L,
+                uidValidity = 1L,
+                highestModSeq = 7011231777L,
+            ),
+        )
+    }
+
+    @Test
+    fun responseWithSubsetOfAttributes() {
+        val response = ImapResponseHelper.createImapResponse("* STATUS INBOX (MESSAGES 17)")
+
+        val result = StatusResponse.parse(response)
+
+        assertThat(result).isEqualTo(
+            StatusResponse(mailbox = "INBOX", messages = 17L, uidNext = null, uidValidity = null, highestModSeq = null),
+        )
+    }
+
+    @Test
+    fun taggedResponse_shouldReturnNull() {
+        assertNotValid("99 STATUS INBOX (MESSAGES 17)")
+    }
+
+    @Test
+    fun otherResponse_shouldReturnNull() {
+        assertNotValid("* 17 EXISTS")
+    }
+
+    @Test
+    fun missingAttributeList_shouldReturnNull() {
+        assertNotValid("* STATUS INBOX")
+    }
+
+    private fun assertNotValid(response: String) {
+        val result = StatusResponse.parse(ImapResponseHelper.createImapResponse(response))
+
+        assertThat(result).isNull()
+    }
+}
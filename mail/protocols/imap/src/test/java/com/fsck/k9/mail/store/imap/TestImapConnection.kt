@@ -15,6 +15,8 @@ internal open class TestImapConnection(val timeout: Long, override val connectio
     override val isUidPlusCapable: Boolean = true
     override var isIdleCapable: Boolean = true
         protected set
+    override val isCondstoreCapable: Boolean = false
+    override val isQresyncEnabled: Boolean = false
 
     val defaultSocketReadTimeout = 30 * 1000
     var currentSocketReadTimeout = defaultSocketReadTimeout
@@ -23,6 +25,7 @@ internal open class TestImapConnection(val timeout: Long, override val connectio
     @Volatile
     private var tag: Int = 0
 
+    private val capabilities = mutableSetOf<String>()
     private val receivedCommands = LinkedBlockingDeque<String>()
     private val responses = LinkedBlockingDeque<Response>()
 
@@ -38,11 +41,27 @@ internal open class TestImapConnection(val timeout: Long, override val connectio
     }
 
     override fun hasCapability(capability: String): Boolean {
+        return capability in capabilities
+    }
+
+    override fun enableQresync(): Boolean {
         throw UnsupportedOperationException("not implemented")
     }
 
     override fun executeSimpleCommand(command: String): List<ImapResponse> {
-        throw UnsupportedOperationException("not implemented")
+        val tag = sendCommand(command, false)
+
+        val responses = mutableListOf<ImapResponse>()
+        do {
+            val response = readResponse()
+            responses.add(response)
+        } while (response.tag != tag)
+
+        if (!ImapResponseParser.equalsIgnoreCase(responses.last()[0], Responses.OK)) {
+            throw NegativeImapResponseException("Command failed", responses)
+        }
+
+        return responses
     }
 
     override fun executeCommandWithIdSet(
@@ -125,6 +144,10 @@ internal open class TestImapConnection(val timeout: Long, override val connectio
     fun setIdleNotSupported() {
         isIdleCapable = false
     }
+
+    fun addCapability(capability: String) {
+        capabilities.add(capability)
+    }
 }
 
 private sealed class Response {
@@ -1,24 +1,30 @@
 package com.fsck.k9.mail.store.imap
 
-internal class TestImapStore(private val folder: ImapFolder) : ImapStore, ImapConnectionProvider {
-    override fun checkSettings() {
-        throw UnsupportedOperationException("not implemented")
-    }
+import com.fsck.k9.mail.Flag
+
+internal class TestImapStore(private val connection: ImapConnection) : InternalImapStore, ImapConnectionManager {
+    override val logLabel: String = "test"
 
-    override fun getFolder(name: String): ImapFolder {
-        return folder
+    override val config: ImapStoreConfig
+        get() = throw UnsupportedOperationException("not implemented")
+
+    @Volatile
+    var releasedConnection: ImapConnection? = null
+        private set
+
+    override fun getCombinedPrefix(): String {
+        return ""
     }
 
-    override fun getFolders(): List<FolderListItem> {
+    override fun getPermanentFlagsIndex(): MutableSet<Flag> {
         throw UnsupportedOperationException("not implemented")
     }
 
-    override fun getConnection(folder: ImapFolder): ImapConnection {
-        if (folder !is TestImapFolder) throw AssertionError("getConnection() called with unknown ImapFolder instance")
-        return folder.connection
+    override fun getConnection(): ImapConnection {
+        return connection
     }
 
-    override fun closeAllConnections() {
-        throw UnsupportedOperationException("not implemented")
+    override fun releaseConnection(connection: ImapConnection?) {
+        releasedConnection = connection
     }
 }
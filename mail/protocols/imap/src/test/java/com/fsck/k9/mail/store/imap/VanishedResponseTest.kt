@@ -0,0 +1,59 @@
+package com.fsck.k9.mail.store.imap
+
+import assertk.all
+import assertk.assertThat
+import assertk.assertions.containsExactly
+import assertk.assertions.isEqualTo
+import assertk.assertions.isFalse
+import assertk.assertions.isNotNull
+import assertk.assertions.isNull
+import assertk.assertions.isTrue
+import assertk.assertions.prop
+import org.junit.Test
+
+class VanishedResponseTest {
+    @Test
+    fun vanishedEarlier() {
+        val response = ImapResponseHelper.createImapResponse("* VANISHED (EARLIER) 41,43:116,118,214:120")
+
+        val result = VanishedResponse.parse(response)
+
+        assertThat(result).isNotNull().all {
+            prop(VanishedResponse::isEarlier).isTrue()
+            prop(VanishedResponse::uidRanges).containsExactly(41L..41L, 43L..116L, 118L..118L, 120L..214L)
+        }
+    }
+
+    @Test
+    fun vanished() {
+        val response = ImapResponseHelper.createImapResponse("* VANISHED 405,407,410,425")
+
+        val result = VanishedResponse.parse(response)
+
+        assertThat(result).isNotNull().all {
+            prop(VanishedResponse::isEarlier).isFalse()
+            prop(VanishedResponse::uidCount).isEqualTo(4L)
+        }
+    }
+
+    @Test
+    fun invalidUidSet_shouldReturnNull() {
+        assertNotValid("* VANISHED 1:2:3")
+    }
+
+    @Test
+    fun zeroUid_shouldReturnNull() {
+        assertNotValid("* VANISHED 0")
+    }
+
+    @Test
+    fun expungeResponse_shouldReturnNull() {
+        assertNotValid("* 23 EXPUNGE")
+    }
+
+    private fun assertNotValid(response: String) {
+        val result = VanishedResponse.parse(ImapResponseHelper.createImapResponse(response))
+
+        assertThat(result).isNull()
+    }
+}
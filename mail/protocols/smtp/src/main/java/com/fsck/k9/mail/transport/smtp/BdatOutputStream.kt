@@ -0,0 +1,61 @@
+package com.fsck.k9.mail.transport.smtp
+
+import java.io.OutputStream
+
+/**
+ * Splits message data into chunks for the `BDAT` command (RFC 3030).
+ *
+ * [writeChunk] is called with chunks of [chunkSize] bytes. The remaining data is written as the last chunk when the
+ * stream is closed. Flushing the stream doesn't write a chunk, so chunk sizes don't depend on the streams wrapping this
+ * one.
+ */
+internal class BdatOutputStream(
+    chunkSize: Int,
+    private val writeChunk: (data: ByteArray, length: Int, isLastChunk: Boolean) -> Unit,
+) : OutputStream() {
+    private val buffer = ByteArray(chunkSize)
+    private var count = 0
+    private var isClosed = false
+
+    init {
+        require(chunkSize > 0) { "'chunkSize' needs to be positive" }
+    }
+
+    override fun write(b: Int) {
+        writeFullChunkIfNecessary()
+        buffer[count++] = b.toByte()
+    }
+
+    override fun write(b: ByteArray, off: Int, len: Int) {
+        var offset = off
+        var remaining = len
+        while (remaining > 0) {
+            writeFullChunkIfNecessary()
+
+            val length = minOf(remaining, buffer.size - count)
+            System.arraycopy(b, offset, buffer, count, length)
+            count += length
+            offset += length
+            remaining -= length
+        }
+    }
+
+    override fun close() {
+        if (isClosed) return
+        isClosed = true
+
+        writeChunk(buffer, count, true)
+        count = 0
+    }
+
+    // A full buffer is only written once more data arrives. That way the last chunk is never empty unless the whole
+    // message is.
+    private fun writeFullChunkIfNecessary() {
+        check(!isClosed) { "Stream has been closed" }
+
+        if (count == buffer.size) {
+            writeChunk(buffer, count, false)
+            count = 0
+        }
+    }
+}
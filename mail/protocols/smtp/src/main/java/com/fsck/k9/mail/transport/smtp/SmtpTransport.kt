@@ -43,13 +43,25 @@ import org.jetbrains.annotations.VisibleForTesting
 
 private const val SOCKET_SEND_MESSAGE_READ_TIMEOUT = 5 * 60 * 1000 // 5 minutes
 
+private const val BDAT_CHUNK_SIZE = 256 * 1024
+
 private const val SMTP_CONTINUE_REQUEST = 334
 private const val SMTP_AUTHENTICATION_FAILURE_ERROR_CODE = 535
 
+const val DEFAULT_MAX_MESSAGES_PER_SESSION = 20
+
+/**
+ * Sends messages to an SMTP server.
+ *
+ * By default a new connection is opened for every message. Between [beginSession] and [endSession] the connection is
+ * kept open and reused for subsequent messages. The connection is replaced after a failure, when the server rejects
+ * `RSET`, or after [maxMessagesPerSession] messages have been sent over it.
+ */
 class SmtpTransport(
     serverSettings: ServerSettings,
     private val trustedSocketFactory: TrustedSocketFactory,
     private val oauthTokenProvider: OAuth2TokenProvider?,
+    private val maxMessagesPerSession: Int = DEFAULT_MAX_MESSAGES_PER_SESSION,
 ) {
     private val host = serverSettings.host
     private val port = serverSettings.port
@@ -68,6 +80,10 @@ class SmtpTransport(
     private var largestAcceptableMessage = 0
     private var retryOAuthWithNewToken = false
     private var isPipeliningSupported = false
+    private var isChunkingSupported = false
+    private var pendingBdatResponses = 0
+    private var isSessionActive = false
+    private var messagesSentOverConnection = 0
 
     private val logger: SmtpLogger = object : SmtpLogger {
         override val isRawProtocolLoggingEnabled: Boolean
@@ -80,6 +96,24 @@ class SmtpTransport(
 
     init {
         require(serverSettings.type == "smtp") { "Expected SMTP ServerSettings!" }
+        require(maxMessagesPerSession > 0) { "'maxMessagesPerSession' needs to be positive" }
+    }
+
+    /**
+     * Keep the connection to the server open after [sendMessage] so it can be reused for the next message.
+     */
+    fun beginSession() {
+        isSessionActive = true
+    }
+
+    /**
+     * Close the connection kept open since [beginSession].
+     */
+    fun endSession() {
+        isSessionActive = false
+        if (isConnectionOpen()) {
+            close()
+        }
     }
 
     // TODO: Fix tests to not use open() directly
@@ -106,6 +140,7 @@ class SmtpTransport(
             is8bitEncodingAllowed = extensions.containsKey("8BITMIME")
             isEnhancedStatusCodesProvided = extensions.containsKey("ENHANCEDSTATUSCODES")
             isPipeliningSupported = extensions.containsKey("PIPELINING")
+            isChunkingSupported = extensions.containsKey("CHUNKING")
 
             if (connectionSecurity == ConnectionSecurity.STARTTLS_REQUIRED) {
                 if (extensions.containsKey("STARTTLS")) {
@@ -342,13 +377,16 @@ class SmtpTransport(
 
         message.removeHeader("Bcc")
 
-        ensureClosed()
-        open()
+        prepareConnection()
 
-        // If the message has attachments and our server has told us about a limit on the size of messages, count
-        // the message's size before sending it.
+        // If the message has attachments and our server has told us about a limit on the size of messages, estimate
+        // the message's size before sending it. This uses the stored size of the attachments instead of encoding the
+        // whole message an additional time.
         if (largestAcceptableMessage > 0 && message.hasAttachments()) {
-            if (message.calculateSize() > largestAcceptableMessage) {
+            if (message.estimateSize() > largestAcceptableMessage) {
+                if (!isSessionActive) {
+                    close()
+                }
                 throw MessagingException("Message too large for server", true)
             }
         }
@@ -366,7 +404,7 @@ class SmtpTransport(
                 }
 
                 executePipelinedCommands(pipelinedCommands)
-                readPipelinedResponse(pipelinedCommands)
+                readPipelinedResponses(pipelinedCommands.size)
             } else {
                 executeCommand(mailFrom)
 
@@ -375,35 +413,96 @@ class SmtpTransport(
                 }
             }
 
-            executeCommand("DATA")
-
             // Sending large messages might take a long time. We're using an extended timeout while waiting for the
-            // final response to the DATA command.
+            // response to the end of the message data.
             val socket = this.socket ?: error("socket == null")
-            socket.soTimeout = SOCKET_SEND_MESSAGE_READ_TIMEOUT
 
-            val msgOut = EOLConvertingOutputStream(
-                LineWrapOutputStream(
-                    SmtpDataStuffing(outputStream),
-                    1000,
-                ),
-            )
+            if (isChunkingSupported) {
+                socket.soTimeout = SOCKET_SEND_MESSAGE_READ_TIMEOUT
+                pendingBdatResponses = 0
+
+                // BDAT transmits the message data as is. So there's no need to apply dot-stuffing.
+                val bdatOut = BdatOutputStream(BDAT_CHUNK_SIZE) { data, length, isLastChunk ->
+                    if (isLastChunk) {
+                        // After the last chunk is attempted, we may have sent the message
+                        entireMessageSent = true
+                    }
+                    writeBdatChunk(data, length, isLastChunk)
+                }
+                val msgOut = EOLConvertingOutputStream(LineWrapOutputStream(bdatOut, 1000))
+
+                message.writeTo(msgOut)
+                msgOut.endWithCrLfAndFlush()
+                bdatOut.close()
+            } else {
+                executeCommand("DATA")
+
+                socket.soTimeout = SOCKET_SEND_MESSAGE_READ_TIMEOUT
+
+                val msgOut = EOLConvertingOutputStream(
+                    LineWrapOutputStream(
+                        SmtpDataStuffing(outputStream),
+                        1000,
+                    ),
+                )
 
-            message.writeTo(msgOut)
-            msgOut.endWithCrLfAndFlush()
+                message.writeTo(msgOut)
+                msgOut.endWithCrLfAndFlush()
 
-            // After the "\r\n." is attempted, we may have sent the message
-            entireMessageSent = true
-            executeCommand(".")
+                // After the "\r\n." is attempted, we may have sent the message
+                entireMessageSent = true
+                executeCommand(".")
+            }
+
+            socket.soTimeout = SOCKET_READ_TIMEOUT
+            messagesSentOverConnection++
+            if (!isSessionActive) {
+                close()
+            }
         } catch (e: NegativeSmtpReplyException) {
+            close()
             throw e
         } catch (e: Exception) {
+            close()
             throw MessagingException("Unable to send message", entireMessageSent, e)
-        } finally {
+        }
+    }
+
+    private fun prepareConnection() {
+        if (isSessionActive && isConnectionOpen()) {
+            if (messagesSentOverConnection < maxMessagesPerSession && resetConnection()) {
+                return
+            }
+
             close()
+        } else {
+            ensureClosed()
+        }
+
+        open()
+        messagesSentOverConnection = 0
+    }
+
+    /**
+     * Reset the SMTP transaction state of a reused connection.
+     *
+     * @return `false` if the connection can't be used anymore, e.g. because the server closed it after a timeout.
+     */
+    @Suppress("TooGenericExceptionCaught")
+    private fun resetConnection(): Boolean {
+        return try {
+            executeCommand("RSET")
+            true
+        } catch (e: Exception) {
+            Timber.d(e, "Reused SMTP connection failed. Reconnecting.")
+            false
         }
     }
 
+    private fun isConnectionOpen(): Boolean {
+        return socket != null
+    }
+
     private fun constructSmtpMailFromCommand(from: Array<Address>, is8bitEncodingAllowed: Boolean): String {
         val fromAddress = from.first().address
         return if (is8bitEncodingAllowed) {
@@ -498,11 +597,11 @@ class SmtpTransport(
         }
     }
 
-    private fun readPipelinedResponse(pipelinedCommands: List<String>) {
+    private fun readPipelinedResponses(numberOfResponses: Int) {
         val responseParser = responseParser!!
         var firstException: MessagingException? = null
 
-        repeat(pipelinedCommands.size) {
+        repeat(numberOfResponses) {
             val response = responseParser.readResponse(isEnhancedStatusCodesProvided)
             logResponse(response)
 
@@ -516,6 +615,32 @@ class SmtpTransport(
         }
     }
 
+    /**
+     * Send a `BDAT` command followed by the chunk data.
+     *
+     * When the server supports pipelining we don't wait for the responses to intermediate chunks. All outstanding
+     * responses are read after the last chunk has been sent.
+     */
+    private fun writeBdatChunk(data: ByteArray, length: Int, isLastChunk: Boolean) {
+        val command = if (isLastChunk) "BDAT $length LAST" else "BDAT $length"
+        if (K9MailLib.isDebug() && K9MailLib.DEBUG_PROTOCOL_SMTP) {
+            Timber.d("SMTP >>> %s", command)
+        }
+
+        outputStream!!.apply {
+            write((command + "\r\n").toByteArray())
+            write(data, 0, length)
+            flush()
+        }
+
+        pendingBdatResponses++
+        if (isLastChunk || !isPipeliningSupported) {
+            val numberOfResponses = pendingBdatResponses
+            pendingBdatResponses = 0
+            readPipelinedResponses(numberOfResponses)
+        }
+    }
+
     private fun saslAuthLogin() {
         try {
             executeCommand("AUTH LOGIN")
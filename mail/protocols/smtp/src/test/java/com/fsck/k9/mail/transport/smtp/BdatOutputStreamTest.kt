@@ -0,0 +1,47 @@
+package com.fsck.k9.mail.transport.smtp
+
+import assertk.assertThat
+import assertk.assertions.containsExactly
+import org.junit.Test
+
+class BdatOutputStreamTest {
+    private val chunks = mutableListOf<Pair<String, Boolean>>()
+    private val outputStream = BdatOutputStream(chunkSize = 4) { data, length, isLastChunk ->
+        chunks.add(String(data, 0, length) to isLastChunk)
+    }
+
+    @Test
+    fun `data smaller than chunk size should be written as last chunk on close`() {
+        outputStream.write("abc".toByteArray())
+        outputStream.flush()
+
+        outputStream.close()
+
+        assertThat(chunks).containsExactly("abc" to true)
+    }
+
+    @Test
+    fun `data should be split into chunks`() {
+        outputStream.write("abcdefghij".toByteArray())
+        outputStream.close()
+
+        assertThat(chunks).containsExactly("abcd" to false, "efgh" to false, "ij" to true)
+    }
+
+    @Test
+    fun `data filling the last chunk exactly should not result in empty last chunk`() {
+        outputStream.write("abcd".toByteArray())
+        outputStream.write('e'.code)
+        outputStream.write("fgh".toByteArray())
+        outputStream.close()
+
+        assertThat(chunks).containsExactly("abcd" to false, "efgh" to true)
+    }
+
+    @Test
+    fun `closing stream without data should write empty last chunk`() {
+        outputStream.close()
+
+        assertThat(chunks).containsExactly("" to true)
+    }
+}
@@ -698,6 +698,67 @@ class SmtpTransportTest {
         // server.verifyConnectionClosed();
     }
 
+    @Test
+    fun `sendMessage() with CHUNKING extension should use BDAT`() {
+        val message = createDefaultMessage()
+        val server = createServerAndSetupForPlainAuthentication("CHUNKING").apply {
+            expect("MAIL FROM:<user@localhost>")
+            output("250 OK")
+            expect("RCPT TO:<user2@localhost>")
+            output("250 OK")
+            expect("BDAT 16 LAST")
+            expect("[message data]")
+            output("250 OK: queued as 12345")
+            expect("QUIT")
+            output("221 BYE")
+            closeConnection()
+        }
+        val transport = startServerAndCreateSmtpTransport(server)
+
+        transport.sendMessage(message)
+
+        server.verifyConnectionClosed()
+        server.verifyInteractionCompleted()
+    }
+
+    @Test
+    fun `sendMessage() in session should reuse connection`() {
+        val server = createServerAndSetupForPlainAuthentication().apply {
+            expect("MAIL FROM:<user@localhost>")
+            output("250 OK")
+            expect("RCPT TO:<user2@localhost>")
+            output("250 OK")
+            expect("DATA")
+            output("354 End data with <CR><LF>.<CR><LF>")
+            expect("[message data]")
+            expect(".")
+            output("250 OK: queued as 12345")
+            expect("RSET")
+            output("250 OK")
+            expect("MAIL FROM:<user@localhost>")
+            output("250 OK")
+            expect("RCPT TO:<user2@localhost>")
+            output("250 OK")
+            expect("DATA")
+            output("354 End data with <CR><LF>.<CR><LF>")
+            expect("[message data]")
+            expect(".")
+            output("250 OK: queued as 12346")
+            expect("QUIT")
+            output("221 BYE")
+            closeConnection()
+        }
+        val transport = startServerAndCreateSmtpTransport(server)
+
+        transport.beginSession()
+        transport.sendMessage(createDefaultMessage())
+        transport.sendMessage(createDefaultMessage())
+        transport.endSession()
+
+        server.verifyConnectionClosed()
+        server.verifyInteractionCompleted()
+    }
+
     @Test
     fun `sendMessage() with negative reply should throw`() {
         val message = createDefaultMessage()
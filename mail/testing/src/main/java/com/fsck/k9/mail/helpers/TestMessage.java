@@ -54,6 +54,11 @@ class TestMessage extends MimeMessage {
         return messageSize;
     }
 
+    @Override
+    public long estimateSize() {
+        return messageSize;
+    }
+
     @Override
     public void writeTo(OutputStream out) throws IOException, MessagingException {
         BufferedSink bufferedSink = Okio.buffer(Okio.sink(out));
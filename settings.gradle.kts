@@ -155,6 +155,7 @@ include(
     ":mail:protocols:imap",
     ":mail:protocols:pop3",
     ":mail:protocols:smtp",
+    ":mail:benchmarks",
 )
 
 include(